@@ -31,6 +31,10 @@ CREATE TABLE `candles` (
   `low` decimal(36,18) NOT NULL,
   `close` decimal(36,18) NOT NULL,
   `close_time` timestamp NOT NULL,
+  `volume` decimal(36,18) NOT NULL DEFAULT '0.000000000000000000',
+  `quote_volume` decimal(36,18) NOT NULL DEFAULT '0.000000000000000000',
+  `trade_count` bigint NOT NULL DEFAULT '0',
+  `taker_buy_volume` decimal(36,18) NOT NULL DEFAULT '0.000000000000000000',
   PRIMARY KEY (`symbolID`,`timeframe`,`open_time`),
   CONSTRAINT `fk_candles_symbols` FOREIGN KEY (`symbolID`) REFERENCES `symbols` (`symbolID`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3 COLLATE=utf8mb3_bin;
@@ -51,6 +55,44 @@ CREATE TABLE `coins` (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3 COLLATE=utf8mb3_bin;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `engine_checkpoints`
+--
+
+DROP TABLE IF EXISTS `engine_checkpoints`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `engine_checkpoints` (
+  `symbolID` varchar(45) COLLATE utf8mb3_bin NOT NULL,
+  `last_sequence` bigint NOT NULL DEFAULT '0',
+  PRIMARY KEY (`symbolID`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3 COLLATE=utf8mb3_bin;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `member_fills`
+--
+
+DROP TABLE IF EXISTS `member_fills`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `member_fills` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `member_id` int NOT NULL,
+  `trade_id` int NOT NULL,
+  `symbol_id` varchar(45) COLLATE utf8mb3_bin NOT NULL,
+  `side` enum('buy','sell') COLLATE utf8mb3_bin DEFAULT NULL,
+  `role` varchar(10) COLLATE utf8mb3_bin DEFAULT NULL,
+  `price` decimal(36,18) DEFAULT NULL,
+  `quantity` decimal(36,18) DEFAULT NULL,
+  `trade_type` enum('spot','contract') COLLATE utf8mb3_bin DEFAULT NULL,
+  `executed_at` datetime(6) NOT NULL,
+  PRIMARY KEY (`id`),
+  KEY `idx_member_fills_member_time` (`member_id`,`executed_at`,`id`),
+  KEY `idx_member_fills_member_symbol_time` (`member_id`,`symbol_id`,`executed_at`,`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3 COLLATE=utf8mb3_bin;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `members`
 --
@@ -92,6 +134,7 @@ CREATE TABLE `orders` (
   PRIMARY KEY (`orderID`),
   KEY `member_idx` (`memberID`),
   KEY `fk_orders_symbols` (`symbolID`),
+  KEY `idx_orders_member_status_time` (`memberID`,`status`,`created_at`,`orderID`),
   CONSTRAINT `fk_orders_members` FOREIGN KEY (`memberID`) REFERENCES `members` (`memberID`),
   CONSTRAINT `fk_orders_symbols` FOREIGN KEY (`symbolID`) REFERENCES `symbols` (`symbolID`)
 ) ENGINE=InnoDB AUTO_INCREMENT=8 DEFAULT CHARSET=utf8mb3 COLLATE=utf8mb3_bin;
@@ -135,6 +178,8 @@ CREATE TABLE `symbols` (
   `name` varchar(45) COLLATE utf8mb3_bin NOT NULL,
   `base_coinID` varchar(45) COLLATE utf8mb3_bin NOT NULL,
   `quote_coinID` varchar(45) COLLATE utf8mb3_bin NOT NULL,
+  `price_scale` int DEFAULT '4',
+  `quantity_scale` int DEFAULT '6',
   PRIMARY KEY (`symbolID`),
   KEY `fk_symbols_coins_quote` (`quote_coinID`),
   KEY `fk_symbols_coins_base` (`base_coinID`),
@@ -166,6 +211,7 @@ CREATE TABLE `trades` (
   KEY `taker_order` (`taker_orderID`) /*!80000 INVISIBLE */,
   KEY `order1_idx` (`maker_orderID`),
   KEY `fk_trades_coins` (`fee_currency`),
+  KEY `idx_trades_symbol_time` (`symbolID`,`executed_at`,`tradesID`),
   CONSTRAINT `fk_trades_coins` FOREIGN KEY (`fee_currency`) REFERENCES `coins` (`coinID`),
   CONSTRAINT `fk_trades_order_maker` FOREIGN KEY (`maker_orderID`) REFERENCES `orders` (`orderID`),
   CONSTRAINT `fk_trades_order_taker` FOREIGN KEY (`taker_orderID`) REFERENCES `orders` (`orderID`),
@@ -173,6 +219,29 @@ CREATE TABLE `trades` (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3 COLLATE=utf8mb3_bin;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `wallet_transactions`
+--
+
+DROP TABLE IF EXISTS `wallet_transactions`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `wallet_transactions` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `member_id` int DEFAULT NULL,
+  `coin_id` varchar(255) COLLATE utf8mb3_bin DEFAULT NULL,
+  `type` varchar(50) COLLATE utf8mb3_bin DEFAULT NULL,
+  `amount` decimal(36,18) DEFAULT NULL,
+  `created_at` datetime(6) NOT NULL,
+  PRIMARY KEY (`id`,`created_at`),
+  KEY `idx_wallet_tx_member_time` (`member_id`,`created_at`,`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3 COLLATE=utf8mb3_bin
+/*!50100 PARTITION BY RANGE (to_days(`created_at`))
+(PARTITION p_history VALUES LESS THAN (to_days('2025-12-01')) ENGINE = InnoDB,
+ PARTITION p202512 VALUES LESS THAN (to_days('2026-01-01')) ENGINE = InnoDB,
+ PARTITION pmax VALUES LESS THAN MAXVALUE ENGINE = InnoDB) */;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `wallets`
 --
@@ -185,6 +254,7 @@ CREATE TABLE `wallets` (
   `coinID` varchar(45) COLLATE utf8mb3_bin NOT NULL,
   `balance` decimal(36,18) NOT NULL DEFAULT '0.000000000000000000',
   `available` decimal(36,18) NOT NULL DEFAULT '0.000000000000000000',
+  `version` bigint NOT NULL DEFAULT '0',
   PRIMARY KEY (`memberID`,`coinID`),
   KEY `memberID_idx` (`memberID`),
   KEY `fk_wallets_coins` (`coinID`),
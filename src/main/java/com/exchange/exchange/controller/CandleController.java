@@ -1,22 +1,32 @@
 package com.exchange.exchange.controller;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
 
-import com.exchange.exchange.entity.Candle;
 import com.exchange.exchange.service.CandleService;
+import com.exchange.exchange.service.KlineProxyService;
 
 // ====== 檔案總結 ======
 // CandleController 提供 K 線數據的查詢接口。
-// 支援從本地資料庫查詢，也提供代理 (Proxy) 功能直接轉發請求至 Binance (用於前端開發測試)。
+// 支援從本地資料庫查詢，也提供代理 (Proxy) 功能轉發請求至 Binance (用於前端開發測試，回應經過短暫快取)。
 @RestController
 @RequestMapping("/api/candles")
 public class CandleController {
@@ -24,38 +34,82 @@ public class CandleController {
     @Autowired
     private CandleService candleService;
 
-    // 注入 RestTemplate 用於代理外部 API 請求
+    // 外部 K 線代理 (含快取與請求合併)
     @Autowired
-    private RestTemplate restTemplate;
+    private KlineProxyService klineProxyService;
 
-    // API: 從本地資料庫獲取 K 線數據
-    // GET /api/candles/{symbolId}?interval=1m
+    // 管理權杖 (維運用 API 以 X-Admin-Token 標頭驗證)；未設定時維運用 API 一律拒絕
+    @Value("${exchange.admin.token:}")
+    private String adminToken;
+
+    // API: 獲取本地 K 線數據 (最近的 K 線由記憶體回答，更舊的歷史查詢資料庫)
+    // GET /api/candles/{symbolId}?interval=1m&startTime=&endTime=&limit=
+    // startTime (含) / endTime (不含) 為開盤時間的毫秒時間戳；limit 預設與上限皆為 1000
     @GetMapping("/{symbolId}")
-    public ResponseEntity<List<Candle>> getCandles(
+    public ResponseEntity<?> getCandles(
             @PathVariable String symbolId,
-            @RequestParam(defaultValue = "1m") String interval) {
-        // 呼叫 Service 查詢並回傳
-        return ResponseEntity.ok(candleService.getCandles(symbolId, interval));
+            @RequestParam(defaultValue = "1m") String interval,
+            @RequestParam(required = false) Long startTime,
+            @RequestParam(required = false) Long endTime,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            // 呼叫 Service 查詢並回傳
+            return ResponseEntity.ok(candleService.getCandles(symbolId, interval, toTime(startTime), toTime(endTime), limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // API: 依成交紀錄重建 K 線 (補資料)
+    // POST /api/candles/backfill/{symbolId}?intervals=5m,15m&from=2024-05-01T00:00:00&to=2024-05-02T00:00:00
+    // 只重建已結束的 K 線，單次範圍最多 31 天
+    // 維運用：重建會覆寫 K 線並長時間讀取 trades，不開放一般會員，需以 X-Admin-Token 標頭提供管理權杖
+    @PostMapping("/backfill/{symbolId}")
+    public ResponseEntity<?> backfill(
+            @PathVariable String symbolId,
+            @RequestParam(defaultValue = "1m,5m,15m,30m,1h,1d") String intervals,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        try {
+            return ResponseEntity.ok(Map.of("written", candleService.backfill(symbolId, intervals, from, to)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            // 寫回管線或 K 線寫入失敗中 -> 503，稍後重試
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
     }
 
     // API: Binance K 線代理 (Proxy Endpoint)
     // GET /api/candles/proxy/{symbol}?interval=1m
     // 用途：避免前端直接呼叫 Binance API 時遇到的 CORS (跨域資源共享) 問題。
+    // 回應由 KlineProxyService 快取，多個觀看者共用同一次上游呼叫。
     @GetMapping("/proxy/{symbol}")
     public ResponseEntity<?> getBinanceCandles(
             @PathVariable String symbol,
             @RequestParam(defaultValue = "1m") String interval) {
-        
-        // 建構 Binance API URL
-        String url = "https://api.binance.com/api/v3/klines?symbol=" + symbol.toUpperCase() + "&interval=" + interval + "&limit=1000";
-        
         try {
-            // 直接轉發請求並將原始回應傳回前端
-            Object response = restTemplate.getForObject(url, Object.class);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
+            // 將快取的原始回應位元組直接傳回前端
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(klineProxyService.getKlines(symbol, interval));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
             // 若發生錯誤，回傳 500
             return ResponseEntity.status(500).body("Error fetching from Binance: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    // 私有輔助方法：檢查管理權杖 (固定時間比較，避免以回應時間推測權杖)
+    private boolean isAdmin(String token) {
+        if (adminToken.isEmpty() || token == null) return false;
+        return MessageDigest.isEqual(adminToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 私有輔助方法：毫秒時間戳轉為系統時區的 LocalDateTime (與 K 線開盤時間的記錄方式一致)
+    private static LocalDateTime toTime(Long epochMillis) {
+        return epochMillis == null ? null
+                : LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
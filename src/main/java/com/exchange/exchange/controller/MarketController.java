@@ -0,0 +1,49 @@
+package com.exchange.exchange.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.exchange.exchange.service.MarketDataService;
+
+// ====== 檔案總結 ======
+// MarketController 提供行情串流 (Server-Sent Events) 的訂閱接口。
+// 公開資訊，不需要登入。客戶端以瀏覽器內建的 EventSource 連線，
+// 先收到 snapshot 事件，之後持續收到 depth / trade / kline 增量事件 [註1]。
+@RestController
+@RequestMapping("/api/market")
+public class MarketController {
+
+    @Autowired
+    private MarketDataService marketDataService;
+
+    // API: 訂閱行情串流
+    // GET /api/market/stream/{symbolId}?channels=depth,trade,kline&interval=1m
+    @GetMapping(value = "/stream/{symbolId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> stream(@PathVariable String symbolId,
+                                    @RequestParam(defaultValue = "depth,trade,kline") String channels,
+                                    @RequestParam(defaultValue = "1m") String interval) {
+        try {
+            return ResponseEntity.ok(marketDataService.subscribe(symbolId, channels, interval));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+        }
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 事件格式 (Event Format):
+      snapshot: {"symbol", "lastUpdateId", "bids", "asks"}  訂閱當下的完整深度 (訂閱 depth 時才有 lastUpdateId / bids / asks)
+      depth:    {"symbol", "firstUpdateId", "lastUpdateId", "bids", "asks"}  變動的檔位，quantity 為最新總量，0 代表檔位移除
+      trade:    {"symbol", "seq", "trades": [{"tradeId", "price", "quantity", "side", "time"}]}
+      kline:    {"symbol", "interval", "seq", "openTime", "open", "high", "low", "close"}  本批次成交在該 K 線內的區間
+      trade / kline 的 seq 連續遞增；深度差異的 firstUpdateId 應等於上一則的 lastUpdateId + 1，
+      不連續時可向 GET /api/orders/book/{symbol}?depth=full 取得同一序列的快照重新同步 (見 MarketDataHub [註4])。
+      時間欄位為毫秒時間戳。
+*/
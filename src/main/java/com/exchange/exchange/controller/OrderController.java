@@ -1,12 +1,13 @@
 package com.exchange.exchange.controller;
 
-// 引入 DTO：接收前端下單請求
+// 引入 DTO：接收前端下單請求、非同步受理回條與批次請求
+import com.exchange.exchange.dto.CancelRequest;
+import com.exchange.exchange.dto.OrderAckDTO;
 import com.exchange.exchange.dto.OrderRequest;
 // 引入實體：訂單
 import com.exchange.exchange.entity.Order;
-// 引入服務層與儲存庫
+// 引入服務層
 import com.exchange.exchange.service.OrderService;
-import com.exchange.exchange.repository.TradeRepository;
 // 引入枚舉：交易類型 (現貨/合約)
 import com.exchange.exchange.enums.TradeType;
 
@@ -14,9 +15,13 @@ import com.exchange.exchange.enums.TradeType;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 
 // ====== 檔案總結 ======
@@ -24,7 +29,9 @@ import java.util.List;
 // 核心功能：
 // 1. 查詢訂單 (歷史委託) 與 成交紀錄 (歷史成交)。
 // 2. 查詢訂單簿 (深度圖數據)。
-// 3. 下單 (Create Order) 與 撤單 (Cancel Order)。
+// 3. 下單 (Create Order，支援同步與非同步受理) 與 撤單 (Cancel Order)。
+// 4. 查詢單一訂單狀態 (追蹤非同步下單的成交進度)。
+// 5. 批次下單、批次撤單與撤銷交易對全部掛單 (供造市程式使用)。
 // 所有的寫入操作 (POST) 都需要驗證使用者登入狀態 (Session)。
 @RestController
 @RequestMapping("/api/orders")
@@ -32,9 +39,6 @@ public class OrderController {
 
     @Autowired
     private OrderService orderService;
-    
-    @Autowired
-    private TradeRepository tradeRepository;
 
     // 私有輔助方法：從 Session 中提取當前登入的 Member ID
     // 若未登入 (Session 中無 memberId)，則回傳 null
@@ -42,96 +46,111 @@ public class OrderController {
         return (Integer) session.getAttribute("memberId");
     }
 
-    // API：獲取我的歷史訂單
-    // GET /api/orders
+    // API：獲取我的委託 (游標分頁)
+    // GET /api/orders?status=open|closed|filled|canceled&symbolId=&limit=&cursor=
+    // status 預設為 open (掛單中)；cursor 為上一頁回傳的 nextCursor
     @GetMapping
-    public ResponseEntity<?> getOrders(HttpSession session) {
+    public ResponseEntity<?> getOrders(@RequestParam(required = false) String status,
+                                       @RequestParam(required = false) String symbolId,
+                                       @RequestParam(required = false) Integer limit,
+                                       @RequestParam(required = false) String cursor,
+                                       HttpSession session) {
         Integer memberId = getMemberId(session);
         // 權限驗證：未登入則回傳 401 Unauthorized
         if (memberId == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        
-        List<Order> orders = orderService.getOrders(memberId);
-        return ResponseEntity.ok(orders);
+
+        try {
+            return ResponseEntity.ok(orderService.getOrders(memberId, status, symbolId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
-    // API：獲取我的成交紀錄 (包含 Taker 與 Maker 的成交) [註1]
-    // GET /api/orders/trades
+    // API：獲取我的成交紀錄 (包含 Taker 與 Maker 的成交，游標分頁) [註1]
+    // GET /api/orders/trades?symbolId=&startTime=&endTime=&limit=&cursor=
+    // startTime (含) / endTime (不含) 為毫秒時間戳；cursor 為上一頁回傳的 nextCursor
     @GetMapping("/trades")
-    public ResponseEntity<?> getMyTrades(HttpSession session) {
+    public ResponseEntity<?> getMyTrades(@RequestParam(required = false) String symbolId,
+                                         @RequestParam(required = false) Long startTime,
+                                         @RequestParam(required = false) Long endTime,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) String cursor,
+                                         HttpSession session) {
         Integer memberId = getMemberId(session);
         if (memberId == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        
-        // 從 Repository 獲取原始查詢結果 (TradeQueryDTO)
-        // 這些結果包含了成交資訊以及 "我是 Taker 嗎?" "我是 Maker 嗎?" 的標記
-        List<com.exchange.exchange.dto.TradeQueryDTO> rawTrades = tradeRepository.findTradeHistory(memberId);
-        
-        // 準備一個列表來存放轉換後的 DTO (TradeRecordDTO) 給前端顯示
-        List<com.exchange.exchange.dto.TradeRecordDTO> history = new java.util.ArrayList<>();
-        
-        // 遍歷每一筆原始成交資料進行邏輯處理
-        for (com.exchange.exchange.dto.TradeQueryDTO item : rawTrades) {
-            com.exchange.exchange.entity.Trade t = item.getTrade();
-            
-            // 情境 A：我在這筆成交中擔任 Taker (主動吃單)
-            // 需要產生一條 "TAKER" 視角的紀錄
-            if (Boolean.TRUE.equals(item.getIsTakerMine())) {
-                 com.exchange.exchange.dto.TradeRecordDTO dto = new com.exchange.exchange.dto.TradeRecordDTO();
-                 dto.setTradeId(t.getTradeId());
-                 dto.setSymbolId(t.getSymbolId());
-                 dto.setSide(t.getTakerSide()); // Taker 的方向就是訂單上的方向
-                 dto.setPrice(t.getPrice());
-                 dto.setQuantity(t.getQuantity());
-                 dto.setExecutedAt(t.getExecutedAt());
-                 dto.setTradeType(t.getTradeType());
-                 dto.setRole("TAKER"); // 標記角色
-                 history.add(dto);
-            }
-            
-            // 情境 B：我在這筆成交中擔任 Maker (被動掛單)
-            // 需要產生一條 "MAKER" 視角的紀錄
-            // 注意：若發生 "自成交" (Self-Trade)，同一筆 Trade 可能同時進入 A 和 B 兩個區塊
-            if (Boolean.TRUE.equals(item.getIsMakerMine())) {
-                 com.exchange.exchange.dto.TradeRecordDTO dto = new com.exchange.exchange.dto.TradeRecordDTO();
-                 dto.setTradeId(t.getTradeId());
-                 dto.setSymbolId(t.getSymbolId());
-                 // Maker 的方向與 Taker 相反 (Taker 買，Maker 就是賣)
-                 dto.setSide(t.getTakerSide() == com.exchange.exchange.enums.OrderSide.BUY ? 
-                             com.exchange.exchange.enums.OrderSide.SELL : com.exchange.exchange.enums.OrderSide.BUY);
-                 dto.setPrice(t.getPrice());
-                 dto.setQuantity(t.getQuantity());
-                 dto.setExecutedAt(t.getExecutedAt());
-                 dto.setTradeType(t.getTradeType());
-                 dto.setRole("MAKER"); // 標記角色
-                 history.add(dto);
-            }
+
+        try {
+            return ResponseEntity.ok(orderService.getFills(memberId, symbolId, toTime(startTime), toTime(endTime), cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
-        
-        // 將整理好的列表按時間倒序排列 (最新的在前)
-        history.sort((a,b) -> b.getExecutedAt().compareTo(a.getExecutedAt()));
-        
-        return ResponseEntity.ok(history);
     }
 
+    // 私有輔助方法：毫秒時間戳轉為系統時區的 LocalDateTime (與成交時間的記錄方式一致)
+    private static LocalDateTime toTime(Long epochMillis) {
+        return epochMillis == null ? null
+                : LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
 
     // API：獲取公開訂單簿 (Order Book)
-    // GET /api/orders/book/{symbolId}?type=SPOT
+    // GET /api/orders/book/{symbolId}?type=SPOT&depth=10
+    // depth 可為 5 / 10 / 20 / 100 / full，回傳引擎預先序列化的深度快照
     @GetMapping("/book/{symbolId}")
     public ResponseEntity<?> getOrderBook(@PathVariable String symbolId,
-                                          @RequestParam(required = false, defaultValue = "SPOT") TradeType type) {
+                                          @RequestParam(required = false, defaultValue = "SPOT") TradeType type,
+                                          @RequestParam(required = false, defaultValue = "10") String depth) {
         // 此 API 為公開資訊，無需登入驗證
-        return ResponseEntity.ok(orderService.getOrderBook(symbolId, type));
+        try {
+            int levels = "full".equalsIgnoreCase(depth) ? 0 : Integer.parseInt(depth);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(orderService.getOrderBook(symbolId, type, levels));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body("Depth must be one of 5, 10, 20, 100 or full");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // API：查詢單一訂單狀態
+    // GET /api/orders/{orderId}
+    // 用途：非同步下單後追蹤成交進度
+    @GetMapping("/{orderId}")
+    public ResponseEntity<?> getOrder(@PathVariable Integer orderId, HttpSession session) {
+        Integer memberId = getMemberId(session);
+        if (memberId == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        try {
+            return ResponseEntity.ok(orderService.getOrder(memberId, orderId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
     }
 
     // API：建立新訂單 (下單)
-    // POST /api/orders
+    // POST /api/orders            -> 同步模式：等待撮合完成後回傳訂單
+    // POST /api/orders?async=true -> 非同步模式：受理後立即回傳 202 與訂單 ID [註4]
     @PostMapping
-    public ResponseEntity<?> createOrder(@RequestBody OrderRequest request, HttpSession session) {
+    public ResponseEntity<?> createOrder(@RequestBody OrderRequest request,
+                                         @RequestParam(defaultValue = "false") boolean async,
+                                         HttpSession session) {
         Integer memberId = getMemberId(session);
         if (memberId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
 
         try {
+            if (async) {
+                // 非同步模式：驗證、凍結資金並送入撮合佇列後立即回應
+                // 撮合失敗時訂單已由 OrderService 拒絕並解凍，此處只記錄
+                Order accepted = orderService.submitOrder(memberId, request, (order, error) -> {
+                    if (error != null) {
+                        System.err.println("Async matching failed for order " + order.getOrderId() + ": " + error.getMessage());
+                    }
+                });
+                return ResponseEntity.accepted().body(new OrderAckDTO(accepted));
+            }
+
             // 呼叫 Service 執行下單邏輯 (包含凍結資金與撮合)
             Order order = orderService.createOrder(memberId, request);
             return ResponseEntity.ok(order);
@@ -141,6 +160,9 @@ public class OrderController {
         } catch (UnsupportedOperationException e) {
             // 功能未實作 (如市價單) -> 回傳 501 Not Implemented
             return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            // 暫停受理 (寫回管線持續失敗) -> 回傳 503 Service Unavailable
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
         } catch (Exception e) {
             // 未知錯誤 -> 回傳 500 Internal Server Error 並印出堆疊
             e.printStackTrace();
@@ -148,16 +170,68 @@ public class OrderController {
         }
     }
 
+    // API：批次下單 [註5]
+    // POST /api/orders/batch            -> 等待所有訂單撮合完成後回傳每筆結果
+    // POST /api/orders/batch?async=true -> 受理後立即回傳每筆結果 (不等待撮合)
+    @PostMapping("/batch")
+    public ResponseEntity<?> createOrders(@RequestBody List<OrderRequest> requests,
+                                          @RequestParam(defaultValue = "false") boolean async,
+                                          HttpSession session) {
+        Integer memberId = getMemberId(session);
+        if (memberId == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        try {
+            return ResponseEntity.ok(orderService.createOrders(memberId, requests, !async));
+        } catch (IllegalArgumentException e) {
+            // 整批無效 (空批次或超過上限) -> 回傳 400 Bad Request
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            // 暫停受理 (寫回管線持續失敗) -> 回傳 503 Service Unavailable
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+    }
+
+    // API：批次撤單
+    // POST /api/orders/cancel-batch  Body: [{"orderId": 1, "symbolId": "BTCUSDT"}, ...]
+    @PostMapping("/cancel-batch")
+    public ResponseEntity<?> cancelOrders(@RequestBody List<CancelRequest> requests, HttpSession session) {
+        Integer memberId = getMemberId(session);
+        if (memberId == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        try {
+            return ResponseEntity.ok(orderService.cancelOrders(memberId, requests));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // API：撤銷我在指定交易對的所有掛單
+    // POST /api/orders/cancel-all?symbolId=BTCUSDT
+    @PostMapping("/cancel-all")
+    public ResponseEntity<?> cancelAll(@RequestParam String symbolId, HttpSession session) {
+        Integer memberId = getMemberId(session);
+        if (memberId == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        try {
+            return ResponseEntity.ok(orderService.cancelAll(memberId, symbolId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     // API：取消訂單 (撤單)
-    // POST /api/orders/{orderId}/cancel
+    // POST /api/orders/{orderId}/cancel?symbolId=BTCUSDT
+    // 提供 symbolId 時撤單不需讀取資料庫 (建議造市程式一律提供)
     @PostMapping("/{orderId}/cancel")
-    public ResponseEntity<?> cancelOrder(@PathVariable Integer orderId, HttpSession session) {
+    public ResponseEntity<?> cancelOrder(@PathVariable Integer orderId,
+                                         @RequestParam(required = false) String symbolId,
+                                         HttpSession session) {
         Integer memberId = getMemberId(session);
         if (memberId == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
 
         try {
             // 呼叫 Service 執行撤單邏輯 (包含解凍資金)
-            Order order = orderService.cancelOrder(memberId, orderId);
+            Order order = orderService.cancelOrder(memberId, orderId, symbolId);
             return ResponseEntity.ok(order);
         } catch (IllegalArgumentException e) {
             // 訂單不存在或不屬於該用戶 -> 回傳 400 Bad Request
@@ -168,10 +242,10 @@ public class OrderController {
 
 // ====== 備註區 ======
 /*
-[註1] 邏輯分層 (Layering Violation):
-      `getMyTrades` 方法中包含了大量的資料轉換與業務邏輯 (判斷 Maker/Taker, 翻轉方向)。
-      這屬於 Service 層的職責。Controller 應專注於請求分發。
-      建議將這段 `for` 迴圈邏輯移至 `TradeService` 或 `OrderService` 中。
+[註1] 成交紀錄查詢 (Fill History):
+      早期版本在這裡 JOIN 查詢全部成交，再逐筆判斷 Maker/Taker、翻轉方向並在記憶體中排序。
+      現在會員視角 (方向、角色) 在撮合時就寫入 member_fills，查詢與分頁移至 OrderService.getFills，
+      Controller 只負責參數轉換。
 
 [註2] 異常處理 (Global Exception Handling):
       目前在 `createOrder` 中使用了 try-catch 區塊。
@@ -182,4 +256,12 @@ public class OrderController {
       目前直接回傳 Entity (`Order`) 給前端。
       雖然方便，但暴露了資料庫結構 (如 `memberID`)。
       建議轉換為 `OrderResponseDTO` 再回傳，僅暴露必要的欄位。
+
+[註4] 非同步下單 (Async Order Placement):
+      非同步模式下回傳的 `OrderAckDTO` 只代表「已受理」，不代表已成交。
+      撮合失敗時僅能在伺服器日誌中看到，前端應以 GET /api/orders/{orderId} 確認最終狀態。
+
+[註5] 批次回應 (Batch Response):
+      批次 API 只要請求本身合法就回傳 200，每筆的成功與否放在結果陣列中 (index 對應請求順序)，
+      呼叫端必須逐筆檢查 success，而不是只看 HTTP 狀態碼。
 */
\ No newline at end of file
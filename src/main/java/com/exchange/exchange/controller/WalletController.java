@@ -125,14 +125,20 @@ public class WalletController {
 
     // API：取得資金流水紀錄
     // 路徑：GET /api/wallets/transactions
+    // 參數：limit (每頁筆數，預設 50)、cursor (上一頁回傳的 nextCursor)
     @GetMapping("/transactions")
-    public ResponseEntity<?> getTransactions(HttpSession session) {
+    public ResponseEntity<?> getTransactions(@RequestParam(required = false) Integer limit,
+                                             @RequestParam(required = false) String cursor,
+                                             HttpSession session) {
         Integer memberId = getMemberId(session);
         if (memberId == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
 
-        // 查詢該會員的所有歷史資金變動
-        List<com.exchange.exchange.entity.WalletTransaction> list = walletService.getTransactions(memberId);
-        return ResponseEntity.ok(list);
+        // 以游標分頁查詢該會員的資金變動 (由新到舊)
+        try {
+            return ResponseEntity.ok(walletService.getTransactions(memberId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 }
 
@@ -0,0 +1,53 @@
+package com.exchange.exchange.dto;
+
+import com.exchange.exchange.entity.Order;
+
+// ====== 檔案總結 ======
+// BatchResultDTO 是批次下單 / 批次撤單中「單筆」的處理結果。
+// 批次請求不會因為其中一筆失敗而整批失敗，每一筆都有各自的成功與否與錯誤訊息。
+public class BatchResultDTO {
+
+    // 該筆在請求陣列中的位置 (從 0 開始)
+    private int index;
+
+    // 是否成功 (下單：已受理並送入撮合；撤單：已取消)
+    private boolean success;
+
+    // 成功時的訂單內容 (下單的非同步模式下為受理當下的狀態)
+    private Order order;
+
+    // 失敗原因
+    private String error;
+
+    public BatchResultDTO() {}
+
+    public static BatchResultDTO ok(int index, Order order) {
+        BatchResultDTO result = new BatchResultDTO();
+        result.index = index;
+        result.success = true;
+        result.order = order;
+        return result;
+    }
+
+    public static BatchResultDTO failed(int index, String error) {
+        BatchResultDTO result = new BatchResultDTO();
+        result.index = index;
+        result.success = false;
+        result.error = error;
+        return result;
+    }
+
+    // --- Getters & Setters ---
+
+    public int getIndex() { return index; }
+    public void setIndex(int index) { this.index = index; }
+
+    public boolean isSuccess() { return success; }
+    public void setSuccess(boolean success) { this.success = success; }
+
+    public Order getOrder() { return order; }
+    public void setOrder(Order order) { this.order = order; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
@@ -0,0 +1,21 @@
+package com.exchange.exchange.dto;
+
+// ====== 檔案總結 ======
+// CancelRequest 用於封裝批次撤單請求中的單筆撤單。
+// 提供交易對 (symbolId) 時，撤單直接由記憶體訂單簿處理，不需查詢資料庫。
+public class CancelRequest {
+
+    // 要取消的訂單 ID
+    private Integer orderId;
+
+    // 訂單所屬交易對 (選填，建議提供)
+    private String symbolId;
+
+    // --- Getters & Setters ---
+
+    public Integer getOrderId() { return orderId; }
+    public void setOrderId(Integer orderId) { this.orderId = orderId; }
+
+    public String getSymbolId() { return symbolId; }
+    public void setSymbolId(String symbolId) { this.symbolId = symbolId; }
+}
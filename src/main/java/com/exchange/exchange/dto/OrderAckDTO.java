@@ -0,0 +1,51 @@
+package com.exchange.exchange.dto;
+
+import java.time.LocalDateTime;
+
+import com.exchange.exchange.entity.Order;
+
+// ====== 檔案總結 ======
+// OrderAckDTO 是非同步下單模式的「受理回條」(Acknowledgement)。
+// 下單 API 在完成驗證、凍結資金並將訂單送入撮合佇列後立即回傳此物件，
+// 不等待撮合結果；成交進度需透過 GET /api/orders/{orderId} 查詢。
+public class OrderAckDTO {
+
+    // 受理狀態常數：訂單已進入撮合佇列
+    public static final String ACCEPTED = "ACCEPTED";
+
+    // 系統配發的訂單 ID，用於後續查詢訂單狀態
+    private Integer orderId;
+
+    // 交易對 (如 BTCUSDT)
+    private String symbolId;
+
+    // 受理狀態 (目前固定為 ACCEPTED)
+    private String status;
+
+    // 受理時間
+    private LocalDateTime acceptedAt;
+
+    public OrderAckDTO() {}
+
+    // 便捷建構子：由剛受理的訂單建立回條
+    public OrderAckDTO(Order order) {
+        this.orderId = order.getOrderId();
+        this.symbolId = order.getSymbolId();
+        this.status = ACCEPTED;
+        this.acceptedAt = order.getCreatedAt();
+    }
+
+    // --- Getters & Setters ---
+
+    public Integer getOrderId() { return orderId; }
+    public void setOrderId(Integer orderId) { this.orderId = orderId; }
+
+    public String getSymbolId() { return symbolId; }
+    public void setSymbolId(String symbolId) { this.symbolId = symbolId; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public LocalDateTime getAcceptedAt() { return acceptedAt; }
+    public void setAcceptedAt(LocalDateTime acceptedAt) { this.acceptedAt = acceptedAt; }
+}
@@ -0,0 +1,28 @@
+package com.exchange.exchange.dto;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+// ====== 檔案總結 ======
+// PageCursor 是游標分頁 (Keyset Pagination) 的位置：上一頁最後一筆的 (時間, ID)。
+// 對外以字串 "時間_ID" 傳遞 (例如 2026-01-05T10:15:30.123456_981)，下一頁只查詢「嚴格早於」此位置的資料。
+// ID 作為同一時間多筆資料的決勝條件，確保分頁之間不重複也不遺漏。
+public record PageCursor(LocalDateTime time, long id) {
+
+    // 方法：編碼為對外傳遞的字串
+    public String encode() {
+        return time + "_" + id;
+    }
+
+    // 方法：解析前端傳回的游標字串，空字串視為第一頁 (回傳 null)
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        int split = cursor.lastIndexOf('_');
+        try {
+            return new PageCursor(LocalDateTime.parse(cursor.substring(0, split)),
+                    Long.parseLong(cursor.substring(split + 1)));
+        } catch (DateTimeParseException | IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
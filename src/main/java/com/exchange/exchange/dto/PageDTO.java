@@ -0,0 +1,55 @@
+package com.exchange.exchange.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+// ====== 檔案總結 ======
+// PageDTO 是游標分頁查詢的回應格式。
+// items 為本頁資料 (依時間倒序)，nextCursor 為取得下一頁時要帶回的游標；沒有更多資料時為 null。
+public class PageDTO<T> {
+
+    // 未指定時的每頁筆數與上限
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    // 本頁資料
+    private List<T> items;
+
+    // 下一頁游標 (null 代表已是最後一頁)
+    private String nextCursor;
+
+    public PageDTO() {}
+
+    public PageDTO(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    // 方法：檢查並套用每頁筆數 (未指定時使用預設值)
+    public static int limitOf(Integer limit) {
+        if (limit == null) return DEFAULT_LIMIT;
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    // 方法：由查詢結果建立分頁，查滿 limit 筆時以最後一筆的位置作為下一頁游標
+    public static <T> PageDTO<T> of(List<T> items, int limit, Function<T, PageCursor> position) {
+        String next = items.size() >= limit ? position.apply(items.get(items.size() - 1)).encode() : null;
+        return new PageDTO<>(items, next);
+    }
+
+    // 方法：轉換本頁資料的型別 (例如實體轉 DTO)，游標不變
+    public <R> PageDTO<R> map(Function<T, R> mapper) {
+        return new PageDTO<>(items.stream().map(mapper).toList(), nextCursor);
+    }
+
+    // --- Getters & Setters ---
+
+    public List<T> getItems() { return items; }
+    public void setItems(List<T> items) { this.items = items; }
+
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+}
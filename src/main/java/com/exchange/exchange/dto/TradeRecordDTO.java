@@ -1,5 +1,6 @@
 package com.exchange.exchange.dto;
 
+import com.exchange.exchange.entity.MemberFill;
 import com.exchange.exchange.enums.OrderSide;
 import com.exchange.exchange.enums.TradeType;
 import java.math.BigDecimal;
@@ -41,6 +42,20 @@ public class TradeRecordDTO {
     // 無參數建構子 (JSON 序列化所需)
     public TradeRecordDTO() {}
 
+    // 由會員成交明細建立 (方向與角色已是會員視角)
+    public static TradeRecordDTO of(MemberFill fill) {
+        TradeRecordDTO dto = new TradeRecordDTO();
+        dto.tradeId = fill.getTradeId();
+        dto.symbolId = fill.getSymbolId();
+        dto.side = fill.getSide();
+        dto.price = fill.getPrice();
+        dto.quantity = fill.getQuantity();
+        dto.executedAt = fill.getExecutedAt();
+        dto.tradeType = fill.getTradeType();
+        dto.role = fill.getRole();
+        return dto;
+    }
+
     // --- Getters & Setters ---
 
     public Integer getTradeId() { return tradeId; }
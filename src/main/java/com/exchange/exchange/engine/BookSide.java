@@ -0,0 +1,122 @@
+package com.exchange.exchange.engine;
+
+import java.util.Arrays;
+
+// ====== 檔案總結 ======
+// BookSide 是訂單簿的一側 (買盤或賣盤) 的價格檔位索引。
+// 結構：以 long 價格排序的 PriceLevel 陣列，「越好的價格越靠近陣列尾端」，最佳檔位固定在 levels[size - 1]。
+// 1. 取得最佳檔位：O(1)。
+// 2. 依價格尋找檔位：二分搜尋 O(log n)，比較的是原生 long，不需要裝箱 (Boxing)。
+// 3. 新增 / 移除檔位：只需搬移比它更好的檔位 [註1]；最常見的「在最佳價附近掛單與成交」幾乎不需搬移。
+// 移除的檔位會回收到物件池，穩定狀態下不產生垃圾 (Garbage-Free)。
+final class BookSide {
+
+    // 是否為買盤 (價格越高越好)；賣盤則價格越低越好
+    private final boolean bid;
+
+    private PriceLevel[] levels = new PriceLevel[64];
+    private int size;
+
+    // 空閒檔位物件池 (以 nextFree 串接)
+    private PriceLevel free;
+
+    BookSide(boolean bid) {
+        this.bid = bid;
+    }
+
+    // 方法：最佳檔位，無掛單時回傳 null
+    PriceLevel best() {
+        return size == 0 ? null : levels[size - 1];
+    }
+
+    // 方法：依距離最佳價的名次取得檔位 (0 為最佳檔位)
+    PriceLevel get(int depth) {
+        return levels[size - 1 - depth];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // 方法：尋找指定價格的檔位，不存在時回傳 null
+    PriceLevel find(long price) {
+        int index = indexOf(price);
+        return index >= 0 ? levels[index] : null;
+    }
+
+    // 方法：尋找指定價格的檔位，不存在時建立並插入到正確位置
+    PriceLevel findOrCreate(long price) {
+        int index = indexOf(price);
+        if (index >= 0) return levels[index];
+
+        int insertAt = -(index + 1);
+        if (size == levels.length) {
+            levels = Arrays.copyOf(levels, size * 2);
+        }
+        System.arraycopy(levels, insertAt, levels, insertAt + 1, size - insertAt);
+
+        PriceLevel level = free;
+        if (level == null) {
+            level = new PriceLevel();
+        } else {
+            free = level.nextFree;
+            level.nextFree = null;
+        }
+        level.price = price;
+        levels[insertAt] = level;
+        size++;
+        return level;
+    }
+
+    // 方法：移除一個 (已清空的) 檔位並回收
+    void remove(PriceLevel level) {
+        int index = indexOf(level.price);
+        if (index < 0) return;
+        System.arraycopy(levels, index + 1, levels, index, size - index - 1);
+        levels[--size] = null;
+
+        level.head = null;
+        level.tail = null;
+        level.quantity = 0;
+        level.orders = 0;
+        level.nextFree = free;
+        free = level;
+    }
+
+    // 方法：清空所有檔位 (重建前使用)
+    void clear() {
+        Arrays.fill(levels, 0, size, null);
+        size = 0;
+    }
+
+    // 私有方法：二分搜尋價格，找到時回傳索引，否則回傳 -(插入位置 + 1) (與 Arrays.binarySearch 相同慣例)
+    private int indexOf(long price) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long p = levels[mid].price;
+            if (p == price) return mid;
+            if (better(price, p)) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    // 私有方法：價格 a 是否優於價格 b (買盤較高者優、賣盤較低者優)
+    private boolean better(long a, long b) {
+        return bid ? a > b : a < b;
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 為何選擇排序陣列 (Sorted Array):
+      TreeMap 每個檔位都是獨立的節點物件，走訪時需要追逐指標，Key 也必須裝箱為 Long。
+      排序陣列在記憶體中連續，搜尋與走訪對 CPU 快取友善；插入與刪除的搬移成本與「比它更好的檔位數」成正比，
+      實務上掛單與撤單集中在最佳價附近，因此搬移量通常只有數個元素。
+      若要支援極遠離市價的大量掛單，可改用以中間價為中心的 Tick 階梯 (Ladder) + Bitset 索引。
+*/
@@ -0,0 +1,173 @@
+package com.exchange.exchange.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.exchange.exchange.enums.TradeType;
+
+// ====== 檔案總結 ======
+// DepthSnapshot 是訂單簿深度 (每個價格檔位的剩餘數量總和) 的不可變快照。
+// 由撮合執行緒在一批指令處理完後發布 (OrderBook.publishDepth)，任何執行緒都可直接讀取，不需查詢資料庫。
+// 核心概念：
+// 1. 檔位以 long 陣列保存 (Tick 數與 Lot 數)，建立快照只是複製陣列，不產生 BigDecimal。
+// 2. 序列化結果依深度快取：同一個快照的同一深度只序列化一次，之後的請求直接回傳相同的位元組 [註1]。
+// 3. 可計算與前一個快照之間的差異 (appendDiff)，供行情串流推播 [註2]。
+// 4. 快照帶有版本 (lastUpdateId)，與串流中深度差異的 Update ID 屬於同一序列，客戶端可據此銜接 [註3]。
+public final class DepthSnapshot {
+
+    // 支援的深度 (檔位數)；0 代表全部檔位
+    public static final int[] DEPTHS = {5, 10, 20, 100, 0};
+
+    private final String symbolId;
+    private final TradeType tradeType;
+
+    // 快照對應的訂單簿版本 (每次訂單簿變動遞增)，即此快照包含的最後一個 Update ID [註3]
+    private final long updateId;
+
+    private final SymbolScale scale;
+
+    // 買盤 (由高到低) 與賣盤 (由低到高) 的價格 (Tick 數) 與數量 (Lot 數)
+    private final long[] bidPrices;
+    private final long[] bidQuantities;
+    private final long[] askPrices;
+    private final long[] askQuantities;
+
+    // 各深度的 JSON 序列化結果 (索引對應 DEPTHS)，首次請求時建立
+    private final AtomicReferenceArray<byte[]> serialized = new AtomicReferenceArray<>(DEPTHS.length);
+
+    DepthSnapshot(String symbolId, TradeType tradeType, long updateId, SymbolScale scale,
+                  long[] bidPrices, long[] bidQuantities, long[] askPrices, long[] askQuantities) {
+        this.symbolId = symbolId;
+        this.tradeType = tradeType;
+        this.updateId = updateId;
+        this.scale = scale;
+        this.bidPrices = bidPrices;
+        this.bidQuantities = bidQuantities;
+        this.askPrices = askPrices;
+        this.askQuantities = askQuantities;
+    }
+
+    // 方法：檢查深度參數 (僅接受 DEPTHS 中的值)，回傳其在 DEPTHS 中的索引
+    public static int depthIndex(int depth) {
+        for (int i = 0; i < DEPTHS.length; i++) {
+            if (DEPTHS[i] == depth) return i;
+        }
+        throw new IllegalArgumentException("Depth must be one of 5, 10, 20, 100 or full");
+    }
+
+    // 方法：取得指定深度的 JSON，格式為 {"lastUpdateId":..,"bids":[{"price":..,"quantity":..}],"asks":[..]}
+    // 回傳的陣列會被多個請求共用，呼叫端不可修改
+    public byte[] toJson(int depth) {
+        int index = depthIndex(depth);
+        byte[] json = serialized.get(index);
+        if (json == null) {
+            // 多個執行緒同時建立時結果相同，保留任一份即可
+            json = serialize(depth).getBytes(StandardCharsets.UTF_8);
+            serialized.compareAndSet(index, null, json);
+        }
+        return json;
+    }
+
+    public String getSymbolId() { return symbolId; }
+    public TradeType getTradeType() { return tradeType; }
+    public long getUpdateId() { return updateId; }
+    public int bidLevels() { return bidPrices.length; }
+    public int askLevels() { return askPrices.length; }
+
+    // 方法：將指定深度的買賣盤以 "bids":[..],"asks":[..] 的形式附加到 JSON (不含外層大括號)
+    public void appendLevels(StringBuilder json, int depth) {
+        json.append("\"bids\":");
+        appendLevels(json, bidPrices, bidQuantities, depth);
+        json.append(",\"asks\":");
+        appendLevels(json, askPrices, askQuantities, depth);
+    }
+
+    // 方法：將相對於 previous 有變動的檔位以 "bids":[..],"asks":[..] 的形式附加到 JSON [註2]
+    // 數量為該檔位的最新總量 (絕對值)，0 代表檔位已移除；回傳是否有任何變動
+    public boolean appendDiff(StringBuilder json, DepthSnapshot previous) {
+        json.append("\"bids\":[");
+        int changed = appendDiff(json, previous.bidPrices, previous.bidQuantities, bidPrices, bidQuantities, true);
+        json.append("],\"asks\":[");
+        changed += appendDiff(json, previous.askPrices, previous.askQuantities, askPrices, askQuantities, false);
+        json.append(']');
+        return changed > 0;
+    }
+
+    private String serialize(int depth) {
+        StringBuilder json = new StringBuilder(64 + 48 * (depth == 0 ? bidPrices.length + askPrices.length : 2 * depth));
+        json.append("{\"lastUpdateId\":").append(updateId).append(',');
+        appendLevels(json, depth);
+        return json.append('}').toString();
+    }
+
+    private void appendLevels(StringBuilder json, long[] prices, long[] quantities, int depth) {
+        int count = depth == 0 ? prices.length : Math.min(depth, prices.length);
+        json.append('[');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) json.append(',');
+            appendLevel(json, prices[i], quantities[i]);
+        }
+        json.append(']');
+    }
+
+    // 私有方法：以合併走訪 (兩側皆由最佳價往外排序) 找出新增、移除與數量改變的檔位，回傳變動檔位數
+    private int appendDiff(StringBuilder json, long[] oldPrices, long[] oldQuantities,
+                           long[] newPrices, long[] newQuantities, boolean bid) {
+        int changed = 0;
+        int i = 0;
+        int j = 0;
+        while (i < oldPrices.length || j < newPrices.length) {
+            long price;
+            long quantity;
+            if (j >= newPrices.length || (i < oldPrices.length && better(oldPrices[i], newPrices[j], bid))) {
+                // 舊檔位已不存在
+                price = oldPrices[i++];
+                quantity = 0;
+            } else if (i >= oldPrices.length || oldPrices[i] != newPrices[j]) {
+                // 新增的檔位
+                price = newPrices[j];
+                quantity = newQuantities[j++];
+            } else {
+                // 同一檔位：數量相同則略過
+                boolean same = oldQuantities[i] == newQuantities[j];
+                price = newPrices[j];
+                quantity = newQuantities[j];
+                i++;
+                j++;
+                if (same) continue;
+            }
+            if (changed++ > 0) json.append(',');
+            appendLevel(json, price, quantity);
+        }
+        return changed;
+    }
+
+    private void appendLevel(StringBuilder json, long price, long quantity) {
+        json.append("{\"price\":").append(scale.price(price).toPlainString())
+            .append(",\"quantity\":").append(scale.quantity(quantity).toPlainString())
+            .append('}');
+    }
+
+    private static boolean better(long a, long b, boolean bid) {
+        return bid ? a > b : a < b;
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 預先序列化 (Pre-Serialization):
+      行情頁面每個分頁每 2 秒請求一次深度，若每次請求都由 Jackson 將 DTO 轉為 JSON，
+      CPU 成本與觀看人數成正比。快照不可變，因此同一版本的序列化結果可以安全地共用；
+      訂單簿沒有變動時，所有請求回傳的都是同一個位元組陣列。
+
+[註2] 深度差異 (Depth Diff):
+      推播給串流訂閱者的是兩個快照之間的差異，而不是整份深度。兩個快照的檔位都依價格排序，
+      以一次合併走訪即可找出變動，成本與檔位數成正比；每個變動檔位帶的是最新總量而非增減量，
+      重複套用同一則差異不會改變結果。
+
+[註3] Update ID:
+      訂單簿每次變動 (掛單、撤單、撮合) 都使 updateId 加一，快照的 updateId 是它包含的最後一次變動。
+      深度差異以 [firstUpdateId, lastUpdateId] 表示涵蓋的變動範圍，相鄰兩則差異的範圍首尾相接。
+      REST 快照與串流差異都取自同一批已發布的快照，因此快照的 lastUpdateId 必定落在某則差異的邊界上，
+      客戶端丟棄 lastUpdateId <= 快照版本的差異後，第一則差異滿足 firstUpdateId <= 快照版本 + 1 <= lastUpdateId。
+*/
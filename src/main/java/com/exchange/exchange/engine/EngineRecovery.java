@@ -0,0 +1,180 @@
+package com.exchange.exchange.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.exchange.exchange.engine.journal.CommandJournal;
+import com.exchange.exchange.engine.journal.JournalRecord;
+import com.exchange.exchange.engine.ledger.WalletLedger;
+import com.exchange.exchange.engine.persist.BatchPersister;
+import com.exchange.exchange.engine.snapshot.EngineSnapshot;
+import com.exchange.exchange.engine.snapshot.SnapshotManager;
+import com.exchange.exchange.entity.EngineCheckpoint;
+import com.exchange.exchange.entity.Order;
+import com.exchange.exchange.enums.OrderStatus;
+import com.exchange.exchange.enums.OrderType;
+import com.exchange.exchange.repository.EngineCheckpointRepository;
+import com.exchange.exchange.repository.OrderRepository;
+import com.exchange.exchange.service.OrderService;
+
+import jakarta.annotation.PostConstruct;
+
+// ====== 檔案總結 ======
+// EngineRecovery 負責撮合引擎重啟時的狀態恢復 (Crash Recovery)。
+// 流程：
+// 1. 載入最新的狀態快照 (序號 S) 還原訂單簿；沒有快照時改由資料庫重建 (資料庫反映各交易對檢查點當下的狀態)。
+// 2. 讀取指令日誌中序號大於起點 (S 或檢查點) 的指令 (尾端, Tail)。
+// 3. 由資料庫重建時，先將尾端中新下的訂單自訂單簿移除 (它們在資料庫中仍是未撮合的 NEW 狀態) [註1]。
+// 4. 依序號重播尾端指令：已寫入資料庫 (不大於檢查點) 的指令只恢復記憶體，其餘重新產生成交、訂單狀態與錢包結算。
+// 5. 已受理 (資料庫中為活躍狀態) 但既不在快照、也不在日誌中的訂單，接在重播之後送入撮合 [註2]。
+// 6. 等待寫回管線寫完並清空錢包帳本，之後才開始接受新請求。
+@Component
+public class EngineRecovery {
+
+    @Autowired
+    private CommandJournal commandJournal;
+
+    @Autowired
+    private EngineCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private OrderBookManager orderBookManager;
+
+    @Autowired
+    private SequencerManager sequencerManager;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private BatchPersister batchPersister;
+
+    @Autowired
+    private SnapshotManager snapshotManager;
+
+    @Autowired
+    private WalletLedger walletLedger;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @PostConstruct
+    public void recover() throws IOException {
+        long started = System.currentTimeMillis();
+        Map<String, Long> checkpoints = new HashMap<>();
+        for (EngineCheckpoint checkpoint : checkpointRepository.findAll()) {
+            checkpoints.put(checkpoint.getSymbolId(), checkpoint.getLastSequence());
+        }
+
+        Optional<EngineSnapshot> snapshot = snapshotManager.loadLatest();
+        if (snapshot.isPresent()) {
+            orderBookManager.load(snapshot.get().orders());
+        } else {
+            orderBookManager.rebuild();
+        }
+
+        List<JournalRecord> tail = new ArrayList<>();
+        commandJournal.forEach(record -> {
+            long from = snapshot.isPresent()
+                    ? snapshot.get().sequence()
+                    : checkpoints.getOrDefault(record.symbolId(), 0L);
+            if (record.sequence() > from) tail.add(record);
+        });
+        List<Order> unjournaled = findUnjournaled(snapshot, tail);
+        if (tail.isEmpty() && unjournaled.isEmpty()) return;
+
+        // 步驟 1：(僅資料庫重建) 移除尾端中新下的訂單，避免較早的指令與「尚未進入撮合」的訂單成交
+        if (snapshot.isEmpty()) {
+            for (JournalRecord record : tail) {
+                if (record instanceof JournalRecord.Place place) {
+                    sequencerManager.execute(place.symbolId(),
+                            () -> orderBookManager.getBook(place.symbolId(), place.tradeType()).remove(place.orderId()));
+                }
+            }
+        }
+
+        // 步驟 2：依序號重播，指令在各自交易對的序列器執行緒中執行
+        for (JournalRecord record : tail) {
+            boolean persist = record.sequence() > checkpoints.getOrDefault(record.symbolId(), 0L);
+            try {
+                sequencerManager.execute(record.symbolId(), () -> {
+                    orderService.replay(record, persist);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                // 與原本執行時相同的失敗 (例如撤單時訂單已成交) 直接略過
+                System.err.println("Replay of journal sequence " + record.sequence() + " skipped: " + e.getMessage());
+            }
+        }
+
+        // 步驟 3：接續受理時被當機中斷的訂單 (依受理順序)
+        for (Order order : unjournaled) {
+            try {
+                sequencerManager.execute(order.getSymbolId(), () -> {
+                    if (order.getStatus() == OrderStatus.NEW) {
+                        orderService.resume(order);
+                    } else {
+                        orderBookManager.restore(order);
+                    }
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                System.err.println("Resuming unjournaled order " + order.getOrderId() + " failed: " + e.getMessage());
+            }
+        }
+
+        batchPersister.awaitDrained();
+        // 重播期間帳本也套用了「已寫入資料庫」指令的差額，清空後由已一致的資料庫重新載入
+        walletLedger.clear();
+        System.out.println("指令日誌重播完成，共 " + tail.size() + " 筆指令、" + unjournaled.size()
+                + " 筆未寫入日誌的訂單，耗時 " + (System.currentTimeMillis() - started) + "ms");
+    }
+
+    // 私有方法：找出資料庫中仍為活躍狀態，但未被載入訂單簿、也沒有下單指令的訂單 [註2]
+    // 由快照載入時，不在快照中的訂單都算在內；由資料庫重建時，限價單已以掛單身份載入，只剩市價單
+    private List<Order> findUnjournaled(Optional<EngineSnapshot> snapshot, List<JournalRecord> tail) {
+        Set<Integer> known = new HashSet<>();
+        snapshot.ifPresent(s -> s.orders().forEach(o -> known.add(o.getOrderId())));
+        for (JournalRecord record : tail) {
+            if (record instanceof JournalRecord.Place place) known.add(place.orderId());
+        }
+        List<Order> unjournaled = new ArrayList<>();
+        for (Order order : orderRepository.findActiveOrders(OrderBookManager.ACTIVE_STATUSES)) {
+            if (known.contains(order.getOrderId())) continue;
+            if (snapshot.isEmpty() && order.getType() == OrderType.LIMIT) continue;
+            // 已部分成交卻不在快照中的市價單不會再掛單，沒有可恢復的狀態
+            if (order.getStatus() != OrderStatus.NEW && order.getType() != OrderType.LIMIT) continue;
+            unjournaled.add(order);
+        }
+        return unjournaled;
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 為何要先移除 (Two-Pass Replay):
+      受理階段已同步將訂單寫入資料庫 (狀態 NEW)，重建訂單簿時這些訂單會以掛單身份被載入。
+      但在原本的執行順序中，它們要到自己的下單指令執行時才會進入訂單簿；
+      若不先移除，較早重播的指令可能與「當時還不存在」的掛單成交，導致結果與當機前不同。
+
+[註2] 受理與日誌之間的空窗 (Intake Gap):
+      訂單寫入資料庫 (狀態 NEW、資金已凍結) 後、序列器寫入日誌前若發生當機，該訂單不會出現在日誌中。
+      由快照載入時，訂單簿只含快照中的掛單，這類訂單既不在快照、也不在尾端，若不處理就會永遠停在 NEW 且資金凍結。
+      因此重播結束後，資料庫中活躍、但不在快照與尾端下單指令中的訂單，依受理順序以正常流程送入撮合
+      (寫入日誌、撮合、結算)，等同接續被中斷的受理；它們在原本的執行順序中本來就排在所有已寫入日誌的指令之後。
+      由資料庫重建時，這類限價單已以掛單身份載入 (未撮合，可正常撤單)，只有不會掛單的市價單需要送入撮合。
+      已部分成交的限價單不會出現在空窗中 (成交必定經過日誌)，若仍有不在快照中的，直接以掛單身份加回訂單簿。
+
+[註3] 快照與檢查點 (Snapshot vs Checkpoint):
+      快照序號 S 不大於任何交易對的檢查點 (快照前已等待寫回管線清空)。
+      介於 S 與檢查點之間的指令，結果已在資料庫中，只需重播以恢復訂單簿，事件會被捨棄而不重複寫入。
+*/
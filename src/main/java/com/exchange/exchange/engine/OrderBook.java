@@ -0,0 +1,338 @@
+package com.exchange.exchange.engine;
+
+import java.math.BigDecimal;
+import java.util.function.Consumer;
+
+import com.exchange.exchange.enums.OrderSide;
+import com.exchange.exchange.enums.TradeType;
+
+// ====== 檔案總結 ======
+// OrderBook 是單一 (交易對, 交易模式) 的記憶體限價訂單簿 (Limit Order Book)。
+// 價格與數量皆為定點數 long (OrderNode)，撮合迴圈中不產生 BigDecimal。
+// 結構：
+// 1. 買盤 (Bids) 與賣盤 (Asks)：各為一個以 long 價格排序的檔位陣列 (BookSide)，最佳價 O(1) 取得。
+// 2. 每個價格檔位 (PriceLevel) 是以 OrderNode 串成的侵入式雙向鏈結串列，確保「價格優先、時間優先」(Price-Time Priority)，
+//    撤單時直接由節點解開，不需走訪檔位。
+// 3. 訂單節點與檔位皆由物件池重複使用，穩定狀態下撮合與撤單不產生垃圾 [註2]。
+// 本類別不加鎖：所有修改都由該交易對的序列器執行緒 (SymbolSequencer) 執行。
+// 允許跨執行緒讀取的是最佳買賣價 (bestPrice) 與深度快照 (depth)，皆以 volatile 欄位發布。
+public class OrderBook {
+
+    // 物件池保留的節點上限，避免一次性大量撤單後長期佔用記憶體
+    private static final int MAX_POOLED_NODES = 65536;
+
+    // 交易對代碼 (例如 "BTCUSDT")
+    private final String symbolId;
+
+    // 交易模式 (SPOT/CONTRACT)，現貨與合約各自擁有獨立的訂單簿
+    private final TradeType tradeType;
+
+    // 定點數換算規則 (Tick / Lot)
+    private final SymbolScale scale;
+
+    // 買盤：最佳價為最高價
+    private final BookSide bids = new BookSide(true);
+
+    // 賣盤：最佳價為最低價
+    private final BookSide asks = new BookSide(false);
+
+    // 訂單索引：Order ID -> 掛單 (原生 int 開放定址表)，撤單時 O(1) 定位
+    private final OrderIndex ordersById = new OrderIndex();
+
+    // 會員掛單索引：Member ID -> 該會員最新的掛單 (以 memberPrev / memberNext 串接該會員的所有掛單) [註3]
+    private final OrderIndex headsByMember = new OrderIndex();
+
+    // 空閒節點物件池 (以 next 指標串接)
+    private OrderNode freeNodes;
+    private int freeCount;
+
+    // 最佳買價 / 最佳賣價快取 (Tick 數，0 代表無掛單)，每次修改後由撮合執行緒更新，供其他執行緒安全讀取
+    private volatile long bestBid;
+    private volatile long bestAsk;
+
+    // 訂單簿版本：每次變動遞增，由撮合執行緒維護
+    private long updateId;
+
+    // 上次發布深度快照後是否有變動
+    private boolean depthDirty;
+
+    // 最近一次發布的深度快照，供其他執行緒讀取 [註4]
+    private volatile DepthSnapshot depth;
+
+    public OrderBook(String symbolId, TradeType tradeType, SymbolScale scale) {
+        this.symbolId = symbolId;
+        this.tradeType = tradeType;
+        this.scale = scale;
+        this.depth = new DepthSnapshot(symbolId, tradeType, 0, scale, new long[0], new long[0], new long[0], new long[0]);
+    }
+
+    // 回呼介面：每當 Taker 與一筆 Maker 成交時被呼叫
+    // 呼叫前訂單簿已記錄雙方的成交量 (OrderNode.fill)、扣除檔位數量並移除完全成交的 Maker [註5]；
+    // 實作方只處理持久化與結算。回呼返回後，完全成交的 Maker 節點會被回收，實作方不可保留其參考
+    @FunctionalInterface
+    public interface FillHandler {
+        void onFill(OrderNode makerOrder, long matchQty, long matchPrice);
+    }
+
+    // 方法：從物件池取得一個空白節點，使用前須以 assign 填入內容
+    public OrderNode acquire() {
+        OrderNode node = freeNodes;
+        if (node == null) return new OrderNode();
+        freeNodes = node.next;
+        node.next = null;
+        freeCount--;
+        return node;
+    }
+
+    // 方法：將不再使用的節點 (已離開訂單簿) 歸還物件池
+    public void release(OrderNode node) {
+        if (node.level != null || freeCount >= MAX_POOLED_NODES) return;
+        node.prev = null;
+        node.memberPrev = null;
+        node.memberNext = null;
+        node.next = freeNodes;
+        freeNodes = node;
+        freeCount++;
+    }
+
+    // 方法：將一筆掛單加入訂單簿尾端 (同價位中時間最晚)
+    public void add(OrderNode order) {
+        sideOf(order.getSide()).findOrCreate(order.getPrice()).append(order);
+        ordersById.put(order.getOrderId(), order);
+        linkMember(order);
+        refreshTopOfBook();
+    }
+
+    // 方法：依 Order ID 移除掛單 (撤單)，O(1) 自所屬檔位解開
+    // 回傳被移除的掛單 (呼叫端使用完畢後可 release 回物件池)，若不在簿中則回傳 null
+    public OrderNode remove(int orderId) {
+        OrderNode order = ordersById.remove(orderId);
+        if (order == null) return null;
+
+        PriceLevel level = order.level;
+        level.unlink(order);
+        unlinkMember(order);
+        // 檔位已無掛單時一併移除，避免殘留空檔位 [註1]
+        if (level.isEmpty()) sideOf(order.getSide()).remove(level);
+        refreshTopOfBook();
+        return order;
+    }
+
+    // 方法：查詢訂單簿中的掛單
+    public OrderNode get(int orderId) {
+        return ordersById.get(orderId);
+    }
+
+    // 方法：取得某一方的最佳價格 (買盤最高價 / 賣盤最低價)，若無掛單則回傳 null
+    // 可由任意執行緒呼叫 (換算為 BigDecimal，僅供 API 邊界使用)
+    public BigDecimal bestPrice(OrderSide side) {
+        long ticks = side == OrderSide.BUY ? bestBid : bestAsk;
+        return ticks == 0 ? null : scale.price(ticks);
+    }
+
+    // 核心方法：以 Taker 訂單撮合對手盤
+    // 走訪順序為價格優先、時間優先；跳過同一會員的掛單以避免自成交 (Self-Trade)。
+    // 完全成交的 Maker 會從訂單簿中移除並回收，Taker 本身不會被加入訂單簿 (由呼叫端決定是否掛單)。
+    public void match(OrderNode takerOrder, FillHandler handler) {
+        BookSide opposite = takerOrder.getSide() == OrderSide.BUY ? asks : bids;
+
+        // 由最佳檔位往較差的檔位走訪；移除檔位只會影響比它更好的 (已走訪過的) 位置
+        int depth = 0;
+        while (depth < opposite.size() && takerOrder.remaining() > 0) {
+            PriceLevel level = opposite.get(depth);
+            long levelPrice = level.price;
+            // 價格不再交叉 (買價 < 賣價) 時即可停止，後續檔位只會更差
+            if (!crosses(takerOrder, levelPrice)) break;
+
+            OrderNode makerOrder = level.head;
+            while (makerOrder != null && takerOrder.remaining() > 0) {
+                OrderNode next = makerOrder.next;
+                // 不與自己的掛單成交，保留其在佇列中的位置
+                if (makerOrder.getMemberId() != takerOrder.getMemberId()) {
+                    long matchQty = Math.min(takerOrder.remaining(), makerOrder.remaining());
+                    if (matchQty > 0) {
+                        // 成交價以 Maker 價格為準；可能失敗的運算 (成交金額溢位) 先完成，再修改任何狀態 [註5]
+                        long takerQuote = takerOrder.quoteAfter(matchQty, levelPrice);
+                        long makerQuote = makerOrder.quoteAfter(matchQty, levelPrice);
+                        takerOrder.fillWith(matchQty, takerQuote);
+                        makerOrder.fillWith(matchQty, makerQuote);
+                        level.quantity -= matchQty;
+
+                        boolean done = makerOrder.remaining() <= 0;
+                        if (done) {
+                            level.unlink(makerOrder);
+                            ordersById.remove(makerOrder.getOrderId());
+                            unlinkMember(makerOrder);
+                        }
+                        try {
+                            handler.onFill(makerOrder, matchQty, levelPrice);
+                        } finally {
+                            if (done) release(makerOrder);
+                        }
+                    }
+                }
+                makerOrder = next;
+            }
+            if (level.isEmpty()) {
+                opposite.remove(level);
+            } else {
+                depth++;
+            }
+        }
+        refreshTopOfBook();
+    }
+
+    // 方法：依優先順序走訪所有掛單 (買盤由高到低、賣盤由低到高，同價位依時間先後)
+    // 依此順序重新 add 即可還原相同的訂單簿 (快照使用)
+    public void forEachOrder(Consumer<OrderNode> consumer) {
+        forEachOrder(bids, consumer);
+        forEachOrder(asks, consumer);
+    }
+
+    // 方法：走訪某會員的所有掛單 (由新到舊)，只觸及該會員自己的節點，與訂單簿總筆數無關
+    public void forEachOrderOf(int memberId, Consumer<OrderNode> consumer) {
+        for (OrderNode node = headsByMember.get(memberId); node != null; ) {
+            // 先取得下一筆，允許 consumer 在走訪中移除目前的節點
+            OrderNode next = node.memberNext;
+            consumer.accept(node);
+            node = next;
+        }
+    }
+
+    // 方法：清空訂單簿 (重建前使用)
+    public void clear() {
+        bids.clear();
+        asks.clear();
+        ordersById.clear();
+        headsByMember.clear();
+        refreshTopOfBook();
+    }
+
+    // 方法：若自上次發布後有變動，將目前各檔位的數量複製為新的深度快照並發布
+    // 由撮合執行緒在一批指令處理完後呼叫 (見 SymbolSequencer)，讀取端只會看到完整的一批變動
+    public void publishDepth() {
+        if (!depthDirty) return;
+        depthDirty = false;
+        long[] bidPrices = new long[bids.size()];
+        long[] bidQuantities = new long[bids.size()];
+        long[] askPrices = new long[asks.size()];
+        long[] askQuantities = new long[asks.size()];
+        copyLevels(bids, bidPrices, bidQuantities);
+        copyLevels(asks, askPrices, askQuantities);
+        depth = new DepthSnapshot(symbolId, tradeType, updateId, scale, bidPrices, bidQuantities, askPrices, askQuantities);
+    }
+
+    // 方法：取得最近一次發布的深度快照 (可由任意執行緒呼叫)
+    public DepthSnapshot depth() {
+        return depth;
+    }
+
+    // 方法：目前掛單總筆數
+    public int size() {
+        return ordersById.size();
+    }
+
+    public String getSymbolId() {
+        return symbolId;
+    }
+
+    public TradeType getTradeType() {
+        return tradeType;
+    }
+
+    public SymbolScale getScale() {
+        return scale;
+    }
+
+    // 私有方法：判斷 Taker 價格是否與某個對手檔位交叉 (可成交)
+    private boolean crosses(OrderNode takerOrder, long makerPrice) {
+        if (takerOrder.getSide() == OrderSide.BUY) {
+            // 買單：賣價 <= 我的買價
+            return makerPrice <= takerOrder.getPrice();
+        }
+        // 賣單：買價 >= 我的賣價
+        return makerPrice >= takerOrder.getPrice();
+    }
+
+    // 私有方法：重新計算並發布最佳買賣價 (O(1))，並記錄訂單簿已變動
+    private void refreshTopOfBook() {
+        updateId++;
+        depthDirty = true;
+        PriceLevel bestBidLevel = bids.best();
+        PriceLevel bestAskLevel = asks.best();
+        bestBid = bestBidLevel == null ? 0 : bestBidLevel.price;
+        bestAsk = bestAskLevel == null ? 0 : bestAskLevel.price;
+    }
+
+    // 私有方法：將掛單加到該會員串列的開頭 (最新的掛單在前)
+    private void linkMember(OrderNode order) {
+        OrderNode head = headsByMember.get(order.getMemberId());
+        order.memberPrev = null;
+        order.memberNext = head;
+        if (head != null) head.memberPrev = order;
+        headsByMember.put(order.getMemberId(), order);
+    }
+
+    // 私有方法：將掛單自該會員串列中解開；串列變空時移除索引項目
+    private void unlinkMember(OrderNode order) {
+        if (order.memberPrev != null) {
+            order.memberPrev.memberNext = order.memberNext;
+        } else if (order.memberNext != null) {
+            headsByMember.put(order.getMemberId(), order.memberNext);
+        } else {
+            headsByMember.remove(order.getMemberId());
+        }
+        if (order.memberNext != null) order.memberNext.memberPrev = order.memberPrev;
+        order.memberPrev = null;
+        order.memberNext = null;
+    }
+
+    private static void copyLevels(BookSide side, long[] prices, long[] quantities) {
+        for (int depth = 0; depth < side.size(); depth++) {
+            PriceLevel level = side.get(depth);
+            prices[depth] = level.price;
+            quantities[depth] = level.quantity;
+        }
+    }
+
+    private static void forEachOrder(BookSide side, Consumer<OrderNode> consumer) {
+        for (int depth = 0; depth < side.size(); depth++) {
+            for (OrderNode node = side.get(depth).head; node != null; node = node.next) {
+                consumer.accept(node);
+            }
+        }
+    }
+
+    private BookSide sideOf(OrderSide side) {
+        return side == OrderSide.BUY ? bids : asks;
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 價格檔位的 Key (Price Level Key):
+      檔位以 Tick 數 (long) 為 Key，50000.0 與 50000.00 換算後是同一個整數，
+      不會因 BigDecimal 的 scale 不同而拆成兩個檔位。
+
+[註2] 不產生垃圾 (Garbage-Free):
+      早期版本以 TreeMap<BigDecimal, ArrayDeque<Order>> 實作，每個新檔位都會配置樹節點與佇列，
+      撤單需要走訪整個檔位 (O(n))，最佳價查詢也要走到樹的最左端。
+      現在檔位與節點都來自物件池，訂單索引以原生 int 為 Key，撮合與撤單只是修改陣列與指標。
+
+[註3] 會員掛單索引 (Per-Member Open Orders):
+      查詢「我的掛單」與全部撤單原本需要走訪整本訂單簿 (forEachOrder) 再以會員過濾，
+      成本隨全市場掛單數成長。每個節點多帶一組會員鏈結指標，加入與移除時 O(1) 維護，
+      走訪時只觸及該會員自己的掛單；索引沿用 OrderIndex，不需額外配置集合物件。
+      新掛單插在串列開頭，因此走訪順序約為建立時間由新到舊 (還原快照時依價格順序加入，順序可能不同)。
+
+[註4] 深度快照 (Materialized Depth):
+      每個檔位的剩餘數量 (PriceLevel.quantity) 在掛單、成交與撤單時即時增減，深度本身不需要重新計算；
+      發布快照只是將各檔位的 (價格, 數量) 複製到 long 陣列，成本與檔位數成正比，與掛單筆數無關。
+      不在每次變動時發布，而是一批指令結束後發布一次，大量撮合時不會為每筆成交複製一次檔位。
+
+[註5] 先更新訂單簿再回呼 (Book Before Handler):
+      早期版本先呼叫 handler 再扣除檔位數量與移除 Maker；handler 中任何例外 (成交金額溢位、寫回或帳本失敗)
+      都會讓檔位數量、訂單索引與節點互相矛盾，影響該交易對之後的每一個指令。
+      現在先以 quoteAfter 完成唯一可能失敗的運算，再一次更新雙方成交量、檔位與索引，最後才回呼；
+      handler 失敗時訂單簿仍是一致的 (該筆成交已記錄在簿中)，例外照常傳給呼叫端。
+*/
@@ -0,0 +1,127 @@
+package com.exchange.exchange.engine;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.exchange.exchange.entity.Order;
+import com.exchange.exchange.entity.Symbol;
+import com.exchange.exchange.enums.OrderStatus;
+import com.exchange.exchange.enums.OrderType;
+import com.exchange.exchange.enums.TradeType;
+import com.exchange.exchange.repository.OrderRepository;
+import com.exchange.exchange.repository.SymbolRepository;
+
+// ====== 檔案總結 ======
+// OrderBookManager 管理所有常駐記憶體的訂單簿 (每個 交易對 + 交易模式 一本)。
+// 核心職責：
+// 1. 啟動時從 `orders` 表讀取所有活躍限價單，依時間順序重建訂單簿 (或由快照載入)。
+// 2. 提供撮合服務與下單服務取得對應的訂單簿。
+// 3. 當資料庫交易回滾時，重新從資料庫載入單一訂單簿，確保記憶體與資料庫一致。
+// 4. 快取各交易對的設定 (幣種與定點數換算規則 SymbolScale)，撮合與撤單不再為此查詢資料庫。
+// 5. 發布各訂單簿的深度快照 (DepthSnapshot)，深度查詢直接讀取快照。
+@Component
+public class OrderBookManager {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private SymbolRepository symbolRepository;
+
+    // 可掛單 (Resting) 的訂單狀態
+    public static final List<OrderStatus> ACTIVE_STATUSES = List.of(OrderStatus.NEW, OrderStatus.PARTIAL_FILLED);
+
+    // 訂單簿容器：Key 為 "交易對:交易模式" (例如 "BTCUSDT:SPOT")
+    private final Map<String, OrderBook> books = new ConcurrentHashMap<>();
+
+    // 交易對設定快取：Key 為交易對 ID
+    private final Map<String, Symbol> symbols = new ConcurrentHashMap<>();
+
+    // 定點數換算規則快取：Key 為交易對 ID
+    private final Map<String, SymbolScale> scales = new ConcurrentHashMap<>();
+
+    // 方法：從資料庫重建所有訂單簿 [註1]
+    // 由 EngineRecovery 於啟動時呼叫 (沒有可用的快照時)
+    public void rebuild() {
+        load(orderRepository.findAllRestingOrders(ACTIVE_STATUSES, OrderType.LIMIT));
+    }
+
+    // 方法：以指定的掛單清單取代所有訂單簿 (清單須依優先順序排列)
+    public void load(List<Order> restingOrders) {
+        books.clear();
+        for (Order order : restingOrders) {
+            OrderBook book = getBook(order.getSymbolId(), order.getTradeType());
+            book.add(book.acquire().assignLenient(order, book.getScale()));
+        }
+        // 載入發生在序列器啟動之前 (或全域暫停期間)，在此直接發布深度快照
+        books.values().forEach(OrderBook::publishDepth);
+        System.out.println("訂單簿重建完成，共載入 " + restingOrders.size() + " 筆掛單");
+    }
+
+    // 方法：將一筆資料庫中的既有掛單加入訂單簿 (重啟恢復使用)，必須在該交易對的序列器執行緒中呼叫
+    public void restore(Order order) {
+        OrderBook book = getBook(order.getSymbolId(), order.getTradeType());
+        book.add(book.acquire().assignLenient(order, book.getScale()));
+    }
+
+    // 方法：取得目前所有訂單簿 (快照使用)
+    public Collection<OrderBook> getBooks() {
+        return books.values();
+    }
+
+    // 方法：重新載入單一訂單簿 (用於交易回滾後的狀態修復)
+    // 必須在該交易對的序列器執行緒中呼叫，與撮合共用同一條寫入路徑
+    public void reload(String symbolId, TradeType tradeType) {
+        OrderBook book = getBook(symbolId, tradeType);
+        book.clear();
+        for (Order order : orderRepository.findRestingOrders(symbolId, tradeType, ACTIVE_STATUSES, OrderType.LIMIT)) {
+            book.add(book.acquire().assignLenient(order, book.getScale()));
+        }
+    }
+
+    // 方法：發布某交易對 (現貨與合約) 訂單簿的深度快照，必須在該交易對的序列器執行緒中呼叫
+    public void publishDepth(String symbolId) {
+        for (TradeType tradeType : TradeType.values()) {
+            OrderBook book = books.get(key(symbolId, tradeType));
+            if (book != null) book.publishDepth();
+        }
+    }
+
+    // 方法：取得 (或建立) 指定交易對與交易模式的訂單簿
+    public OrderBook getBook(String symbolId, TradeType tradeType) {
+        return books.computeIfAbsent(key(symbolId, tradeType), k -> new OrderBook(symbolId, tradeType, scaleOf(symbolId)));
+    }
+
+    // 方法：取得交易對設定 (首次使用時讀取 symbols 表) [註2]
+    public Symbol symbolOf(String symbolId) {
+        return symbols.computeIfAbsent(symbolId, id -> symbolRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Symbol not found: " + id)));
+    }
+
+    // 方法：取得交易對的定點數換算規則
+    public SymbolScale scaleOf(String symbolId) {
+        return scales.computeIfAbsent(symbolId, id -> SymbolScale.of(symbolOf(id)));
+    }
+
+    private static String key(String symbolId, TradeType tradeType) {
+        return symbolId + ":" + tradeType;
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 重建來源 (Rebuild Source):
+      只有狀態為 NEW / PARTIAL_FILLED 的「限價單」會被放回訂單簿。
+      市價單不會掛單 (Resting)，因此不納入重建；缺少 trade_type 的舊資料同樣略過。
+      查詢依 created_at、orderID 排序，確保重建後同價位的時間優先順序與原本一致。
+      載入時以 OrderNode.assignLenient 寬鬆換算，舊資料不是 Tick / Lot 整數倍時仍可放回訂單簿。
+
+[註2] 交易對快取 (Symbol Cache):
+      交易對的幣種與精度在存續期間視為不可變：訂單簿中的 long 價格是以建立時的精度換算的，
+      若要調整精度必須清空該交易對的掛單並重啟引擎。
+*/
@@ -0,0 +1,121 @@
+package com.exchange.exchange.engine;
+
+import java.util.Arrays;
+
+// ====== 檔案總結 ======
+// OrderIndex 是 Order ID (int) -> OrderNode 的開放定址雜湊表 (Open Addressing Hash Map)。
+// 與 HashMap<Integer, OrderNode> 相比：
+// 1. Key 直接存放在 int 陣列中，查詢與寫入不需要裝箱 (Boxing)，也不配置 Entry 物件。
+// 2. 以線性探測 (Linear Probing) 解決碰撞，相鄰槽位位於同一條快取線 (Cache Line)，探測成本低。
+// 3. 刪除時採「向後位移」(Backward Shift) 而非墓碑 (Tombstone)，表不會因大量撤單而劣化 [註1]。
+// 只有擴容時會配置新陣列，穩定狀態下不產生垃圾。只能由所屬交易對的序列器執行緒使用。
+final class OrderIndex {
+
+    // 初始容量 (必須是 2 的次方)；負載超過 1/2 時擴容，線性探測在低負載下的平均探測長度接近 1
+    private static final int MIN_CAPACITY = 1024;
+
+    private int[] keys;
+    private OrderNode[] values;
+    private int mask;
+    private int size;
+
+    OrderIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    OrderNode get(int orderId) {
+        for (int i = slot(orderId); ; i = (i + 1) & mask) {
+            OrderNode value = values[i];
+            if (value == null) return null;
+            if (keys[i] == orderId) return value;
+        }
+    }
+
+    void put(int orderId, OrderNode node) {
+        if ((size + 1) * 2 > keys.length) rehash(keys.length * 2);
+        int i = slot(orderId);
+        while (values[i] != null) {
+            if (keys[i] == orderId) {
+                values[i] = node;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = orderId;
+        values[i] = node;
+        size++;
+    }
+
+    OrderNode remove(int orderId) {
+        int i = slot(orderId);
+        while (true) {
+            OrderNode value = values[i];
+            if (value == null) return null;
+            if (keys[i] == orderId) {
+                shiftBack(i);
+                size--;
+                return value;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    // 私有方法：刪除槽位 hole 後，將其後同一探測鏈上的元素往前搬，維持「從原始槽位連續探測可找到」的性質
+    private void shiftBack(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            OrderNode value = values[i];
+            if (value == null) break;
+            int home = slot(keys[i]);
+            // 元素的原始槽位不在 (hole, i] 區間內 (環狀)，代表它可以搬到 hole
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = value;
+                hole = i;
+            }
+        }
+        values[hole] = null;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        OrderNode[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) continue;
+            int j = slot(oldKeys[i]);
+            while (values[j] != null) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new OrderNode[capacity];
+        mask = capacity - 1;
+    }
+
+    // 私有方法：Order ID 多為連續遞增，先以乘法雜湊 (Fibonacci Hashing) 打散再取低位
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 向後位移刪除 (Backward Shift Deletion):
+      開放定址表若以墓碑標記刪除，撤單頻繁時墓碑會累積，使查詢探測長度越來越長，最終只能整表重建。
+      造市商的撤單量遠大於成交量，因此這裡在刪除時把後續元素往前補位，表中永遠沒有墓碑。
+*/
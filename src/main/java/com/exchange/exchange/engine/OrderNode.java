@@ -0,0 +1,183 @@
+package com.exchange.exchange.engine;
+
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+
+import com.exchange.exchange.entity.Order;
+import com.exchange.exchange.enums.OrderSide;
+import com.exchange.exchange.enums.OrderStatus;
+import com.exchange.exchange.enums.OrderType;
+import com.exchange.exchange.enums.TradeType;
+
+// ====== 檔案總結 ======
+// OrderNode 是訂單在撮合引擎內部的表示法。
+// 與 JPA 實體 Order 不同，價格、數量與成交金額皆為定點數 long (換算規則見 SymbolScale)，
+// 撮合過程中的比較、加減與相乘都不會產生 BigDecimal 物件。
+// 節點本身帶有所屬檔位的鏈結指標 (侵入式串列)，並由 OrderBook 的物件池重複使用 [註2]。
+// 只能由所屬交易對的序列器執行緒修改。
+public final class OrderNode {
+
+    private int orderId;
+    private int memberId;
+    private String symbolId;
+    private TradeType tradeType;
+    private OrderSide side;
+    private OrderType type;
+
+    // 價格 (Tick 數)；市價賣單為 0
+    private long price;
+
+    // 委託數量與已成交數量 (Lot 數)
+    private long quantity;
+    private long filled;
+
+    // 累積成交金額 (Tick * Lot)
+    private long cumQuote;
+
+    private OrderStatus status;
+    private boolean postOnly;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    // 侵入式鏈結：同檔位的前後掛單與所屬檔位 (不在訂單簿中時皆為 null)
+    OrderNode prev;
+    OrderNode next;
+    PriceLevel level;
+
+    // 侵入式鏈結：同一會員在本訂單簿中的前後掛單 (會員掛單索引，見 OrderBook.forEachOrderOf)
+    OrderNode memberPrev;
+    OrderNode memberNext;
+
+    // 方法：由剛受理的 JPA 實體建立 (價格與數量已通過 Tick / Lot 驗證)
+    public static OrderNode from(Order order, SymbolScale scale) {
+        return new OrderNode().assign(order, scale);
+    }
+
+    // 方法：由資料庫或快照中的既有掛單建立 [註1]
+    public static OrderNode restore(Order order, SymbolScale scale) {
+        return new OrderNode().assignLenient(order, scale);
+    }
+
+    // 方法：以 JPA 實體的內容覆寫本節點 (精確換算，供物件池中的節點重複使用)
+    public OrderNode assign(Order order, SymbolScale scale) {
+        return init(order, scale, scale.toTicks(order.getPrice()), scale.toLots(order.getQuantity()),
+                order.getFilledQuantity() != null ? scale.toLots(order.getFilledQuantity()) : 0);
+    }
+
+    // 方法：以 JPA 實體的內容覆寫本節點 (寬鬆換算)
+    // 舊資料的精度可能超過 Tick / Lot：價格往「較不積極」的方向取整 (買單向下、賣單向上)，數量向下取整
+    public OrderNode assignLenient(Order order, SymbolScale scale) {
+        RoundingMode priceMode = order.getSide() == OrderSide.BUY ? RoundingMode.FLOOR : RoundingMode.CEILING;
+        return init(order, scale, scale.toTicks(order.getPrice(), priceMode),
+                scale.toLots(order.getQuantity(), RoundingMode.DOWN),
+                order.getFilledQuantity() != null ? scale.toLots(order.getFilledQuantity(), RoundingMode.DOWN) : 0);
+    }
+
+    private OrderNode init(Order order, SymbolScale scale, long price, long quantity, long filled) {
+        this.orderId = order.getOrderId();
+        this.memberId = order.getMemberId();
+        this.symbolId = order.getSymbolId();
+        this.tradeType = order.getTradeType();
+        this.side = order.getSide();
+        this.type = order.getType();
+        this.price = price;
+        this.quantity = quantity;
+        this.filled = filled;
+        // 累積成交額的精度可能超過 Tick * Lot，以四捨五入後的值為準
+        this.cumQuote = order.getCumQuoteQty() != null
+                ? order.getCumQuoteQty().setScale(scale.getPriceScale() + scale.getQuantityScale(), RoundingMode.HALF_UP)
+                       .unscaledValue().longValueExact()
+                : 0;
+        this.status = order.getStatus();
+        this.postOnly = Boolean.TRUE.equals(order.getPostOnly());
+        this.createdAt = order.getCreatedAt();
+        this.updatedAt = order.getUpdatedAt();
+        this.prev = null;
+        this.next = null;
+        this.level = null;
+        this.memberPrev = null;
+        this.memberNext = null;
+        return this;
+    }
+
+    // 方法：將目前狀態寫回 JPA 實體 (只更新會變動的欄位)
+    public Order copyTo(Order order, SymbolScale scale) {
+        order.setFilledQuantity(scale.quantity(filled));
+        order.setCumQuoteQty(scale.quote(cumQuote));
+        order.setStatus(status);
+        order.setUpdatedAt(updatedAt);
+        return order;
+    }
+
+    // 方法：轉為完整的 JPA 實體 (快照等需要完整欄位的場合)
+    public Order toOrder(SymbolScale scale) {
+        Order order = new Order();
+        order.setOrderId(orderId);
+        order.setMemberId(memberId);
+        order.setSymbolId(symbolId);
+        order.setTradeType(tradeType);
+        order.setSide(side);
+        order.setType(type);
+        order.setPrice(scale.price(price));
+        order.setQuantity(scale.quantity(quantity));
+        order.setPostOnly(postOnly);
+        order.setCreatedAt(createdAt);
+        return copyTo(order, scale);
+    }
+
+    // 方法：剩餘未成交數量 (Lot 數)
+    public long remaining() {
+        return quantity - filled;
+    }
+
+    // 方法：記錄一筆成交，更新成交量、成交金額與狀態
+    public void fill(long lots, long ticks) {
+        fillWith(lots, quoteAfter(lots, ticks));
+    }
+
+    // 方法：計算成交後的累計成交金額，不修改節點 (溢位時拋出 ArithmeticException)
+    // 撮合時先為雙方算好，確認不會失敗後才修改訂單簿
+    long quoteAfter(long lots, long ticks) {
+        return Math.addExact(cumQuote, SymbolScale.notional(ticks, lots));
+    }
+
+    // 方法：以預先算好的累計成交金額記錄一筆成交 (不會失敗)
+    void fillWith(long lots, long quote) {
+        filled += lots;
+        cumQuote = quote;
+        status = filled >= quantity ? OrderStatus.FILLED : OrderStatus.PARTIAL_FILLED;
+    }
+
+    // --- Getters & Setters ---
+
+    public int getOrderId() { return orderId; }
+    public int getMemberId() { return memberId; }
+    public String getSymbolId() { return symbolId; }
+    public TradeType getTradeType() { return tradeType; }
+    public OrderSide getSide() { return side; }
+    public OrderType getType() { return type; }
+    public long getPrice() { return price; }
+    public long getQuantity() { return quantity; }
+    public long getFilled() { return filled; }
+    public long getCumQuote() { return cumQuote; }
+
+    public OrderStatus getStatus() { return status; }
+    public void setStatus(OrderStatus status) { this.status = status; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 舊資料的精度 (Legacy Precision):
+      導入 Tick / Lot 之前的掛單可能帶有更多小數位 (例如造市機器人曾以 8 位小數報價)。
+      重建訂單簿時不拒絕這些掛單，而是往不會造成更差成交價的方向取整；
+      撤單時以取整後的價格計算退款，與原凍結金額之間的微小差額會留在凍結餘額中。
+
+[註2] 物件池 (Object Pooling):
+      完全成交或撤單後的節點會回到所屬 OrderBook 的物件池，下一筆訂單直接覆寫其欄位，
+      因此任何地方都不應在節點離開訂單簿後繼續持有它 (例如在 FillHandler 回呼中保存 Maker 節點)。
+*/
@@ -0,0 +1,63 @@
+package com.exchange.exchange.engine;
+
+// ====== 檔案總結 ======
+// PriceLevel 是訂單簿中的單一價格檔位。
+// 同價位的掛單以侵入式雙向鏈結串列 (Intrusive Doubly Linked List) 串接：
+// 鏈結指標直接存放在 OrderNode 上，加入與移除都是 O(1)，且不需要額外配置串列節點。
+// 只能由所屬交易對的序列器執行緒修改。
+final class PriceLevel {
+
+    // 檔位價格 (Tick 數)
+    long price;
+
+    // 檔位內所有掛單的剩餘數量總和 (Lot 數)，供深度查詢使用
+    long quantity;
+
+    // 檔位內的掛單筆數
+    int orders;
+
+    // 時間最早 (最先成交) 與最晚的掛單
+    OrderNode head;
+    OrderNode tail;
+
+    // 物件池中的下一個空閒檔位
+    PriceLevel nextFree;
+
+    // 方法：將掛單加到檔位尾端 (同價位中時間最晚)
+    void append(OrderNode node) {
+        node.level = this;
+        node.prev = tail;
+        node.next = null;
+        if (tail == null) {
+            head = node;
+        } else {
+            tail.next = node;
+        }
+        tail = node;
+        quantity += node.remaining();
+        orders++;
+    }
+
+    // 方法：將掛單從檔位中解開 (不論其位置)
+    void unlink(OrderNode node) {
+        if (node.prev == null) {
+            head = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            tail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        quantity -= node.remaining();
+        orders--;
+        node.prev = null;
+        node.next = null;
+        node.level = null;
+    }
+
+    boolean isEmpty() {
+        return head == null;
+    }
+}
@@ -0,0 +1,125 @@
+package com.exchange.exchange.engine;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import com.exchange.exchange.engine.stream.MarketDataHub;
+
+import jakarta.annotation.PreDestroy;
+
+// ====== 檔案總結 ======
+// SequencerManager 負責建立與管理每個交易對的序列器 (SymbolSequencer)。
+// 下單與撤單服務透過本類別將指令路由到對應交易對的撮合執行緒。
+// 序列器採延遲建立 (Lazy Creation)：第一次收到某交易對的指令時才啟動執行緒。
+// 依賴寫回管線 (BatchPersister) 與 K 線聚合器 (CandleAggregator)：關閉時先停止序列器，再讓兩者寫完剩餘資料。
+// 每個序列器處理完一批指令後，發布該交易對訂單簿的深度快照，並推播行情串流的增量訊息。
+@Component
+@DependsOn({"batchPersister", "candleAggregator"})
+public class SequencerManager {
+
+    // 每個序列器的緩衝區容量 (可於 application.properties 調整)
+    @Value("${exchange.sequencer.queue-capacity:4096}")
+    private int queueCapacity;
+
+    // 注入訂單簿管理器：批次結束時發布深度快照
+    @Autowired
+    private OrderBookManager orderBookManager;
+
+    // 注入行情推播中心：批次結束時推播深度差異、成交與 K 線
+    @Autowired
+    private MarketDataHub marketDataHub;
+
+    // 序列器容器：Key 為交易對代碼 (現貨與合約共用同一條撮合執行緒)
+    private final Map<String, SymbolSequencer> sequencers = new ConcurrentHashMap<>();
+
+    // 建立序列器與暫停全部序列器互斥，避免暫停期間出現新的撮合執行緒
+    private final ReentrantLock creationLock = new ReentrantLock();
+
+    // 方法：非同步提交指令，回傳 Future
+    public <T> CompletableFuture<T> submit(String symbolId, Supplier<T> command) {
+        return getSequencer(symbolId).submit(command);
+    }
+
+    // 方法：同步提交指令，等待撮合執行緒執行完畢後回傳結果
+    // 指令中拋出的 RuntimeException 會原樣拋回呼叫端 (例如 IllegalArgumentException)
+    public <T> T execute(String symbolId, Supplier<T> command) {
+        try {
+            return submit(symbolId, command).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Sequencer command failed for " + symbolId, e.getCause());
+        }
+    }
+
+    // 方法：取得 (或建立) 指定交易對的序列器
+    // 暫停期間 (pauseAll) 不建立新的序列器，呼叫端會等待到恢復為止
+    public SymbolSequencer getSequencer(String symbolId) {
+        SymbolSequencer sequencer = sequencers.get(symbolId);
+        if (sequencer != null) return sequencer;
+        creationLock.lock();
+        try {
+            return sequencers.computeIfAbsent(symbolId, id -> new SymbolSequencer(id, queueCapacity,
+                    () -> {
+                        orderBookManager.publishDepth(id);
+                        marketDataHub.onBatchEnd(id);
+                    }));
+        } finally {
+            creationLock.unlock();
+        }
+    }
+
+    // 方法：暫停所有序列器 (Stop-The-World Barrier)，回傳後所有已提交的指令皆已執行完畢，
+    // 且在呼叫回傳的 resume 之前不會再執行任何指令。resume 必須由同一條執行緒呼叫。[註1]
+    public Runnable pauseAll() {
+        creationLock.lock();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch arrived = new CountDownLatch(sequencers.size());
+        for (SymbolSequencer sequencer : sequencers.values()) {
+            sequencer.submit(() -> {
+                arrived.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            });
+        }
+        try {
+            arrived.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release.countDown();
+            creationLock.unlock();
+            throw new IllegalStateException("Interrupted while pausing sequencers");
+        }
+        return () -> {
+            release.countDown();
+            creationLock.unlock();
+        };
+    }
+
+    // 應用程式關閉時停止所有序列器，確保緩衝區中的指令執行完畢
+    @PreDestroy
+    public void shutdown() {
+        sequencers.values().forEach(SymbolSequencer::shutdown);
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 全域暫停 (Global Pause):
+      每個序列器收到一個「屏障指令」，執行到該指令時便停下等待；全部到齊時，
+      所有在屏障之前提交的指令都已執行完畢，訂單簿處於同一個一致的時間點，可安全地從其他執行緒讀取。
+      狀態快照 (SnapshotManager) 利用此機制取得跨交易對一致的引擎狀態。
+*/
@@ -0,0 +1,106 @@
+package com.exchange.exchange.engine;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.exchange.exchange.entity.Symbol;
+
+// ====== 檔案總結 ======
+// SymbolScale 負責交易對的定點數換算 (Fixed-Point Conversion)。
+// 撮合引擎內部以 long 表示價格 (Tick 數) 與數量 (Lot 數)，只在 API 與持久化的邊界轉換為 BigDecimal。
+// 成交金額 (Notional) = Tick 數 * Lot 數，其小數位數為 priceScale + quantityScale。
+public final class SymbolScale {
+
+    private final int priceScale;
+    private final int quantityScale;
+
+    public SymbolScale(int priceScale, int quantityScale) {
+        this.priceScale = priceScale;
+        this.quantityScale = quantityScale;
+    }
+
+    public static SymbolScale of(Symbol symbol) {
+        return new SymbolScale(symbol.getPriceScale(), symbol.getQuantityScale());
+    }
+
+    // 方法：價格轉為 Tick 數，價格必須是 Tick Size 的整數倍
+    public long toTicks(BigDecimal price) {
+        try {
+            return price.movePointRight(priceScale).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Price must be a multiple of tick size " + tickSize().toPlainString());
+        }
+    }
+
+    // 方法：數量轉為 Lot 數，數量必須是 Lot Size 的整數倍
+    public long toLots(BigDecimal quantity) {
+        try {
+            return quantity.movePointRight(quantityScale).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Quantity must be a multiple of lot size " + lotSize().toPlainString());
+        }
+    }
+
+    // 方法：價格依指定方向取整到 Tick (用於估算保護價與載入舊資料)
+    public long toTicks(BigDecimal price, RoundingMode mode) {
+        return price.setScale(priceScale, mode).movePointRight(priceScale).longValueExact();
+    }
+
+    // 方法：數量依指定方向取整到 Lot
+    public long toLots(BigDecimal quantity, RoundingMode mode) {
+        return quantity.setScale(quantityScale, mode).movePointRight(quantityScale).longValueExact();
+    }
+
+    // 方法：報價幣金額依指定方向取整為成交金額的單位 (Tick * Lot，用於載入 K 線的成交額)
+    public long toNotional(BigDecimal quote, RoundingMode mode) {
+        return quote.setScale(priceScale + quantityScale, mode).movePointRight(priceScale + quantityScale).longValueExact();
+    }
+
+    // 方法：成交金額 (Tick * Lot)，溢位時拋出 ArithmeticException
+    public static long notional(long ticks, long lots) {
+        return Math.multiplyExact(ticks, lots);
+    }
+
+    // 方法：訂單的委託金額 (價格 * 數量，以成交金額的單位表示)，下單驗證用
+    // 價格或數量不是 Tick / Lot 的整數倍、或委託金額超出 long 範圍時拋出 IllegalArgumentException：
+    // 撮合、撤單與解凍都以 long 計算金額，超出範圍的訂單受理後將無法成交或撤單
+    public long orderNotional(BigDecimal price, BigDecimal quantity) {
+        long ticks = toTicks(price);
+        long lots = toLots(quantity);
+        try {
+            return notional(ticks, lots);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Order value too large: price * quantity must not exceed "
+                    + quote(Long.MAX_VALUE).toPlainString());
+        }
+    }
+
+    public BigDecimal price(long ticks) {
+        return BigDecimal.valueOf(ticks, priceScale);
+    }
+
+    public BigDecimal quantity(long lots) {
+        return BigDecimal.valueOf(lots, quantityScale);
+    }
+
+    // 方法：成交金額轉為報價幣數量
+    public BigDecimal quote(long notional) {
+        return BigDecimal.valueOf(notional, priceScale + quantityScale);
+    }
+
+    public BigDecimal tickSize() {
+        return BigDecimal.ONE.movePointLeft(priceScale);
+    }
+
+    public BigDecimal lotSize() {
+        return BigDecimal.ONE.movePointLeft(quantityScale);
+    }
+
+    public int getPriceScale() {
+        return priceScale;
+    }
+
+    public int getQuantityScale() {
+        return quantityScale;
+    }
+}
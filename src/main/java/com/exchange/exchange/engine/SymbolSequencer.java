@@ -0,0 +1,126 @@
+package com.exchange.exchange.engine;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// ====== 檔案總結 ======
+// SymbolSequencer 是單一交易對的「單寫者序列器」(Single-Writer Sequencer)。
+// 核心概念：
+// 1. 所有針對該交易對的指令 (下單撮合、撤單) 都先進入一個有界環形緩衝區 (Bounded Ring Buffer)。
+// 2. 由一條專屬執行緒依序取出並執行，因此訂單簿永遠只會被同一條執行緒修改，不需加鎖。
+// 3. 緩衝區滿時，提交者會被阻塞 (Back-Pressure)，避免記憶體無限制成長。
+// 4. 每處理完一批指令 (緩衝區清空，或連續處理 BATCH_LIMIT 筆) 呼叫一次批次結束回呼，
+//    用於發布深度快照等「每批一次」的工作。
+// 不同交易對擁有各自的序列器與執行緒，可平行運作於不同 CPU 核心。
+public class SymbolSequencer {
+
+    // 持續有指令時，每處理此筆數至少觸發一次批次結束回呼，避免快照長時間不更新
+    private static final int BATCH_LIMIT = 256;
+
+    // 交易對代碼
+    private final String symbolId;
+
+    // 指令緩衝區：ArrayBlockingQueue 底層即為固定大小的環形陣列
+    private final BlockingQueue<Runnable> ringBuffer;
+
+    // 專屬的撮合執行緒
+    private final Thread worker;
+
+    // 批次結束回呼 (在撮合執行緒中執行)
+    private final Runnable onBatchEnd;
+
+    // 執行狀態旗標
+    private volatile boolean running = true;
+
+    public SymbolSequencer(String symbolId, int capacity) {
+        this(symbolId, capacity, () -> {});
+    }
+
+    public SymbolSequencer(String symbolId, int capacity, Runnable onBatchEnd) {
+        this.symbolId = symbolId;
+        this.onBatchEnd = onBatchEnd;
+        this.ringBuffer = new ArrayBlockingQueue<>(capacity);
+        this.worker = new Thread(this::drain, "sequencer-" + symbolId);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    // 方法：提交一個指令，回傳其執行結果的 Future
+    // 若緩衝區已滿，呼叫端會在此阻塞直到有空位
+    public <T> CompletableFuture<T> submit(Supplier<T> command) {
+        if (!running) {
+            throw new IllegalStateException("Sequencer for " + symbolId + " is shut down");
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                future.complete(command.get());
+            } catch (Throwable t) {
+                // 指令失敗只影響該指令本身，序列器繼續處理下一筆
+                future.completeExceptionally(t);
+            }
+        };
+        try {
+            ringBuffer.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while enqueuing command for " + symbolId);
+        }
+        return future;
+    }
+
+    // 方法：判斷目前執行緒是否為本序列器的撮合執行緒
+    public boolean isSequencerThread() {
+        return Thread.currentThread() == worker;
+    }
+
+    // 方法：停止序列器，會先處理完緩衝區中剩餘的指令
+    public void shutdown() {
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 方法：目前排隊中的指令數量 (監控用)
+    public int pending() {
+        return ringBuffer.size();
+    }
+
+    public String getSymbolId() {
+        return symbolId;
+    }
+
+    // 私有方法：撮合執行緒主迴圈，依序取出並執行指令
+    private void drain() {
+        int batched = 0;
+        while (running || !ringBuffer.isEmpty()) {
+            try {
+                Runnable task = ringBuffer.poll(100, TimeUnit.MILLISECONDS);
+                if (task == null) continue;
+                task.run();
+                if (++batched >= BATCH_LIMIT || ringBuffer.isEmpty()) {
+                    batched = 0;
+                    batchEnd();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // 私有方法：執行批次結束回呼；回呼失敗不影響指令處理
+    private void batchEnd() {
+        try {
+            onBatchEnd.run();
+        } catch (RuntimeException e) {
+            System.err.println("Batch-end hook failed for " + symbolId + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package com.exchange.exchange.engine.candle;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.exchange.exchange.engine.SymbolScale;
+import com.exchange.exchange.entity.Candle;
+import com.exchange.exchange.entity.Symbol;
+import com.exchange.exchange.enums.Timeframe;
+import com.exchange.exchange.repository.CandleRepository;
+import com.exchange.exchange.repository.SymbolRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// ====== 檔案總結 ======
+// CandleAggregator 是常駐記憶體的 K 線聚合器，保存每個 (交易對, 週期) 目前正在形成的 K 線。
+// 核心概念：
+// 1. 撮合執行緒每筆成交只更新記憶體中 1 分鐘 K 線的 long 欄位 (Tick / Lot 數)，不配置物件、不寫資料庫 [註1]。
+//    除開高低收外，同時累計成交量、成交額、成交筆數與主動買入量 [註3]。
+// 2. 較大的週期 (5m 至 1D) 由 1 分鐘 K 線逐層彙總 (Rollup)：分鐘收盤時才併入，每筆成交的成本與週期數量無關 [註4]。
+// 3. K 線進入下一個時間桶時，上一根 K 線轉為「已收盤」並排入待寫入清單。
+// 4. 定時 (預設每秒) 以一次 JDBC Batch 寫入已收盤的 K 線與有變動的當前 K 線 (檢查點) [註2]。
+// 5. 查詢時 CandleService 將尚未寫入的 K 線 (live) 合併到資料庫的歷史資料上，圖表永遠看得到最新成交。
+// 6. 每個 (交易對, 週期) 另以環形緩衝區 (CandleRing) 保存最近 CACHE_SIZE 根 K 線，啟動時由資料庫載入，
+//    每次取出待寫入的 K 線時一併合併；圖表查詢由記憶體回答，只有更舊的歷史才查資料庫 [註5]。
+@Component
+public class CandleAggregator {
+
+    // 維護的 K 線週期 (第一個必須是 1 分鐘，其餘由它彙總)
+    static final Timeframe[] TIMEFRAMES = {
+            Timeframe._1m, Timeframe._5m, Timeframe._15m, Timeframe._30m, Timeframe._1H, Timeframe._1D };
+
+    // 1 分鐘 K 線在 TIMEFRAMES 中的索引
+    private static final int MINUTE = 0;
+
+    // 尚無 K 線的標記
+    private static final long NONE = Long.MIN_VALUE;
+
+    // 每個 (交易對, 週期) 在記憶體中保留的 K 線數
+    public static final int CACHE_SIZE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 每次寫入在同一交易中完成：累加欄位失敗重試時不會重複計算
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CandleRepository candleRepository;
+
+    @Autowired
+    private SymbolRepository symbolRepository;
+
+    // 每個交易對的 K 線狀態
+    private final Map<String, SymbolCandles> symbols = new ConcurrentHashMap<>();
+
+    // 寫入中的 K 線 (查詢時一併合併，避免寫入期間短暫看不到)
+    private volatile List<Candle> flushing = List.of();
+
+    // 上一次寫入失敗的 K 線，下一次一併重試 (只由寫入執行緒存取)
+    private List<Candle> failed = new ArrayList<>();
+
+    // 方法：以一筆成交更新當前的 1 分鐘 K 線 (序列器執行緒呼叫)，跨分鐘時將上一分鐘彙總到較大週期
+    // 參數：price / quantity 為成交價的 Tick 數與成交量的 Lot 數，takerBuy 代表主動方為買方，executedAt 為成交時間
+    public void onTrade(String symbolId, SymbolScale scale, long price, long quantity, boolean takerBuy,
+                        LocalDateTime executedAt) {
+        SymbolCandles candles = symbols.get(symbolId);
+        if (candles == null) candles = symbols.computeIfAbsent(symbolId, id -> new SymbolCandles(id, scale));
+
+        // 以本地時間的秒數分桶，與 Timeframe.openTimeOf 的截斷結果一致
+        long second = executedAt.toEpochSecond(ZoneOffset.UTC);
+        long notional = SymbolScale.notional(price, quantity);
+        synchronized (candles) {
+            long minute = bucket(MINUTE, second);
+            if (minute > candles.openTime[MINUTE]) {
+                // 進入新的分鐘：上一分鐘收盤並彙總到較大週期
+                candles.rollMinute(minute, price);
+            } else {
+                // 同一分鐘 (時鐘回撥時也併入當前 K 線)
+                if (price > candles.high[MINUTE]) candles.high[MINUTE] = price;
+                if (price < candles.low[MINUTE]) candles.low[MINUTE] = price;
+            }
+            candles.close[MINUTE] = price;
+            candles.volume[MINUTE] += quantity;
+            candles.quoteVolume[MINUTE] += notional;
+            candles.tradeCount[MINUTE]++;
+            if (takerBuy) candles.takerBuyVolume[MINUTE] += quantity;
+            candles.dirty[MINUTE] = true;
+        }
+    }
+
+    // 方法：取得尚未寫入資料庫的 K 線 (含當前 K 線)，依開盤時間由舊到新
+    // 累加欄位 (成交量等) 只包含尚未寫入的部分，呼叫端需與資料庫中的值相加 [註3]
+    // 不在維護週期內的 timeframe 回傳空清單 (目前所有週期皆有維護)
+    public List<Candle> live(String symbolId, Timeframe timeframe) {
+        int index = indexOf(timeframe);
+        List<Candle> result = new ArrayList<>();
+        if (index < 0) return result;
+
+        for (Candle candle : flushing) {
+            if (candle.getSymbolId().equals(symbolId) && candle.getTimeframe() == timeframe) result.add(candle);
+        }
+        SymbolCandles candles = symbols.get(symbolId);
+        if (candles == null) return result;
+        synchronized (candles) {
+            for (Candle candle : candles.closed) {
+                if (candle.getTimeframe() == timeframe) result.add(candle);
+            }
+            if (candles.openTime[MINUTE] != NONE) result.add(candles.current(index));
+        }
+        return result;
+    }
+
+    // 方法：由記憶體取得開盤時間在 [from, to) 之間最近的 limit 根 K 線 (含尚未寫入的部分)，依開盤時間由舊到新
+    // from / to 為 null 代表不限；記憶體保留的範圍不足以回答 (更舊的 K 線只在資料庫中) 時回傳 null
+    public List<Candle> recent(String symbolId, Timeframe timeframe, LocalDateTime from, LocalDateTime to, int limit) {
+        int index = indexOf(timeframe);
+        SymbolCandles candles = symbols.get(symbolId);
+        if (index < 0 || candles == null) return null;
+
+        long fromSecond = from == null ? Long.MIN_VALUE : from.toEpochSecond(ZoneOffset.UTC);
+        long toSecond = to == null ? Long.MAX_VALUE : to.toEpochSecond(ZoneOffset.UTC);
+        List<Candle> result = new ArrayList<>();
+        synchronized (candles) {
+            CandleRing ring = candles.rings[index];
+            if (ring == null) return null;
+            int first = ring.lowerBound(fromSecond);
+            int end = ring.lowerBound(toSecond);
+            int begin = Math.max(first, end - limit);
+            // 範圍的開頭早於保留的最舊一根且不足 limit 根：中間可能有已被淘汰的 K 線
+            if (first == 0 && end - begin < limit && !ring.isComplete()
+                    && (ring.size() == 0 || fromSecond < ring.openTimeAt(0))) {
+                return null;
+            }
+            for (int k = begin; k < end; k++) result.add(ring.get(k, symbolId, timeframe, candles.scale));
+
+            // 尚未取出的 K 線 (已收盤待寫入與當前 K 線) 以增量合併
+            for (Candle candle : candles.closed) {
+                if (candle.getTimeframe() == timeframe && within(candle, from, to)) merge(result, candle);
+            }
+            if (candles.openTime[MINUTE] != NONE) {
+                Candle current = candles.current(index);
+                if (within(current, from, to)) merge(result, current);
+            }
+        }
+        return result.size() > limit ? new ArrayList<>(result.subList(result.size() - limit, result.size())) : result;
+    }
+
+    // 方法：由資料庫重新載入交易對指定週期的記憶體 K 線 (重建 K 線後呼叫)
+    // 與寫入互斥：載入時沒有進行中的寫入，資料庫加上寫入失敗待重試的 K 線即為已取出的全部內容
+    public synchronized void reload(String symbolId, List<Timeframe> timeframes) {
+        SymbolCandles candles = symbols.get(symbolId);
+        if (candles == null) {
+            Symbol symbol = symbolRepository.findById(symbolId).orElse(null);
+            if (symbol == null) return;
+            candles = symbols.computeIfAbsent(symbolId, id -> new SymbolCandles(id, SymbolScale.of(symbol)));
+        }
+        for (Timeframe timeframe : timeframes) {
+            int index = indexOf(timeframe);
+            if (index < 0) continue;
+            List<Candle> stored = candleRepository.findBySymbolIdAndTimeframeOrderByOpenTimeDesc(
+                    symbolId, timeframe, PageRequest.of(0, CACHE_SIZE));
+            CandleRing ring = new CandleRing(CACHE_SIZE);
+            try {
+                for (int k = stored.size() - 1; k >= 0; k--) ring.apply(stored.get(k), candles.scale);
+                ring.setComplete(stored.size() < CACHE_SIZE);
+                for (Candle candle : failed) {
+                    if (candle.getSymbolId().equals(symbolId) && candle.getTimeframe() == timeframe) {
+                        ring.apply(candle, candles.scale);
+                    }
+                }
+            } catch (ArithmeticException e) {
+                System.err.println("Candle cache disabled for " + symbolId + " " + timeframe.getValue() + ": " + e.getMessage());
+                ring = null;
+            }
+            synchronized (candles) {
+                candles.rings[index] = ring;
+            }
+        }
+    }
+
+    // 方法：在與寫入互斥的狀態下執行 K 線重建 (CandleBackfill 使用)，結束後重新載入重建過的週期
+    // 先寫入一次 (含先前失敗待重試的 K 線)；仍有待重試的 K 線時拋出 IllegalStateException，不執行重建
+    // 重建期間不會寫入，新成交的增量留在記憶體中，重新載入後照常寫入
+    public synchronized <T> T rebuilding(String symbolId, List<Timeframe> timeframes, Supplier<T> rebuild) {
+        flush();
+        if (!failed.isEmpty()) {
+            throw new IllegalStateException("Candle flush is failing; retry the backfill later");
+        }
+        T result = rebuild.get();
+        reload(symbolId, timeframes);
+        return result;
+    }
+
+    // 啟動時載入所有交易對的記憶體 K 線 (SequencerManager 依賴本元件，重播日誌前即完成)
+    @PostConstruct
+    public void warm() {
+        List<Timeframe> timeframes = List.of(TIMEFRAMES);
+        List<Symbol> all = symbolRepository.findAll();
+        for (Symbol symbol : all) reload(symbol.getSymbolId(), timeframes);
+        System.out.println("K 線快取載入完成：" + all.size() + " 個交易對");
+    }
+
+    // 定時寫入已收盤與有變動的 K 線
+    // 與 reload 互斥 (同一把鎖)，重新載入時不會有寫入到一半的批次
+    @Scheduled(fixedDelayString = "${exchange.candles.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        List<Candle> batch = collect();
+        if (batch.isEmpty()) return;
+        flushing = batch;
+        try {
+            transactionTemplate.executeWithoutResult(status -> upsert(batch));
+            failed = new ArrayList<>();
+        } catch (RuntimeException e) {
+            // 整批在同一交易中回滾，重試不會重複累加 [註2]
+            System.err.println("Candle flush failed, retrying " + batch.size() + " candles later: " + e.getMessage());
+            failed = batch;
+        } finally {
+            flushing = List.of();
+        }
+    }
+
+    // 應用程式關閉時寫入剩餘的 K 線 (SequencerManager 已先停止，不會再有成交)
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    // 方法：取出待寫入的 K 線 (上次失敗的、已收盤的、有變動的當前 K 線)，並清除變動標記
+    // 新取出的 K 線同時合併進記憶體 K 線 (與資料庫的 UPSERT 相同語意)；重試的 K 線已合併過，不再合併
+    synchronized List<Candle> collect() {
+        List<Candle> batch = new ArrayList<>(failed);
+        for (SymbolCandles candles : symbols.values()) {
+            synchronized (candles) {
+                int start = batch.size();
+                batch.addAll(candles.closed);
+                candles.closed.clear();
+                // 當前分鐘有變動時，包含它的每個週期的當前 K 線都有變動
+                for (int i = 0; i < TIMEFRAMES.length; i++) {
+                    if (candles.dirty[MINUTE] || candles.dirty[i]) batch.add(candles.current(i));
+                }
+                for (int k = start; k < batch.size(); k++) candles.cache(batch.get(k));
+                for (int i = 0; i < TIMEFRAMES.length; i++) {
+                    candles.resetCounters(i);
+                    candles.dirty[i] = false;
+                }
+            }
+        }
+        return batch;
+    }
+
+    // 已存在的 K 線只擴展高低點並更新收盤價，開盤價保持不變 (重啟後的第一筆成交不會覆蓋重啟前的開盤價)
+    // 成交量等欄位寫入的是上次寫入後的增量，以相加合併 (舊資料的欄位可能為 NULL)
+    private void upsert(List<Candle> candles) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO candles (symbolID, timeframe, open_time, open, high, low, close, close_time, "
+                        + "volume, quote_volume, trade_count, taker_buy_volume) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+                        + "high = GREATEST(high, VALUES(high)), low = LEAST(low, VALUES(low)), close = VALUES(close), "
+                        + "volume = COALESCE(volume, 0) + VALUES(volume), "
+                        + "quote_volume = COALESCE(quote_volume, 0) + VALUES(quote_volume), "
+                        + "trade_count = COALESCE(trade_count, 0) + VALUES(trade_count), "
+                        + "taker_buy_volume = COALESCE(taker_buy_volume, 0) + VALUES(taker_buy_volume)",
+                candles, candles.size(), (ps, c) -> {
+                    ps.setString(1, c.getSymbolId());
+                    ps.setString(2, c.getTimeframe().getValue());
+                    ps.setTimestamp(3, Timestamp.valueOf(c.getOpenTime()));
+                    ps.setBigDecimal(4, c.getOpen());
+                    ps.setBigDecimal(5, c.getHigh());
+                    ps.setBigDecimal(6, c.getLow());
+                    ps.setBigDecimal(7, c.getClose());
+                    ps.setTimestamp(8, Timestamp.valueOf(c.getCloseTime()));
+                    ps.setBigDecimal(9, c.getVolume());
+                    ps.setBigDecimal(10, c.getQuoteVolume());
+                    ps.setLong(11, c.getTradeCount());
+                    ps.setBigDecimal(12, c.getTakerBuyVolume());
+                });
+    }
+
+    // 方法：將一根 K 線合併到由舊到新排列的清單
+    // 同一開盤時間的 K 線以清單中的開盤價為準 (較早寫入的部分)，高低點取兩者極值，收盤價取新的值，
+    // 成交量等累加欄位為兩者相加 (新的 K 線只含增量)；合併結果是新的物件，不修改清單中原有的實體
+    public static void merge(List<Candle> candles, Candle live) {
+        int i = candles.size();
+        while (i > 0 && candles.get(i - 1).getOpenTime().isAfter(live.getOpenTime())) i--;
+
+        if (i > 0 && candles.get(i - 1).getOpenTime().equals(live.getOpenTime())) {
+            Candle stored = candles.get(i - 1);
+            Candle merged = new Candle();
+            merged.setSymbolId(live.getSymbolId());
+            merged.setTimeframe(live.getTimeframe());
+            merged.setOpenTime(live.getOpenTime());
+            merged.setCloseTime(live.getCloseTime());
+            merged.setOpen(stored.getOpen());
+            merged.setHigh(stored.getHigh().max(live.getHigh()));
+            merged.setLow(stored.getLow().min(live.getLow()));
+            merged.setClose(live.getClose());
+            merged.setVolume(sum(stored.getVolume(), live.getVolume()));
+            merged.setQuoteVolume(sum(stored.getQuoteVolume(), live.getQuoteVolume()));
+            merged.setTradeCount((stored.getTradeCount() == null ? 0 : stored.getTradeCount()) + live.getTradeCount());
+            merged.setTakerBuyVolume(sum(stored.getTakerBuyVolume(), live.getTakerBuyVolume()));
+            candles.set(i - 1, merged);
+        } else {
+            candles.add(i, live);
+        }
+    }
+
+    // 新增欄位前寫入的 K 線在資料庫中可能為 NULL
+    private static BigDecimal sum(BigDecimal stored, BigDecimal live) {
+        return stored == null ? live : stored.add(live);
+    }
+
+    private static boolean within(Candle candle, LocalDateTime from, LocalDateTime to) {
+        return (from == null || !candle.getOpenTime().isBefore(from)) && (to == null || candle.getOpenTime().isBefore(to));
+    }
+
+    // 時間 (Epoch 秒) 所屬時間桶的開始時間
+    private static long bucket(int i, long second) {
+        return second - Math.floorMod(second, TIMEFRAMES[i].minutes() * 60);
+    }
+
+    private static int indexOf(Timeframe timeframe) {
+        for (int i = 0; i < TIMEFRAMES.length; i++) {
+            if (TIMEFRAMES[i] == timeframe) return i;
+        }
+        return -1;
+    }
+
+    // 單一交易對各週期的 K 線狀態 (索引對應 TIMEFRAMES，以物件本身為鎖)
+    // 索引 MINUTE 為當前分鐘；其餘索引只保存已收盤、已併入的分鐘 (同一時間桶內)，尚無分鐘併入時 openTime 為 NONE
+    private static final class SymbolCandles {
+        final String symbolId;
+        final SymbolScale scale;
+
+        // 開盤時間 (本地時間的 Epoch 秒) 與開高低收 (Tick 數)
+        final long[] openTime = new long[TIMEFRAMES.length];
+        final long[] open = new long[TIMEFRAMES.length];
+        final long[] high = new long[TIMEFRAMES.length];
+        final long[] low = new long[TIMEFRAMES.length];
+        final long[] close = new long[TIMEFRAMES.length];
+
+        // 上次寫入後的成交量 (Lot 數)、成交額 (Tick × Lot)、成交筆數與主動買入量 (Lot 數)
+        final long[] volume = new long[TIMEFRAMES.length];
+        final long[] quoteVolume = new long[TIMEFRAMES.length];
+        final long[] tradeCount = new long[TIMEFRAMES.length];
+        final long[] takerBuyVolume = new long[TIMEFRAMES.length];
+
+        // 上次寫入後是否有變動
+        final boolean[] dirty = new boolean[TIMEFRAMES.length];
+
+        // 已收盤、尚未寫入的 K 線
+        final List<Candle> closed = new ArrayList<>();
+
+        // 各週期最近的 K 線 (已取出寫入的部分)；成交額溢位後停用為 null，查詢改由資料庫回答
+        final CandleRing[] rings = new CandleRing[TIMEFRAMES.length];
+
+        SymbolCandles(String symbolId, SymbolScale scale) {
+            this.symbolId = symbolId;
+            this.scale = scale;
+            Arrays.fill(openTime, NONE);
+            for (int i = 0; i < TIMEFRAMES.length; i++) rings[i] = new CandleRing(CACHE_SIZE);
+        }
+
+        // 將取出的 K 線合併進對應週期的記憶體 K 線
+        void cache(Candle candle) {
+            int i = indexOf(candle.getTimeframe());
+            if (rings[i] == null) return;
+            try {
+                rings[i].apply(candle, scale);
+            } catch (ArithmeticException e) {
+                System.err.println("Candle cache disabled for " + symbolId + " " + TIMEFRAMES[i].getValue() + ": " + e.getMessage());
+                rings[i] = null;
+            }
+        }
+
+        // 進入新的分鐘：上一分鐘收盤，併入各較大週期；較大週期跨到新的時間桶時一併收盤
+        void rollMinute(long minute, long price) {
+            if (openTime[MINUTE] != NONE) {
+                if (dirty[MINUTE]) closed.add(current(MINUTE));
+                for (int i = 1; i < TIMEFRAMES.length; i++) fold(i);
+            }
+            for (int i = 1; i < TIMEFRAMES.length; i++) {
+                if (openTime[i] == NONE || openTime[i] == bucket(i, minute)) continue;
+                if (dirty[i]) closed.add(rolled(i));
+                openTime[i] = NONE;
+                resetCounters(i);
+                dirty[i] = false;
+            }
+            openTime[MINUTE] = minute;
+            open[MINUTE] = price;
+            high[MINUTE] = price;
+            low[MINUTE] = price;
+            resetCounters(MINUTE);
+        }
+
+        // 將當前分鐘併入較大週期 i (兩者位於同一時間桶)
+        private void fold(int i) {
+            if (openTime[i] == NONE) {
+                openTime[i] = bucket(i, openTime[MINUTE]);
+                open[i] = open[MINUTE];
+                high[i] = high[MINUTE];
+                low[i] = low[MINUTE];
+            } else {
+                high[i] = Math.max(high[i], high[MINUTE]);
+                low[i] = Math.min(low[i], low[MINUTE]);
+            }
+            close[i] = close[MINUTE];
+            volume[i] += volume[MINUTE];
+            quoteVolume[i] += quoteVolume[MINUTE];
+            tradeCount[i] += tradeCount[MINUTE];
+            takerBuyVolume[i] += takerBuyVolume[MINUTE];
+            dirty[i] |= dirty[MINUTE];
+        }
+
+        // 週期 i 的當前 K 線：已併入的分鐘加上當前分鐘
+        Candle current(int i) {
+            if (i == MINUTE || openTime[i] == NONE) {
+                return toCandle(i, bucket(i, openTime[MINUTE]), open[MINUTE], high[MINUTE], low[MINUTE], close[MINUTE],
+                        volume[MINUTE], quoteVolume[MINUTE], tradeCount[MINUTE], takerBuyVolume[MINUTE]);
+            }
+            return toCandle(i, openTime[i], open[i], Math.max(high[i], high[MINUTE]), Math.min(low[i], low[MINUTE]),
+                    close[MINUTE], volume[i] + volume[MINUTE], quoteVolume[i] + quoteVolume[MINUTE],
+                    tradeCount[i] + tradeCount[MINUTE], takerBuyVolume[i] + takerBuyVolume[MINUTE]);
+        }
+
+        // 週期 i 已併入的部分 (收盤時使用，當前分鐘已屬於下一個時間桶)
+        private Candle rolled(int i) {
+            return toCandle(i, openTime[i], open[i], high[i], low[i], close[i],
+                    volume[i], quoteVolume[i], tradeCount[i], takerBuyVolume[i]);
+        }
+
+        private Candle toCandle(int i, long openSecond, long o, long h, long l, long c,
+                                long vol, long quote, long count, long takerBuy) {
+            Timeframe timeframe = TIMEFRAMES[i];
+            LocalDateTime openAt = LocalDateTime.ofEpochSecond(openSecond, 0, ZoneOffset.UTC);
+            Candle candle = new Candle();
+            candle.setSymbolId(symbolId);
+            candle.setTimeframe(timeframe);
+            candle.setOpenTime(openAt);
+            candle.setCloseTime(timeframe.closeTimeOf(openAt));
+            candle.setOpen(scale.price(o));
+            candle.setHigh(scale.price(h));
+            candle.setLow(scale.price(l));
+            candle.setClose(scale.price(c));
+            candle.setVolume(scale.quantity(vol));
+            candle.setQuoteVolume(scale.quote(quote));
+            candle.setTradeCount(count);
+            candle.setTakerBuyVolume(scale.quantity(takerBuy));
+            return candle;
+        }
+
+        void resetCounters(int i) {
+            volume[i] = 0;
+            quoteVolume[i] = 0;
+            tradeCount[i] = 0;
+            takerBuyVolume[i] = 0;
+        }
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 常駐 K 線 (Resident Candles):
+      早期版本每筆成交都送出一個 K 線事件，由寫回管線在每個批次中為三個週期各組一次字串鍵、合併後 UPSERT，
+      成交越多，寫回管線與資料庫的 K 線工作就越多。現在每筆成交只在記憶體中比較與指定幾個 long，
+      資料庫的 K 線寫入次數只與「時間」有關 (每秒每個有成交的 K 線最多一次)，與成交筆數無關。
+      鎖以交易對為單位，撮合執行緒之間不會互相競爭，只會與每秒一次的寫入與查詢短暫交會。
+
+[註2] 寫入與一致性 (Flush & Consistency):
+      K 線不再隨指令與引擎檢查點寫入同一交易。程式異常終止時最多遺失最後一個寫入間隔內的 K 線變動，
+      重啟後重播日誌所產生的成交會重新聚合 (結果已寫入資料庫的指令重播時不計入，見 MatchingService.matchOrder)。
+      高低點使用 GREATEST / LEAST 合併；累加欄位寫入增量，整批在同一交易中寫入，失敗時整批回滾後重試。
+
+[註3] 增量累加 (Incremental Volume):
+      成交量、成交額、成交筆數與主動買入量在記憶體中只保存「上次寫入後」的部分，寫入後歸零，
+      資料庫以 volume = volume + ? 累加。重啟後同一根 K 線繼續累加，不會覆蓋重啟前寫入的量。
+      每次寫入間隔只有一秒左右，成交額以 long (Tick × Lot) 累計不會溢位。
+      查詢時 CandleService 將記憶體中的增量加到資料庫的值上；寫入剛完成的瞬間，回應可能短暫少算一個寫入間隔。
+
+[註4] 逐層彙總 (Hierarchical Rollup):
+      早期版本只維護 1m / 1H / 1D，5m、15m、30m 的查詢永遠沒有資料；若每個週期都逐筆更新，成本與週期數成正比。
+      現在每筆成交只更新 1 分鐘 K 線；分鐘收盤時才把它併入每個較大週期的「已併入部分」，
+      較大週期的當前 K 線 = 已併入部分 ⊕ 當前分鐘 (開盤取前者、高低取極值、收盤取當前分鐘、累加欄位相加)。
+      跨分鐘時的工作量與週期數成正比，但每分鐘只發生一次。歷史資料可由 CandleBackfill 從成交紀錄重建。
+
+[註5] 記憶體 K 線 (Candle Cache):
+      早期版本每次圖表輪詢都以分頁查詢資料庫最近 1000 根 K 線再反轉順序。現在每個 (交易對, 週期) 的最近 1000 根
+      保存在 CandleRing，內容等於「資料庫 + 寫入中 + 寫入失敗待重試」：K 線在取出寫入的同時合併進去，
+      查詢再以增量合併尚未取出的 K 線，兩者都在交易對的鎖內進行，不會重複或遺漏。
+      查詢範圍早於保留的最舊一根時 (且記憶體不是該週期的全部歷史) 回傳 null，由 CandleService 改查資料庫。
+      CandleBackfill 經由 rebuilding 覆寫資料庫並重新載入；rebuilding、reload 與 flush 使用同一把鎖，
+      重建與載入時沒有寫入到一半的批次，也沒有待重試的 K 線 (見 CandleBackfill [註2])。
+*/
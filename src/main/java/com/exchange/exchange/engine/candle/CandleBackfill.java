@@ -0,0 +1,228 @@
+package com.exchange.exchange.engine.candle;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.exchange.exchange.engine.OrderBookManager;
+import com.exchange.exchange.engine.persist.BatchPersister;
+import com.exchange.exchange.entity.Candle;
+import com.exchange.exchange.enums.Timeframe;
+
+// ====== 檔案總結 ======
+// CandleBackfill 依成交紀錄 (trades) 重建指定交易對、週期與時間範圍的 K 線 (補資料用的一次性工作)。
+// 核心概念：
+// 1. 依成交時間順序以串流方式讀取成交 (不把整段成交載入記憶體)，一次走訪同時產生所有指定週期的 K 線 [註1]。
+// 2. 刪除範圍內的舊 K 線並以 JDBC Batch 覆寫 (絕對值，不與既有的值合併)，兩者在同一交易中完成。
+// 3. 只重建「已完全結束」的 K 線；開始前等待寫回管線寫完成交，並在 CandleAggregator 寫入成功後、
+//    與其寫入互斥的狀態下進行，不與聚合器的增量重複或遺漏 [註2]。
+// 4. 寫入完成後由 CandleAggregator 重新載入重建過的週期，記憶體 K 線與資料庫一致。
+// 5. 單次重建的範圍上限為 MAX_RANGE。
+@Component
+public class CandleBackfill {
+
+    // 每批寫入的 K 線數
+    private static final int BATCH_SIZE = 500;
+
+    // 單次重建的時間範圍上限
+    public static final Duration MAX_RANGE = Duration.ofDays(31);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BatchPersister batchPersister;
+
+    @Autowired
+    private OrderBookManager orderBookManager;
+
+    @Autowired
+    private CandleAggregator candleAggregator;
+
+    // 方法：重建 [from, to) 之間的 K 線，回傳寫入的 K 線數
+    // 各週期的範圍會對齊到時間桶：from 往前取到所屬 K 線的開盤時間，to 之後 (及尚未結束) 的 K 線不重建
+    // 參數不合法時拋出 IllegalArgumentException；寫回管線或 K 線寫入失敗中時拋出 IllegalStateException (稍後重試)
+    public int rebuild(String symbolId, List<Timeframe> timeframes, LocalDateTime from, LocalDateTime to) {
+        orderBookManager.symbolOf(symbolId); // 交易對不存在時拋出 IllegalArgumentException
+        if (timeframes.isEmpty()) throw new IllegalArgumentException("At least one interval is required");
+        if (!from.isBefore(to)) throw new IllegalArgumentException("from must be before to");
+        if (Duration.between(from, to).compareTo(MAX_RANGE) > 0) {
+            throw new IllegalArgumentException("Backfill range must not exceed " + MAX_RANGE.toDays() + " days");
+        }
+
+        // 步驟 1：等待寫回管線寫完目前為止的成交 (持續失敗時 awaitDrained 不會返回，直接拒絕)
+        if (!batchPersister.isHealthy()) {
+            throw new IllegalStateException("Persistence is failing; retry the backfill later");
+        }
+        batchPersister.awaitDrained();
+
+        // 步驟 2：聚合器寫入成功 (含先前失敗待重試的 K 線) 後，在與其寫入互斥的狀態下重建，結束後重新載入
+        int written = candleAggregator.rebuilding(symbolId, timeframes, () -> rebuildSettled(symbolId, timeframes, from, to));
+        System.out.println("K 線重建完成：" + symbolId + " " + timeframes + " 共 " + written + " 根");
+        return written;
+    }
+
+    // 私有方法：重建範圍內已結束的 K 線 (由 CandleAggregator.rebuilding 在寫入鎖內呼叫)
+    private int rebuildSettled(String symbolId, List<Timeframe> timeframes, LocalDateTime from, LocalDateTime to) {
+        // 當前 (及上一分鐘) 的成交仍在聚合器的增量中，只重建在此之前結束的 K 線
+        LocalDateTime settled = Timeframe._1m.openTimeOf(LocalDateTime.now()).minusMinutes(1);
+        List<Bar> bars = new ArrayList<>();
+        LocalDateTime scanFrom = null;
+        LocalDateTime scanTo = null;
+        for (Timeframe timeframe : timeframes) {
+            LocalDateTime start = timeframe.openTimeOf(from);
+            LocalDateTime end = timeframe.openTimeOf(to.isBefore(settled) ? to : settled);
+            if (!start.isBefore(end)) continue;
+            bars.add(new Bar(symbolId, timeframe, start, end));
+            if (scanFrom == null || start.isBefore(scanFrom)) scanFrom = start;
+            if (scanTo == null || end.isAfter(scanTo)) scanTo = end;
+        }
+        if (bars.isEmpty()) return 0;
+
+        // 讀取成交產生 K 線 (交易之外)：串流結果集佔用連線，寫入只能在讀取結束後進行
+        List<Candle> rebuilt = new ArrayList<>();
+
+        // MySQL 以 fetchSize = Integer.MIN_VALUE 逐列串流讀取
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(Integer.MIN_VALUE);
+        streaming.query(
+                "SELECT price, quantity, taker_side, executed_at FROM trades "
+                        + "WHERE symbolID = ? AND executed_at >= ? AND executed_at < ? ORDER BY executed_at, tradesID",
+                rs -> {
+                    BigDecimal price = rs.getBigDecimal(1);
+                    BigDecimal quantity = rs.getBigDecimal(2);
+                    boolean takerBuy = "buy".equals(rs.getString(3));
+                    LocalDateTime executedAt = rs.getTimestamp(4).toLocalDateTime();
+                    for (Bar bar : bars) {
+                        Candle done = bar.add(price, quantity, takerBuy, executedAt);
+                        if (done != null) rebuilt.add(done);
+                    }
+                },
+                symbolId, Timestamp.valueOf(scanFrom), Timestamp.valueOf(scanTo));
+        for (Bar bar : bars) {
+            Candle last = bar.finish();
+            if (last != null) rebuilt.add(last);
+        }
+
+        // 刪除範圍內的舊 K 線 (沒有成交的時間桶不應留下資料) 並寫入重建結果，同一交易中完成
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Bar bar : bars) {
+                jdbcTemplate.update("DELETE FROM candles WHERE symbolID = ? AND timeframe = ? AND open_time >= ? AND open_time < ?",
+                        symbolId, bar.timeframe.getValue(), Timestamp.valueOf(bar.start), Timestamp.valueOf(bar.end));
+            }
+            for (int i = 0; i < rebuilt.size(); i += BATCH_SIZE) {
+                write(rebuilt.subList(i, Math.min(i + BATCH_SIZE, rebuilt.size())));
+            }
+        });
+        return rebuilt.size();
+    }
+
+    // 私有方法：覆寫一批 K 線
+    private void write(List<Candle> candles) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO candles (symbolID, timeframe, open_time, open, high, low, close, close_time, "
+                        + "volume, quote_volume, trade_count, taker_buy_volume) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+                        + "open = VALUES(open), high = VALUES(high), low = VALUES(low), close = VALUES(close), "
+                        + "close_time = VALUES(close_time), volume = VALUES(volume), quote_volume = VALUES(quote_volume), "
+                        + "trade_count = VALUES(trade_count), taker_buy_volume = VALUES(taker_buy_volume)",
+                candles, candles.size(), (ps, c) -> {
+                    ps.setString(1, c.getSymbolId());
+                    ps.setString(2, c.getTimeframe().getValue());
+                    ps.setTimestamp(3, Timestamp.valueOf(c.getOpenTime()));
+                    ps.setBigDecimal(4, c.getOpen());
+                    ps.setBigDecimal(5, c.getHigh());
+                    ps.setBigDecimal(6, c.getLow());
+                    ps.setBigDecimal(7, c.getClose());
+                    ps.setTimestamp(8, Timestamp.valueOf(c.getCloseTime()));
+                    ps.setBigDecimal(9, c.getVolume());
+                    ps.setBigDecimal(10, c.getQuoteVolume());
+                    ps.setLong(11, c.getTradeCount());
+                    ps.setBigDecimal(12, c.getTakerBuyVolume());
+                });
+    }
+
+    // 單一週期在重建中的 K 線 (成交依時間順序進入)
+    private static final class Bar {
+        final String symbolId;
+        final Timeframe timeframe;
+        final LocalDateTime start;
+        final LocalDateTime end;
+
+        Candle current;
+
+        Bar(String symbolId, Timeframe timeframe, LocalDateTime start, LocalDateTime end) {
+            this.symbolId = symbolId;
+            this.timeframe = timeframe;
+            this.start = start;
+            this.end = end;
+        }
+
+        // 併入一筆成交；若因此進入新的時間桶，回傳已完成的上一根 K 線
+        Candle add(BigDecimal price, BigDecimal quantity, boolean takerBuy, LocalDateTime executedAt) {
+            if (executedAt.isBefore(start) || !executedAt.isBefore(end)) return null;
+            LocalDateTime openTime = timeframe.openTimeOf(executedAt);
+            Candle done = null;
+            if (current == null || !current.getOpenTime().equals(openTime)) {
+                done = current;
+                current = new Candle();
+                current.setSymbolId(symbolId);
+                current.setTimeframe(timeframe);
+                current.setOpenTime(openTime);
+                current.setCloseTime(timeframe.closeTimeOf(openTime));
+                current.setOpen(price);
+                current.setHigh(price);
+                current.setLow(price);
+                current.setVolume(BigDecimal.ZERO);
+                current.setQuoteVolume(BigDecimal.ZERO);
+                current.setTradeCount(0L);
+                current.setTakerBuyVolume(BigDecimal.ZERO);
+            } else {
+                current.setHigh(current.getHigh().max(price));
+                current.setLow(current.getLow().min(price));
+            }
+            current.setClose(price);
+            current.setVolume(current.getVolume().add(quantity));
+            current.setQuoteVolume(current.getQuoteVolume().add(price.multiply(quantity)));
+            current.setTradeCount(current.getTradeCount() + 1);
+            if (takerBuy) current.setTakerBuyVolume(current.getTakerBuyVolume().add(quantity));
+            return done;
+        }
+
+        // 走訪結束：回傳最後一根 K 線
+        Candle finish() {
+            Candle last = current;
+            current = null;
+            return last;
+        }
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 單次串流走訪 (Single Streaming Pass):
+      成交依 (executed_at, tradesID) 排序讀取，同一週期的 K 線依時間先後完成，不需要載入整段成交。
+      完成的 K 線先保存在記憶體，讀取結束後才在一個交易中刪除並寫入 (串流中的結果集佔用連線，無法同時寫入)；
+      範圍上限 MAX_RANGE (31 天) 時 1 分鐘 K 線約 4.5 萬根，K 線數與成交筆數無關。
+      查詢依賴 trades 的 (symbolID, executed_at) 索引。
+
+[註2] 與聚合器的分工 (Backfill vs Aggregator):
+      CandleAggregator 對同一根 K 線寫入的是增量，重建寫入的是絕對值，兩者重疊就會重複或遺漏：
+      1. 成交由寫回管線寫入 trades：開始前先 awaitDrained，一分鐘之前的成交都已在 trades 中。
+      2. 聚合器寫入失敗的 K 線會保留增量等待重試 (failed)，若在重建後才寫入就會重複累加。
+         因此重建在 CandleAggregator.rebuilding 內進行：先寫入一次，仍有失敗待重試的 K 線時拒絕重建；
+         重建期間持有寫入鎖，聚合器不會寫入，新成交的增量留在記憶體中。
+      3. 重建範圍的結尾限制在一分鐘之前結束的 K 線，寫入鎖取得後聚合器記憶體中的增量都屬於更晚的 K 線。
+      刪除與寫入在同一交易中，查詢同一範圍不會看到刪除後、寫入前的空檔。
+*/
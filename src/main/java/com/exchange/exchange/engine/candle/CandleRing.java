@@ -0,0 +1,167 @@
+package com.exchange.exchange.engine.candle;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import com.exchange.exchange.engine.SymbolScale;
+import com.exchange.exchange.entity.Candle;
+import com.exchange.exchange.enums.Timeframe;
+
+// ====== 檔案總結 ======
+// CandleRing 是單一 (交易對, 週期) 最近 N 根 K 線的環形緩衝區 (Ring Buffer)。
+// 核心概念：
+// 1. 每個欄位一個 long 陣列 (開盤時間為 Epoch 秒、價格為 Tick 數、數量為 Lot 數)，不保存 Candle 物件 [註1]。
+// 2. K 線依開盤時間由舊到新排列；新的 K 線寫入最舊的位置，查詢以二分搜尋定位時間範圍。
+// 3. 合併規則與資料庫的 UPSERT 相同：開盤價不變、高低取極值、收盤取新值、累加欄位相加。
+// 非執行緒安全：由 CandleAggregator 在交易對的鎖內存取。
+final class CandleRing {
+
+    private final int capacity;
+
+    // 各欄位 (索引為實體位置)
+    private final long[] openTime;
+    private final long[] open;
+    private final long[] high;
+    private final long[] low;
+    private final long[] close;
+    private final long[] volume;
+    private final long[] quoteVolume;
+    private final long[] tradeCount;
+    private final long[] takerBuyVolume;
+
+    // 最舊一根的實體位置與目前根數
+    private int head;
+    private int size;
+
+    // 是否保有該週期的全部歷史 (從未淘汰過 K 線，且載入時資料庫的 K 線不超過容量)
+    private boolean complete = true;
+
+    CandleRing(int capacity) {
+        this.capacity = capacity;
+        openTime = new long[capacity];
+        open = new long[capacity];
+        high = new long[capacity];
+        low = new long[capacity];
+        close = new long[capacity];
+        volume = new long[capacity];
+        quoteVolume = new long[capacity];
+        tradeCount = new long[capacity];
+        takerBuyVolume = new long[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    // 方法：合併一根 K 線 (與資料庫的 UPSERT 相同的語意)
+    // 比最新一根新的 K 線附加在尾端 (已滿時淘汰最舊的一根)；已存在的合併；比保留範圍更舊的忽略
+    // 成交額溢位時拋出 ArithmeticException (呼叫端停用此緩衝區)
+    void apply(Candle candle, SymbolScale scale) {
+        long t = candle.getOpenTime().toEpochSecond(ZoneOffset.UTC);
+        long o = scale.toTicks(candle.getOpen(), RoundingMode.HALF_UP);
+        long h = scale.toTicks(candle.getHigh(), RoundingMode.HALF_UP);
+        long l = scale.toTicks(candle.getLow(), RoundingMode.HALF_UP);
+        long c = scale.toTicks(candle.getClose(), RoundingMode.HALF_UP);
+        long vol = lots(scale, candle.getVolume());
+        long quote = candle.getQuoteVolume() == null ? 0 : scale.toNotional(candle.getQuoteVolume(), RoundingMode.HALF_UP);
+        long count = candle.getTradeCount() == null ? 0 : candle.getTradeCount();
+        long takerBuy = lots(scale, candle.getTakerBuyVolume());
+
+        if (size == 0 || t > openTime[slot(size - 1)]) {
+            int p;
+            if (size < capacity) {
+                p = slot(size++);
+            } else {
+                p = head;
+                head = (head + 1) % capacity;
+                complete = false;
+            }
+            openTime[p] = t;
+            open[p] = o;
+            high[p] = h;
+            low[p] = l;
+            close[p] = c;
+            volume[p] = vol;
+            quoteVolume[p] = quote;
+            tradeCount[p] = count;
+            takerBuyVolume[p] = takerBuy;
+            return;
+        }
+
+        int k = lowerBound(t);
+        if (k == size || openTime[slot(k)] != t) return;
+        int p = slot(k);
+        high[p] = Math.max(high[p], h);
+        low[p] = Math.min(low[p], l);
+        close[p] = c;
+        volume[p] = Math.addExact(volume[p], vol);
+        quoteVolume[p] = Math.addExact(quoteVolume[p], quote);
+        tradeCount[p] += count;
+        takerBuyVolume[p] = Math.addExact(takerBuyVolume[p], takerBuy);
+    }
+
+    // 方法：第一根開盤時間 >= second 的 K 線的邏輯位置 (0 為最舊)，沒有時回傳 size
+    int lowerBound(long second) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (openTime[slot(mid)] < second) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // 方法：邏輯位置 k 的開盤時間 (Epoch 秒)
+    long openTimeAt(int k) {
+        return openTime[slot(k)];
+    }
+
+    // 方法：取出邏輯位置 k 的 K 線
+    Candle get(int k, String symbolId, Timeframe timeframe, SymbolScale scale) {
+        int p = slot(k);
+        LocalDateTime openAt = LocalDateTime.ofEpochSecond(openTime[p], 0, ZoneOffset.UTC);
+        Candle candle = new Candle();
+        candle.setSymbolId(symbolId);
+        candle.setTimeframe(timeframe);
+        candle.setOpenTime(openAt);
+        candle.setCloseTime(timeframe.closeTimeOf(openAt));
+        candle.setOpen(scale.price(open[p]));
+        candle.setHigh(scale.price(high[p]));
+        candle.setLow(scale.price(low[p]));
+        candle.setClose(scale.price(close[p]));
+        candle.setVolume(scale.quantity(volume[p]));
+        candle.setQuoteVolume(scale.quote(quoteVolume[p]));
+        candle.setTradeCount(tradeCount[p]);
+        candle.setTakerBuyVolume(scale.quantity(takerBuyVolume[p]));
+        return candle;
+    }
+
+    private int slot(int k) {
+        return (head + k) % capacity;
+    }
+
+    // 新增欄位前寫入的 K 線在資料庫中可能為 NULL
+    private static long lots(SymbolScale scale, BigDecimal quantity) {
+        return quantity == null ? 0 : scale.toLots(quantity, RoundingMode.HALF_UP);
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 原生陣列 (Primitive Arrays):
+      1000 根 K 線以 Candle 物件保存需要上萬個 BigDecimal 與 LocalDateTime；
+      改為每欄一個 long[]，每個 (交易對, 週期) 固定佔用約 72 KB，不隨行情變動配置物件，
+      只在回應查詢時為回傳的 K 線建立 Candle。
+      資料庫的欄位為 scale 18 的 DECIMAL，載入時依交易對的小數位數取整 (由成交產生的 K 線本來就是 Tick / Lot 的整數倍)。
+*/
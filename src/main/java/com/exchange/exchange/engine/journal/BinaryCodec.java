@@ -0,0 +1,68 @@
+package com.exchange.exchange.engine.journal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// ====== 檔案總結 ======
+// BinaryCodec 提供指令日誌與狀態快照共用的二進位欄位編碼。
+// 字串：[2 bytes 長度][UTF-8]；BigDecimal：[4 bytes scale][1 byte 長度][unscaled bytes]；
+// 時間：[8 bytes epoch 秒 (UTC)][4 bytes 奈秒]。可為 null 的欄位以長度 -1 表示。
+public final class BinaryCodec {
+
+    private BinaryCodec() {
+    }
+
+    public static void putString(ByteBuffer buf, String value) {
+        if (value == null) {
+            buf.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buf.putShort((short) bytes.length).put(bytes);
+    }
+
+    public static String getString(ByteBuffer buf) {
+        short length = buf.getShort();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // BigDecimal 保留原本的 scale，避免精度遺失
+    public static void putDecimal(ByteBuffer buf, BigDecimal value) {
+        if (value == null) {
+            buf.putInt(0).put((byte) -1);
+            return;
+        }
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        buf.putInt(value.scale()).put((byte) unscaled.length).put(unscaled);
+    }
+
+    public static BigDecimal getDecimal(ByteBuffer buf) {
+        int scale = buf.getInt();
+        byte length = buf.get();
+        if (length < 0) return null;
+        byte[] unscaled = new byte[length];
+        buf.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    public static void putDateTime(ByteBuffer buf, LocalDateTime value) {
+        if (value == null) {
+            buf.putLong(Long.MIN_VALUE).putInt(0);
+            return;
+        }
+        buf.putLong(value.toEpochSecond(ZoneOffset.UTC)).putInt(value.getNano());
+    }
+
+    public static LocalDateTime getDateTime(ByteBuffer buf) {
+        long seconds = buf.getLong();
+        int nanos = buf.getInt();
+        return seconds == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,303 @@
+package com.exchange.exchange.engine.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.exchange.exchange.entity.Order;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// ====== 檔案總結 ======
+// CommandJournal 是撮合引擎的僅附加指令日誌 (Append-Only Command Journal)。
+// 核心概念：
+// 1. 每一筆進入撮合的下單與撤單指令，在執行前先寫入記憶體映射 (Memory-Mapped) 的日誌檔。
+// 2. 紀錄格式為 [4 bytes 長度][4 bytes CRC32][Payload]，長度為 0 代表檔案中已無後續紀錄。
+// 3. 日誌分段 (Segment) 儲存，檔名為該段第一筆紀錄的序號，寫滿後自動切換新檔。
+// 4. 落盤 (fsync) 策略可設定：每筆指令、群組提交 (Group Commit) 或定時。
+// 重啟時 EngineRecovery 讀取本日誌，重播尚未寫入資料庫的指令以恢復訂單簿與錢包狀態。
+@Component
+public class CommandJournal {
+
+    // 落盤策略
+    public enum FsyncPolicy {
+        PER_COMMAND, // 每筆指令寫入後立即落盤 (最安全，最慢)
+        GROUP,       // 累積 group-size 筆後一次落盤，不足的部分由背景執行緒定時落盤
+        PERIODIC     // 僅由背景執行緒定時落盤 (最快，當機時可能遺失最後一個間隔的指令)
+    }
+
+    // 紀錄標頭大小：長度 + CRC
+    private static final int HEADER_BYTES = 8;
+
+    // 日誌目錄
+    @Value("${exchange.journal.dir:data/journal}")
+    private String journalDir;
+
+    // 單一日誌分段的大小 (MB)
+    @Value("${exchange.journal.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${exchange.journal.fsync-policy:GROUP}")
+    private FsyncPolicy fsyncPolicy;
+
+    // 群組提交的筆數
+    @Value("${exchange.journal.group-size:64}")
+    private int groupSize;
+
+    // 背景落盤間隔 (毫秒)
+    @Value("${exchange.journal.fsync-interval-ms:10}")
+    private long fsyncIntervalMs;
+
+    private Path directory;
+
+    // 目前寫入中的分段
+    private Path segmentPath;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+
+    // 自上次切換分段 (roll) 後寫入的位元組數，用於觸發快照
+    private long bytesSinceRoll;
+
+    // 最後一筆已配發的序號
+    private long lastSequence;
+
+    // 自上次落盤後寫入的筆數
+    private int unsynced;
+
+    private Thread syncer;
+
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void open() throws IOException {
+        directory = Paths.get(journalDir);
+        Files.createDirectories(directory);
+
+        // 掃描既有分段以找出最後的序號，並從最後一個分段的結尾繼續寫入
+        List<Path> segments = segments();
+        forEach(record -> lastSequence = Math.max(lastSequence, record.sequence()));
+        if (segments.isEmpty()) {
+            openSegment(lastSequence + 1);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            mapSegment(last);
+            segment.position(endOfRecords(segment));
+        }
+
+        syncer = new Thread(this::syncLoop, "journal-syncer");
+        syncer.setDaemon(true);
+        syncer.start();
+        System.out.println("指令日誌已開啟，最後序號 " + lastSequence + "，落盤策略 " + fsyncPolicy);
+    }
+
+    // 方法：寫入一筆下單指令 (timestamp 為指令執行的時間)，回傳配發的序號
+    public long appendPlace(Order order, LocalDateTime timestamp) {
+        synchronized (this) {
+            long sequence = lastSequence + 1;
+            append(JournalRecord.Place.of(sequence, order, timestamp));
+            return sequence;
+        }
+    }
+
+    // 方法：寫入一筆撤單指令 (timestamp 為指令執行的時間)，回傳配發的序號
+    public long appendCancel(Order order, LocalDateTime timestamp) {
+        synchronized (this) {
+            long sequence = lastSequence + 1;
+            append(new JournalRecord.Cancel(sequence, order.getOrderId(), order.getMemberId(),
+                    order.getSymbolId(), order.getTradeType(), timestamp));
+            return sequence;
+        }
+    }
+
+    // 方法：依序走訪所有分段中的紀錄 (重啟恢復時使用)
+    // 遇到 CRC 不符的紀錄代表寫入中途當機 (Torn Write)，該分段後續內容一律忽略
+    public void forEach(Consumer<JournalRecord> consumer) throws IOException {
+        for (Path path : segments()) {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                while (buf.remaining() >= HEADER_BYTES) {
+                    int length = buf.getInt();
+                    if (length <= 0 || length > buf.remaining() - 4) break;
+                    int crc = buf.getInt();
+                    byte[] payload = new byte[length];
+                    buf.get(payload);
+                    if (crc != crc(payload)) {
+                        System.err.println("Journal record checksum mismatch in " + path.getFileName() + ", ignoring tail");
+                        break;
+                    }
+                    consumer.accept(JournalRecord.decode(ByteBuffer.wrap(payload)));
+                }
+            }
+        }
+    }
+
+    // 方法：強制將目前分段落盤
+    public synchronized void sync() {
+        if (unsynced == 0) return;
+        segment.force();
+        unsynced = 0;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    public synchronized long getBytesSinceRoll() {
+        return bytesSinceRoll;
+    }
+
+    // 方法：落盤並切換到新的分段，下一筆紀錄將寫入新檔 (快照時呼叫，讓舊分段可整檔刪除)
+    public synchronized void roll() {
+        if (segment.position() > 0) {
+            segment.force();
+            unsynced = 0;
+            openSegment(lastSequence + 1);
+        }
+        bytesSinceRoll = 0;
+    }
+
+    // 方法：刪除所有紀錄序號皆不大於 sequence 的舊分段 (已被快照涵蓋)
+    public synchronized void deleteSegmentsUpTo(long sequence) throws IOException {
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size() - 1; i++) {
+            Path path = segments.get(i);
+            // 分段的最後序號 = 下一個分段的起始序號 - 1
+            if (path.equals(segmentPath) || firstSequenceOf(segments.get(i + 1)) - 1 > sequence) continue;
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        running = false;
+        try {
+            syncer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            segment.force();
+            channel.close();
+        }
+    }
+
+    // 私有方法：寫入紀錄並依策略落盤 (呼叫端已持有鎖)
+    private void append(JournalRecord record) {
+        byte[] payload = JournalRecord.encode(record);
+        int size = HEADER_BYTES + payload.length;
+        // 保留 4 bytes 給結尾的 0 長度標記
+        if (segment.remaining() < size + 4) {
+            segment.force();
+            openSegment(record.sequence());
+        }
+        segment.putInt(payload.length).putInt(crc(payload)).put(payload);
+        // 於下一個位置寫入 0 長度結尾標記 (不移動寫入位置)，覆蓋殘缺紀錄留下的舊資料
+        segment.putInt(segment.position(), 0);
+        lastSequence = record.sequence();
+        bytesSinceRoll += size;
+        unsynced++;
+
+        if (fsyncPolicy == FsyncPolicy.PER_COMMAND
+                || (fsyncPolicy == FsyncPolicy.GROUP && unsynced >= groupSize)) {
+            sync();
+        }
+    }
+
+    // 私有方法：背景執行緒定時落盤 (GROUP 的尾端與 PERIODIC 策略)
+    private void syncLoop() {
+        while (running) {
+            try {
+                Thread.sleep(fsyncIntervalMs);
+                sync();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // 私有方法：建立新的分段檔案，檔名為第一筆紀錄的序號 (補零以便依字典順序排序)
+    private void openSegment(long firstSequence) {
+        try {
+            if (channel != null) channel.close();
+            mapSegment(directory.resolve(String.format("journal-%020d.log", firstSequence)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open journal segment", e);
+        }
+    }
+
+    private void mapSegment(Path path) throws IOException {
+        segmentPath = path;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentSizeMb * 1024 * 1024);
+    }
+
+    // 私有方法：找出分段中最後一筆完整紀錄的結尾位置
+    private static int endOfRecords(MappedByteBuffer buf) {
+        ByteBuffer view = buf.duplicate();
+        view.position(0);
+        while (view.remaining() >= HEADER_BYTES) {
+            int start = view.position();
+            int length = view.getInt();
+            if (length <= 0 || length > view.remaining() - 4) return start;
+            int crc = view.getInt();
+            byte[] payload = new byte[length];
+            view.get(payload);
+            if (crc != crc(payload)) return start;
+        }
+        return view.position();
+    }
+
+    // 私有方法：依檔名 (起始序號) 排序列出所有分段
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files
+                    .filter(p -> p.getFileName().toString().startsWith("journal-"))
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 記憶體映射檔 (Memory-Mapped File):
+      寫入只是把位元組複製到作業系統的頁面快取 (Page Cache)，不需經過 JDBC 與 MySQL 的交易提交，
+      因此指令持久化的成本接近一次記憶體複製；真正寫入磁碟的時機由 fsync 策略 (force) 決定。
+
+[註2] 殘缺紀錄 (Torn Write):
+      當機可能使最後一筆紀錄只寫入一半。每筆紀錄附帶 CRC32，讀取時遇到校驗失敗即視為日誌結尾，
+      重新開啟時也會從該位置繼續覆寫。
+
+[註3] 日誌截斷 (Truncation):
+      快照完成時先切換分段，快照涵蓋的舊分段即可整檔刪除，
+      因此重啟時需要掃描與重播的日誌量只與「上次快照之後」的指令數有關，與歷史總量無關。
+*/
@@ -0,0 +1,143 @@
+package com.exchange.exchange.engine.journal;
+
+import static com.exchange.exchange.engine.journal.BinaryCodec.getDateTime;
+import static com.exchange.exchange.engine.journal.BinaryCodec.getDecimal;
+import static com.exchange.exchange.engine.journal.BinaryCodec.getString;
+import static com.exchange.exchange.engine.journal.BinaryCodec.putDateTime;
+import static com.exchange.exchange.engine.journal.BinaryCodec.putDecimal;
+import static com.exchange.exchange.engine.journal.BinaryCodec.putString;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+
+import com.exchange.exchange.entity.Order;
+import com.exchange.exchange.enums.OrderSide;
+import com.exchange.exchange.enums.OrderStatus;
+import com.exchange.exchange.enums.OrderType;
+import com.exchange.exchange.enums.TradeType;
+
+// ====== 檔案總結 ======
+// JournalRecord 定義指令日誌 (Command Journal) 中的紀錄種類與二進位編碼。
+// 每筆紀錄都帶有全域遞增的序號 (sequence)；同一交易對的紀錄順序即為撮合執行順序。
+// 編碼格式 (Payload)：[1 byte 種類][8 bytes 序號][各種類欄位...][指令時間]，欄位編碼見 BinaryCodec，長度前綴與 CRC 由 CommandJournal 負責。
+// 每筆紀錄帶有指令執行的時間 (timestamp)，重播時成交與狀態變更沿用原本的時間，而不是重啟的時間 [註1]。
+public sealed interface JournalRecord {
+
+    byte TYPE_PLACE = 1;
+    byte TYPE_CANCEL = 2;
+
+    long sequence();
+
+    String symbolId();
+
+    // 指令執行的時間 (撮合的成交時間、撤單的更新時間)
+    LocalDateTime timestamp();
+
+    // 紀錄：新訂單進入撮合 (包含重建訂單所需的全部欄位)
+    record Place(long sequence, Integer orderId, Integer memberId, String symbolId, OrderSide side, OrderType type,
+                 TradeType tradeType, BigDecimal price, BigDecimal quantity, LocalDateTime createdAt,
+                 LocalDateTime timestamp) implements JournalRecord {
+
+        public static Place of(long sequence, Order order, LocalDateTime timestamp) {
+            return new Place(sequence, order.getOrderId(), order.getMemberId(), order.getSymbolId(), order.getSide(),
+                    order.getType(), order.getTradeType(), order.getPrice(), order.getQuantity(), order.getCreatedAt(),
+                    timestamp);
+        }
+
+        // 還原為尚未撮合的訂單 (與受理時寫入資料庫的狀態相同)
+        public Order toOrder() {
+            Order order = new Order();
+            order.setOrderId(orderId);
+            order.setMemberId(memberId);
+            order.setSymbolId(symbolId);
+            order.setSide(side);
+            order.setType(type);
+            order.setTradeType(tradeType);
+            order.setPrice(price);
+            order.setQuantity(quantity);
+            order.setFilledQuantity(BigDecimal.ZERO);
+            order.setCumQuoteQty(BigDecimal.ZERO);
+            order.setStatus(OrderStatus.NEW);
+            order.setPostOnly(false);
+            order.setCreatedAt(createdAt);
+            order.setUpdatedAt(createdAt);
+            return order;
+        }
+    }
+
+    // 紀錄：撤單請求
+    record Cancel(long sequence, Integer orderId, Integer memberId, String symbolId,
+                  TradeType tradeType, LocalDateTime timestamp) implements JournalRecord {
+
+        // 還原為撤單流程所需的訂單識別資訊 (狀態未知，以記憶體訂單簿為準)
+        public Order toOrderRef() {
+            Order order = new Order();
+            order.setOrderId(orderId);
+            order.setMemberId(memberId);
+            order.setSymbolId(symbolId);
+            order.setTradeType(tradeType);
+            return order;
+        }
+    }
+
+    // 方法：將紀錄編碼為二進位 Payload
+    static byte[] encode(JournalRecord record) {
+        ByteBuffer buf = ByteBuffer.allocate(256);
+        switch (record) {
+            case Place p -> {
+                buf.put(TYPE_PLACE).putLong(p.sequence()).putInt(p.orderId()).putInt(p.memberId());
+                putString(buf, p.symbolId());
+                buf.put((byte) p.side().ordinal()).put((byte) p.type().ordinal()).put((byte) p.tradeType().ordinal());
+                putDecimal(buf, p.price());
+                putDecimal(buf, p.quantity());
+                putDateTime(buf, p.createdAt());
+                putDateTime(buf, p.timestamp());
+            }
+            case Cancel c -> {
+                buf.put(TYPE_CANCEL).putLong(c.sequence()).putInt(c.orderId()).putInt(c.memberId());
+                putString(buf, c.symbolId());
+                buf.put((byte) (c.tradeType() == null ? -1 : c.tradeType().ordinal()));
+                putDateTime(buf, c.timestamp());
+            }
+        }
+        byte[] out = new byte[buf.position()];
+        buf.flip().get(out);
+        return out;
+    }
+
+    // 方法：由二進位 Payload 解碼紀錄
+    static JournalRecord decode(ByteBuffer buf) {
+        byte type = buf.get();
+        long sequence = buf.getLong();
+        Integer orderId = buf.getInt();
+        Integer memberId = buf.getInt();
+        String symbolId = getString(buf);
+        if (type == TYPE_PLACE) {
+            OrderSide side = OrderSide.values()[buf.get()];
+            OrderType orderType = OrderType.values()[buf.get()];
+            TradeType tradeType = TradeType.values()[buf.get()];
+            BigDecimal price = getDecimal(buf);
+            BigDecimal quantity = getDecimal(buf);
+            LocalDateTime createdAt = getDateTime(buf);
+            LocalDateTime timestamp = getDateTime(buf);
+            return new Place(sequence, orderId, memberId, symbolId, side, orderType, tradeType, price, quantity, createdAt,
+                    timestamp);
+        }
+        if (type == TYPE_CANCEL) {
+            byte tradeType = buf.get();
+            LocalDateTime timestamp = getDateTime(buf);
+            return new Cancel(sequence, orderId, memberId, symbolId, tradeType < 0 ? null : TradeType.values()[tradeType],
+                    timestamp);
+        }
+        throw new IllegalStateException("Unknown journal record type: " + type);
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 指令時間 (Command Timestamp):
+      成交時間原本在撮合當下取 LocalDateTime.now()；重啟後以 persist = true 重新執行的指令 (結果尚未寫入資料庫)
+      會被標記為重啟的時間，K 線聚合器也會把它們放進重啟當下的分鐘。
+      現在寫入日誌時記錄指令時間，即時撮合與重播都以這個時間作為成交與狀態變更的時間，兩者結果相同。
+*/
@@ -0,0 +1,165 @@
+package com.exchange.exchange.engine.ledger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.exchange.exchange.entity.Wallet;
+import com.exchange.exchange.entity.key.WalletId;
+import com.exchange.exchange.repository.CoinRepository;
+import com.exchange.exchange.repository.WalletRepository;
+
+// ====== 檔案總結 ======
+// WalletLedger 是常駐記憶體的錢包帳本，以 (memberId, coinId) 為鍵保存每個錢包的 balance 與 available。
+// 核心概念：
+// 1. 帳本是餘額檢查與結算的權威來源：凍結、結算、解凍都在記憶體中完成，不再逐筆 findById + save。
+// 2. 分段鎖 (Lock Striping)：依會員 ID 分到固定數量的分段，同一會員的所有幣種位於同一分段，
+//    對同一錢包的讀取-檢查-寫入在分段鎖內完成，不會有遺失更新 (Lost Update) [註1]。
+// 3. 帳戶在第一次使用時由資料庫載入，之後常駐於記憶體 (不淘汰) [註2]。
+// 帳本本身不寫資料庫；呼叫端 (WalletService) 負責將同一筆差額以相對更新寫入資料庫。
+@Component
+public class WalletLedger {
+
+    // 分段數 (必須是 2 的次方)
+    private static final int STRIPES = 64;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private CoinRepository coinRepository;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public WalletLedger() {
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe();
+    }
+
+    // 方法：取得錢包目前的餘額 (複本)；帳戶不存在時以空錢包載入，幣種不存在則拋出異常
+    public Wallet get(Integer memberId, String coinId) {
+        Stripe stripe = stripeOf(memberId);
+        synchronized (stripe) {
+            return toWallet(memberId, coinId, account(stripe, memberId, coinId));
+        }
+    }
+
+    // 方法：取得會員已載入帳本的所有錢包 (複本)
+    public List<Wallet> loaded(Integer memberId) {
+        List<Wallet> wallets = new ArrayList<>();
+        Stripe stripe = stripeOf(memberId);
+        synchronized (stripe) {
+            for (Map.Entry<WalletId, Account> entry : stripe.accounts.entrySet()) {
+                if (entry.getKey().getMemberId().equals(memberId)) {
+                    wallets.add(toWallet(memberId, entry.getKey().getCoinId(), entry.getValue()));
+                }
+            }
+        }
+        return wallets;
+    }
+
+    // 方法：凍結資金 (檢查並扣除可用餘額為同一個原子操作)，可用餘額不足時回傳 false 且不做任何變更
+    public boolean tryFreeze(Integer memberId, String coinId, BigDecimal amount) {
+        Stripe stripe = stripeOf(memberId);
+        synchronized (stripe) {
+            Account account = account(stripe, memberId, coinId);
+            if (account.available.compareTo(amount) < 0) return false;
+            account.available = account.available.subtract(amount);
+            return true;
+        }
+    }
+
+    // 方法：套用差額 (結算、解凍、儲值)；差額可為負數，不做餘額檢查
+    public void apply(Integer memberId, String coinId, BigDecimal balanceDelta, BigDecimal availableDelta) {
+        Stripe stripe = stripeOf(memberId);
+        synchronized (stripe) {
+            Account account = account(stripe, memberId, coinId);
+            account.balance = account.balance.add(balanceDelta);
+            account.available = account.available.add(availableDelta);
+        }
+    }
+
+    // 方法：將錢包歸零，回傳歸零前的餘額 (呼叫端據此寫入相對差額與流水)
+    public Wallet zero(Integer memberId, String coinId) {
+        Stripe stripe = stripeOf(memberId);
+        synchronized (stripe) {
+            Account account = account(stripe, memberId, coinId);
+            Wallet before = toWallet(memberId, coinId, account);
+            account.balance = BigDecimal.ZERO;
+            account.available = BigDecimal.ZERO;
+            return before;
+        }
+    }
+
+    // 方法：清空帳本，之後的存取會重新由資料庫載入 (重啟重播完成、寫回管線清空後呼叫) [註3]
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.accounts.clear();
+            }
+        }
+    }
+
+    // 私有方法：取得帳戶，不存在時由資料庫載入 (呼叫端必須持有分段鎖)
+    private Account account(Stripe stripe, Integer memberId, String coinId) {
+        WalletId key = new WalletId(memberId, coinId);
+        Account account = stripe.accounts.get(key);
+        if (account != null) return account;
+
+        Wallet stored = walletRepository.findById(key).orElse(null);
+        if (stored == null && !coinRepository.existsById(coinId)) {
+            throw new IllegalArgumentException("Coin not found: " + coinId);
+        }
+        account = new Account();
+        account.balance = stored != null && stored.getBalance() != null ? stored.getBalance() : BigDecimal.ZERO;
+        account.available = stored != null && stored.getAvailable() != null ? stored.getAvailable() : BigDecimal.ZERO;
+        stripe.accounts.put(key, account);
+        return account;
+    }
+
+    private Stripe stripeOf(Integer memberId) {
+        int h = memberId * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static Wallet toWallet(Integer memberId, String coinId, Account account) {
+        Wallet wallet = new Wallet();
+        wallet.setMemberId(memberId);
+        wallet.setCoinId(coinId);
+        wallet.setBalance(account.balance);
+        wallet.setAvailable(account.available);
+        return wallet;
+    }
+
+    // 單一錢包的常駐餘額 (BigDecimal 不可變，更新時替換參考)
+    private static final class Account {
+        BigDecimal balance;
+        BigDecimal available;
+    }
+
+    // 分段：以自身作為鎖，保護其中的帳戶表
+    private static final class Stripe {
+        final Map<WalletId, Account> accounts = new HashMap<>();
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 為何以會員分段 (Striping by Member):
+      撮合執行緒 (每個交易對一條) 與下單受理的 HTTP 執行緒會同時修改同一會員的錢包。
+      以會員 ID 分段後，不同會員的操作幾乎不會競爭同一把鎖，鎖內只有幾次 BigDecimal 運算 (數十奈秒)。
+      同一會員的所有幣種在同一分段，批次下單可在同一把鎖下完成多幣種的檢查與凍結。
+
+[註2] 延遲載入 (Lazy Loading):
+      帳戶第一次被使用時才以 findById 載入，載入期間持有分段鎖 (同分段的其他會員短暫等待)。
+      之後所有資金變動都先經過帳本再寫入資料庫，因此「帳戶已常駐」是資料庫出現新差額的前提，
+      載入當下資料庫中不會有尚未寫入、且帳本不知道的差額。
+
+[註3] 重啟時的帳本 (Ledger on Recovery):
+      重播「已寫入資料庫」的指令時事件會被捨棄，但帳本仍會套用差額，導致重複計算。
+      因此重播結束並等待寫回管線清空後清空帳本，讓之後的存取由 (此時已一致的) 資料庫重新載入。
+*/
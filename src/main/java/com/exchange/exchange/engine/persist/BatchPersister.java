@@ -0,0 +1,407 @@
+package com.exchange.exchange.engine.persist;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.exchange.exchange.converter.OrderSideConverter;
+import com.exchange.exchange.converter.OrderStatusConverter;
+import com.exchange.exchange.converter.TradeTypeConverter;
+import com.exchange.exchange.entity.Trade;
+import com.exchange.exchange.enums.OrderSide;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// ====== 檔案總結 ======
+// BatchPersister 是撮合引擎的寫回管線 (Write-Behind Pipeline)。
+// 核心概念：
+// 1. 撮合執行緒只把事件 (PersistEvent) 放入有界佇列，不直接等待資料庫。
+// 2. 一條專屬的寫入執行緒將事件累積成批次，達到筆數上限或時間上限時一次寫入。
+// 3. 同一批次中的事件會先合併 (同一訂單只寫最後狀態、同一錢包的差額相加)，
+//    再以 JDBC Batch 在單一交易中寫入，大幅減少資料庫往返次數。
+// 4. 佇列滿載時 publish 會阻塞撮合執行緒 (Back-Pressure)，避免資料庫落後時記憶體無限成長。
+// 5. 指令範圍 (beginCommand / endCommand) 內的事件會整包送出，並與該交易對的檢查點在同一交易中寫入 [註4]。
+// 6. 批次寫入失敗時不捨棄，以遞增間隔無限重試；連續失敗達到門檻即回報不健康，OrderService 暫停受理新訂單 [註2]。
+@Component
+public class BatchPersister {
+
+    // 每批次最多寫入的事件數 (達到即立即寫入)
+    @Value("${exchange.persist.batch-size:500}")
+    private int batchSize;
+
+    // 批次最長等待時間 (毫秒)：第一筆事件進入後最多等待這麼久就寫入
+    @Value("${exchange.persist.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    // 事件佇列容量
+    @Value("${exchange.persist.queue-capacity:65536}")
+    private int queueCapacity;
+
+    // 連續失敗達到此次數即回報不健康 (批次仍持續重試)
+    private static final int UNHEALTHY_AFTER_ATTEMPTS = 5;
+
+    // 重試間隔的上限 (毫秒)
+    private static final long MAX_BACKOFF_MS = 5_000;
+
+    // 沿用 JPA 轉換器，確保 JDBC 寫入的枚舉值與實體映射一致 (小寫)
+    private static final OrderSideConverter SIDE_CONVERTER = new OrderSideConverter();
+    private static final OrderStatusConverter STATUS_CONVERTER = new OrderStatusConverter();
+    private static final TradeTypeConverter TRADE_TYPE_CONVERTER = new TradeTypeConverter();
+
+    // 注入 JdbcTemplate：以 JDBC Batch 執行寫入 (繞過 JPA 逐筆 save 的開銷)
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 注入程式化交易模板：每個批次在同一個資料庫交易中寫入
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private BlockingQueue<PersistEvent> queue;
+
+    private Thread worker;
+
+    private volatile boolean running = true;
+
+    // 寫入是否正常 (連續失敗達到門檻時為 false，寫入成功後恢復)
+    private volatile boolean healthy = true;
+
+    // 已發布 / 已寫入的事件數，用於判斷管線是否已清空
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+
+    // 目前執行緒正在執行的指令所累積的事件 (僅序列器執行緒使用)
+    private final ThreadLocal<List<PersistEvent>> currentCommand = new ThreadLocal<>();
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        worker = new Thread(this::drain, "batch-persister");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // 方法：發布一個待寫入事件
+    // 佇列已滿時呼叫端會在此阻塞，直到寫入執行緒騰出空間
+    // 若目前執行緒處於指令範圍內，事件先暫存，於 endCommand 時整包送出
+    public void publish(PersistEvent event) {
+        List<PersistEvent> command = currentCommand.get();
+        if (command != null) {
+            command.add(event);
+            return;
+        }
+        enqueue(event);
+    }
+
+    // 方法：開始一個指令範圍 (由序列器執行緒在執行日誌指令前呼叫)
+    public void beginCommand() {
+        currentCommand.set(new ArrayList<>());
+    }
+
+    // 方法：結束指令範圍，將累積的事件連同檢查點整包送入佇列
+    public void endCommand(String symbolId, long sequence) {
+        List<PersistEvent> events = currentCommand.get();
+        currentCommand.remove();
+        if (events == null) return;
+        events.add(new PersistEvent.CommandApplied(symbolId, sequence));
+        enqueue(new PersistEvent.Command(events));
+    }
+
+    // 方法：結束沒有日誌序號的指令範圍 (例如拒絕未進入撮合的訂單)，事件整包送出但不推進檢查點
+    public void endCommand() {
+        List<PersistEvent> events = currentCommand.get();
+        currentCommand.remove();
+        if (events == null || events.isEmpty()) return;
+        enqueue(new PersistEvent.Command(events));
+    }
+
+    // 方法：結束指令範圍並捨棄累積的事件 (重播已寫入資料庫的指令時使用，只恢復記憶體狀態)
+    public void discardCommand() {
+        currentCommand.remove();
+    }
+
+    // 私有方法：放入佇列 (滿載時阻塞)
+    private void enqueue(PersistEvent event) {
+        try {
+            queue.put(event);
+            published.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while publishing persist event");
+        }
+    }
+
+    // 方法：等待目前為止發布的事件全部寫入資料庫 (關閉、測試與快照前使用)
+    public void awaitDrained() {
+        long target = published.get();
+        while (persisted.get() < target && worker.isAlive()) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // 方法：寫回管線是否正常 (監控與下單受理使用)
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    // 方法：目前排隊中的事件數量 (監控用)
+    public int pending() {
+        return queue.size();
+    }
+
+    // 應用程式關閉時停止寫入執行緒，佇列中剩餘的事件會先寫完 [註1]
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 私有方法：寫入執行緒主迴圈
+    private void drain() {
+        List<PersistEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PersistEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // 收集批次：直到筆數上限或等待時間到期
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    if (batch.size() >= batchSize) break;
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0 || !running) break;
+                    PersistEvent next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+
+                flushWithRetry(batch);
+                persisted.addAndGet(batch.size());
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // 私有方法：寫入一個批次，失敗時以遞增間隔重試直到成功 (批次不會被捨棄) [註2]
+    private void flushWithRetry(List<PersistEvent> batch) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> flush(batch));
+                if (!healthy) {
+                    healthy = true;
+                    System.out.println("Batch persist recovered after " + attempt + " attempts");
+                }
+                return;
+            } catch (RuntimeException e) {
+                if (attempt == UNHEALTHY_AFTER_ATTEMPTS) {
+                    healthy = false;
+                    System.err.println("Batch persist failing, order intake suspended: " + e.getMessage());
+                }
+                System.err.println("Batch persist attempt " + attempt + " failed (" + batch.size() + " events): " + e.getMessage());
+                Thread.sleep(Math.min(50L << Math.min(attempt, 10), MAX_BACKOFF_MS));
+            }
+        }
+    }
+
+    // 私有方法：合併批次中的事件並以 JDBC Batch 寫入
+    private void flush(List<PersistEvent> batch) {
+        List<PersistEvent.TradeInsert> trades = new ArrayList<>();
+        Map<Integer, PersistEvent.OrderUpdate> orders = new LinkedHashMap<>();
+        Map<String, PersistEvent.WalletDelta> wallets = new LinkedHashMap<>();
+        List<PersistEvent.WalletDelta> walletTxs = new ArrayList<>();
+        Map<String, Long> checkpoints = new LinkedHashMap<>();
+
+        List<PersistEvent> events = new ArrayList<>(batch.size());
+        for (PersistEvent event : batch) {
+            if (event instanceof PersistEvent.Command command) {
+                events.addAll(command.events());
+            } else {
+                events.add(event);
+            }
+        }
+
+        for (PersistEvent event : events) {
+            switch (event) {
+                case PersistEvent.TradeInsert t -> trades.add(t);
+                // 同一訂單在批次中只保留最後狀態 (事件內容為絕對值)
+                case PersistEvent.OrderUpdate o -> orders.put(o.orderId(), o);
+                case PersistEvent.WalletDelta w -> {
+                    // 同一錢包的差額相加，只需一次 UPSERT
+                    wallets.merge(w.memberId() + "|" + w.coinId(), w, (a, b) -> new PersistEvent.WalletDelta(
+                            a.memberId(), a.coinId(),
+                            a.balanceDelta().add(b.balanceDelta()), a.availableDelta().add(b.availableDelta()), null));
+                    if (w.txType() != null) walletTxs.add(w);
+                }
+                case PersistEvent.CommandApplied a -> checkpoints.merge(a.symbolId(), a.sequence(), Math::max);
+                case PersistEvent.Command c -> throw new IllegalStateException("Nested command events");
+            }
+        }
+
+        insertTrades(trades);
+        insertMemberFills(trades);
+        updateOrders(orders.values());
+        applyWalletDeltas(wallets.values());
+        insertWalletTransactions(walletTxs);
+        saveCheckpoints(checkpoints);
+    }
+
+    private void insertTrades(List<PersistEvent.TradeInsert> trades) {
+        if (trades.isEmpty()) return;
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO trades (tradesID, symbolID, taker_orderID, maker_orderID, price, quantity, taker_side, "
+                        + "executed_at, fee_currency, fee_amount, trade_type) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                trades, trades.size(), (ps, event) -> {
+                    Trade t = event.trade();
+                    ps.setInt(1, t.getTradeId());
+                    ps.setString(2, t.getSymbolId());
+                    ps.setInt(3, t.getTakerOrderId());
+                    ps.setInt(4, t.getMakerOrderId());
+                    ps.setBigDecimal(5, t.getPrice());
+                    ps.setBigDecimal(6, t.getQuantity());
+                    ps.setString(7, SIDE_CONVERTER.convertToDatabaseColumn(t.getTakerSide()));
+                    ps.setTimestamp(8, Timestamp.valueOf(t.getExecutedAt()));
+                    ps.setString(9, t.getFeeCurrency());
+                    ps.setBigDecimal(10, t.getFeeAmount());
+                    ps.setString(11, TRADE_TYPE_CONVERTER.convertToDatabaseColumn(t.getTradeType()));
+                });
+    }
+
+    // 每筆成交寫入兩列會員成交明細 (Taker 與 Maker 視角)，Maker 的方向與 Taker 相反
+    private void insertMemberFills(List<PersistEvent.TradeInsert> trades) {
+        if (trades.isEmpty()) return;
+        List<FillRow> rows = new ArrayList<>(trades.size() * 2);
+        for (PersistEvent.TradeInsert event : trades) {
+            Trade t = event.trade();
+            OrderSide makerSide = t.getTakerSide() == OrderSide.BUY ? OrderSide.SELL : OrderSide.BUY;
+            rows.add(new FillRow(event.takerMemberId(), t, t.getTakerSide(), "TAKER"));
+            rows.add(new FillRow(event.makerMemberId(), t, makerSide, "MAKER"));
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO member_fills (member_id, trade_id, symbol_id, side, role, price, quantity, trade_type, executed_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                rows, rows.size(), (ps, row) -> {
+                    Trade t = row.trade();
+                    ps.setInt(1, row.memberId());
+                    ps.setInt(2, t.getTradeId());
+                    ps.setString(3, t.getSymbolId());
+                    ps.setString(4, SIDE_CONVERTER.convertToDatabaseColumn(row.side()));
+                    ps.setString(5, row.role());
+                    ps.setBigDecimal(6, t.getPrice());
+                    ps.setBigDecimal(7, t.getQuantity());
+                    ps.setString(8, TRADE_TYPE_CONVERTER.convertToDatabaseColumn(t.getTradeType()));
+                    ps.setTimestamp(9, Timestamp.valueOf(t.getExecutedAt()));
+                });
+    }
+
+    // 會員成交明細的一列 (會員視角)
+    private record FillRow(int memberId, Trade trade, OrderSide side, String role) {
+    }
+
+    private void updateOrders(Collection<PersistEvent.OrderUpdate> orders) {
+        if (orders.isEmpty()) return;
+        jdbcTemplate.batchUpdate(
+                "UPDATE orders SET filled_quantity = ?, cum_quote_qty = ?, status = ?, updated_at = ? WHERE orderID = ?",
+                orders, orders.size(), (ps, o) -> {
+                    ps.setBigDecimal(1, o.filledQuantity());
+                    ps.setBigDecimal(2, o.cumQuoteQty());
+                    ps.setString(3, STATUS_CONVERTER.convertToDatabaseColumn(o.status()));
+                    ps.setTimestamp(4, Timestamp.valueOf(o.updatedAt()));
+                    ps.setInt(5, o.orderId());
+                });
+    }
+
+    // 錢包以相對差額更新，錢包不存在時直接建立 [註3]
+    private void applyWalletDeltas(Collection<PersistEvent.WalletDelta> deltas) {
+        if (deltas.isEmpty()) return;
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO wallets (memberID, coinID, balance, available) VALUES (?, ?, ?, ?) "
+                        + "ON DUPLICATE KEY UPDATE balance = balance + VALUES(balance), available = available + VALUES(available), "
+                        + "version = version + 1",
+                deltas, deltas.size(), (ps, w) -> {
+                    ps.setInt(1, w.memberId());
+                    ps.setString(2, w.coinId());
+                    ps.setBigDecimal(3, w.balanceDelta());
+                    ps.setBigDecimal(4, w.availableDelta());
+                });
+    }
+
+    private void insertWalletTransactions(List<PersistEvent.WalletDelta> txs) {
+        if (txs.isEmpty()) return;
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO wallet_transactions (member_id, coin_id, type, amount, created_at) VALUES (?, ?, ?, ?, ?)",
+                txs, txs.size(), (ps, w) -> {
+                    ps.setInt(1, w.memberId());
+                    ps.setString(2, w.coinId());
+                    ps.setString(3, w.txType());
+                    ps.setBigDecimal(4, w.balanceDelta());
+                    ps.setTimestamp(5, now);
+                });
+    }
+
+    // 檢查點與撮合結果在同一交易中寫入，兩者永遠一致
+    private void saveCheckpoints(Map<String, Long> checkpoints) {
+        if (checkpoints.isEmpty()) return;
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(checkpoints.entrySet());
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO engine_checkpoints (symbolID, last_sequence) VALUES (?, ?) "
+                        + "ON DUPLICATE KEY UPDATE last_sequence = GREATEST(last_sequence, VALUES(last_sequence))",
+                entries, entries.size(), (ps, e) -> {
+                    ps.setString(1, e.getKey());
+                    ps.setLong(2, e.getValue());
+                });
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 關閉順序 (Shutdown Ordering):
+      SequencerManager 宣告 @DependsOn("batchPersister")，Spring 關閉時會先停止所有序列器，
+      確保撮合執行緒不再發布事件後，才停止本寫入執行緒並寫完剩餘事件。
+
+[註2] 寫入失敗 (Persist Failure):
+      撮合結果已在記憶體中生效，資料庫只是落後的副本。批次失敗時絕不捨棄：若捨棄後續批次仍會以
+      GREATEST 推進檢查點，被捨棄的指令永遠不會被重播，資料庫將與訂單簿及帳本永久不一致。
+      因此同一批次以遞增間隔 (上限 5 秒) 重試直到成功，之後的批次在佇列中等待，檢查點不會越過未寫入的指令。
+      連續失敗達到門檻時 isHealthy 回報 false，OrderService 拒絕新訂單 (避免繼續凍結資金與寫入訂單)；
+      佇列滿載後撮合執行緒也會因 Back-Pressure 停止。程式在此期間關閉時，未寫入的指令仍在日誌中，重啟後重播。
+
+[註3] 相對更新 (Relative Update):
+      錢包使用 `balance = balance + ?` 的相對更新，而非寫入記憶體中讀到的絕對值，
+      因此同一時間由下單流程 (凍結資金) 直接寫入的變更不會被批次寫入覆蓋。
+      每次更新同時遞增 version，讓以版本號更新 Wallet 實體的流程能偵測到批次寫入。
+      結算差額不加「餘額足夠」條件：扣除的金額在下單時已由條件式凍結保留，資料庫不會因此變為負數。
+
+[註4] 指令檢查點 (Command Checkpoint):
+      每個日誌指令的事件被包成一個 Command 事件進入佇列，因此一個批次只會包含「完整的指令」。
+      批次寫入時同時更新 `engine_checkpoints`，資料庫永遠精確反映「序號不大於檢查點」的指令結果，
+      重啟時 EngineRecovery 只需重播檢查點之後的日誌。
+*/
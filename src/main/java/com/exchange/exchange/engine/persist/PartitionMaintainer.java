@@ -0,0 +1,70 @@
+package com.exchange.exchange.engine.persist;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// ====== 檔案總結 ======
+// PartitionMaintainer 維護按月分區的流水資料表 (RANGE 分區，依 TO_DAYS(created_at))。
+// 每個表的最後一個分區為 pmax (VALUES LESS THAN MAXVALUE)；本元件定期將 pmax 拆出未來月份的分區，
+// 讓資料在寫入時就落在所屬月份，查詢可依時間做分區裁剪 (Partition Pruning)，舊月份可整區刪除 [註1]。
+// 未分區的表 (例如由 ddl-auto 自動建立) 會被略過。
+@Component
+public class PartitionMaintainer {
+
+    // 按月分區的資料表
+    private static final List<String> MONTHLY_TABLES = List.of("wallet_transactions");
+
+    // 預先建立的未來月份數
+    private static final int MONTHS_AHEAD = 2;
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 啟動後立即檢查一次，之後每 6 小時檢查一次
+    @Scheduled(initialDelay = 0, fixedDelay = 6 * 60 * 60 * 1000)
+    public void ensurePartitions() {
+        for (String table : MONTHLY_TABLES) {
+            try {
+                ensurePartitions(table);
+            } catch (RuntimeException e) {
+                System.err.println("Partition maintenance failed for " + table + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // 私有方法：確保本月與之後 MONTHS_AHEAD 個月都有獨立分區 (依月份遞增拆分 pmax)
+    private void ensurePartitions(String table) {
+        List<String> existing = jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL",
+                String.class, table);
+        if (!existing.contains("pmax")) return;
+
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= MONTHS_AHEAD; i++) {
+            YearMonth month = current.plusMonths(i);
+            String name = month.format(PARTITION_NAME);
+            if (existing.contains(name)) continue;
+            jdbcTemplate.execute("ALTER TABLE " + table + " REORGANIZE PARTITION pmax INTO ("
+                    + "PARTITION " + name + " VALUES LESS THAN (TO_DAYS('" + month.plusMonths(1).atDay(1) + "')), "
+                    + "PARTITION pmax VALUES LESS THAN MAXVALUE)");
+            System.out.println("已建立分區 " + table + "." + name);
+        }
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 為何拆分 pmax (Reorganize pmax):
+      RANGE 分區只能在最後新增，且 pmax 存在時不能直接 ADD PARTITION，必須以 REORGANIZE 拆出新月份。
+      在月份開始前預先拆分時 pmax 是空的，重組不需要搬移資料，幾乎是瞬間完成；
+      若長時間未維護導致資料落入 pmax，拆分會搬移這些資料 (仍然正確，只是較慢)。
+*/
@@ -0,0 +1,39 @@
+package com.exchange.exchange.engine.persist;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.exchange.exchange.entity.Trade;
+import com.exchange.exchange.enums.OrderStatus;
+
+// ====== 檔案總結 ======
+// PersistEvent 定義撮合引擎送往寫回管線 (Write-Behind Pipeline) 的事件種類。
+// 撮合執行緒只負責產生事件，實際的資料庫寫入由 BatchPersister 批次完成。
+// 每個事件都是不可變 (Immutable) 的值物件：即使之後記憶體中的訂單繼續變動，事件內容也不會改變。
+public sealed interface PersistEvent {
+
+    // 事件：新增一筆成交紀錄 (Trade ID 已由引擎預先配發)
+    // 同時帶上雙方的會員 ID，寫入時一併產生兩列會員成交明細 (member_fills)
+    record TradeInsert(Trade trade, int takerMemberId, int makerMemberId) implements PersistEvent {
+    }
+
+    // 事件：訂單成交進度或狀態變更 (以絕對值表示，同一批次中只保留最後一筆)
+    record OrderUpdate(Integer orderId, BigDecimal filledQuantity, BigDecimal cumQuoteQty,
+                       OrderStatus status, LocalDateTime updatedAt) implements PersistEvent {
+    }
+
+    // 事件：錢包餘額變動 (以差額表示，同一錢包在同一批次中會被合併)
+    // txType 不為 null 時，另外寫入一筆金額為 balanceDelta 的資金流水
+    record WalletDelta(Integer memberId, String coinId, BigDecimal balanceDelta, BigDecimal availableDelta,
+                       String txType) implements PersistEvent {
+    }
+
+    // 事件：某交易對的指令 (Journal Sequence) 已執行完畢，寫入時一併更新該交易對的檢查點
+    record CommandApplied(String symbolId, long sequence) implements PersistEvent {
+    }
+
+    // 事件：單一指令產生的全部事件，作為一個整體進入佇列，確保不會被批次邊界切開
+    record Command(List<PersistEvent> events) implements PersistEvent {
+    }
+}
@@ -0,0 +1,108 @@
+package com.exchange.exchange.engine.snapshot;
+
+import static com.exchange.exchange.engine.journal.BinaryCodec.getDateTime;
+import static com.exchange.exchange.engine.journal.BinaryCodec.getDecimal;
+import static com.exchange.exchange.engine.journal.BinaryCodec.getString;
+import static com.exchange.exchange.engine.journal.BinaryCodec.putDateTime;
+import static com.exchange.exchange.engine.journal.BinaryCodec.putDecimal;
+import static com.exchange.exchange.engine.journal.BinaryCodec.putString;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.exchange.exchange.entity.Order;
+import com.exchange.exchange.enums.OrderSide;
+import com.exchange.exchange.enums.OrderStatus;
+import com.exchange.exchange.enums.OrderType;
+import com.exchange.exchange.enums.TradeType;
+
+// ====== 檔案總結 ======
+// EngineSnapshot 是撮合引擎在某個日誌序號 (sequence) 時的訂單簿狀態：
+// 所有訂單簿中的掛單 (依優先順序排列，依序加回即可還原相同的訂單簿)。
+// 錢包不在快照中：資料庫是錢包的權威來源，重啟時由資料庫載入 [註1]。
+// 二進位格式：[magic][version][sequence][createdAt][掛單...][CRC32]，欄位編碼見 BinaryCodec。
+public record EngineSnapshot(long sequence, LocalDateTime createdAt, List<Order> orders) {
+
+    private static final int MAGIC = 0x534E4150; // "SNAP"
+    private static final int VERSION = 1;
+
+    // 方法：編碼為二進位內容 (結尾附帶 CRC32)
+    public byte[] encode() {
+        ByteBuffer buf = ByteBuffer.allocate(64 + orders.size() * 256);
+        buf.putInt(MAGIC).putInt(VERSION).putLong(sequence);
+        putDateTime(buf, createdAt);
+
+        buf.putInt(orders.size());
+        for (Order o : orders) {
+            buf.putInt(o.getOrderId()).putInt(o.getMemberId());
+            putString(buf, o.getSymbolId());
+            buf.put((byte) o.getSide().ordinal()).put((byte) o.getType().ordinal()).put((byte) o.getTradeType().ordinal());
+            putDecimal(buf, o.getPrice());
+            putDecimal(buf, o.getQuantity());
+            putDecimal(buf, o.getFilledQuantity());
+            putDecimal(buf, o.getCumQuoteQty());
+            buf.put((byte) o.getStatus().ordinal());
+            buf.put((byte) (Boolean.TRUE.equals(o.getPostOnly()) ? 1 : 0));
+            putDateTime(buf, o.getCreatedAt());
+            putDateTime(buf, o.getUpdatedAt());
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue());
+
+        byte[] out = new byte[buf.position()];
+        buf.flip().get(out);
+        return out;
+    }
+
+    // 方法：由二進位內容解碼，CRC 或格式不符時拋出 IllegalStateException
+    public static EngineSnapshot decode(byte[] data) {
+        if (data.length < 4) throw new IllegalStateException("Snapshot too short");
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        if (buf.getInt(data.length - 4) != (int) crc.getValue()) {
+            throw new IllegalStateException("Snapshot checksum mismatch");
+        }
+        if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            throw new IllegalStateException("Unsupported snapshot format");
+        }
+        long sequence = buf.getLong();
+        LocalDateTime createdAt = getDateTime(buf);
+
+        int orderCount = buf.getInt();
+        List<Order> orders = new ArrayList<>(orderCount);
+        for (int i = 0; i < orderCount; i++) {
+            Order o = new Order();
+            o.setOrderId(buf.getInt());
+            o.setMemberId(buf.getInt());
+            o.setSymbolId(getString(buf));
+            o.setSide(OrderSide.values()[buf.get()]);
+            o.setType(OrderType.values()[buf.get()]);
+            o.setTradeType(TradeType.values()[buf.get()]);
+            o.setPrice(getDecimal(buf));
+            o.setQuantity(getDecimal(buf));
+            o.setFilledQuantity(getDecimal(buf));
+            o.setCumQuoteQty(getDecimal(buf));
+            o.setStatus(OrderStatus.values()[buf.get()]);
+            o.setPostOnly(buf.get() == 1);
+            o.setCreatedAt(getDateTime(buf));
+            o.setUpdatedAt(getDateTime(buf));
+            orders.add(o);
+        }
+
+        return new EngineSnapshot(sequence, createdAt, orders);
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 為何不保存錢包 (No Wallet Section):
+      下單受理 (凍結資金) 不經過序列器，錢包餘額無法對應到任何單一序號，
+      恢復流程一律清空帳本並由資料庫重新載入，因此快照不保存錢包。
+      快照暫停期間也不需要全表讀取錢包，暫停時間只與掛單數量有關。
+*/
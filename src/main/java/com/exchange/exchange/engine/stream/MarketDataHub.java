@@ -0,0 +1,445 @@
+package com.exchange.exchange.engine.stream;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.exchange.exchange.engine.DepthSnapshot;
+import com.exchange.exchange.engine.OrderBookManager;
+import com.exchange.exchange.entity.Trade;
+import com.exchange.exchange.enums.Timeframe;
+import com.exchange.exchange.enums.TradeType;
+
+import jakarta.annotation.PreDestroy;
+
+// ====== 檔案總結 ======
+// MarketDataHub 是行情串流 (Server-Sent Events) 的推播中心。
+// 核心概念：
+// 1. 撮合引擎推送：成交由 MatchingService 在撮合時交給本類別暫存，每批指令結束時 (SymbolSequencer 批次結束回呼)
+//    一次產生該交易對的深度差異、成交與 K 線訊息 [註1]。
+// 2. 每則訊息只序列化一次 (完整的 SSE 訊框位元組)，由推播執行緒 (market-data) 放入每個訂閱者各自的有界佇列，
+//    再由該訂閱者專屬的虛擬執行緒寫出；撮合執行緒只做入列，慢速連線也只會阻塞自己的寫出執行緒 [註5]。
+// 3. 訂閱時先收到快照，之後是增量更新 [註2]。深度差異帶有訂單簿的 Update ID 範圍 (firstUpdateId / lastUpdateId)，
+//    與 REST 快照的 lastUpdateId 屬於同一序列；成交與各週期 K 線的訊息帶有遞增序號 (seq) [註4]。
+// 4. 訂閱者的佇列滿時不等待，而是丟棄積壓的訊息，改送一份目前的完整深度快照 (Conflation) [註5]。
+// 序列化的工作量與成交量 (市場活動) 成正比，與觀看人數無關 (推播時只是將同一份位元組寫給每個連線)。
+@Component
+public class MarketDataHub {
+
+    // 頻道名稱
+    public static final String DEPTH = "depth";
+    public static final String TRADE = "trade";
+    public static final String KLINE = "kline";
+
+    // 推播佇列容量；滿時丟棄新訊息並記錄 (客戶端可依 Update ID 發現缺漏後重新同步)
+    private static final int OUTBOUND_CAPACITY = 65536;
+
+    // 每個訂閱者的待寫出佇列容量；滿時以快照取代積壓的訊息 [註5]
+    private static final int SESSION_CAPACITY = 1024;
+
+    // 心跳 (SSE 註解行)
+    private static final Set<DataWithMediaType> HEARTBEAT = frame(":ping\n\n");
+
+    @Autowired
+    private OrderBookManager orderBookManager;
+
+    // 訂閱者：Key 為交易對 (推播執行緒走訪、HTTP 執行緒與序列器執行緒增刪)
+    private final Map<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    // 每個交易對的串流狀態：只由該交易對的序列器執行緒存取
+    private final Map<String, SymbolStream> streams = new ConcurrentHashMap<>();
+
+    // 待推播的訊息
+    private final BlockingQueue<Delivery> outbound = new ArrayBlockingQueue<>(OUTBOUND_CAPACITY);
+
+    // 每個連線佇列的重新同步快照訊框 (依深度快照快取，只由推播執行緒存取)
+    private final Map<String, ResyncFrame> resyncFrames = new HashMap<>();
+
+    private final Thread dispatcher;
+
+    // 寫出執行緒：每次有訂閱者的佇列由空轉為非空時啟動一個虛擬執行緒寫出
+    private final ExecutorService writers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("market-data-writer-", 0).factory());
+
+    private volatile boolean running = true;
+
+    public MarketDataHub() {
+        this.dispatcher = new Thread(this::dispatch, "market-data");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    // 方法：登記一個訂閱者，並排入其專屬的快照訊息 [註2]
+    // 必須在該交易對的序列器執行緒中呼叫，快照與之後的差異才會銜接
+    public void register(String symbolId, SseEmitter emitter, Set<String> channels, Timeframe interval) {
+        Subscriber subscriber = new Subscriber(symbolId, emitter, channels, interval);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        SymbolStream stream = streams.computeIfAbsent(symbolId, SymbolStream::new);
+        DepthSnapshot depth = null;
+        if (channels.contains(DEPTH)) {
+            if (stream.lastDepth == null) {
+                stream.lastDepth = orderBookManager.getBook(symbolId, TradeType.SPOT).depth();
+                stream.lastSentUpdateId = stream.lastDepth.getUpdateId();
+            }
+            depth = stream.lastDepth;
+        }
+        subscribers.computeIfAbsent(symbolId, k -> new CopyOnWriteArrayList<>()).add(subscriber);
+        enqueue(new Delivery(symbolId, null, null, snapshotFrame(symbolId, depth), subscriber));
+    }
+
+    // 方法：暫存一筆成交，於批次結束時推播 (序列器執行緒呼叫)
+    public void onTrade(Trade trade) {
+        List<Subscriber> list = subscribers.get(trade.getSymbolId());
+        if (list == null || list.isEmpty()) return;
+        streams.computeIfAbsent(trade.getSymbolId(), SymbolStream::new).trades.add(trade);
+    }
+
+    // 方法：批次結束時產生並排入該交易對的增量訊息 (序列器執行緒呼叫，深度快照已先發布)
+    public void onBatchEnd(String symbolId) {
+        SymbolStream stream = streams.get(symbolId);
+        if (stream == null) return;
+        try {
+            List<Subscriber> list = subscribers.get(symbolId);
+            if (list == null || list.isEmpty()) {
+                // 沒有訂閱者時不保留基準快照，下一個訂閱者以當下的快照為起點
+                stream.lastDepth = null;
+                return;
+            }
+
+            boolean depth = false;
+            Set<Timeframe> intervals = EnumSet.noneOf(Timeframe.class);
+            for (Subscriber subscriber : list) {
+                depth |= subscriber.channels.contains(DEPTH);
+                if (subscriber.channels.contains(KLINE)) intervals.add(subscriber.interval);
+            }
+
+            if (depth) {
+                publishDepth(stream);
+            } else {
+                stream.lastDepth = null;
+            }
+            if (!stream.trades.isEmpty()) {
+                publishTrades(stream);
+                for (Timeframe interval : intervals) publishKlines(stream, interval);
+            }
+        } finally {
+            stream.trades.clear();
+        }
+    }
+
+    // 定時送出心跳 (SSE 註解行)，及早發現已斷線的連線
+    @Scheduled(fixedDelay = 15_000)
+    public void heartbeat() {
+        enqueue(new Delivery(null, null, null, HEARTBEAT, null));
+    }
+
+    // 應用程式關閉時停止推播執行緒並結束所有連線
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+            writers.shutdown();
+            writers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        subscribers.values().forEach(list -> list.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    // 私有方法：推播深度差異 (相對於上一次推播的快照)
+    // 範圍從上一則已送出差異的下一個 Update ID 開始：沒有實際變動的版本 (例如未成交的撮合) 不送出，
+    // 併入下一則差異的範圍，相鄰差異的範圍仍然首尾相接
+    private void publishDepth(SymbolStream stream) {
+        DepthSnapshot current = orderBookManager.getBook(stream.symbolId, TradeType.SPOT).depth();
+        DepthSnapshot previous = stream.lastDepth;
+        stream.lastDepth = current;
+        if (previous == null) {
+            stream.lastSentUpdateId = current.getUpdateId();
+            return;
+        }
+        if (previous == current) return;
+
+        StringBuilder json = new StringBuilder(256).append("{\"symbol\":\"").append(stream.symbolId)
+                .append("\",\"firstUpdateId\":").append(stream.lastSentUpdateId + 1)
+                .append(",\"lastUpdateId\":").append(current.getUpdateId()).append(',');
+        if (!current.appendDiff(json, previous)) return;
+        stream.lastSentUpdateId = current.getUpdateId();
+        enqueue(new Delivery(stream.symbolId, DEPTH, null, frame(DEPTH, json.append('}')), null));
+    }
+
+    // 私有方法：將本批次的成交合併為一則訊息推播
+    private void publishTrades(SymbolStream stream) {
+        StringBuilder json = new StringBuilder(64 + 128 * stream.trades.size()).append("{\"symbol\":\"")
+                .append(stream.symbolId).append("\",\"seq\":").append(++stream.tradeSeq).append(",\"trades\":[");
+        for (int i = 0; i < stream.trades.size(); i++) {
+            Trade trade = stream.trades.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"tradeId\":").append(trade.getTradeId())
+                .append(",\"price\":").append(trade.getPrice().toPlainString())
+                .append(",\"quantity\":").append(trade.getQuantity().toPlainString())
+                .append(",\"side\":\"").append(trade.getTakerSide().name())
+                .append("\",\"time\":").append(epochMillis(trade.getExecutedAt())).append('}');
+        }
+        enqueue(new Delivery(stream.symbolId, TRADE, null, frame(TRADE, json.append("]}")), null));
+    }
+
+    // 私有方法：將本批次的成交依週期分桶，每個 K 線時間各推播一則 (本批次內的開高低收)
+    // 客戶端以 high = max、low = min、close = 最新值 合併到既有的 K 線 [註3]
+    private void publishKlines(SymbolStream stream, Timeframe interval) {
+        Map<LocalDateTime, BigDecimal[]> bars = new LinkedHashMap<>();
+        for (Trade trade : stream.trades) {
+            BigDecimal price = trade.getPrice();
+            BigDecimal[] bar = bars.computeIfAbsent(interval.openTimeOf(trade.getExecutedAt()),
+                    k -> new BigDecimal[] {price, price, price, price});
+            if (price.compareTo(bar[1]) > 0) bar[1] = price;
+            if (price.compareTo(bar[2]) < 0) bar[2] = price;
+            bar[3] = price;
+        }
+        for (Map.Entry<LocalDateTime, BigDecimal[]> entry : bars.entrySet()) {
+            BigDecimal[] bar = entry.getValue();
+            long seq = stream.klineSeq.merge(interval, 1L, Long::sum);
+            String json = "{\"symbol\":\"" + stream.symbolId + "\",\"interval\":\"" + interval.getValue()
+                    + "\",\"seq\":" + seq + ",\"openTime\":" + epochMillis(entry.getKey())
+                    + ",\"open\":" + bar[0].toPlainString() + ",\"high\":" + bar[1].toPlainString()
+                    + ",\"low\":" + bar[2].toPlainString() + ",\"close\":" + bar[3].toPlainString() + "}";
+            enqueue(new Delivery(stream.symbolId, KLINE, interval, frame(KLINE, json), null));
+        }
+    }
+
+    private void enqueue(Delivery delivery) {
+        if (!outbound.offer(delivery)) {
+            System.err.println("Market data queue full, dropping " + delivery.channel() + " for " + delivery.symbolId());
+        }
+    }
+
+    // 私有方法：推播執行緒主迴圈
+    private void dispatch() {
+        while (running || !outbound.isEmpty()) {
+            try {
+                Delivery delivery = outbound.poll(100, TimeUnit.MILLISECONDS);
+                if (delivery == null) continue;
+
+                if (delivery.target() != null) {
+                    // 快照：放入佇列後才開始接收增量訊息 (在此之前排入的增量已包含在快照中)
+                    offer(delivery.target(), delivery.frame());
+                    delivery.target().active = true;
+                } else if (delivery.symbolId() == null) {
+                    subscribers.values().forEach(list -> list.forEach(subscriber -> offer(subscriber, delivery.frame())));
+                } else {
+                    List<Subscriber> list = subscribers.get(delivery.symbolId());
+                    if (list == null) continue;
+                    for (Subscriber subscriber : list) {
+                        if (subscriber.active && subscriber.accepts(delivery)) offer(subscriber, delivery.frame());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // 私有方法：將訊框放入訂閱者的佇列 (推播執行緒呼叫)，必要時啟動寫出執行緒
+    // 佇列已滿代表連線跟不上：丟棄積壓的訊息，改放一份目前的深度快照 [註5]
+    private void offer(Subscriber subscriber, Set<DataWithMediaType> frame) {
+        if (!subscriber.pending.offer(frame)) {
+            subscriber.pending.clear();
+            if (subscriber.channels.contains(DEPTH)) subscriber.pending.offer(resyncFrame(subscriber.symbolId));
+            System.err.println("Market data subscriber of " + subscriber.symbolId + " is too slow, conflated to snapshot");
+        }
+        if (subscriber.writing.compareAndSet(false, true)) writers.execute(() -> drain(subscriber));
+    }
+
+    // 私有方法：寫出訂閱者佇列中的訊框，直到佇列清空 (同一訂閱者同時只有一個寫出執行緒)
+    private void drain(Subscriber subscriber) {
+        do {
+            Set<DataWithMediaType> frame;
+            while ((frame = subscriber.pending.poll()) != null) {
+                // 連線已中斷：保持 writing 為 true，不再排程寫出
+                if (!send(subscriber, frame)) return;
+            }
+            subscriber.writing.set(false);
+        } while (!subscriber.pending.isEmpty() && subscriber.writing.compareAndSet(false, true));
+    }
+
+    // 私有方法：寫出一個已序列化的訊框，連線已中斷時移除訂閱者
+    private boolean send(Subscriber subscriber, Set<DataWithMediaType> frame) {
+        try {
+            subscriber.emitter.send(frame);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            remove(subscriber);
+            subscriber.pending.clear();
+            return false;
+        }
+    }
+
+    // 私有方法：取得交易對目前深度的快照訊框，同一版本的深度只序列化一次 (推播執行緒呼叫)
+    // 快照取自已發布的深度，其 lastUpdateId 必定是某則差異的邊界，客戶端可依 Update ID 規則銜接之後的差異
+    private Set<DataWithMediaType> resyncFrame(String symbolId) {
+        DepthSnapshot depth = orderBookManager.getBook(symbolId, TradeType.SPOT).depth();
+        ResyncFrame cached = resyncFrames.get(symbolId);
+        if (cached == null || cached.depth() != depth) {
+            cached = new ResyncFrame(depth, snapshotFrame(symbolId, depth));
+            resyncFrames.put(symbolId, cached);
+        }
+        return cached.frame();
+    }
+
+    // 私有方法：建立快照訊框 {"symbol", "lastUpdateId", "bids", "asks"} (depth 為 null 時只有 symbol)
+    private static Set<DataWithMediaType> snapshotFrame(String symbolId, DepthSnapshot depth) {
+        StringBuilder json = new StringBuilder(1024).append("{\"symbol\":\"").append(symbolId).append('"');
+        if (depth != null) {
+            json.append(",\"lastUpdateId\":").append(depth.getUpdateId()).append(',');
+            depth.appendLevels(json, 0);
+        }
+        return frame("snapshot", json.append('}'));
+    }
+
+    // 私有方法：將事件序列化為完整的 SSE 訊框 (event + data)，所有訂閱者共用同一份位元組
+    private static Set<DataWithMediaType> frame(String event, CharSequence data) {
+        return frame("event:" + event + "\ndata:" + data + "\n\n");
+    }
+
+    private static Set<DataWithMediaType> frame(String text) {
+        return Set.of(new DataWithMediaType(text.getBytes(StandardCharsets.UTF_8), MediaType.TEXT_PLAIN));
+    }
+
+    private void remove(Subscriber subscriber) {
+        List<Subscriber> list = subscribers.get(subscriber.symbolId);
+        if (list == null || !list.remove(subscriber)) return;
+        try {
+            subscriber.emitter.complete();
+        } catch (RuntimeException ignored) {
+            // 連線已失效，無需處理
+        }
+    }
+
+    private static long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // 一個 SSE 連線的訂閱內容
+    private static final class Subscriber {
+        final String symbolId;
+        final SseEmitter emitter;
+        final Set<String> channels;
+        final Timeframe interval;
+
+        // 快照放入佇列後才為 true (只由推播執行緒讀寫)
+        boolean active;
+
+        // 待寫出的訊框 (推播執行緒放入，寫出執行緒取出)
+        final BlockingQueue<Set<DataWithMediaType>> pending = new ArrayBlockingQueue<>(SESSION_CAPACITY);
+
+        // 是否已有寫出執行緒在處理此訂閱者
+        final AtomicBoolean writing = new AtomicBoolean();
+
+        Subscriber(String symbolId, SseEmitter emitter, Set<String> channels, Timeframe interval) {
+            this.symbolId = symbolId;
+            this.emitter = emitter;
+            this.channels = channels;
+            this.interval = interval;
+        }
+
+        boolean accepts(Delivery delivery) {
+            if (!channels.contains(delivery.channel())) return false;
+            return delivery.interval() == null || delivery.interval() == interval;
+        }
+    }
+
+    // 單一交易對的串流狀態 (序列器執行緒專用)
+    private static final class SymbolStream {
+        final String symbolId;
+
+        // 上一次推播 (或訂閱快照) 所依據的深度快照，差異以此為基準
+        DepthSnapshot lastDepth;
+
+        // 最後一則已送出的深度差異 (或訂閱快照) 的 lastUpdateId
+        long lastSentUpdateId;
+
+        // 成交與各週期 K 線的序號
+        long tradeSeq;
+        final Map<Timeframe, Long> klineSeq = new EnumMap<>(Timeframe.class);
+
+        // 本批次的成交
+        final List<Trade> trades = new ArrayList<>();
+
+        SymbolStream(String symbolId) {
+            this.symbolId = symbolId;
+        }
+    }
+
+    // 一則待推播的訊息 (已序列化的訊框)：target 不為 null 時只送給該訂閱者；symbolId 為 null 時為心跳
+    private record Delivery(String symbolId, String channel, Timeframe interval, Set<DataWithMediaType> frame,
+                            Subscriber target) {
+    }
+
+    // 某個深度版本的快照訊框
+    private record ResyncFrame(DepthSnapshot depth, Set<DataWithMediaType> frame) {
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 以批次為單位推播 (Batch Publishing):
+      撮合期間只把成交加入暫存清單，不產生任何訊息；批次結束時每個頻道最多產生一則訊息 (K 線為每個時間桶一則)。
+      大量撮合時多筆變動會合併成一則深度差異，推播量與指令批次數成正比，而不是與成交筆數成正比。
+      沒有訂閱者的交易對完全不做任何工作。
+
+[註2] 快照與增量的銜接 (Snapshot Handoff):
+      register 在序列器執行緒中執行，快照取自與差異相同的基準 (lastDepth)，並與差異排入同一個推播佇列，
+      因此快照之後收到的第一則深度差異必定滿足 firstUpdateId <= 快照 lastUpdateId + 1 <= lastUpdateId。
+      訂閱者在快照實際送出前不接收增量訊息，避免收到早於快照的差異。
+
+[註3] K 線增量 (Kline Update):
+      推播的是「本批次」在該時間桶內的開高低收，而不是完整的 K 線，伺服器不需要保存任何 K 線狀態；
+      客戶端將其合併到畫面上的最後一根 K 線 (同一時間桶) 或新增一根 (新的時間桶)。
+      合併規則 (取最大、最小與最新收盤) 重複套用也不會改變結果。
+
+[註4] 缺漏偵測與重新同步 (Gap Detection & Resync):
+      客戶端記錄已套用的最後一個 Update ID (last)。收到差異時：
+      1. lastUpdateId <= last：舊訊息，丟棄。
+      2. firstUpdateId > last + 1：中間有缺漏 (例如推播佇列滿而丟棄訊息)，需要重新同步。
+      3. 其餘情況套用差異，並將 last 設為 lastUpdateId。
+      重新同步時不需斷線：先暫存之後收到的差異，向 GET /api/orders/book/{symbol}?depth=full 取得帶 lastUpdateId 的快照，
+      以同樣規則套用暫存的差異即可；若快照早於暫存的第一則差異 (firstUpdateId > 快照版本 + 1)，稍後再取一次。
+
+[註5] 扇出與合併 (Fan-out & Conflation):
+      早期版本由推播執行緒直接呼叫 emitter.send 寫給每個連線，一個網路緩慢的瀏覽器會卡住所有人的推播，
+      且每次寫出都重新組成 SSE 事件。現在每則訊息在產生時就序列化為完整的 SSE 訊框位元組，
+      推播執行緒只把同一份位元組放入每個訂閱者的有界佇列 (每個訂閱者 O(1))，實際寫出由各自的虛擬執行緒負責，
+      阻塞在網路寫入的只有該連線自己的執行緒。
+      佇列滿 (連線持續跟不上) 時不等待也不擴大佇列：丟棄積壓的訊息，改放一份目前的深度快照，
+      客戶端收到 snapshot 事件後重建訂單簿，等同於把積壓的所有深度差異合併成一份快照。
+      快照取自已發布的深度，同一版本只序列化一次，多個慢速連線共用；積壓中被丟棄的成交與 K 線增量不補送。
+*/
@@ -57,6 +57,22 @@ public class Candle {
     @Column(name = "close_time")
     private LocalDateTime closeTime;
 
+    // 成交量 (基礎幣數量)
+    @Column(precision = 36, scale = 18)
+    private BigDecimal volume;
+
+    // 成交額 (計價幣金額，Σ 價格 × 數量)
+    @Column(name = "quote_volume", precision = 36, scale = 18)
+    private BigDecimal quoteVolume;
+
+    // 成交筆數
+    @Column(name = "trade_count")
+    private Long tradeCount;
+
+    // 主動買入成交量 (Taker 為買方的成交數量)
+    @Column(name = "taker_buy_volume", precision = 36, scale = 18)
+    private BigDecimal takerBuyVolume;
+
     public Candle() {
     }
 
@@ -125,4 +141,36 @@ public class Candle {
     public void setCloseTime(LocalDateTime closeTime) {
         this.closeTime = closeTime;
     }
+
+    public BigDecimal getVolume() {
+        return volume;
+    }
+
+    public void setVolume(BigDecimal volume) {
+        this.volume = volume;
+    }
+
+    public BigDecimal getQuoteVolume() {
+        return quoteVolume;
+    }
+
+    public void setQuoteVolume(BigDecimal quoteVolume) {
+        this.quoteVolume = quoteVolume;
+    }
+
+    public Long getTradeCount() {
+        return tradeCount;
+    }
+
+    public void setTradeCount(Long tradeCount) {
+        this.tradeCount = tradeCount;
+    }
+
+    public BigDecimal getTakerBuyVolume() {
+        return takerBuyVolume;
+    }
+
+    public void setTakerBuyVolume(BigDecimal takerBuyVolume) {
+        this.takerBuyVolume = takerBuyVolume;
+    }
 }
\ No newline at end of file
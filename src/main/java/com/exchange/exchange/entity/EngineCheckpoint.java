@@ -0,0 +1,46 @@
+package com.exchange.exchange.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+// ====== 檔案總結 ======
+// EngineCheckpoint 實體類別對應 `engine_checkpoints` 表。
+// 記錄每個交易對「已完整寫入資料庫」的最後一筆指令序號 (Journal Sequence)。
+// 此欄位由寫回管線 (BatchPersister) 與撮合結果在同一個交易中更新，
+// 重啟時只需重播序號大於此值的指令日誌即可恢復狀態。
+@Entity
+@Table(name = "engine_checkpoints")
+public class EngineCheckpoint {
+
+    // 交易對代碼 (Primary Key)
+    @Id
+    @Column(name = "symbolID", length = 45)
+    private String symbolId;
+
+    // 已寫入資料庫的最後一筆指令序號
+    @Column(name = "last_sequence")
+    private Long lastSequence;
+
+    public EngineCheckpoint() {
+    }
+
+    // --- Getters & Setters ---
+
+    public String getSymbolId() {
+        return symbolId;
+    }
+
+    public void setSymbolId(String symbolId) {
+        this.symbolId = symbolId;
+    }
+
+    public Long getLastSequence() {
+        return lastSequence;
+    }
+
+    public void setLastSequence(Long lastSequence) {
+        this.lastSequence = lastSequence;
+    }
+}
@@ -0,0 +1,118 @@
+package com.exchange.exchange.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.exchange.exchange.enums.OrderSide;
+import com.exchange.exchange.enums.TradeType;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+// ====== 檔案總結 ======
+// MemberFill 實體類別對應 `member_fills` 表：以「會員視角」反正規化 (Denormalized) 的成交明細。
+// 每筆成交 (Trade) 寫入兩列：Taker 一列、Maker 一列 (自成交時同一會員兩列)，由寫回管線與成交紀錄同批寫入。
+// 查詢會員成交歷史時不再需要 JOIN orders，直接沿 (member_id, executed_at, id) 或
+// (member_id, symbol_id, executed_at, id) 索引做游標分頁 [註1]。
+@Entity
+@Table(name = "member_fills", indexes = {
+        @Index(name = "idx_member_fills_member_time", columnList = "member_id, executed_at, id"),
+        @Index(name = "idx_member_fills_member_symbol_time", columnList = "member_id, symbol_id, executed_at, id")
+})
+public class MemberFill {
+
+    // 流水號 (Primary Key)，同時作為同一時間多筆成交的分頁決勝條件
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // 會員 ID
+    @Column(name = "member_id", nullable = false)
+    private Integer memberId;
+
+    // 對應的成交紀錄 (trades.tradesID)
+    @Column(name = "trade_id", nullable = false)
+    private Integer tradeId;
+
+    // 交易對代碼
+    @Column(name = "symbol_id", length = 45, nullable = false)
+    private String symbolId;
+
+    // 該會員在這筆成交中的方向 (Maker 的方向與 Taker 相反)
+    @Column(length = 10, columnDefinition = "enum('buy','sell') COLLATE utf8mb3_bin")
+    private OrderSide side;
+
+    // 角色 (TAKER / MAKER)
+    @Column(length = 10)
+    private String role;
+
+    // 成交價格與數量
+    @Column(precision = 36, scale = 18)
+    private BigDecimal price;
+
+    @Column(precision = 36, scale = 18)
+    private BigDecimal quantity;
+
+    // 交易模式 (SPOT/CONTRACT)
+    @Column(name = "trade_type", length = 10, columnDefinition = "enum('spot','contract') COLLATE utf8mb3_bin")
+    private TradeType tradeType;
+
+    // 成交時間
+    @Column(name = "executed_at", nullable = false)
+    private LocalDateTime executedAt;
+
+    public MemberFill() {}
+
+    // --- Getters & Setters ---
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Integer getMemberId() { return memberId; }
+    public void setMemberId(Integer memberId) { this.memberId = memberId; }
+
+    public Integer getTradeId() { return tradeId; }
+    public void setTradeId(Integer tradeId) { this.tradeId = tradeId; }
+
+    public String getSymbolId() { return symbolId; }
+    public void setSymbolId(String symbolId) { this.symbolId = symbolId; }
+
+    public OrderSide getSide() { return side; }
+    public void setSide(OrderSide side) { this.side = side; }
+
+    public String getRole() { return role; }
+    public void setRole(String role) { this.role = role; }
+
+    public BigDecimal getPrice() { return price; }
+    public void setPrice(BigDecimal price) { this.price = price; }
+
+    public BigDecimal getQuantity() { return quantity; }
+    public void setQuantity(BigDecimal quantity) { this.quantity = quantity; }
+
+    public TradeType getTradeType() { return tradeType; }
+    public void setTradeType(TradeType tradeType) { this.tradeType = tradeType; }
+
+    public LocalDateTime getExecutedAt() { return executedAt; }
+    public void setExecutedAt(LocalDateTime executedAt) { this.executedAt = executedAt; }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 為何反正規化 (Why Denormalize):
+      早期的成交歷史查詢把 trades 與 orders 連接兩次，並以 OR 判斷會員是 Taker 或 Maker，
+      無法使用索引，也沒有 LIMIT；造市機器人帳號每次查詢都會回傳數百萬列。
+      以空間換時間：每筆成交多寫兩列，查詢變成單一索引範圍掃描。
+      既有資料可用下列語句一次回補 (Backfill)：
+        INSERT INTO member_fills (member_id, trade_id, symbol_id, side, role, price, quantity, trade_type, executed_at)
+        SELECT o.memberID, t.tradesID, t.symbolID, t.taker_side, 'TAKER', t.price, t.quantity, t.trade_type, t.executed_at
+          FROM trades t JOIN orders o ON o.orderID = t.taker_orderID
+        UNION ALL
+        SELECT o.memberID, t.tradesID, t.symbolID, IF(t.taker_side = 'buy', 'sell', 'buy'), 'MAKER', t.price, t.quantity,
+               t.trade_type, t.executed_at
+          FROM trades t JOIN orders o ON o.orderID = t.maker_orderID;
+*/
@@ -13,6 +13,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 
 // ====== 檔案總結 ======
@@ -21,8 +22,11 @@ import jakarta.persistence.Table;
 // 1. 記錄使用者的委託單詳情 (價格、數量、方向)。
 // 2. 追蹤訂單生命週期 (新建 -> 部分成交 -> 完全成交/取消)。
 // 3. 紀錄成交進度 (filledQuantity, cumQuoteQty)。
+// 歷史委託查詢沿 (memberID, status, created_at, orderID) 索引做游標分頁 (見 OrderRepository.findHistoryPage)。
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_member_status_time", columnList = "memberID, status, created_at, orderID")
+})
 public class Order {
 
     // 訂單唯一識別碼 (Primary Key)，由資料庫自動遞增
@@ -9,6 +9,7 @@ import jakarta.persistence.Table;
 // Symbol 實體類別對應 `symbols` 表。
 // 定義交易所支援的交易對 (Trading Pair)，例如 BTC/USDT。
 // 關聯兩個幣種：基礎幣 (Base Coin) 與 報價幣 (Quote Coin)。
+// 另定義價格與數量的小數位數 (Tick / Lot)，撮合引擎據此將價格與數量換算為整數運算 [註1]。
 @Entity
 @Table(name = "symbols")
 public class Symbol {
@@ -30,6 +31,18 @@ public class Symbol {
     @Column(name = "quote_coinID", length = 45)
     private String quoteCoinId;
 
+    // 價格小數位數：最小跳動單位 (Tick Size) = 10^-priceScale，例如 2 代表 0.01
+    @Column(name = "price_scale", columnDefinition = "int default 4")
+    private Integer priceScale;
+
+    // 數量小數位數：最小交易單位 (Lot Size) = 10^-quantityScale，例如 6 代表 0.000001
+    @Column(name = "quantity_scale", columnDefinition = "int default 6")
+    private Integer quantityScale;
+
+    // 未設定時的預設小數位數 (舊資料相容)
+    public static final int DEFAULT_PRICE_SCALE = 4;
+    public static final int DEFAULT_QUANTITY_SCALE = 6;
+
     public Symbol() {
     }
 
@@ -66,4 +79,27 @@ public class Symbol {
     public void setQuoteCoinId(String quoteCoinId) {
         this.quoteCoinId = quoteCoinId;
     }
-}
\ No newline at end of file
+
+    public Integer getPriceScale() {
+        return priceScale != null ? priceScale : DEFAULT_PRICE_SCALE;
+    }
+
+    public void setPriceScale(Integer priceScale) {
+        this.priceScale = priceScale;
+    }
+
+    public Integer getQuantityScale() {
+        return quantityScale != null ? quantityScale : DEFAULT_QUANTITY_SCALE;
+    }
+
+    public void setQuantityScale(Integer quantityScale) {
+        this.quantityScale = quantityScale;
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 定點數 (Fixed-Point):
+      撮合引擎以 long 表示「幾個 Tick」與「幾個 Lot」，成交金額則為兩者相乘 (小數位數 = priceScale + quantityScale)。
+      兩者相加不宜過大，否則成交金額可能超出 long 範圍：以預設 4 + 6 位為例，單筆成交金額上限約 9.2 億報價幣。
+*/
@@ -10,14 +10,18 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 
 // ====== 檔案總結 ======
 // Trade 實體類別對應 `trades` 表。
 // 職責：記錄撮合引擎成功匹配的每一筆交易。
 // 每一筆 Trade 必然連結兩個 Order：一個 Taker (主動單) 和一個 Maker (被動單)。
+// (symbolID, executed_at, tradesID) 索引供 K 線重建 (CandleBackfill) 依時間順序串流讀取。
 @Entity
-@Table(name = "trades")
+@Table(name = "trades", indexes = {
+        @Index(name = "idx_trades_symbol_time", columnList = "symbolID, executed_at, tradesID")
+})
 public class Trade {
 
     // 成交流水號 (Primary Key)
@@ -3,6 +3,8 @@ package com.exchange.exchange.entity;
 // 引入複合主鍵類別
 import java.math.BigDecimal;
 
+import org.hibernate.annotations.DynamicUpdate;
+
 import com.exchange.exchange.entity.key.WalletId;
 
 import jakarta.persistence.Column;
@@ -10,6 +12,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.IdClass;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
 // ====== 檔案總結 ======
 // Wallet 實體類別對應資料庫中的 `wallets` 表。
@@ -21,6 +24,7 @@ import jakarta.persistence.Table;
 @Entity
 @Table(name = "wallets")
 @IdClass(WalletId.class) // 指定使用 WalletId 作為複合主鍵類別
+@DynamicUpdate // 只更新有變動的欄位，避免覆蓋批次寫入的 balance 差額
 public class Wallet {
 
     // 複合主鍵部分 1：會員 ID
@@ -43,6 +47,12 @@ public class Wallet {
     @Column(precision = 36, scale = 18)
     private BigDecimal available;
 
+    // 版本號 (Optimistic Locking)：每次更新加一
+    // 原生的相對更新語句 (WalletRepository / BatchPersister) 也會一併遞增，以版本號更新實體時可偵測到並發修改
+    @Version
+    @Column(name = "version", columnDefinition = "bigint NOT NULL DEFAULT 0")
+    private Long version;
+
     // JPA 規範要求的無參數建構子
     public Wallet() {
     }
@@ -80,4 +90,12 @@ public class Wallet {
     public void setAvailable(BigDecimal available) {
         this.available = available;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
\ No newline at end of file
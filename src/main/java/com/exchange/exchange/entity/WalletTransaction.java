@@ -8,14 +8,17 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 
 // ====== 檔案總結 ======
 // WalletTransaction 實體類別對應 `wallet_transactions` 表。
 // 用於紀錄所有錢包餘額變動的歷史流水 (Audit Log)。
 // 每一筆資金的增加或減少都必須在此產生一條紀錄，以供對帳與查詢。
+// 資料表依 created_at 按月分區 (見 SQL.sql 與 PartitionMaintainer)，查詢以 (member_id, created_at, id) 索引做游標分頁。
 @Entity
-@Table(name = "wallet_transactions")
+@Table(name = "wallet_transactions",
+       indexes = @Index(name = "idx_wallet_tx_member_time", columnList = "member_id, created_at, id"))
 public class WalletTransaction {
 
     // 流水號 ID (Primary Key)
@@ -41,7 +44,7 @@ public class WalletTransaction {
     private BigDecimal amount;
 
     // 發生時間
-    @Column(name = "created_at")
+    @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
     public WalletTransaction() {}
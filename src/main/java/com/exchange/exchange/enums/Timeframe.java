@@ -1,9 +1,13 @@
 package com.exchange.exchange.enums;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
 // ====== 檔案總結 ======
 // Timeframe 枚舉定義了 K 線圖 (Candlestick) 的時間粒度。
 // 用於指定一根 K 線代表多長的時間區間。
 // 由於 Java 變數名稱不能以數字開頭，因此使用底線前綴 (如 _1m)。
+// 同時提供時間分桶 (openTimeOf / closeTimeOf) 的計算，供 K 線更新使用。
 public enum Timeframe {
     _1D("1D"),   // 日線 (1 Day)
     _1H("1H"),   // 小時線 (1 Hour)
@@ -24,4 +28,49 @@ public enum Timeframe {
     public String getValue() {
         return value;
     }
+
+    // 由 API 使用的週期字串 (如 "1m", "1h") 解析，不支援的週期拋出 IllegalArgumentException
+    public static Timeframe of(String interval) {
+        return switch (interval) {
+            case "1m" -> _1m;
+            case "5m" -> _5m;
+            case "15m" -> _15m;
+            case "30m" -> _30m;
+            case "1h", "1H" -> _1H; // 注意枚舉命名是大寫 H
+            case "1d", "1D" -> _1D; // 注意枚舉命名是大寫 D
+            default -> valueOf(interval);
+        };
+    }
+
+    // 將時間截斷至該週期的起始點 (Time Truncation)
+    // 例如 10:07:30 在 5m 週期屬於 10:05:00 的 K 線
+    public LocalDateTime openTimeOf(LocalDateTime time) {
+        return switch (this) {
+            case _1m -> time.truncatedTo(ChronoUnit.MINUTES);
+            case _5m, _15m, _30m -> {
+                // 將分鐘數正規化為週期長度的倍數
+                int minutes = (int) minutes();
+                yield time.truncatedTo(ChronoUnit.HOURS).plusMinutes(time.getMinute() / minutes * minutes);
+            }
+            case _1H -> time.truncatedTo(ChronoUnit.HOURS);
+            case _1D -> time.truncatedTo(ChronoUnit.DAYS);
+        };
+    }
+
+    // 計算該週期 K 線的結束時間 (開盤時間 + 週期長度 - 1 秒)
+    public LocalDateTime closeTimeOf(LocalDateTime openTime) {
+        return openTime.plusMinutes(minutes()).minusSeconds(1);
+    }
+
+    // 週期長度 (分鐘)
+    public long minutes() {
+        return switch (this) {
+            case _1m -> 1;
+            case _5m -> 5;
+            case _15m -> 15;
+            case _30m -> 30;
+            case _1H -> 60;
+            case _1D -> 1440;
+        };
+    }
 }
\ No newline at end of file
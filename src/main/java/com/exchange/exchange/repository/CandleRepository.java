@@ -1,9 +1,11 @@
 package com.exchange.exchange.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.exchange.exchange.entity.Candle;
@@ -19,4 +21,9 @@ public interface CandleRepository extends JpaRepository<Candle, CandleId> {
     // 查詢特定交易對、特定週期的 K 線列表
     // 依照開盤時間倒序排列 (最新的在前)，配合 Pageable 取出最近 N 根
     List<Candle> findBySymbolIdAndTimeframeOrderByOpenTimeDesc(String symbolId, Timeframe timeframe, Pageable pageable);
+
+    // 查詢開盤時間在 [from, to) 之間的 K 線，倒序排列，配合 Pageable 取出最接近 to 的 N 根 (記憶體以外的歷史)
+    @Query("SELECT c FROM Candle c WHERE c.symbolId = :symbolId AND c.timeframe = :timeframe " +
+           "AND c.openTime >= :from AND c.openTime < :to ORDER BY c.openTime DESC")
+    List<Candle> findRange(String symbolId, Timeframe timeframe, LocalDateTime from, LocalDateTime to, Pageable pageable);
 }
\ No newline at end of file
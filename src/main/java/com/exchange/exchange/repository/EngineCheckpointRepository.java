@@ -0,0 +1,13 @@
+package com.exchange.exchange.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.exchange.exchange.entity.EngineCheckpoint;
+
+// ====== 檔案總結 ======
+// EngineCheckpointRepository 負責讀取 `engine_checkpoints` 表。
+// 寫入由 BatchPersister 以 JDBC 批次完成，此介面僅供啟動恢復時查詢各交易對的檢查點。
+@Repository
+public interface EngineCheckpointRepository extends JpaRepository<EngineCheckpoint, String> {
+}
@@ -0,0 +1,36 @@
+package com.exchange.exchange.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.exchange.exchange.entity.MemberFill;
+
+// ====== 檔案總結 ======
+// MemberFillRepository 負責查詢 `member_fills` 表 (會員視角的成交明細)。
+// 以 (executed_at, id) 游標倒序分頁；指定與未指定交易對各為一個查詢，分別對應各自的複合索引。
+@Repository
+public interface MemberFillRepository extends JpaRepository<MemberFill, Long> {
+
+    // 查詢游標 (beforeTime, beforeId) 之前、且位於 [from, to) 時間範圍內的一頁成交 (所有交易對)
+    // 第一頁以 (to, 0) 作為游標；沿 (member_id, executed_at, id) 索引倒序讀取 limit 筆
+    @Query(value = "SELECT * FROM member_fills WHERE member_id = :memberId "
+            + "AND executed_at >= :from AND (executed_at, id) < (:beforeTime, :beforeId) "
+            + "ORDER BY executed_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<MemberFill> findPage(@Param("memberId") Integer memberId,
+                              @Param("from") LocalDateTime from, @Param("beforeTime") LocalDateTime beforeTime,
+                              @Param("beforeId") long beforeId, @Param("limit") int limit);
+
+    // 同上，限定單一交易對；沿 (member_id, symbol_id, executed_at, id) 索引倒序讀取
+    // 不使用 (:symbolId IS NULL OR ...) 合併為一個查詢：預備語句的執行計畫無法依參數值化簡，會放棄交易對索引
+    @Query(value = "SELECT * FROM member_fills WHERE member_id = :memberId AND symbol_id = :symbolId "
+            + "AND executed_at >= :from AND (executed_at, id) < (:beforeTime, :beforeId) "
+            + "ORDER BY executed_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<MemberFill> findPageBySymbol(@Param("memberId") Integer memberId, @Param("symbolId") String symbolId,
+                                      @Param("from") LocalDateTime from, @Param("beforeTime") LocalDateTime beforeTime,
+                                      @Param("beforeId") long beforeId, @Param("limit") int limit);
+}
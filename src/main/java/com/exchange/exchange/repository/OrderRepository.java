@@ -1,70 +1,54 @@
 package com.exchange.exchange.repository;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import com.exchange.exchange.dto.OrderBookDTO;
 import com.exchange.exchange.entity.Order;
-import com.exchange.exchange.enums.OrderSide;
 import com.exchange.exchange.enums.OrderStatus;
+import com.exchange.exchange.enums.OrderType;
 
 // ====== 檔案總結 ======
 // OrderRepository 負責與資料庫中的 `orders` 表進行交互。
 // 核心功能：
-// 1. 撮合查詢：提供「買單找賣單」與「賣單找買單」的查詢邏輯。
-// 2. 訂單簿聚合：提供計算買賣盤深度 (Group by Price) 的查詢。
+// 1. 訂單簿重建：提供啟動時載入所有活躍掛單的查詢 (撮合與深度聚合皆已移至記憶體訂單簿)。
+// 2. 歷史委託：依單一狀態以 (created_at, orderID) 游標倒序分頁 (掛單中的訂單由記憶體訂單簿提供)。
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Integer> {
     
-    // 查詢特定會員的歷史訂單，按建立時間倒序
-    List<Order> findByMemberIdOrderByCreatedAtDesc(Integer memberId);
-
-    // === 撮合核心邏輯 (Matching Engine Queries) ===
-
-    // 尋找「賣單」來匹配使用者的「買單」 (Buy Taker -> Sell Makers)
-    // 條件：同幣對、同類型、狀態活躍、且賣價 <= 我的買價 (願意低賣)
-    // 排序：價格由低到高 (最便宜的優先吃)，時間由早到晚 (先到先得)
-    @Query("SELECT o FROM Order o WHERE o.symbolId = :symbolId AND o.side = :side " +
-           "AND o.tradeType = :tradeType " +
-           "AND o.status IN :statuses " +
-           "AND o.price <= :priceLimit " +
-           "AND o.memberId <> :takerMemberId " +
-           "ORDER BY o.price ASC, o.createdAt ASC")
-    List<Order> findMatchingSellOrders(String symbolId, OrderSide side, com.exchange.exchange.enums.TradeType tradeType, List<OrderStatus> statuses, BigDecimal priceLimit, Integer takerMemberId);
-
-    // 尋找「買單」來匹配使用者的「賣單」 (Sell Taker -> Buy Makers)
-    // 條件：同幣對、同類型、狀態活躍、且買價 >= 我的賣價 (願意高買)
-    // 排序：價格由高到低 (最貴的優先吃)，時間由早到晚
-    @Query("SELECT o FROM Order o WHERE o.symbolId = :symbolId AND o.side = :side " +
-           "AND o.tradeType = :tradeType " +
-           "AND o.status IN :statuses " +
-           "AND o.price >= :priceLimit " +
-           "AND o.memberId <> :takerMemberId " +
-           "ORDER BY o.price DESC, o.createdAt ASC")
-    List<Order> findMatchingBuyOrders(String symbolId, OrderSide side, com.exchange.exchange.enums.TradeType tradeType, List<OrderStatus> statuses, BigDecimal priceLimit, Integer takerMemberId);
-
-    // === 訂單簿聚合邏輯 (Order Book Aggregation) ===
-
-    // 查詢買盤 (Bids)
-    // 邏輯：將活躍買單按價格分組，加總剩餘數量，按價格降序排列 (高價在前)
-    @Query("SELECT new com.exchange.exchange.dto.OrderBookDTO$Entry(o.price, SUM(o.quantity - o.filledQuantity)) " +
-           "FROM Order o " +
-           "WHERE o.symbolId = :symbolId AND o.side = :side AND o.tradeType = :tradeType AND o.status IN :statuses " +
-           "GROUP BY o.price " +
-           "ORDER BY o.price DESC")
-    List<OrderBookDTO.Entry> findOrderBookBids(String symbolId, OrderSide side, com.exchange.exchange.enums.TradeType tradeType, List<OrderStatus> statuses, Pageable pageable);
-
-    // 查詢賣盤 (Asks)
-    // 邏輯：將活躍賣單按價格分組，加總剩餘數量，按價格升序排列 (低價在前)
-    @Query("SELECT new com.exchange.exchange.dto.OrderBookDTO$Entry(o.price, SUM(o.quantity - o.filledQuantity)) " +
-           "FROM Order o " +
-           "WHERE o.symbolId = :symbolId AND o.side = :side AND o.tradeType = :tradeType AND o.status IN :statuses " +
-           "GROUP BY o.price " +
-           "ORDER BY o.price ASC")
-    List<OrderBookDTO.Entry> findOrderBookAsks(String symbolId, OrderSide side, com.exchange.exchange.enums.TradeType tradeType, List<OrderStatus> statuses, Pageable pageable);
-}
\ No newline at end of file
+    // 查詢特定會員某一狀態、游標 (beforeTime, beforeId) 之前的一頁訂單
+    // 沿 (memberID, status, created_at, orderID) 索引倒序讀取 limit 筆；symbolId 為 null 時不限交易對
+    // status 以資料庫中的小寫值傳入 (OrderStatus.toString)
+    @Query(value = "SELECT * FROM orders WHERE memberID = :memberId AND status = :status "
+            + "AND (:symbolId IS NULL OR symbolID = :symbolId) "
+            + "AND (created_at, orderID) < (:beforeTime, :beforeId) "
+            + "ORDER BY created_at DESC, orderID DESC LIMIT :limit", nativeQuery = true)
+    List<Order> findHistoryPage(@Param("memberId") Integer memberId, @Param("status") String status,
+                                @Param("symbolId") String symbolId, @Param("beforeTime") LocalDateTime beforeTime,
+                                @Param("beforeId") long beforeId, @Param("limit") int limit);
+
+    // === 訂單簿重建 (Order Book Rebuild) ===
+
+    // 查詢所有仍在掛單中的訂單，用於啟動時重建記憶體訂單簿
+    // 條件：狀態活躍、指定訂單類型 (限價單)、且具有交易模式 (排除舊資料)
+    // 排序：建立時間由早到晚，確保同價位的時間優先順序
+    @Query("SELECT o FROM Order o WHERE o.status IN :statuses AND o.type = :type " +
+           "AND o.tradeType IS NOT NULL " +
+           "ORDER BY o.createdAt ASC, o.orderId ASC")
+    List<Order> findAllRestingOrders(List<OrderStatus> statuses, OrderType type);
+
+    // 查詢單一交易對 (與交易模式) 仍在掛單中的訂單，用於重新載入單一訂單簿
+    @Query("SELECT o FROM Order o WHERE o.symbolId = :symbolId AND o.tradeType = :tradeType " +
+           "AND o.status IN :statuses AND o.type = :type " +
+           "ORDER BY o.createdAt ASC, o.orderId ASC")
+    List<Order> findRestingOrders(String symbolId, com.exchange.exchange.enums.TradeType tradeType, List<OrderStatus> statuses, OrderType type);
+
+    // 查詢所有活躍狀態的訂單 (限價與市價)，用於由快照重啟時找出已受理但未寫入日誌的訂單
+    @Query("SELECT o FROM Order o WHERE o.status IN :statuses AND o.tradeType IS NOT NULL " +
+           "ORDER BY o.createdAt ASC, o.orderId ASC")
+    List<Order> findActiveOrders(List<OrderStatus> statuses);
+}
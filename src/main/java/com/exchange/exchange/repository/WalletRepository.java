@@ -1,8 +1,12 @@
 package com.exchange.exchange.repository;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.exchange.exchange.entity.Wallet;
@@ -17,4 +21,22 @@ public interface WalletRepository extends JpaRepository<Wallet, WalletId> {
     // 查詢特定會員名下的所有錢包
     // Spring Data JPA 會自動解析方法名稱生成 SQL
     List<Wallet> findByMemberId(Integer memberId);
-}
\ No newline at end of file
+
+    // 以相對差額更新錢包 (不先讀取)，錢包不存在時直接建立；與寫回管線的錢包差額使用相同語句
+    @Modifying
+    @Query(value = "INSERT INTO wallets (memberID, coinID, balance, available) VALUES (:memberId, :coinId, :balance, :available) "
+            + "ON DUPLICATE KEY UPDATE balance = balance + VALUES(balance), available = available + VALUES(available), "
+            + "version = version + 1",
+            nativeQuery = true)
+    int addDelta(@Param("memberId") Integer memberId, @Param("coinId") String coinId,
+                 @Param("balance") BigDecimal balanceDelta, @Param("available") BigDecimal availableDelta);
+
+    // 條件式凍結：可用餘額足夠時才扣除，檢查與扣除在同一條 UPDATE 中原子完成 (不需先讀取、不持有悲觀鎖)
+    // 回傳受影響筆數，0 代表可用餘額不足 (或錢包尚未建立)
+    @Modifying
+    @Query(value = "UPDATE wallets SET available = available - :amount, version = version + 1 "
+            + "WHERE memberID = :memberId AND coinID = :coinId AND available >= :amount",
+            nativeQuery = true)
+    int freezeIfAvailable(@Param("memberId") Integer memberId, @Param("coinId") String coinId,
+                          @Param("amount") BigDecimal amount);
+}
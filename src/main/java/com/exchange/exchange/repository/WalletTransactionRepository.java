@@ -1,16 +1,30 @@
 package com.exchange.exchange.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.exchange.exchange.entity.WalletTransaction;
 
 // ====== 檔案總結 ======
 // WalletTransactionRepository 負責對 `wallet_transactions` 表進行查詢。
 // 提供使用者查詢資產變動明細的功能。
+// 查詢一律以 (created_at, id) 游標分頁 (Keyset Pagination)，沿 (member_id, created_at, id) 索引倒序讀取，
+// 不論歷史紀錄多長，每頁都只掃描 limit 筆。
 public interface WalletTransactionRepository extends JpaRepository<WalletTransaction, Long> {
-    
-    // 查詢會員的所有資金流水，按時間倒序排列
-    List<WalletTransaction> findByMemberIdOrderByCreatedAtDesc(Integer memberId);
-}
\ No newline at end of file
+
+    // 查詢會員最新的一頁資金流水 (第一頁)
+    @Query(value = "SELECT * FROM wallet_transactions WHERE member_id = :memberId "
+            + "ORDER BY created_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<WalletTransaction> findLatest(@Param("memberId") Integer memberId, @Param("limit") int limit);
+
+    // 查詢游標 (createdAt, id) 之前 (較舊) 的一頁資金流水
+    @Query(value = "SELECT * FROM wallet_transactions WHERE member_id = :memberId "
+            + "AND (created_at, id) < (:createdAt, :id) "
+            + "ORDER BY created_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<WalletTransaction> findBefore(@Param("memberId") Integer memberId, @Param("createdAt") LocalDateTime createdAt,
+                                       @Param("id") long id, @Param("limit") int limit);
+}
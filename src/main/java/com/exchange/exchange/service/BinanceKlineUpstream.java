@@ -0,0 +1,31 @@
+package com.exchange.exchange.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+// ====== 檔案總結 ======
+// BinanceKlineUpstream 向 Binance 的 /api/v3/klines 取得 K 線，回應以原始位元組回傳 (不轉為物件再序列化)。
+// 基底網址可由 exchange.binance.base-url 設定，指向本地的替身伺服器即可在不連外的環境測試。
+@Component
+public class BinanceKlineUpstream implements KlineUpstream {
+
+    // 每次取得的 K 線根數 (Binance 的上限)
+    private static final int LIMIT = 1000;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Value("${exchange.binance.base-url:https://api.binance.com}")
+    private String baseUrl;
+
+    @Override
+    public byte[] fetch(String symbol, String interval) {
+        // 建構 Binance API URL (symbol / interval 已由 KlineProxyService 驗證)
+        String url = baseUrl + "/api/v3/klines?symbol=" + symbol + "&interval=" + interval + "&limit=" + LIMIT;
+        byte[] body = restTemplate.getForObject(url, byte[].class);
+        if (body == null) throw new IllegalStateException("Empty response from Binance");
+        return body;
+    }
+}
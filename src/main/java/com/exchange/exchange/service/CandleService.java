@@ -1,13 +1,16 @@
 package com.exchange.exchange.service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import com.exchange.exchange.engine.candle.CandleAggregator;
+import com.exchange.exchange.engine.candle.CandleBackfill;
 import com.exchange.exchange.entity.Candle;
 import com.exchange.exchange.enums.Timeframe;
 import com.exchange.exchange.repository.CandleRepository;
@@ -15,40 +18,89 @@ import com.exchange.exchange.repository.CandleRepository;
 // ====== 檔案總結 ======
 // CandleService 負責提供 K 線圖 (Candlestick Chart) 所需的數據。
 // 主要功能是將前端傳來的字串週期 (如 "1h") 轉換為枚舉，並查詢資料庫。
+// 資料庫中的 K 線由 CandleAggregator 定時寫入，查詢時再合併記憶體中尚未寫入的 K 線 [註1]。
+// 最近的 K 線直接由 CandleAggregator 的記憶體 K 線回答，只有更舊的歷史才查詢資料庫 [註2]。
 @Service
 public class CandleService {
 
+    // 回傳的 K 線數量上限 (與記憶體保留的根數相同)
+    private static final int LIMIT = CandleAggregator.CACHE_SIZE;
+
+    // 未指定時間範圍時的查詢邊界 (DATETIME 可表示的範圍內)
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
     @Autowired
     private CandleRepository candleRepository;
 
+    @Autowired
+    private CandleAggregator candleAggregator;
+
+    @Autowired
+    private CandleBackfill candleBackfill;
+
     // 方法：查詢 K 線數據
-    // 參數：symbolId (交易對), interval (週期字串)
-    public List<Candle> getCandles(String symbolId, String interval) {
+    // 參數：symbolId (交易對), interval (週期字串), from (含) / to (不含) 為開盤時間範圍 (null 代表不限),
+    //       limit (回傳根數，預設與上限皆為 1000)；回傳範圍內最接近 to 的 limit 根，由舊到新
+    public List<Candle> getCandles(String symbolId, String interval, LocalDateTime from, LocalDateTime to, Integer limit) {
         Timeframe timeframe = Timeframe._1m; // 預設為 1 分鐘
         try {
             // 解析週期字串，映射到 Timeframe 枚舉
-            timeframe = switch (interval) {
-                case "1m" -> Timeframe._1m;
-                case "5m" -> Timeframe._5m;
-                case "15m" -> Timeframe._15m;
-                case "30m" -> Timeframe._30m;
-                case "1h" -> Timeframe._1H; // 注意枚舉命名是大寫 H
-                case "1d" -> Timeframe._1D; // 注意枚舉命名是大寫 D
-                default -> Timeframe.valueOf(interval); // 嘗試直接轉換，若失敗則進入 catch
-            };
+            timeframe = Timeframe.of(interval);
         } catch (IllegalArgumentException e) {
             // 解析失敗時保持預設值
         }
+        if (limit != null && (limit <= 0 || limit > LIMIT)) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + LIMIT);
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("startTime must be before endTime");
+        }
+        int size = limit == null ? LIMIT : limit;
+
+        // 最近的 K 線由記憶體回答 [註2]
+        List<Candle> cached = candleAggregator.recent(symbolId, timeframe, from, to, size);
+        if (cached != null) return cached;
+
+        // 更舊的歷史：查詢資料庫，依據開盤時間倒序 (最接近 to 的在前)
+        List<Candle> candles = new ArrayList<>(candleRepository.findRange(symbolId, timeframe,
+                from == null ? EARLIEST : from, to == null ? LATEST : to, PageRequest.of(0, size)));
 
-        // 設定分頁限制：取最近 1000 根 K 線
-        Pageable limit = PageRequest.of(0, 1000);
-        
-        // 查詢資料庫：依據開盤時間倒序 (最新的在前)
-        List<Candle> candles = candleRepository.findBySymbolIdAndTimeframeOrderByOpenTimeDesc(symbolId, timeframe, limit);
-        
         // 資料處理：資料庫回傳是 Desc (新->舊)，但前端圖表庫 (如 TradingView) 通常需要 Asc (舊->新)
         Collections.reverse(candles);
-        
-        return candles;
+
+        // 合併記憶體中尚未寫入的 K 線 (含當前 K 線)
+        for (Candle live : candleAggregator.live(symbolId, timeframe)) {
+            boolean inRange = (from == null || !live.getOpenTime().isBefore(from))
+                    && (to == null || live.getOpenTime().isBefore(to));
+            if (inRange) CandleAggregator.merge(candles, live);
+        }
+        return candles.size() > size ? candles.subList(candles.size() - size, candles.size()) : candles;
+    }
+
+    // 方法：依成交紀錄重建 K 線 (intervals 為逗號分隔的週期，如 "5m,15m")，回傳寫入的 K 線數
+    // 週期或時間範圍不合法 (含超過 CandleBackfill.MAX_RANGE) 時拋出 IllegalArgumentException；
+    // 寫回管線或 K 線寫入失敗中時拋出 IllegalStateException
+    public int backfill(String symbolId, String intervals, LocalDateTime from, LocalDateTime to) {
+        List<Timeframe> timeframes = new ArrayList<>();
+        for (String interval : intervals.split(",")) {
+            if (interval.isBlank()) continue;
+            Timeframe timeframe = Timeframe.of(interval.trim());
+            if (!timeframes.contains(timeframe)) timeframes.add(timeframe);
+        }
+        return candleBackfill.rebuild(symbolId, timeframes, from, to);
     }
-}
\ No newline at end of file
+}
+
+// ====== 備註區 ======
+/*
+[註1] 合併記憶體中的 K 線 (Live Merge):
+      成交不再即時寫入 K 線表，資料庫最多落後一個寫入間隔 (預設 1 秒)。
+      查詢時將聚合器中尚未寫入 (已收盤待寫入、寫入中、當前) 的 K 線合併進來，
+      回傳結果與「每筆成交都寫入資料庫」時相同。合併結果是新的物件，不修改由 JPA 讀出的實體。
+
+[註2] 記憶體優先 (Cache First):
+      圖表每次輪詢都查詢資料庫最近 1000 根再反轉，負載與「客戶端數 × 輪詢頻率」成正比。
+      現在最近 1000 根由記憶體回答 (由舊到新保存，不需要反轉)；startTime 早於記憶體保留範圍時才查詢資料庫。
+      CandleAggregator.recent 回傳 null 代表記憶體不足以回答，不代表沒有資料。
+*/
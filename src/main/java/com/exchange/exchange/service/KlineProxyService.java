@@ -0,0 +1,129 @@
+package com.exchange.exchange.service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// ====== 檔案總結 ======
+// KlineProxyService 是外部 K 線 (Binance) 代理的快取層。
+// 核心概念：
+// 1. 以 (交易對, 週期) 為鍵保存上游的原始回應位元組，回應時直接寫出，不解析也不重新序列化。
+// 2. 快取的有效期限很短 (預設 1 秒)，且不超過當前 K 線的收盤時間：新 K 線開始後的第一個請求一定重新取得 [註1]。
+// 3. 同時到達的相同請求合併為一次上游呼叫 (Request Coalescing)，其餘請求等待同一個結果 [註2]。
+// 4. 上游失敗不快取，等待中的請求一併收到錯誤，下一個請求重新嘗試。
+@Service
+public class KlineProxyService {
+
+    // 各週期的長度 (毫秒)，1w 與 1M 另外計算收盤時間
+    private static final Map<String, Long> PERIODS = Map.ofEntries(
+            Map.entry("1s", 1_000L), Map.entry("1m", 60_000L), Map.entry("3m", 180_000L),
+            Map.entry("5m", 300_000L), Map.entry("15m", 900_000L), Map.entry("30m", 1_800_000L),
+            Map.entry("1h", 3_600_000L), Map.entry("2h", 7_200_000L), Map.entry("4h", 14_400_000L),
+            Map.entry("6h", 21_600_000L), Map.entry("8h", 28_800_000L), Map.entry("12h", 43_200_000L),
+            Map.entry("1d", 86_400_000L), Map.entry("3d", 259_200_000L), Map.entry("1w", 604_800_000L),
+            Map.entry("1M", 0L));
+
+    // 週線以週一 00:00 (UTC) 開盤，Epoch 起點為週四
+    private static final long WEEK_OFFSET = 4 * 86_400_000L;
+
+    // 交易對名稱 (如 BTCUSDT)：同時避免任意字串進入上游網址
+    private static final Pattern SYMBOL = Pattern.compile("[A-Z0-9]{2,20}");
+
+    // 快取項目超過此數量時清除已過期的項目
+    private static final int MAX_ENTRIES = 256;
+
+    @Autowired
+    private KlineUpstream upstream;
+
+    // 快取有效期限的上限 (毫秒)
+    @Value("${exchange.binance.kline-ttl-ms:1000}")
+    private long ttlMs;
+
+    // 時鐘 (測試時可替換)
+    private Clock clock = Clock.systemUTC();
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    // 方法：取得 K 線的原始 JSON 位元組
+    // 交易對或週期不合法時拋出 IllegalArgumentException；上游失敗時拋出 IllegalStateException
+    public byte[] getKlines(String symbol, String interval) {
+        String name = symbol.toUpperCase();
+        if (!SYMBOL.matcher(name).matches()) throw new IllegalArgumentException("Invalid symbol: " + symbol);
+        if (!PERIODS.containsKey(interval)) throw new IllegalArgumentException("Invalid interval: " + interval);
+
+        String key = name + ":" + interval;
+        long now = clock.millis();
+        Entry entry = cache.get(key);
+        if (entry == null || entry.expiredAt(now)) {
+            Entry fresh = new Entry();
+            entry = cache.compute(key, (k, old) -> old != null && !old.expiredAt(now) ? old : fresh);
+            if (entry == fresh) load(key, name, interval, fresh, now);
+        }
+        try {
+            return entry.body.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            throw new IllegalStateException("Error fetching klines: " + cause.getMessage(), cause);
+        }
+    }
+
+    // 私有方法：由取得這個項目的請求執行緒呼叫上游，完成後喚醒等待中的請求
+    private void load(String key, String symbol, String interval, Entry entry, long now) {
+        try {
+            byte[] body = upstream.fetch(symbol, interval);
+            entry.expiresAt = Math.min(now + ttlMs, nextClose(interval, now));
+            entry.body.complete(body);
+        } catch (RuntimeException e) {
+            cache.remove(key, entry);
+            entry.body.completeExceptionally(e);
+        }
+        if (cache.size() > MAX_ENTRIES) {
+            long at = clock.millis();
+            cache.values().removeIf(e -> e.expiredAt(at));
+        }
+    }
+
+    // 私有方法：當前 K 線的收盤時間 (下一根的開盤時間，毫秒)
+    private static long nextClose(String interval, long now) {
+        if (interval.equals("1M")) {
+            YearMonth month = YearMonth.from(Instant.ofEpochMilli(now).atZone(ZoneOffset.UTC));
+            return month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        }
+        long period = PERIODS.get(interval);
+        long offset = interval.equals("1w") ? WEEK_OFFSET : 0;
+        return now - Math.floorMod(now - offset, period) + period;
+    }
+
+    // 快取項目：載入中 expiresAt 為 Long.MAX_VALUE (相同請求等待同一個結果)
+    private static final class Entry {
+        final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        volatile long expiresAt = Long.MAX_VALUE;
+
+        boolean expiredAt(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
+
+// ====== 備註區 ======
+/*
+[註1] 對齊收盤的有效期限 (Close-Aligned TTL):
+      前端每個分頁每 2 秒請求一次，早期版本每個請求都向 Binance 取 1000 根 K 線，N 個觀看者就是 N 倍的上游呼叫。
+      現在同一 (交易對, 週期) 每個有效期限內最多一次上游呼叫。有效期限取「設定的上限」與「距當前 K 線收盤」的較小者，
+      以上游呼叫開始的時間計算：K 線收盤後快取立即失效，圖表不會在新 K 線開始後還顯示上一根的收盤狀態。
+
+[註2] 請求合併 (Request Coalescing):
+      快取過期的瞬間可能有多個請求同時到達，若各自呼叫上游就失去快取的意義。
+      第一個以 compute 放入新項目的請求負責呼叫上游，其餘請求取得同一個項目並等待它的 CompletableFuture。
+      上游呼叫在請求執行緒上進行，不需要額外的執行緒池。
+*/
@@ -0,0 +1,11 @@
+package com.exchange.exchange.service;
+
+// ====== 檔案總結 ======
+// KlineUpstream 是外部 K 線來源的抽象，KlineProxyService 透過它取得原始回應。
+// 正式環境為 BinanceKlineUpstream；測試可替換為本地的替身 (Stub)，不需連線外部 API。
+public interface KlineUpstream {
+
+    // 方法：取得某交易對、某週期最近的 K 線，回傳上游原始的 JSON 位元組 (不解析)
+    // 上游失敗時拋出 RuntimeException
+    byte[] fetch(String symbol, String interval);
+}
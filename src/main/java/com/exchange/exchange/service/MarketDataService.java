@@ -0,0 +1,61 @@
+package com.exchange.exchange.service;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.exchange.exchange.engine.OrderBookManager;
+import com.exchange.exchange.engine.SequencerManager;
+import com.exchange.exchange.engine.stream.MarketDataHub;
+import com.exchange.exchange.enums.Timeframe;
+
+// ====== 檔案總結 ======
+// MarketDataService 負責建立行情串流訂閱 (Server-Sent Events)。
+// 驗證交易對、頻道與 K 線週期後，在該交易對的序列器中登記訂閱者，
+// 讓訂閱時的快照與之後推播的增量訊息銜接 (見 MarketDataHub)。
+@Service
+public class MarketDataService {
+
+    // 可訂閱的頻道
+    private static final Set<String> CHANNELS = Set.of(MarketDataHub.DEPTH, MarketDataHub.TRADE, MarketDataHub.KLINE);
+
+    @Autowired
+    private OrderBookManager orderBookManager;
+
+    @Autowired
+    private SequencerManager sequencerManager;
+
+    @Autowired
+    private MarketDataHub marketDataHub;
+
+    // 方法：訂閱某交易對的行情串流
+    // channels 為逗號分隔的頻道 (depth, trade, kline)；interval 為 K 線週期 (僅訂閱 kline 時使用)
+    public SseEmitter subscribe(String symbolId, String channels, String interval) {
+        orderBookManager.symbolOf(symbolId);
+
+        Set<String> selected = new LinkedHashSet<>();
+        for (String channel : channels.split(",")) {
+            String name = channel.trim().toLowerCase();
+            if (name.isEmpty()) continue;
+            if (!CHANNELS.contains(name)) {
+                throw new IllegalArgumentException("Unknown channel: " + channel);
+            }
+            selected.add(name);
+        }
+        if (selected.isEmpty()) {
+            throw new IllegalArgumentException("At least one channel is required");
+        }
+        Timeframe timeframe = Timeframe.of(interval);
+
+        // 連線不逾時，由心跳偵測斷線
+        SseEmitter emitter = new SseEmitter(0L);
+        sequencerManager.execute(symbolId, () -> {
+            marketDataHub.register(symbolId, emitter, Set.copyOf(selected), timeframe);
+            return null;
+        });
+        return emitter;
+    }
+}
@@ -3,6 +3,7 @@ package com.exchange.exchange.service;
 // 引入 DTO，用於封裝下單請求的參數
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -13,6 +14,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import com.exchange.exchange.dto.OrderRequest;
+import com.exchange.exchange.engine.OrderBookManager;
 import com.exchange.exchange.entity.Coin;
 import com.exchange.exchange.entity.Symbol;
 import com.exchange.exchange.enums.OrderSide;
@@ -49,6 +51,10 @@ public class MarketMakerService {
     // 注入幣種儲存庫，用於遍歷所有幣種進行資金補充
     @Autowired
     private CoinRepository coinRepository;
+
+    // 注入訂單簿管理器：取得交易對的價格精度 (Tick Size)
+    @Autowired
+    private OrderBookManager orderBookManager;
     
     // 定義機器人的會員 ID 常數
     // 注意：此 ID 必須與系統初始化時建立的機器人帳號一致
@@ -68,6 +74,9 @@ public class MarketMakerService {
             // 步驟 2：獲取系統中所有啟用的交易對
             List<Symbol> symbols = symbolRepository.findAll();
             
+            // 本輪所有交易對的報價，最後以一次批次下單送出 [註3]
+            List<OrderRequest> batch = new ArrayList<>();
+
             // 步驟 3：遍歷每個交易對，分別進行造市
             for (Symbol s : symbols) {
                 // 取得交易對 ID (例如 "BTCUSDT")
@@ -79,8 +88,13 @@ public class MarketMakerService {
                 // 若無法獲取價格 (可能因為網絡問題或幣對不存在於 Binance)，則跳過此幣對
                 if (currentPrice == null) continue;
 
-                // 步驟 5：根據當前價格，計算並放置隨機的買單與賣單
-                placeRandomOrders(symbolId, currentPrice);
+                // 步驟 5：根據當前價格，計算隨機的買單與賣單
+                placeRandomOrders(symbolId, currentPrice, batch);
+            }
+
+            // 步驟 6：批次下單 (非同步模式)，造市不需要等待撮合結果
+            if (!batch.isEmpty()) {
+                orderService.createOrders(BOT_MEMBER_ID, batch, false);
             }
         } catch (Exception e) {
             // 捕捉並記錄執行過程中的任何未預期錯誤，避免整個排程崩潰
@@ -133,9 +147,9 @@ public class MarketMakerService {
         return null;
     }
 
-    // 私有方法：在參考價格附近放置隨機訂單
+    // 私有方法：在參考價格附近產生隨機訂單，加入本輪的批次請求
     // 策略：以參考價格為中心，分別在下方掛買單，上方掛賣單，形成價差 (Spread)
-    private void placeRandomOrders(String symbol, BigDecimal centerPrice) {
+    private void placeRandomOrders(String symbol, BigDecimal centerPrice, List<OrderRequest> batch) {
         // 定義價格波動範圍：0.1% ~ 0.5%
         
         // 迴圈：放置 2 筆買單 (Bid)
@@ -147,8 +161,8 @@ public class MarketMakerService {
             // 計算下單數量
             BigDecimal qty = randomQty(centerPrice);
             
-            // 執行下單
-            placeOrder(symbol, OrderSide.BUY, price, qty);
+            // 加入批次
+            batch.add(buildOrder(symbol, OrderSide.BUY, price, qty));
         }
 
         // 迴圈：放置 2 筆賣單 (Ask)
@@ -160,8 +174,8 @@ public class MarketMakerService {
             // 計算下單數量
             BigDecimal qty = randomQty(centerPrice);
             
-            // 執行下單
-            placeOrder(symbol, OrderSide.SELL, price, qty);
+            // 加入批次
+            batch.add(buildOrder(symbol, OrderSide.SELL, price, qty));
         }
     }
 
@@ -191,8 +205,8 @@ public class MarketMakerService {
         return qty;
     }
 
-    // 私有方法：封裝下單請求並呼叫 OrderService
-    private void placeOrder(String symbolId, OrderSide side, BigDecimal price, BigDecimal quantity) {
+    // 私有方法：封裝下單請求
+    private OrderRequest buildOrder(String symbolId, OrderSide side, BigDecimal price, BigDecimal quantity) {
         // 建立下單請求 DTO
         OrderRequest req = new OrderRequest();
         req.setSymbolId(symbolId);
@@ -200,20 +214,10 @@ public class MarketMakerService {
         req.setType(OrderType.LIMIT); // 造市單通常為限價單 (Limit Order)
         req.setTradeType(TradeType.SPOT); // 目前僅支援現貨
         
-        // 設定價格：保留 8 位小數，避免因浮點數精度導致的 API 錯誤
-        req.setPrice(price.setScale(8, RoundingMode.HALF_UP)); 
+        // 設定價格：取整到交易對的 Tick Size，避免因浮點數精度導致的 API 錯誤
+        req.setPrice(price.setScale(orderBookManager.scaleOf(symbolId).getPriceScale(), RoundingMode.HALF_UP));
         req.setQuantity(quantity);
-
-        try {
-            // 呼叫 OrderService 執行下單
-            // 使用機器人 ID (BOT_MEMBER_ID)
-            orderService.createOrder(BOT_MEMBER_ID, req);
-            // (選擇性) 可以在此處記錄下單成功的日誌
-            // System.out.println("Bot placed order: " + side + " " + symbolId + " @ " + price);
-        } catch (Exception e) {
-            // 捕捉下單失敗異常 (例如餘額不足、參數錯誤)，防止中斷迴圈
-            // System.err.println("Bot order failed: " + e.getMessage());
-        }
+        return req;
     }
 }
 
@@ -228,4 +232,9 @@ public class MarketMakerService {
       使用 `Map.class` 接收 API 回應雖然方便，但缺乏型別檢查。
       建議定義一個內部的 DTO 類別 (例如 `BinanceTickerResponse`) 來映射 JSON 回應，
       這樣可以避免 `String` 到 `BigDecimal` 轉換時的潛在錯誤，並提高程式碼可讀性。
+
+[註3] 批次下單 (Batch Placement):
+      早期版本每筆報價各自呼叫一次下單，每筆都開一個資料庫交易並各自凍結資金。
+      現在整輪報價合併為一次 `createOrders`：同幣種的凍結合併為一次，每個交易對只進入序列器一次。
+      單筆失敗 (例如價格不合法) 只會反映在該筆的結果中，不影響其他報價。
 */
\ No newline at end of file
@@ -3,32 +3,35 @@ package com.exchange.exchange.service;
 // 引入實體：K線、訂單、交易對、成交紀錄
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import com.exchange.exchange.entity.Candle;
 import com.exchange.exchange.entity.Order;
 import com.exchange.exchange.entity.Symbol;
 import com.exchange.exchange.entity.Trade;
+import com.exchange.exchange.engine.OrderBook;
+import com.exchange.exchange.engine.OrderBookManager;
+import com.exchange.exchange.engine.OrderNode;
+import com.exchange.exchange.engine.SymbolScale;
+import com.exchange.exchange.engine.persist.BatchPersister;
+import com.exchange.exchange.engine.persist.PersistEvent;
+import com.exchange.exchange.engine.candle.CandleAggregator;
+import com.exchange.exchange.engine.stream.MarketDataHub;
 import com.exchange.exchange.enums.OrderSide;
 import com.exchange.exchange.enums.OrderStatus;
-import com.exchange.exchange.enums.Timeframe;
-import com.exchange.exchange.repository.CandleRepository;
-import com.exchange.exchange.repository.OrderRepository;
-import com.exchange.exchange.repository.SymbolRepository;
+import com.exchange.exchange.enums.OrderType;
 import com.exchange.exchange.repository.TradeRepository;
 
+import jakarta.annotation.PostConstruct;
+
 // ====== 檔案總結 ======
 // MatchingService 實現了交易所的核心撮合引擎邏輯 (Matching Engine)。
 // 採用「訂單驅動」模式：當新訂單 (Taker) 進入系統時，主動尋找既有的掛單 (Maker) 進行匹配。
+// 對手單來自常駐記憶體的訂單簿 (OrderBook)，撮合結果以事件送入寫回管線 (BatchPersister) 批次寫入資料庫。
 // 職責範圍：
-// 1. 搜尋對手單。
+// 1. 從記憶體訂單簿搜尋對手單。
 // 2. 執行成交 (數量扣除、狀態更新)。
 // 3. 產生成交紀錄 (Trades)。
 // 4. 觸發資金結算 (錢包餘額變動)。
@@ -36,266 +39,240 @@ import com.exchange.exchange.repository.TradeRepository;
 @Service
 public class MatchingService {
 
-    // 注入訂單儲存庫：用於查詢對手單與更新訂單狀態
-    @Autowired
-    private OrderRepository orderRepository;
-
-    // 注入成交紀錄儲存庫：用於保存撮合成功的交易
-    @Autowired
-    private TradeRepository tradeRepository;
-
     // 注入錢包服務：用於處理成交後的資產轉移
     @Autowired
     private WalletService walletService;
     
-    // 注入交易對儲存庫：用於查詢基礎幣與報價幣設定
-    @Autowired
-    private SymbolRepository symbolRepository;
-    
     // 注入倉位服務：用於合約交易的倉位計算 (目前部分功能保留)
     @Autowired
     private PositionService positionService;
 
-    // 注入 K 線儲存庫：用於更新價格走勢圖
+    // 注入記憶體訂單簿管理器：撮合時直接從訂單簿取得對手單
+    @Autowired
+    private OrderBookManager orderBookManager;
+
+    // 注入寫回管線：成交紀錄與訂單狀態皆以事件批次寫入，撮合執行緒不等待資料庫
     @Autowired
-    private CandleRepository candleRepository;
+    private BatchPersister batchPersister;
+
+    // 注入成交紀錄儲存庫：啟動時讀取目前最大的 Trade ID
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    // 注入行情推播中心：成交於批次結束時推播給串流訂閱者
+    @Autowired
+    private MarketDataHub marketDataHub;
+
+    // 注入 K 線聚合器：成交只更新記憶體中的 K 線
+    @Autowired
+    private CandleAggregator candleAggregator;
+
+    // Trade ID 由引擎配發 (所有交易對共用)，成交當下即可寫入會員成交明細 [註7]
+    private final AtomicInteger tradeIds = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        tradeIds.set(tradeRepository.findTopByOrderByTradeIdDesc().map(Trade::getTradeId).orElse(0));
+    }
 
     // 核心撮合方法：接收一個新進入的訂單 (Taker Order) 並嘗試進行撮合
-    // 標註 @Transactional 確保撮合過程中的資料庫變更具有原子性 [註1]
-    @Transactional
-    public void matchOrder(Order takerOrder) {
+    // 必須由該交易對的序列器執行緒 (SymbolSequencer) 呼叫，確保同一交易對的撮合依序執行
+    // 撮合過程不開啟資料庫交易，所有變更以事件發布後由寫回管線批次寫入 [註1]
+    // 撮合結束後，Taker 的成交量、成交金額與狀態會寫回傳入的 Order 實體
+    // persist 為 false 代表重播的指令結果已在資料庫中 (含 K 線)，成交不再計入 K 線聚合器
+    // executedAt 為指令時間 (日誌中記錄的時間)，作為成交與訂單更新時間，重播時與原本撮合的時間相同
+    public void matchOrder(Order takerOrder, LocalDateTime executedAt, boolean persist) {
         // 防禦性檢查：若傳入的訂單狀態已經結束 (完全成交或已取消)，則不應進行撮合
         if (takerOrder.getStatus() == OrderStatus.FILLED || takerOrder.getStatus() == OrderStatus.CANCELED) {
             return;
         }
 
-        // 定義可作為對手單 (Maker) 的狀態列表
-        // 只有「新訂單」或「部分成交」的訂單可以被撮合
-        List<OrderStatus> activeStatuses = Arrays.asList(OrderStatus.NEW, OrderStatus.PARTIAL_FILLED);
-        // 宣告變數用於存放查詢到的匹配訂單列表
-        List<Order> matchingOrders;
-
-        // 步驟 1：根據 Taker 的方向尋找對手單 (Find Matching Orders)
-        // 買單 (BUY) -> 尋找賣單 (SELL)
-        // 賣單 (SELL) -> 尋找買單 (BUY)
-        // 查詢邏輯包含價格優先與時間優先的排序 (由 Repository 實作)
-        if (takerOrder.getSide() == OrderSide.BUY) {
-            matchingOrders = orderRepository.findMatchingSellOrders(
-                    takerOrder.getSymbolId(), OrderSide.SELL, takerOrder.getTradeType(), activeStatuses, takerOrder.getPrice(), takerOrder.getMemberId());
-        } else {
-            matchingOrders = orderRepository.findMatchingBuyOrders(
-                    takerOrder.getSymbolId(), OrderSide.BUY, takerOrder.getTradeType(), activeStatuses, takerOrder.getPrice(), takerOrder.getMemberId());
-        }
+        // 步驟 1：取得該交易對的記憶體訂單簿 (Order Book)
+        // 對手單直接從訂單簿中依價格優先、時間優先取出，不再查詢資料庫
+        OrderBook book = orderBookManager.getBook(takerOrder.getSymbolId(), takerOrder.getTradeType());
+        SymbolScale scale = book.getScale();
 
-        // 若沒有找到任何符合價格條件的對手單，撮合結束，該訂單將轉為掛單 (Maker)
-        if (matchingOrders.isEmpty()) return;
-
-        // 步驟 2：準備交易對資訊，用於後續的資金結算
-        // 使用 orElseThrow 確保資料一致性，若交易對不存在則拋出異常
-        Symbol symbol = symbolRepository.findById(takerOrder.getSymbolId()).orElseThrow();
-        
-        // 步驟 3：遍歷對手單列表，逐一執行撮合
-        for (Order makerOrder : matchingOrders) {
-            // 若 Taker 訂單已完全成交，則跳出迴圈
-            if (takerOrder.getStatus() == OrderStatus.FILLED) break;
-
-            // 計算 Taker 剩餘未成交數量
-            BigDecimal takerRemaining = takerOrder.getQuantity().subtract(takerOrder.getFilledQuantity());
-            // 計算 Maker 剩餘未成交數量
-            BigDecimal makerRemaining = makerOrder.getQuantity().subtract(makerOrder.getFilledQuantity());
-            
-            // 本次撮合數量 = 兩者剩餘數量的最小值
-            BigDecimal matchQty = takerRemaining.min(makerRemaining);
-
-            // 防禦檢查：若計算出的撮合量小於等於 0，跳過此筆 (理論上不應發生)
-            if (matchQty.compareTo(BigDecimal.ZERO) <= 0) continue;
-
-            // 成交價格以 Maker (掛單) 的價格為準 [註2]
-            BigDecimal matchPrice = makerOrder.getPrice();
-
-            // 步驟 4：建立並儲存成交紀錄 (Trade)
-            Trade trade = new Trade();
-            trade.setSymbolId(takerOrder.getSymbolId());
-            trade.setTakerOrderId(takerOrder.getOrderId());
-            trade.setMakerOrderId(makerOrder.getOrderId());
-            trade.setPrice(matchPrice);
-            trade.setQuantity(matchQty);
-            trade.setTakerSide(takerOrder.getSide()); // 記錄是誰主動發起的方向
-            trade.setTradeType(takerOrder.getTradeType());
-            trade.setExecutedAt(LocalDateTime.now());
-            // 待辦事項：此處尚未實作手續費 (Fee) 的計算邏輯
-            tradeRepository.save(trade);
-
-            // 步驟 5：更新 K 線數據 (即時反映最新成交價)
-            updateCandles(trade);
-
-            // 步驟 6：更新雙方訂單的狀態與成交量
-            updateOrder(takerOrder, matchQty, matchPrice);
-            updateOrder(makerOrder, matchQty, matchPrice);
-            
-            // (保留區塊) 合約交易的倉位處理邏輯
-            /*
-            if (takerOrder.getTradeType() == com.exchange.exchange.enums.TradeType.CONTRACT) {
-                // 更新 Taker 的倉位
-                positionService.processTrade(takerOrder.getMemberId(), takerOrder.getSymbolId(), 
-                                             takerOrder.getSide(), matchPrice, matchQty);
-                // 更新 Maker 的倉位
-                positionService.processTrade(makerOrder.getMemberId(), makerOrder.getSymbolId(), 
-                                             makerOrder.getSide(), matchPrice, matchQty);
-            } else 
-            */
-            
-            // 步驟 7：現貨交易 (Spot) 的資金結算 (Settlement)
-            // 根據「一手交錢，一手交貨」原則更新雙方錢包
-            if (takerOrder.getTradeType() == com.exchange.exchange.enums.TradeType.SPOT) {
-                // 計算總成交金額 (Cost) = 價格 * 數量
-                BigDecimal cost = matchPrice.multiply(matchQty);
-                
-                // 處理 Taker 的資產變動
-                if (takerOrder.getSide() == OrderSide.BUY) {
-                    // Taker 買入：扣除凍結的報價幣 (USDT)，增加基礎幣 (BTC)
-                    walletService.deductFrozen(takerOrder.getMemberId(), symbol.getQuoteCoinId(), cost, "SPOT_BUY_COST");
-                    walletService.addBalance(takerOrder.getMemberId(), symbol.getBaseCoinId(), matchQty, "SPOT_BUY_GET");
-                } else {
-                    // Taker 賣出：扣除凍結的基礎幣 (BTC)，增加報價幣 (USDT)
-                    walletService.deductFrozen(takerOrder.getMemberId(), symbol.getBaseCoinId(), matchQty, "SPOT_SELL_COST");
-                    walletService.addBalance(takerOrder.getMemberId(), symbol.getQuoteCoinId(), cost, "SPOT_SELL_GET");
-                }
-
-                // 處理 Maker 的資產變動
-                if (makerOrder.getSide() == OrderSide.BUY) {
-                    // Maker 買入 (掛買單被吃)：扣除凍結的報價幣，增加基礎幣
-                    walletService.deductFrozen(makerOrder.getMemberId(), symbol.getQuoteCoinId(), cost, "SPOT_BUY_COST");
-                    walletService.addBalance(makerOrder.getMemberId(), symbol.getBaseCoinId(), matchQty, "SPOT_BUY_GET");
-                } else {
-                    // Maker 賣出 (掛賣單被吃)：扣除凍結的基礎幣，增加報價幣
-                    walletService.deductFrozen(makerOrder.getMemberId(), symbol.getBaseCoinId(), matchQty, "SPOT_SELL_COST");
-                    walletService.addBalance(makerOrder.getMemberId(), symbol.getQuoteCoinId(), cost, "SPOT_SELL_GET");
-                }
-            }
+        // 步驟 2：準備交易對資訊 (記憶體快取)，用於後續的資金結算
+        Symbol symbol = orderBookManager.symbolOf(takerOrder.getSymbolId());
 
-            // 步驟 8：處理 Taker 的多餘保證金退款 (Refund)
-            // 情境：當 Taker 用較高限價買入較低價格的 Maker 單時，會有價差餘額
-            // 例如：限價 50,000 買入，但撮合到 49,000 的賣單，需退還 (50,000 - 49,000) * 數量的凍結資金
-            if (takerOrder.getSide() == OrderSide.BUY && takerOrder.getPrice().compareTo(matchPrice) > 0) {
-                BigDecimal diff = takerOrder.getPrice().subtract(matchPrice);
-                BigDecimal refund = diff.multiply(matchQty);
-                walletService.unfreezeFunds(takerOrder.getMemberId(), symbol.getQuoteCoinId(), refund);
+        // 步驟 3：轉為定點數表示，在訂單簿中逐一撮合對手單，每成交一筆即呼叫 executeFill [註4]
+        // 本方法由交易對的序列器執行緒呼叫，訂單簿不會被其他執行緒同時修改，因此不需加鎖
+        // 資金差額先累積在 SweepSettlement，整次撮合結束後每個帳戶只結算一次 [註6]
+        OrderNode taker = book.acquire().assign(takerOrder, scale);
+        SweepSettlement settlement = new SweepSettlement(scale);
+        RuntimeException failure = null;
+        try {
+            book.match(taker, (maker, matchQty, matchPrice) ->
+                    executeFill(taker, maker, matchQty, matchPrice, symbol, scale, settlement, executedAt, persist));
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            // 撮合中途失敗時，已產生的成交仍須結算
+            settlement.flush(walletService);
+        }
+
+        if (taker.remaining() > 0) {
+            if (failure == null && taker.getType() == OrderType.LIMIT) {
+                // 步驟 4：限價單若仍有剩餘數量，轉為掛單 (Maker) 加入訂單簿
+                book.add(taker);
+            } else {
+                // 市價單、撮合中途失敗的訂單不掛單：剩餘數量直接取消並解凍 [註5]
+                releaseRemainder(taker, symbol, scale, executedAt);
             }
         }
-        
-        // 迴圈結束後，保存 Taker 訂單的最終狀態
-        orderRepository.save(takerOrder);
-    }
 
-    // 私有方法：觸發更新多個時間週期的 K 線
-    private void updateCandles(Trade trade) {
-        // 更新 1分鐘、1小時、1天 的 K 線數據
-        updateCandleForTimeframe(trade, Timeframe._1m);
-        updateCandleForTimeframe(trade, Timeframe._1H);
-        updateCandleForTimeframe(trade, Timeframe._1D);
+        // 撮合結束後，發布 Taker 訂單的最終狀態，並同步回 JPA 實體供 API 回傳
+        taker.copyTo(takerOrder, scale);
+        publishOrderUpdate(taker, scale);
+
+        // 未掛單的 Taker 節點歸還物件池
+        book.release(taker);
+        if (failure != null) throw failure;
     }
 
-    // 私有方法：針對特定週期更新 K 線資料
-    private void updateCandleForTimeframe(Trade trade, Timeframe timeframe) {
-        // 計算這筆成交屬於哪一個時間區間 (例如 10:05:30 的成交屬於 10:05:00 的 1分K)
-        LocalDateTime openTime = truncateTime(trade.getExecutedAt(), timeframe);
-        // 建立複合主鍵物件
-        com.exchange.exchange.entity.key.CandleId candleId = new com.exchange.exchange.entity.key.CandleId(trade.getSymbolId(), timeframe, openTime);
-
-        // 查詢是否存在該時間點的 K 線
-        Optional<Candle> candleOpt = candleRepository.findById(candleId);
-        Candle candle;
-
-        if (candleOpt.isPresent()) {
-            // 若存在，則更新 High, Low, Close
-            candle = candleOpt.get();
-            // 如果成交價高於目前最高價，更新 High
-            if (trade.getPrice().compareTo(candle.getHigh()) > 0) {
-                candle.setHigh(trade.getPrice());
-            }
-            // 如果成交價低於目前最低價，更新 Low
-            if (trade.getPrice().compareTo(candle.getLow()) < 0) {
-                candle.setLow(trade.getPrice());
-            }
-            // 更新收盤價為最新成交價
-            candle.setClose(trade.getPrice());
-        } else {
-            // 若不存在，則建立新的 K 線 (Open, High, Low, Close 皆設為當前成交價)
-            candle = new Candle();
-            candle.setSymbolId(trade.getSymbolId());
-            candle.setTimeframe(timeframe);
-            candle.setOpenTime(openTime);
-            candle.setOpen(trade.getPrice());
-            candle.setHigh(trade.getPrice());
-            candle.setLow(trade.getPrice());
-            candle.setClose(trade.getPrice());
-            
-            // 計算該 K 線的結束時間
-            candle.setCloseTime(calculateCloseTime(openTime, timeframe));
+    // 私有方法：執行單筆成交 (Taker 與一筆 Maker)
+    // 負責產生成交紀錄、更新 K 線、更新雙方訂單，並將資金差額累積到本次撮合的結算中
+    // 數量與價格為 Lot / Tick 數，只在產生事件時換算為 BigDecimal
+    private void executeFill(OrderNode takerOrder, OrderNode makerOrder, long matchQty, long matchPrice,
+                             Symbol symbol, SymbolScale scale, SweepSettlement settlement, LocalDateTime executedAt,
+                             boolean persist) {
+        // 成交價格以 Maker (掛單) 的價格為準 [註2]
+        // 可能失敗的運算 (成交金額溢位) 先完成，再發布任何事件
+        long cost = SymbolScale.notional(matchPrice, matchQty);
+        long refund = takerOrder.getSide() == OrderSide.BUY && takerOrder.getPrice() > matchPrice
+                ? SymbolScale.notional(takerOrder.getPrice() - matchPrice, matchQty) : 0;
+        BigDecimal price = scale.price(matchPrice);
+        BigDecimal quantity = scale.quantity(matchQty);
+
+        // 建立成交紀錄 (Trade) 並送入寫回管線
+        Trade trade = new Trade();
+        trade.setTradeId(tradeIds.incrementAndGet());
+        trade.setSymbolId(takerOrder.getSymbolId());
+        trade.setTakerOrderId(takerOrder.getOrderId());
+        trade.setMakerOrderId(makerOrder.getOrderId());
+        trade.setPrice(price);
+        trade.setQuantity(quantity);
+        trade.setTakerSide(takerOrder.getSide()); // 記錄是誰主動發起的方向
+        trade.setTradeType(takerOrder.getTradeType());
+        trade.setExecutedAt(executedAt);
+        // 待辦事項：此處尚未實作手續費 (Fee) 的計算邏輯
+        batchPersister.publish(new PersistEvent.TradeInsert(trade, takerOrder.getMemberId(), makerOrder.getMemberId()));
+        marketDataHub.onTrade(trade);
+
+        // 更新記憶體中的各週期 K 線 (即時反映最新成交價)，由聚合器定時寫入資料庫
+        if (persist) {
+            candleAggregator.onTrade(trade.getSymbolId(), scale, matchPrice, matchQty,
+                    takerOrder.getSide() == OrderSide.BUY, trade.getExecutedAt());
         }
-        // 儲存 K 線資料
-        candleRepository.save(candle);
-    }
 
-    // 輔助方法：將時間截斷至週期的起始點 (Time Truncation)
-    private LocalDateTime truncateTime(LocalDateTime time, Timeframe timeframe) {
-        switch (timeframe) {
-            case _1m: return time.truncatedTo(ChronoUnit.MINUTES);
-            case _5m: 
-                // 將分鐘數正規化為 5 的倍數
-                int minute5 = time.getMinute() / 5 * 5;
-                return time.truncatedTo(ChronoUnit.HOURS).plusMinutes(minute5);
-            case _1H: return time.truncatedTo(ChronoUnit.HOURS);
-            case _1D: return time.truncatedTo(ChronoUnit.DAYS);
-            default: return time.truncatedTo(ChronoUnit.MINUTES);
+        // 雙方訂單的成交量已由訂單簿在回呼前更新，這裡只記錄更新時間
+        // Taker 的最終狀態於撮合結束後統一發布，Maker 則每次成交即發布
+        takerOrder.setUpdatedAt(trade.getExecutedAt());
+        makerOrder.setUpdatedAt(trade.getExecutedAt());
+        publishOrderUpdate(makerOrder, scale);
+
+        // (保留區塊) 合約交易的倉位處理邏輯
+        /*
+        if (takerOrder.getTradeType() == com.exchange.exchange.enums.TradeType.CONTRACT) {
+            // 更新 Taker 的倉位
+            positionService.processTrade(takerOrder.getMemberId(), takerOrder.getSymbolId(), 
+                                         takerOrder.getSide(), price, quantity);
+            // 更新 Maker 的倉位
+            positionService.processTrade(makerOrder.getMemberId(), makerOrder.getSymbolId(), 
+                                         makerOrder.getSide(), price, quantity);
+        } else 
+        */
+
+        // 現貨交易 (Spot) 的資金結算 (Settlement)
+        // 根據「一手交錢，一手交貨」原則累積雙方錢包的差額 (定點數，撮合結束後統一換算)
+        if (takerOrder.getTradeType() == com.exchange.exchange.enums.TradeType.SPOT) {
+            // 總成交金額 (Cost) = 價格 * 數量，已於開頭計算
+            // 處理 Taker 的資產變動
+            settleSpot(settlement, takerOrder, symbol, cost, matchQty);
+            // 處理 Maker 的資產變動
+            settleSpot(settlement, makerOrder, symbol, cost, matchQty);
+        }
+
+        // 處理 Taker 的多餘保證金退款 (Refund)
+        // 情境：當 Taker 用較高限價買入較低價格的 Maker 單時，會有價差餘額
+        // 例如：限價 50,000 買入，但撮合到 49,000 的賣單，需退還 (50,000 - 49,000) * 數量的凍結資金
+        // 退款併入 Taker 報價幣的買入結算 (只增加 Available)，不另外產生錢包更新
+        if (refund > 0) {
+            settlement.addQuote(takerOrder.getMemberId(), symbol.getQuoteCoinId(), "SPOT_BUY_COST", 0, refund);
         }
     }
 
-    // 輔助方法：計算週期的結束時間
-    private LocalDateTime calculateCloseTime(LocalDateTime openTime, Timeframe timeframe) {
-        switch (timeframe) {
-            case _1m: return openTime.plusMinutes(1).minusSeconds(1);
-            case _5m: return openTime.plusMinutes(5).minusSeconds(1);
-            case _1H: return openTime.plusHours(1).minusSeconds(1);
-            case _1D: return openTime.plusDays(1).minusSeconds(1);
-            default: return openTime.plusMinutes(1).minusSeconds(1);
+    // 私有方法：累積單一訂單一方的現貨結算
+    // 買入：扣除凍結的報價幣 (只扣 Balance，Available 已於凍結時扣除)，增加基礎幣
+    // 賣出：扣除凍結的基礎幣，增加報價幣
+    private void settleSpot(SweepSettlement settlement, OrderNode order, Symbol symbol, long cost, long quantity) {
+        if (order.getSide() == OrderSide.BUY) {
+            settlement.addQuote(order.getMemberId(), symbol.getQuoteCoinId(), "SPOT_BUY_COST", -cost, 0);
+            settlement.addBase(order.getMemberId(), symbol.getBaseCoinId(), "SPOT_BUY_GET", quantity, quantity);
+        } else {
+            settlement.addBase(order.getMemberId(), symbol.getBaseCoinId(), "SPOT_SELL_COST", -quantity, 0);
+            settlement.addQuote(order.getMemberId(), symbol.getQuoteCoinId(), "SPOT_SELL_GET", cost, cost);
         }
     }
 
-    // 私有輔助方法：更新訂單的累積數據與狀態
-    private void updateOrder(Order order, BigDecimal matchQty, BigDecimal matchPrice) {
-        // 累加已成交數量
-        order.setFilledQuantity(order.getFilledQuantity().add(matchQty));
-        
-        // 計算本次成交的總金額
-        BigDecimal tradeValue = matchPrice.multiply(matchQty);
-        // 累加訂單的總成交金額 (用於計算均價)
-        BigDecimal currentCum = order.getCumQuoteQty() != null ? order.getCumQuoteQty() : BigDecimal.ZERO;
-        order.setCumQuoteQty(currentCum.add(tradeValue));
-
-        // 判斷狀態：若已成交數量 >= 委託數量，則標記為 FILLED (完全成交)
-        if (order.getFilledQuantity().compareTo(order.getQuantity()) >= 0) {
-            order.setStatus(OrderStatus.FILLED);
+    // 私有方法：取消未掛單的 Taker (市價單，或撮合中途失敗的訂單) 未成交的部分並解凍其資金
+    private void releaseRemainder(OrderNode taker, Symbol symbol, SymbolScale scale, LocalDateTime canceledAt) {
+        long remaining = taker.remaining();
+        if (taker.getSide() == OrderSide.BUY) {
+            // 買單以委託價 (市價單為保護價) 凍結報價幣，剩餘部分退還 委託價 * 剩餘數量
+            walletService.unfreezeFunds(taker.getMemberId(), symbol.getQuoteCoinId(),
+                    scale.quote(SymbolScale.notional(taker.getPrice(), remaining)));
         } else {
-            // 否則標記為 PARTIAL_FILLED (部分成交)
-            order.setStatus(OrderStatus.PARTIAL_FILLED);
+            walletService.unfreezeFunds(taker.getMemberId(), symbol.getBaseCoinId(), scale.quantity(remaining));
         }
-        // 更新最後修改時間
-        order.setUpdatedAt(LocalDateTime.now());
-        // 寫入資料庫
-        orderRepository.save(order);
+        taker.setStatus(OrderStatus.CANCELED);
+        taker.setUpdatedAt(canceledAt);
+    }
+
+    // 私有輔助方法：發布訂單目前狀態的快照 (不可變)，由寫回管線寫入資料庫
+    private void publishOrderUpdate(OrderNode order, SymbolScale scale) {
+        batchPersister.publish(new PersistEvent.OrderUpdate(order.getOrderId(), scale.quantity(order.getFilled()),
+                scale.quote(order.getCumQuote()), order.getStatus(), order.getUpdatedAt()));
     }
 }
 
 // ====== 備註區 ======
 /*
-[註1] 效能瓶頸 (Performance Bottleneck):
-      將撮合邏輯放在 `@Transactional` 內雖然保證了資料一致性，但這意味著撮合期間會鎖定相關的資料庫資源。
-      如果 Taker 訂單很大，需要匹配數百個 Maker 訂單，這個事務會執行很久，導致資料庫鎖競爭 (Lock Contention)。
-      優化建議：改用記憶體撮合引擎 (In-Memory Matching Engine)，撮合完成後再一次性批量寫入資料庫。
+[註1] 寫回持久化 (Write-Behind Persistence):
+      早期版本將撮合放在 `@Transactional` 內逐筆寫入成交、訂單、K 線與錢包，
+      大單吃掉數百個 Maker 時，事務會持有大量行鎖並執行很久。
+      現在撮合執行緒只修改記憶體狀態並發布事件，由 BatchPersister 合併後以 JDBC Batch 寫入，
+      撮合延遲不再取決於資料庫往返次數；代價是資料庫狀態會短暫落後於記憶體。
+      K 線則由 CandleAggregator 在記憶體中聚合，定時寫入，不經過寫回管線。
 
 [註2] 價格決定原則 (Price Determination):
       這裡正確實作了交易所的標準規則：成交價由 Maker (先掛單者) 決定。
       這保證了 Taker 永遠是以「優於或等於」預期的價格成交 (買得更便宜，賣得更貴)。
+
+[註3] 記憶體與資料庫的一致性 (Book Consistency):
+      記憶體訂單簿是撮合的權威狀態 (Source of Truth)，資料庫是寫回管線維護的副本。
+      撮合不再有資料庫回滾，因此不需要在回滾時重新載入訂單簿。
+
+[註4] 定點數撮合 (Fixed-Point Matching):
+      撮合迴圈只做 long 的比較、加減與相乘，不再為每筆成交產生多個 BigDecimal 中間值；
+      BigDecimal 只出現在成交紀錄、錢包異動與訂單狀態事件這些持久化邊界。
+      成交金額以 Math.multiplyExact 計算，超出 long 範圍時拋出例外而不是默默溢位。
+
+[註5] 市價單剩餘部分 (Market Order Remainder):
+      市價單吃完對手盤 (或觸及保護價) 後若仍有剩餘，剩餘部分立即取消，凍結資金隨之退還。
+      早期版本的剩餘部分會以 NEW / PARTIAL_FILLED 停留在資料庫，凍結資金永遠不會釋放。
+      撮合中途失敗 (例如成交金額溢位) 的限價單同樣不掛單：已產生的成交照常結算，剩餘部分取消並解凍後再拋出例外，
+      訂單簿中的 Maker 在 OrderBook 內已保持一致 (見 OrderBook [註5])。
+
+[註6] 淨額結算 (Net Settlement per Sweep):
+      早期版本每筆成交都為 Taker 與 Maker 各呼叫兩次錢包異動，Taker 吃掉 200 個 Maker 時，
+      Taker 的兩個錢包要更新 400 次並寫入 400 筆資金流水。
+      現在整次撮合以 (會員, 幣種, 流水類型) 累積差額，結束後每個帳戶只更新一次帳本、發布一筆差額與一筆彙總流水；
+      價差退款併入 Taker 的買入結算。逐筆明細仍保留在 trades 表中。
+      同一 Maker 會員的多筆掛單被吃時也會合併為一筆。
+
+[註7] 引擎配發 Trade ID (Engine-Assigned Trade ID):
+      成交在寫回管線中才寫入資料庫，若由 AUTO_INCREMENT 產生 ID，同一批次的 member_fills 無法得知對應的 Trade ID。
+      改由引擎在成交當下配發 (啟動時從資料庫目前最大值接續)；重播「已寫入」的指令時事件被捨棄，
+      只會留下 ID 空號，不會重複。
 */
\ No newline at end of file
@@ -2,34 +2,67 @@ package com.exchange.exchange.service;
 
 // 引入 DTO：用於回傳訂單簿數據與接收下單請求
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.exchange.exchange.dto.OrderBookDTO;
+import com.exchange.exchange.dto.BatchResultDTO;
+import com.exchange.exchange.dto.CancelRequest;
 import com.exchange.exchange.dto.OrderRequest;
+import com.exchange.exchange.dto.PageCursor;
+import com.exchange.exchange.dto.PageDTO;
+import com.exchange.exchange.dto.TradeRecordDTO;
+import com.exchange.exchange.engine.OrderBook;
+import com.exchange.exchange.engine.OrderBookManager;
+import com.exchange.exchange.engine.OrderNode;
+import com.exchange.exchange.engine.SequencerManager;
+import com.exchange.exchange.engine.SymbolScale;
+import com.exchange.exchange.engine.journal.CommandJournal;
+import com.exchange.exchange.engine.journal.JournalRecord;
+import com.exchange.exchange.engine.persist.BatchPersister;
+import com.exchange.exchange.engine.persist.PersistEvent;
+import com.exchange.exchange.entity.MemberFill;
 import com.exchange.exchange.entity.Order;
 import com.exchange.exchange.entity.Symbol;
 import com.exchange.exchange.enums.OrderSide;
 import com.exchange.exchange.enums.OrderStatus;
 import com.exchange.exchange.enums.OrderType;
+import com.exchange.exchange.repository.MemberFillRepository;
 import com.exchange.exchange.repository.OrderRepository;
-import com.exchange.exchange.repository.SymbolRepository;
 
 // ====== 檔案總結 ======
 // OrderService 負責管理訂單的生命週期 (Lifecycle Management)。
 // 主要功能：
 // 1. 訂單簿查詢：聚合買賣盤深度。
-// 2. 下單處理：包含參數驗證、資金凍結 (Pre-Trade Risk Check)、訂單持久化、觸發撮合。
-// 3. 撤單處理：包含狀態檢查、資金解凍 (Refund)。
+// 2. 下單處理：包含參數驗證、資金凍結 (Pre-Trade Risk Check)、訂單持久化，再交由序列器撮合。
+// 3. 撤單處理：包含狀態檢查、自記憶體訂單簿移除、資金解凍 (Refund)。
+// 4. 批次下單與批次撤單：合併資金凍結，每個交易對以單一序列器指令處理。
 @Service
 public class OrderService {
 
+    // 單一批次請求的訂單筆數上限
+    private static final int MAX_BATCH_SIZE = 100;
+
+    // 受理交易因樂觀鎖失敗而重試的次數上限
+    private static final int MAX_INTAKE_ATTEMPTS = 3;
+
+    // 未指定時間範圍時使用的上下限
+    private static final LocalDateTime NO_LOWER_BOUND = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime NO_UPPER_BOUND = LocalDateTime.of(9999, 1, 1, 0, 0);
+
     // 注入訂單儲存庫
     @Autowired
     private OrderRepository orderRepository;
@@ -38,38 +71,294 @@ public class OrderService {
     @Autowired
     private WalletService walletService;
 
-    // 注入交易對儲存庫：用於驗證交易對有效性
-    @Autowired
-    private SymbolRepository symbolRepository;
-
     // 注入撮合服務：下單成功後立即觸發撮合
     @Autowired
     private MatchingService matchingService;
 
-    // 方法：查詢訂單簿 (Order Book)
-    // 用於前端顯示深度圖 (Depth Chart) 或買賣盤列表
-    public OrderBookDTO getOrderBook(String symbolId, com.exchange.exchange.enums.TradeType tradeType) {
-        // 定義哪些訂單狀態應被納入訂單簿 (僅 NEW 和 PARTIAL_FILLED)
-        List<OrderStatus> activeStatuses = Arrays.asList(OrderStatus.NEW, OrderStatus.PARTIAL_FILLED);
-        // 設定查詢限制：只取最優的 10 檔報價 (Top 10)
-        PageRequest limit = PageRequest.of(0, 10);
-
-        // 查詢買盤 (Bids)：價格由高到低排序
-        // 買方希望買低，但市場上價格最高的買單最容易成交，排在最上面 (Best Bid)
-        List<OrderBookDTO.Entry> bids = orderRepository.findOrderBookBids(symbolId, OrderSide.BUY, tradeType, activeStatuses, limit);
-        
-        // 查詢賣盤 (Asks)：價格由低到高排序
-        // 賣方希望賣高，但市場上價格最低的賣單最容易成交，排在最上面 (Best Ask)
-        List<OrderBookDTO.Entry> asks = orderRepository.findOrderBookAsks(symbolId, OrderSide.SELL, tradeType, activeStatuses, limit);
+    // 注入記憶體訂單簿管理器：用於查詢交易對設定、最佳報價與撤單時移除掛單
+    @Autowired
+    private OrderBookManager orderBookManager;
+
+    // 注入序列器管理器：將下單撮合與撤單路由到交易對專屬的撮合執行緒
+    @Autowired
+    private SequencerManager sequencerManager;
 
-        // 將結果封裝為 DTO 回傳
-        return new OrderBookDTO(bids, asks);
+    // 注入程式化交易模板：用於在不同執行緒中劃定資料庫交易邊界
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 注入寫回管線：撤單後的訂單狀態以事件批次寫入
+    @Autowired
+    private BatchPersister batchPersister;
+
+    // 注入會員成交明細儲存庫：查詢成交歷史
+    @Autowired
+    private MemberFillRepository memberFillRepository;
+
+    // 注入指令日誌：每筆進入撮合的下單與撤單指令都先寫入日誌，供當機後重播
+    @Autowired
+    private CommandJournal commandJournal;
+
+    // 方法：查詢訂單簿深度 (Order Book Depth) [註11]
+    // 直接回傳撮合引擎發布的深度快照 (已序列化的 JSON)，不查詢資料庫
+    // depth 為檔位數 (5/10/20/100)，0 代表全部檔位
+    public byte[] getOrderBook(String symbolId, com.exchange.exchange.enums.TradeType tradeType, int depth) {
+        orderBookManager.symbolOf(symbolId);
+        return orderBookManager.getBook(symbolId, tradeType).depth().toJson(depth);
     }
 
-    // 方法：建立新訂單 (Create Order)
-    // 標註 @Transactional 確保整個下單流程 (驗證->凍結->存檔) 為原子操作
-    @Transactional
+    // 方法：建立新訂單 (Create Order) - 同步模式
+    // 流程分為兩段：
+    // 1. 受理 (Intake)：在呼叫端執行緒的資料庫交易中完成驗證、凍結資金與寫入訂單。
+    // 2. 撮合 (Matching)：交給該交易對的序列器執行緒依序撮合，並等待其完成。
+    // 撮合失敗時拋出原本的例外；訂單不會停在 NEW 且資金凍結 [註3]
     public Order createOrder(Integer memberId, OrderRequest request) {
+        Intake intake = inIntakeTransaction(() -> acceptOrder(memberId, request));
+
+        // 觸發撮合引擎：指令進入交易對的序列器排隊，由單一執行緒依序撮合 [註2]
+        // 同步模式會等待撮合完成才回傳
+        return sequencerManager.execute(intake.order().getSymbolId(), () -> placeOrReject(intake));
+    }
+
+    // 方法：提交新訂單 (Submit Order) - 非同步模式 [註3]
+    // 受理完成 (驗證、凍結、寫入) 後立即回傳已配發 ID 的訂單，不等待撮合。
+    // 撮合結束 (成功或失敗) 時呼叫 onComplete 回呼；回呼在撮合執行緒中執行，必須保持輕量。
+    // 撮合失敗時訂單已被拒絕並解凍 (在撮合執行緒中、回呼之前完成)，回呼只需記錄 [註3]
+    public Order submitOrder(Integer memberId, OrderRequest request, BiConsumer<Order, Throwable> onComplete) {
+        Intake intake = inIntakeTransaction(() -> acceptOrder(memberId, request));
+        Order order = intake.order();
+
+        sequencerManager.submit(order.getSymbolId(), () -> placeOrReject(intake))
+                .whenComplete((matched, error) -> onComplete.accept(order, error));
+
+        return order;
+    }
+
+    // 方法：查詢單一訂單的目前狀態 (非同步下單後用於追蹤成交進度)
+    public Order getOrder(Integer memberId, Integer orderId) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new IllegalArgumentException("Order not found"));
+        // 權限驗證：只能查詢自己的訂單，對外一律回報找不到以免洩漏訂單是否存在
+        if (!order.getMemberId().equals(memberId)) {
+            throw new IllegalArgumentException("Order not found");
+        }
+        return order;
+    }
+
+    // 方法：查詢會員的成交紀錄 (游標分頁，由新到舊) [註9]
+    // symbolId 為 null 時不篩選交易對；from (含) / to (不含) 為 null 時不限制時間
+    public PageDTO<TradeRecordDTO> getFills(Integer memberId, String symbolId, LocalDateTime from, LocalDateTime to,
+                                            String cursor, Integer limit) {
+        int size = PageDTO.limitOf(limit);
+        PageCursor before = PageCursor.decode(cursor);
+        LocalDateTime end = to != null ? to : NO_UPPER_BOUND;
+        // 第一頁以 (end, 0) 作為游標，等同 executed_at < end
+        LocalDateTime beforeTime = end;
+        long beforeId = 0;
+        if (before != null && before.time().isBefore(end)) {
+            beforeTime = before.time();
+            beforeId = before.id();
+        }
+        LocalDateTime start = from != null ? from : NO_LOWER_BOUND;
+        List<MemberFill> fills = symbolId == null || symbolId.isBlank()
+                ? memberFillRepository.findPage(memberId, start, beforeTime, beforeId, size)
+                : memberFillRepository.findPageBySymbol(memberId, symbolId.trim(), start, beforeTime, beforeId, size);
+        return PageDTO.of(fills, size, fill -> new PageCursor(fill.getExecutedAt(), fill.getId()))
+                      .map(TradeRecordDTO::of);
+    }
+
+    // 方法：批次下單 (Batch Create Orders) [註7]
+    // 1. 逐筆驗證並計算凍結金額，不合法的訂單直接回報錯誤，不影響其他訂單。
+    // 2. 在單一資料庫交易中，每個幣種只凍結一次 (合計金額)，並一次寫入所有訂單。
+    // 3. 依交易對分組，每個交易對以「一個」序列器指令依序撮合該組全部訂單，中間不會插入其他指令。
+    // awaitMatching 為 false 時，送入序列器後即回傳受理結果，不等待撮合。
+    public List<BatchResultDTO> createOrders(Integer memberId, List<OrderRequest> requests, boolean awaitMatching) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("Batch must contain at least one order");
+        }
+        if (requests.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size exceeds " + MAX_BATCH_SIZE);
+        }
+
+        BatchResultDTO[] results = new BatchResultDTO[requests.size()];
+        Intake[] intakes = new Intake[requests.size()];
+
+        // 步驟 1：逐筆驗證 (不寫入資料庫)
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                intakes[i] = prepareOrder(memberId, requests.get(i));
+            } catch (RuntimeException e) {
+                results[i] = BatchResultDTO.failed(i, e.getMessage());
+            }
+        }
+
+        // 步驟 2：單一交易內依幣種合併凍結，並寫入所有通過的訂單
+        // 交易可能回滾重試，每次嘗試只回傳結果，不修改 intakes / results
+        Map<String, List<Integer>> byCurrency = new LinkedHashMap<>();
+        for (int i = 0; i < intakes.length; i++) {
+            if (intakes[i] != null) byCurrency.computeIfAbsent(intakes[i].currency(), k -> new ArrayList<>()).add(i);
+        }
+        Map<Integer, Order> accepted;
+        try {
+            accepted = inIntakeTransaction(() -> freezeAndSave(memberId, intakes, byCurrency));
+        } catch (IllegalArgumentException e) {
+            // 重試用盡：改為每個幣種各自一個交易，仍失敗的幣種整組拒絕，其他幣種照常受理
+            accepted = new LinkedHashMap<>();
+            for (Map.Entry<String, List<Integer>> group : byCurrency.entrySet()) {
+                Map<String, List<Integer>> single = Map.of(group.getKey(), group.getValue());
+                try {
+                    accepted.putAll(inIntakeTransaction(() -> freezeAndSave(memberId, intakes, single)));
+                } catch (IllegalArgumentException groupError) {
+                    for (int i : group.getValue()) results[i] = BatchResultDTO.failed(i, groupError.getMessage());
+                }
+            }
+        }
+        for (int i = 0; i < intakes.length; i++) {
+            if (intakes[i] != null && results[i] == null && !accepted.containsKey(i)) {
+                results[i] = BatchResultDTO.failed(i, "Insufficient available balance for " + intakes[i].currency());
+            }
+        }
+
+        // 步驟 3：依交易對分組送入序列器，每組為一個指令
+        Map<String, List<Integer>> bySymbol = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Order> entry : accepted.entrySet()) {
+            bySymbol.computeIfAbsent(entry.getValue().getSymbolId(), k -> new ArrayList<>()).add(entry.getKey());
+        }
+        Map<Integer, Order> orders = accepted;
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> group : bySymbol.entrySet()) {
+            List<Integer> indexes = group.getValue();
+            indexes.sort(Comparator.naturalOrder());
+            if (!awaitMatching) {
+                for (int i : indexes) results[i] = BatchResultDTO.ok(i, orders.get(i));
+            }
+            pending.add(sequencerManager.submit(group.getKey(), () -> {
+                for (int i : indexes) {
+                    Order order = orders.get(i);
+                    try {
+                        placeOrReject(new Intake(order, intakes[i].currency(), intakes[i].amount()));
+                        if (awaitMatching) results[i] = BatchResultDTO.ok(i, order);
+                    } catch (RuntimeException e) {
+                        System.err.println("Batch matching failed for order " + order.getOrderId() + ": " + e.getMessage());
+                        if (awaitMatching) results[i] = BatchResultDTO.failed(i, e.getMessage());
+                    }
+                }
+                return null;
+            }));
+        }
+        if (awaitMatching) {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        }
+        return Arrays.asList(results);
+    }
+
+    // 私有方法：(批次受理的一次嘗試) 依幣種合併凍結並寫入訂單，回傳 索引 -> 已保存的訂單
+    // 餘額不足的幣種整組略過 (不拋出異常，避免整個交易被標記為回滾)；寫入的是訂單的複本，回滾後 intakes 不受影響
+    private Map<Integer, Order> freezeAndSave(Integer memberId, Intake[] intakes, Map<String, List<Integer>> byCurrency) {
+        List<Integer> indexes = new ArrayList<>();
+        List<Order> orders = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> group : byCurrency.entrySet()) {
+            BigDecimal total = BigDecimal.ZERO;
+            for (int i : group.getValue()) total = total.add(intakes[i].amount());
+            // 檢查與凍結在帳本中原子完成
+            if (!walletService.tryFreezeFunds(memberId, group.getKey(), total)) continue;
+            for (int i : group.getValue()) {
+                indexes.add(i);
+                orders.add(copyOf(intakes[i].order()));
+            }
+        }
+        List<Order> saved = orderRepository.saveAll(orders);
+        Map<Integer, Order> accepted = new LinkedHashMap<>();
+        for (int k = 0; k < indexes.size(); k++) accepted.put(indexes.get(k), saved.get(k));
+        return accepted;
+    }
+
+    // 私有方法：在序列器執行緒中執行已受理訂單的下單指令；失敗時拒絕訂單後拋出原本的例外 [註3]
+    // 撮合中途失敗時 MatchingService 已取消剩餘部分並解凍；仍為 NEW (未進入撮合，例如日誌寫入失敗) 的訂單在此拒絕
+    private Order placeOrReject(Intake intake) {
+        Order order = intake.order();
+        try {
+            return place(order);
+        } catch (RuntimeException e) {
+            if (order.getStatus() == OrderStatus.NEW) {
+                rejectUnmatched(order, intake.currency(), intake.amount());
+            }
+            throw e;
+        }
+    }
+
+    // 私有方法：拒絕已受理但未能進入撮合的訂單 (例如指令日誌寫入失敗)，必須在該交易對的序列器執行緒中呼叫
+    // 解凍受理時凍結的資金並將訂單標記為取消；兩個事件整包寫入 (不推進檢查點)
+    private void rejectUnmatched(Order order, String currency, BigDecimal amount) {
+        order.setStatus(OrderStatus.CANCELED);
+        order.setUpdatedAt(LocalDateTime.now());
+        batchPersister.beginCommand();
+        try {
+            walletService.unfreezeFunds(order.getMemberId(), currency, amount);
+            batchPersister.publish(new PersistEvent.OrderUpdate(order.getOrderId(), BigDecimal.ZERO, BigDecimal.ZERO,
+                    OrderStatus.CANCELED, order.getUpdatedAt()));
+        } finally {
+            batchPersister.endCommand();
+        }
+    }
+
+    // 私有方法：複製尚未保存的訂單實體
+    private static Order copyOf(Order template) {
+        Order order = new Order();
+        order.setMemberId(template.getMemberId());
+        order.setSymbolId(template.getSymbolId());
+        order.setSide(template.getSide());
+        order.setType(template.getType());
+        order.setTradeType(template.getTradeType());
+        order.setPrice(template.getPrice());
+        order.setQuantity(template.getQuantity());
+        order.setFilledQuantity(template.getFilledQuantity());
+        order.setCumQuoteQty(template.getCumQuoteQty());
+        order.setStatus(template.getStatus());
+        order.setPostOnly(template.getPostOnly());
+        order.setCreatedAt(template.getCreatedAt());
+        order.setUpdatedAt(template.getUpdatedAt());
+        return order;
+    }
+
+    // 私有方法：受理訂單 (驗證 -> 凍結 -> 存檔)，回傳已保存的訂單與凍結的幣種、金額 (拒單時解凍使用)
+    // 由 createOrder 包在同一個資料庫交易中執行，任一步驟失敗皆會回滾
+    private Intake acceptOrder(Integer memberId, OrderRequest request) {
+        Intake intake = prepareOrder(memberId, request);
+
+        // 呼叫 WalletService 執行資金凍結
+        // 若餘額不足，此處會拋出異常，交易將回滾 (Rollback)
+        walletService.freezeFunds(memberId, intake.currency(), intake.amount());
+
+        // 寫入資料庫，獲取生成的 Order ID
+        return new Intake(orderRepository.save(intake.order()), intake.currency(), intake.amount());
+    }
+
+    // 私有方法：在資料庫交易中執行受理，遇到樂觀鎖失敗 (錢包條件式更新不成立) 時回滾並重試 [註8]
+    // 寫回管線持續失敗時拒絕受理 (IllegalStateException)：資料庫無法跟上撮合結果，不再凍結資金與寫入新訂單
+    private <T> T inIntakeTransaction(Supplier<T> intake) {
+        if (!batchPersister.isHealthy()) {
+            throw new IllegalStateException("Order intake suspended: persistence is failing");
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> intake.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= MAX_INTAKE_ATTEMPTS) {
+                    throw new IllegalArgumentException(e.getMessage());
+                }
+                // 交易已回滾 (不再持有錢包列鎖)，等待寫回管線寫入落後的入帳差額後重試
+                batchPersister.awaitDrained();
+            }
+        }
+    }
+
+    // 受理中的訂單：已通過驗證、尚未凍結資金與寫入資料庫
+    private record Intake(Order order, String currency, BigDecimal amount) {
+    }
+
+    // 私有方法：驗證下單參數並計算需凍結的幣種與金額，建立 (尚未保存的) 訂單實體
+    private Intake prepareOrder(Integer memberId, OrderRequest request) {
         // 臨時限制：暫時禁用合約交易功能，僅開放現貨
         if (request.getTradeType() == com.exchange.exchange.enums.TradeType.CONTRACT) {
             throw new UnsupportedOperationException("Contract trading is temporarily disabled.");
@@ -86,11 +375,18 @@ public class OrderService {
             throw new IllegalArgumentException("Price must be positive for Limit orders");
         }
 
-        // 步驟 2：驗證交易對是否存在
-        Symbol symbol = symbolRepository.findById(request.getSymbolId())
-                .orElseThrow(() -> new IllegalArgumentException("Symbol not found: " + request.getSymbolId()));
+        // 步驟 2：驗證交易對是否存在 (交易對快取，不存在時拋出 IllegalArgumentException)
+        Symbol symbol = orderBookManager.symbolOf(request.getSymbolId());
+
+        // 價格與數量必須是 Tick / Lot 的整數倍，撮合引擎以定點數運算 (不符時拋出 IllegalArgumentException)
+        // 限價單的委託金額 (Tick * Lot) 也必須在 long 範圍內，否則撮合與撤單時才會溢位
+        SymbolScale scale = orderBookManager.scaleOf(symbol.getSymbolId());
+        scale.toLots(request.getQuantity());
+        if (request.getType() == OrderType.LIMIT) {
+            scale.orderNotional(request.getPrice(), request.getQuantity());
+        }
 
-        // 步驟 3：計算並凍結所需資金 (Freeze Funds)
+        // 步驟 3：計算所需凍結的資金 (Freeze Funds)
         com.exchange.exchange.enums.TradeType tradeType = request.getTradeType();
         if (tradeType == null) {
             tradeType = com.exchange.exchange.enums.TradeType.SPOT; // 若未指定，預設為現貨
@@ -113,27 +409,26 @@ public class OrderService {
                 // 困難點：因為不知道最終成交價，需預估凍結金額
                 currencyToFreeze = symbol.getQuoteCoinId();
                 
-                // 策略：查詢當前市場「最佳賣價」(Best Ask)
-                PageRequest top1 = PageRequest.of(0, 1);
-                List<OrderBookDTO.Entry> asks = orderRepository.findOrderBookAsks(
-                        symbol.getSymbolId(), OrderSide.SELL, tradeType, 
-                        Arrays.asList(OrderStatus.NEW, OrderStatus.PARTIAL_FILLED), top1);
-                
-                BigDecimal estimatedPrice;
-                if (asks.isEmpty()) {
+                // 策略：從記憶體訂單簿取得當前市場「最佳賣價」(Best Ask)
+                // 最佳賣價由撮合執行緒發布，可直接跨執行緒讀取
+                BigDecimal estimatedPrice = orderBookManager.getBook(symbol.getSymbolId(), tradeType)
+                        .bestPrice(OrderSide.SELL);
+
+                if (estimatedPrice == null) {
                     // 若市場無賣單，無法評估價格，拒絕市價買入
                     throw new IllegalArgumentException("No asks available for market buy");
-                } else {
-                    estimatedPrice = asks.get(0).getPrice();
                 }
                 
-                // 計算凍結金額：預估價格 * 數量 * 1.05 (多凍結 5% 作為價格滑點緩衝) [註1]
-                amountToFreeze = estimatedPrice.multiply(request.getQuantity())
-                                               .multiply(new BigDecimal("1.05"));
-                
-                // 設定一個極高的價格作為市價買單的「虛擬限價」，確保能吃掉所有賣單
-                // 使用 long 的最大值，確保比任何賣單都高
-                request.setPrice(new BigDecimal("1000000000")); 
+                // 保護價：預估價格 * 1.05 (5% 價格滑點緩衝) 並向上取整到 Tick [註1]
+                // 市價買單以保護價作為限價撮合，超過保護價的賣單不會成交，剩餘部分於撮合後取消
+                BigDecimal protectionPrice = scale.price(
+                        scale.toTicks(estimatedPrice.multiply(new BigDecimal("1.05")), RoundingMode.CEILING));
+                // 市價買單以保護價撮合與退款，保護價的委託金額同樣不得溢位
+                scale.orderNotional(protectionPrice, request.getQuantity());
+                request.setPrice(protectionPrice);
+
+                // 計算凍結金額：保護價 * 數量 (成交價低於保護價的差額於每筆成交時退還)
+                amountToFreeze = protectionPrice.multiply(request.getQuantity());
             }
         } else {
             // --- 限價單 (Limit Order) 處理邏輯 ---
@@ -148,11 +443,7 @@ public class OrderService {
             }
         }
 
-        // 呼叫 WalletService 執行資金凍結
-        // 若餘額不足，此處會拋出異常，交易將回滾 (Rollback)
-        walletService.freezeFunds(memberId, currencyToFreeze, amountToFreeze);
-
-        // 步驟 4：建立並保存訂單實體
+        // 步驟 4：建立訂單實體
         Order order = new Order();
         order.setMemberId(memberId);
         order.setSymbolId(request.getSymbolId());
@@ -167,25 +458,162 @@ public class OrderService {
         order.setCreatedAt(LocalDateTime.now());
         order.setUpdatedAt(LocalDateTime.now());
 
-        // 寫入資料庫，獲取生成的 Order ID
-        order = orderRepository.save(order);
-        
-        // 步驟 5：觸發撮合引擎
-        // 這是同步呼叫，使用者需等待撮合完成才會收到 API 回應
-        matchingService.matchOrder(order);
-        
-        return order;
+        return new Intake(order, currencyToFreeze, amountToFreeze);
+    }
+
+    // 方法：查詢某會員的委託 (游標分頁，依建立時間倒序) [註10]
+    // status：open (預設，掛單中) / closed (已完成：完全成交 + 已取消) / filled / canceled
+    // 掛單中的訂單由記憶體訂單簿的會員掛單索引提供；已完成的訂單沿 (memberID, status, created_at) 索引查詢
+    public PageDTO<Order> getOrders(Integer memberId, String status, String symbolId, String cursor, Integer limit) {
+        int size = PageDTO.limitOf(limit);
+        PageCursor before = PageCursor.decode(cursor);
+        String symbol = symbolId == null || symbolId.isBlank() ? null : symbolId.trim();
+
+        String filter = status == null || status.isBlank() ? "open" : status.trim().toLowerCase();
+        List<Order> orders = switch (filter) {
+            case "open" -> openOrders(memberId, symbol, before, size);
+            case "closed" -> closedOrders(memberId, symbol, before, size, OrderStatus.FILLED, OrderStatus.CANCELED);
+            case "filled" -> closedOrders(memberId, symbol, before, size, OrderStatus.FILLED);
+            case "canceled" -> closedOrders(memberId, symbol, before, size, OrderStatus.CANCELED);
+            default -> throw new IllegalArgumentException("Invalid status: " + status);
+        };
+        return PageDTO.of(orders, size, order -> new PageCursor(order.getCreatedAt(), order.getOrderId()));
+    }
+
+    // 私有方法：自記憶體訂單簿收集會員的掛單
+    // 每本訂單簿在所屬序列器中讀取 (不與撮合同時進行)，只走訪該會員自己的節點
+    private List<Order> openOrders(Integer memberId, String symbolId, PageCursor before, int limit) {
+        List<CompletableFuture<List<Order>>> pending = new ArrayList<>();
+        for (OrderBook book : orderBookManager.getBooks()) {
+            if (symbolId != null && !symbolId.equals(book.getSymbolId())) continue;
+            pending.add(sequencerManager.submit(book.getSymbolId(), () -> {
+                List<Order> orders = new ArrayList<>();
+                book.forEachOrderOf(memberId, node -> orders.add(node.toOrder(book.getScale())));
+                return orders;
+            }));
+        }
+
+        List<Order> orders = new ArrayList<>();
+        for (CompletableFuture<List<Order>> future : pending) {
+            for (Order order : future.join()) {
+                if (isBefore(order, before)) orders.add(order);
+            }
+        }
+        return newestFirst(orders, limit);
+    }
+
+    // 私有方法：查詢已完成的訂單，每個狀態各自沿索引讀取至多 limit 筆，合併後取最新的 limit 筆
+    private List<Order> closedOrders(Integer memberId, String symbolId, PageCursor before, int limit, OrderStatus... statuses) {
+        // 第一頁以 (NO_UPPER_BOUND, 0) 作為游標
+        LocalDateTime beforeTime = before != null ? before.time() : NO_UPPER_BOUND;
+        long beforeId = before != null ? before.id() : 0;
+
+        List<Order> orders = new ArrayList<>();
+        for (OrderStatus status : statuses) {
+            orders.addAll(orderRepository.findHistoryPage(memberId, status.toString(), symbolId, beforeTime, beforeId, limit));
+        }
+        return statuses.length == 1 ? orders : newestFirst(orders, limit);
+    }
+
+    // 私有方法：訂單是否位於游標之前 (依 (createdAt, orderId) 倒序)
+    private static boolean isBefore(Order order, PageCursor before) {
+        if (before == null) return true;
+        int byTime = order.getCreatedAt().compareTo(before.time());
+        return byTime < 0 || (byTime == 0 && order.getOrderId() < before.id());
     }
 
-    // 方法：查詢某會員的歷史訂單
-    public java.util.List<Order> getOrders(Integer memberId) {
-        return orderRepository.findByMemberIdOrderByCreatedAtDesc(memberId);
+    // 私有方法：依 (createdAt, orderId) 倒序排列並截取前 limit 筆
+    private static List<Order> newestFirst(List<Order> orders, int limit) {
+        orders.sort(Comparator.comparing(Order::getCreatedAt).thenComparing(Order::getOrderId).reversed());
+        return orders.size() > limit ? new ArrayList<>(orders.subList(0, limit)) : orders;
     }
 
     // 方法：取消訂單 (Cancel Order)
-    @Transactional
+    // 撤單與撮合共用同一個交易對序列器，避免撤單與成交同時修改同一筆掛單
+    // 呼叫端提供交易對 (symbolId) 時直接路由，以記憶體訂單索引定位掛單，全程不讀取資料庫 [註6]
+    public Order cancelOrder(Integer memberId, Integer orderId, String symbolId) {
+        Order order = cancelTarget(memberId, orderId, symbolId);
+        return sequencerManager.execute(order.getSymbolId(), () -> cancelResting(memberId, order));
+    }
+
     public Order cancelOrder(Integer memberId, Integer orderId) {
-        // 查詢訂單，若不存在則拋出異常
+        return cancelOrder(memberId, orderId, null);
+    }
+
+    // 方法：批次撤單 (Batch Cancel) [註7]
+    // 依交易對分組，每個交易對以一個序列器指令依序撤銷該組全部訂單；每一筆各自回報成功或失敗
+    public List<BatchResultDTO> cancelOrders(Integer memberId, List<CancelRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("Batch must contain at least one order");
+        }
+        if (requests.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size exceeds " + MAX_BATCH_SIZE);
+        }
+
+        BatchResultDTO[] results = new BatchResultDTO[requests.size()];
+        Order[] targets = new Order[requests.size()];
+        Map<String, List<Integer>> bySymbol = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                CancelRequest request = requests.get(i);
+                targets[i] = cancelTarget(memberId, request.getOrderId(), request.getSymbolId());
+                bySymbol.computeIfAbsent(targets[i].getSymbolId(), k -> new ArrayList<>()).add(i);
+            } catch (RuntimeException e) {
+                results[i] = BatchResultDTO.failed(i, e.getMessage());
+            }
+        }
+
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> group : bySymbol.entrySet()) {
+            List<Integer> indexes = group.getValue();
+            pending.add(sequencerManager.submit(group.getKey(), () -> {
+                for (int i : indexes) {
+                    try {
+                        results[i] = BatchResultDTO.ok(i, cancelResting(memberId, targets[i]));
+                    } catch (RuntimeException e) {
+                        results[i] = BatchResultDTO.failed(i, e.getMessage());
+                    }
+                }
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        return Arrays.asList(results);
+    }
+
+    // 方法：撤銷某會員在指定交易對的所有掛單 (Cancel All)
+    // 在序列器中一次完成：先自記憶體訂單簿的會員掛單索引收集該會員的掛單，再逐筆撤銷，期間不會有新的成交或掛單插入
+    public List<Order> cancelAll(Integer memberId, String symbolId) {
+        orderBookManager.symbolOf(symbolId);
+        return sequencerManager.execute(symbolId, () -> {
+            OrderBook book = orderBookManager.getBook(symbolId, com.exchange.exchange.enums.TradeType.SPOT);
+            List<Integer> orderIds = new ArrayList<>();
+            book.forEachOrderOf(memberId, node -> orderIds.add(node.getOrderId()));
+
+            List<Order> canceled = new ArrayList<>(orderIds.size());
+            for (Integer orderId : orderIds) {
+                canceled.add(cancelResting(memberId, cancelTarget(memberId, orderId, symbolId)));
+            }
+            return canceled;
+        });
+    }
+
+    // 私有方法：決定撤單的路由目標
+    // 提供交易對時直接建立訂單參考 (不讀取資料庫)；否則查詢訂單所屬交易對並驗證擁有者
+    private Order cancelTarget(Integer memberId, Integer orderId, String symbolId) {
+        if (orderId == null) {
+            throw new IllegalArgumentException("Order not found");
+        }
+        if (symbolId != null) {
+            Order order = new Order();
+            order.setOrderId(orderId);
+            order.setMemberId(memberId);
+            order.setSymbolId(symbolId);
+            order.setTradeType(com.exchange.exchange.enums.TradeType.SPOT);
+            return order;
+        }
+
+        // 未提供交易對：查詢訂單所屬交易對，以便路由到對應的序列器
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new IllegalArgumentException("Order not found"));
 
@@ -193,50 +621,140 @@ public class OrderService {
         if (!order.getMemberId().equals(memberId)) {
             throw new IllegalArgumentException("Unauthorized");
         }
+        return order;
+    }
+
+    // 私有方法：在序列器執行緒中撤銷一筆掛單 (驗證 -> 寫入日誌 -> 撤單)
+    private Order cancelResting(Integer memberId, Order order) {
+        // 在寫入日誌前以記憶體掛單驗證狀態與擁有者，日誌中只會有合法的撤單指令
+        OrderNode resting = orderBookManager.getBook(order.getSymbolId(), tradeTypeOf(order)).get(order.getOrderId());
+        if (resting == null) {
+            throw notOpen(order);
+        }
+        if (resting.getMemberId() != memberId) {
+            throw new IllegalArgumentException("Unauthorized");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long sequence = commandJournal.appendCancel(order, now);
+        return applyCancel(order, sequence, now, true);
+    }
 
-        // 狀態驗證：只能取消「新訂單」或「部分成交」的訂單
-        // 若訂單已完成或已取消，則無法再次取消
-        if (order.getStatus() != OrderStatus.NEW && order.getStatus() != OrderStatus.PARTIAL_FILLED) {
-            throw new IllegalArgumentException("Order cannot be canceled in state: " + order.getStatus());
+    // 方法：重播一筆日誌指令 (僅供重啟恢復使用，必須在該交易對的序列器執行緒中呼叫)
+    // persist 為 false 代表該指令的結果已在資料庫中，只需恢復記憶體訂單簿
+    public void replay(JournalRecord record, boolean persist) {
+        switch (record) {
+            // 沿用日誌中的指令時間：重新執行的成交與原本的時間相同
+            case JournalRecord.Place p -> applyPlace(p.toOrder(), p.sequence(), p.timestamp(), persist);
+            case JournalRecord.Cancel c -> applyCancel(c.toOrderRef(), c.sequence(), c.timestamp(), persist);
         }
+    }
+
+    // 方法：將已受理 (已寫入資料庫) 但未寫入日誌的訂單送入撮合 (僅供重啟恢復使用，必須在該交易對的序列器執行緒中呼叫)
+    // 與受理後的正常流程相同：寫入日誌、撮合、結算，結果經寫回管線寫入資料庫
+    public Order resume(Order order) {
+        return place(order);
+    }
+
+    // 私有方法：在序列器執行緒中執行下單指令：先寫入指令日誌，再撮合 [註5]
+    private Order place(Order order) {
+        LocalDateTime now = LocalDateTime.now();
+        long sequence = commandJournal.appendPlace(order, now);
+        return applyPlace(order, sequence, now, true);
+    }
+
+    // 私有方法：撮合並將產生的事件連同日誌序號整包送入寫回管線
+    private Order applyPlace(Order order, long sequence, LocalDateTime executedAt, boolean persist) {
+        batchPersister.beginCommand();
+        try {
+            matchingService.matchOrder(order, executedAt, persist);
+        } finally {
+            endCommand(order.getSymbolId(), sequence, persist);
+        }
+        return order;
+    }
+
+    // 私有方法：執行撤單並將產生的事件連同日誌序號整包送入寫回管線
+    private Order applyCancel(Order order, long sequence, LocalDateTime canceledAt, boolean persist) {
+        batchPersister.beginCommand();
+        try {
+            return doCancel(order, canceledAt);
+        } finally {
+            endCommand(order.getSymbolId(), sequence, persist);
+        }
+    }
+
+    private void endCommand(String symbolId, long sequence, boolean persist) {
+        if (persist) {
+            batchPersister.endCommand(symbolId, sequence);
+        } else {
+            batchPersister.discardCommand();
+        }
+    }
+
+    // 私有方法：在序列器執行緒中執行撤單 [註4]
+    // 以記憶體訂單簿中的掛單為準 (排隊期間可能已被成交，且資料庫狀態可能尚未寫回)
+    private Order doCancel(Order stored, LocalDateTime canceledAt) {
+        com.exchange.exchange.enums.TradeType tradeType = tradeTypeOf(stored);
 
-        // 計算剩餘未成交數量 (Only refund remaining part)
-        BigDecimal remainingQty = order.getQuantity().subtract(order.getFilledQuantity());
+        OrderBook book = orderBookManager.getBook(stored.getSymbolId(), tradeType);
+        SymbolScale scale = book.getScale();
+        OrderNode order = book.get(stored.getOrderId());
+
+        // 狀態驗證：只有仍在訂單簿中的掛單 (NEW / PARTIAL_FILLED) 可以取消
+        if (order == null) {
+            throw notOpen(stored);
+        }
+
+        // 計算剩餘未成交數量 (Only refund remaining part)，單位為 Lot
+        long remainingQty = order.remaining();
         
-        // 獲取 Symbol 資訊以確定幣種
-        Symbol symbol = symbolRepository.findById(order.getSymbolId())
-                 .orElseThrow(() -> new IllegalStateException("Symbol missing for existing order"));
+        // 獲取 Symbol 資訊以確定幣種 (記憶體快取)
+        Symbol symbol = orderBookManager.symbolOf(order.getSymbolId());
 
         String currencyToUnfreeze;
         BigDecimal refundAmount;
-        
-        // 處理舊資料相容性
-        com.exchange.exchange.enums.TradeType tradeType = order.getTradeType();
-        if (tradeType == null) {
-            tradeType = com.exchange.exchange.enums.TradeType.CONTRACT;
-        }
 
         // 判斷解凍邏輯
         if (tradeType == com.exchange.exchange.enums.TradeType.SPOT && order.getSide() == OrderSide.SELL) {
              // 現貨賣單取消：退還基礎幣 (Base Coin) 的剩餘數量
              currencyToUnfreeze = symbol.getBaseCoinId();
-             refundAmount = remainingQty;
+             refundAmount = scale.quantity(remainingQty);
         } else {
              // 現貨買單取消：退還報價幣 (Quote Coin)
              // 退還金額 = 凍結單價 * 剩餘數量
              currencyToUnfreeze = symbol.getQuoteCoinId();
-             refundAmount = order.getPrice().multiply(remainingQty);
+             refundAmount = scale.quote(SymbolScale.notional(order.getPrice(), remainingQty));
         }
 
+        // 從記憶體訂單簿移除該掛單，避免之後被撮合
+        book.remove(order.getOrderId());
+
         // 更新訂單狀態為 CANCELED
         order.setStatus(OrderStatus.CANCELED);
-        order.setUpdatedAt(LocalDateTime.now());
+        order.setUpdatedAt(canceledAt);
         
         // 執行資金解凍
-        walletService.unfreezeFunds(memberId, currencyToUnfreeze, refundAmount);
+        walletService.unfreezeFunds(order.getMemberId(), currencyToUnfreeze, refundAmount);
+
+        // 狀態變更送入寫回管線
+        order.copyTo(stored, scale);
+        book.release(order);
+        batchPersister.publish(new PersistEvent.OrderUpdate(stored.getOrderId(), stored.getFilledQuantity(),
+                stored.getCumQuoteQty(), stored.getStatus(), stored.getUpdatedAt()));
+        return stored;
+    }
+
+    // 私有方法：處理舊資料相容性 (缺少交易模式的訂單視為合約)
+    private static com.exchange.exchange.enums.TradeType tradeTypeOf(Order order) {
+        return order.getTradeType() != null ? order.getTradeType() : com.exchange.exchange.enums.TradeType.CONTRACT;
+    }
 
-        // 保存狀態變更
-        return orderRepository.save(order);
+    // 私有方法：訂單不在訂單簿中 (已成交、已取消或不存在) 時的錯誤
+    private static IllegalArgumentException notOpen(Order stored) {
+        if (stored.getStatus() == OrderStatus.FILLED || stored.getStatus() == OrderStatus.CANCELED) {
+            return new IllegalArgumentException("Order cannot be canceled in state: " + stored.getStatus());
+        }
+        return new IllegalArgumentException("Order is no longer open");
     }
 }
 
@@ -245,9 +763,72 @@ public class OrderService {
 [註1] 市價單滑點 (Market Order Slippage):
       目前採用固定 5% (1.05) 的緩衝係數。在劇烈波動的市場中，5% 可能不足以覆蓋價格滑動，導致下單失敗。
       更好的做法是讓使用者在前端設定「最大滑點容忍度」(Slippage Tolerance)。
+      早期版本以 1,000,000,000 作為虛擬限價，但定點數撮合下「虛擬價 * 數量」會超出 long 範圍，
+      因此改以保護價撮合：凍結金額與成交上限一致，超出保護價的部分不成交而是取消並退款。
 
 [註2] 撮合解耦 (Decoupling Matching):
-      `matchingService.matchOrder(order)` 是同步呼叫。
-      這會導致 `createOrder` 的回應時間取決於撮合引擎的處理速度。
-      建議引入 Message Queue (如 RabbitMQ, Kafka)，將下單事件發送至佇列，由撮合引擎非同步消費處理，提升下單 API 的吞吐量。
+      撮合已改由每個交易對專屬的序列器執行緒 (SymbolSequencer) 依序處理，
+      同一交易對的請求不再於各自的 HTTP 執行緒中競爭同一批 Maker 資料列與 InnoDB 行鎖。
+      但 `createOrder` 仍會等待撮合完成才回應，回應時間取決於撮合引擎的處理速度。
+
+[註3] 非同步受理 (Asynchronous Acknowledgement):
+      `submitOrder` 在資金凍結與訂單寫入完成後即返回，API 延遲不再取決於 Taker 吃掉多少檔 Maker。
+      此時訂單狀態仍為 NEW，成交結果需由呼叫端輪詢 `getOrder` 或透過 onComplete 回呼取得。
+      若撮合失敗，訂單不會停在 NEW 且資金凍結 (同步、非同步與批次下單相同，見 placeOrReject)：
+      撮合中途失敗時，已產生的成交照常結算，剩餘部分由 MatchingService 取消並解凍；
+      未進入撮合 (例如指令日誌寫入失敗) 時，解凍受理時凍結的全部金額並將訂單標記為 CANCELED。
+      拒單在撮合執行緒中、onComplete 回呼之前完成，回呼收到的訂單已是最終狀態，只需記錄失敗原因。
+
+[註4] 撤單不讀資料庫最新狀態 (Cancel From Memory):
+      撮合結果由寫回管線非同步寫入，資料庫中的訂單狀態可能落後於記憶體。
+      因此撤單以序列器執行緒中的記憶體訂單簿為準：仍在簿中即可取消，不在簿中則代表已成交或已取消。
+      撤單本身也不再開啟資料庫交易，狀態與解凍皆以事件送入寫回管線。
+
+[註5] 指令日誌 (Command Journal):
+      受理階段 (凍結資金、寫入訂單) 仍同步寫入資料庫；撮合產生的結果則由寫回管線非同步寫入。
+      為了讓後者在當機時不遺失，序列器在執行指令前先將其附加到指令日誌，
+      重啟時 EngineRecovery 會重播資料庫檢查點之後的指令，重新產生尚未寫入的成交與結算。
+
+[註6] 免查詢撤單 (Cancel Without Database Read):
+      造市商的撤單量遠大於成交量。提供交易對時，撤單只需在序列器中查一次訂單索引 (OrderIndex)，
+      擁有者與剩餘數量都來自記憶體掛單，幣種來自交易對快取，不再有兩次 findById。
+      未提供交易對時仍需查詢一次訂單以得知路由目標 (相容舊版前端)。
+      訂單不在簿中時不寫入日誌，直接回報錯誤；此時無法得知資料庫中的最終狀態，一律回報 "Order is no longer open"。
+
+[註7] 批次指令 (Batch Commands):
+      造市程式每輪需要更新數十個檔位，逐筆呼叫會各自開一個資料庫交易、各自凍結資金並各自排隊撮合。
+      批次下單把凍結合併為「每個幣種一次」，訂單以 saveAll 一次寫入，撮合則是每個交易對一個序列器指令；
+      批次撤單同樣每個交易對一個指令。每筆仍各自寫入指令日誌，重播時與逐筆下單完全相同。
+      某幣種合計餘額不足時，該幣種的訂單整組拒絕 (不嘗試部分受理)，其他幣種的訂單不受影響。
+      受理交易可能回滾重試 (見 [註8])，每次嘗試寫入訂單的複本並只回傳結果，回滾的嘗試不會留下已配發的 ID 或拒絕結果。
+      重試用盡時不讓整批失敗，而是改為每個幣種各自一個交易，仍衝突的幣種整組回報失敗。
+      撮合失敗的訂單不會停在 NEW 且資金凍結：撮合中途失敗時剩餘部分由 MatchingService 取消並解凍，
+      未進入撮合 (日誌寫入失敗) 的訂單則解凍受理時的金額並標記為取消。
+
+[註8] 受理重試 (Intake Retry):
+      資料庫端的凍結是條件式 UPDATE，條件不成立時 WalletService 拋出 OptimisticLockingFailureException
+      (JPA 以 @Version 偵測到的並發修改也屬於此類)。重試在交易之外進行：交易回滾後釋放錢包列鎖，
+      等待寫回管線寫完後重新執行整個受理流程；超過 MAX_INTAKE_ATTEMPTS 次仍失敗則以餘額不足回報。
+      受理流程在交易提交前沒有任何外部副作用 (帳本凍結會隨回滾撤銷)，重新執行是安全的。
+
+[註9] 成交歷史分頁 (Fill History Pagination):
+      成交歷史改查反正規化的 member_fills (撮合時由寫回管線寫入)，不再 JOIN orders 與在記憶體中排序。
+      游標為上一頁最後一筆的 (executed_at, id)；帶交易對時使用 (member_id, symbol_id, executed_at, id) 索引，
+      不帶時使用 (member_id, executed_at, id) 索引，每頁只讀取 limit 筆。
+
+[註10] 委託查詢 (Open / Closed Orders):
+      早期版本一次回傳會員的全部訂單 (findByMemberIdOrderByCreatedAtDesc)，回應大小與查詢成本隨歷史線性成長。
+      現在拆為兩條路徑：
+      1. 掛單中 (open)：權威狀態本來就在記憶體訂單簿，經由會員掛單索引 (OrderBook.forEachOrderOf) 取得，
+         不查資料庫；成本只與該會員的掛單數有關。
+      2. 已完成 (closed)：每個狀態一條沿 (memberID, status, created_at, orderID) 索引的游標查詢，
+         以等值條件固定 status 才能讓索引直接提供排序 (status IN (...) 會退化為檔案排序)；
+         closed 同時查 filled 與 canceled 各 limit 筆，在記憶體中合併取前 limit 筆。
+      帶交易對時 symbolID 為索引上的過濾條件，最壞情況下會多掃描該會員其他交易對的訂單。
+
+[註11] 深度查詢 (Depth Query):
+      早期版本每次請求都以 GROUP BY price 聚合全部活躍訂單 (買賣各一次)，前端每 2 秒輪詢一次，
+      資料庫負載與觀看人數成正比。現在深度由撮合引擎在掛單、成交、撤單時增量維護 (PriceLevel.quantity)，
+      每批指令結束後發布不可變快照 (DepthSnapshot)，查詢只是讀取 volatile 參考並回傳快取的位元組。
+      快照最多落後一批指令 (序列器清空或連續 256 筆指令後即更新)。
 */
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.exchange.exchange.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.exchange.exchange.engine.SymbolScale;
+
+// ====== 檔案總結 ======
+// SweepSettlement 累積一次撮合 (Taker 掃過多個 Maker) 中所有帳戶的資金差額，撮合結束時一次結算。
+// 以 (會員, 幣種, 流水類型) 為單位合併：
+// 1. 差額以定點數 (基礎幣為 Lot 數、報價幣為成交金額單位) 相加，撮合迴圈中不產生 BigDecimal。
+// 2. flush 時每個帳戶只呼叫一次 WalletService.settle：帳本更新一次、寫回一筆差額與一筆彙總流水。
+// 每次撮合建立一個實例，只在該交易對的序列器執行緒中使用。
+final class SweepSettlement {
+
+    private final SymbolScale scale;
+
+    // 保持插入順序，讓重播時的結算順序與原本執行時相同
+    private final Map<Account, Delta> deltas = new LinkedHashMap<>();
+
+    SweepSettlement(SymbolScale scale) {
+        this.scale = scale;
+    }
+
+    // 方法：累積報價幣差額 (單位：成交金額，即 Tick * Lot)
+    void addQuote(int memberId, String coinId, String type, long balance, long available) {
+        add(new Account(memberId, coinId, type), true, balance, available);
+    }
+
+    // 方法：累積基礎幣差額 (單位：Lot)
+    void addBase(int memberId, String coinId, String type, long balance, long available) {
+        add(new Account(memberId, coinId, type), false, balance, available);
+    }
+
+    // 方法：將累積的差額換算為 BigDecimal，每個帳戶結算一次
+    void flush(WalletService walletService) {
+        for (Map.Entry<Account, Delta> entry : deltas.entrySet()) {
+            Account account = entry.getKey();
+            Delta delta = entry.getValue();
+            walletService.settle(account.memberId(), account.coinId(),
+                    delta.quote ? scale.quote(delta.balance) : scale.quantity(delta.balance),
+                    delta.quote ? scale.quote(delta.available) : scale.quantity(delta.available),
+                    account.type());
+        }
+        deltas.clear();
+    }
+
+    private void add(Account account, boolean quote, long balance, long available) {
+        Delta delta = deltas.get(account);
+        if (delta == null) {
+            delta = new Delta(quote);
+            deltas.put(account, delta);
+        }
+        delta.balance = Math.addExact(delta.balance, balance);
+        delta.available = Math.addExact(delta.available, available);
+    }
+
+    // 結算單位：同一帳戶的不同流水類型 (例如自成交時的買入與賣出) 分開彙總
+    private record Account(int memberId, String coinId, String type) {
+    }
+
+    private static final class Delta {
+        final boolean quote;
+        long balance;
+        long available;
+
+        Delta(boolean quote) {
+            this.quote = quote;
+        }
+    }
+}
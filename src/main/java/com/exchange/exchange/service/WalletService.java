@@ -2,14 +2,24 @@ package com.exchange.exchange.service;
 
 // 引入實體：錢包、錢包主鍵 (複合鍵)
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.exchange.exchange.dto.PageCursor;
+import com.exchange.exchange.dto.PageDTO;
+import com.exchange.exchange.engine.ledger.WalletLedger;
+import com.exchange.exchange.engine.persist.BatchPersister;
+import com.exchange.exchange.engine.persist.PersistEvent;
 import com.exchange.exchange.entity.Wallet;
-import com.exchange.exchange.entity.key.WalletId;
 import com.exchange.exchange.repository.CoinRepository;
 import com.exchange.exchange.repository.WalletRepository;
 
@@ -18,7 +28,7 @@ import com.exchange.exchange.repository.WalletRepository;
 // 核心概念：
 // 1. Balance (總餘額)：使用者擁有的資產總量 (包含凍結中)。
 // 2. Available (可用餘額)：可以自由使用的資產 (總餘額 - 凍結金額)。
-// 所有的資金變動都必須透過此 Service，且應嚴格遵守事務原子性。
+// 所有的資金變動都必須透過此 Service：先在記憶體帳本 (WalletLedger) 中原子更新，再以相對差額寫入資料庫。
 @Service
 public class WalletService {
 
@@ -34,23 +44,44 @@ public class WalletService {
     @Autowired
     private com.exchange.exchange.repository.WalletTransactionRepository transactionRepository;
 
+    // 注入寫回管線：成交結算與解凍改為批次寫入
+    @Autowired
+    private BatchPersister batchPersister;
+
+    // 注入錢包帳本：餘額檢查與結算的權威來源 (常駐記憶體)
+    @Autowired
+    private WalletLedger walletLedger;
+
     // 方法：取得某會員所有幣種的錢包
+    // 資料庫中的錢包以帳本中的即時餘額覆蓋，並補上已在帳本中、尚未寫入資料庫的錢包
     public List<Wallet> getWallets(Integer memberId) {
-        return walletRepository.findByMemberId(memberId);
+        Map<String, Wallet> wallets = new LinkedHashMap<>();
+        for (Wallet wallet : walletRepository.findByMemberId(memberId)) {
+            wallets.put(wallet.getCoinId(), wallet);
+        }
+        for (Wallet wallet : walletLedger.loaded(memberId)) {
+            wallets.put(wallet.getCoinId(), wallet);
+        }
+        return new ArrayList<>(wallets.values());
     }
 
-    // 方法：取得某會員的資金流水紀錄 (倒序排列)
-    public List<com.exchange.exchange.entity.WalletTransaction> getTransactions(Integer memberId) {
-        return transactionRepository.findByMemberIdOrderByCreatedAtDesc(memberId);
+    // 方法：取得某會員的資金流水紀錄 (倒序排列，游標分頁) [註5]
+    // cursor 為上一頁回傳的 nextCursor，null 代表第一頁
+    public PageDTO<com.exchange.exchange.entity.WalletTransaction> getTransactions(Integer memberId, String cursor, Integer limit) {
+        int size = PageDTO.limitOf(limit);
+        PageCursor after = PageCursor.decode(cursor);
+        List<com.exchange.exchange.entity.WalletTransaction> items = after == null
+                ? transactionRepository.findLatest(memberId, size)
+                : transactionRepository.findBefore(memberId, after.time(), after.id(), size);
+        return PageDTO.of(items, size, tx -> new PageCursor(tx.getCreatedAt(), tx.getId()));
     }
 
-    // 方法：取得單一錢包，若不存在則自動創建一個空錢包 (Lazy Creation)
+    // 方法：取得單一錢包的即時餘額 (由帳本提供)
+    // 錢包不存在時視為空錢包 (Lazy Creation)，實際資料列於第一次資金變動時建立
     public Wallet getWallet(Integer memberId, String coinId) {
         // 清理輸入字串
         String cleanCoinId = coinId != null ? coinId.trim() : null;
-        // 使用複合主鍵查詢，若無則呼叫 createEmptyWallet
-        return walletRepository.findById(new WalletId(memberId, cleanCoinId))
-                .orElseGet(() -> createEmptyWallet(memberId, cleanCoinId));
+        return walletLedger.get(memberId, cleanCoinId);
     }
 
     // 方法：模擬儲值 (Deposit)
@@ -72,12 +103,8 @@ public class WalletService {
             throw new IllegalArgumentException("Coin not found: " + cleanCoinId);
         }
 
-        // 獲取錢包物件
-        Wallet wallet = getWallet(memberId, cleanCoinId);
-        
-        // 執行加款：同時增加總餘額與可用餘額
-        wallet.setBalance(wallet.getBalance().add(amount));
-        wallet.setAvailable(wallet.getAvailable().add(amount));
+        // 執行加款：同時增加總餘額與可用餘額 (先更新帳本，再以相對差額寫入資料庫)
+        applySynchronously(memberId, cleanCoinId, amount, amount);
         
         // 記錄資金流水 (Log transaction)
         com.exchange.exchange.entity.WalletTransaction tx = new com.exchange.exchange.entity.WalletTransaction(
@@ -85,7 +112,7 @@ public class WalletService {
         );
         transactionRepository.save(tx);
 
-        return walletRepository.save(wallet);
+        return walletLedger.get(memberId, cleanCoinId);
     }
 
     // 方法：結算盈虧 (Realize PnL) - 用於合約或平倉
@@ -95,14 +122,9 @@ public class WalletService {
         // 若盈虧為 0 則不處理
         if (pnlAmount.compareTo(BigDecimal.ZERO) == 0) return;
 
-        Wallet wallet = getWallet(memberId, coinId);
-        
         // 更新餘額：直接將 PnL 加到 Balance 與 Available 上
         // 若 pnlAmount 為負，則 add 相當於減法
-        wallet.setBalance(wallet.getBalance().add(pnlAmount));
-        wallet.setAvailable(wallet.getAvailable().add(pnlAmount));
-        
-        walletRepository.save(wallet);
+        applySynchronously(memberId, coinId, pnlAmount, pnlAmount);
 
         // 記錄流水
         com.exchange.exchange.entity.WalletTransaction tx = new com.exchange.exchange.entity.WalletTransaction(
@@ -111,104 +133,101 @@ public class WalletService {
         transactionRepository.save(tx);
     }
 
-    // 方法：扣除已凍結資金 (Deduct Frozen Funds) - 用於成交後的實際花費
-    // 注意：因為下單時資金已經從 Available 扣除(凍結)了，所以這裡只扣除 Balance
-    @Transactional
-    public void deductFrozen(Integer memberId, String coinId, BigDecimal amount, String type) {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) return;
-        
-        Wallet wallet = getWallet(memberId, coinId);
-        // Balance 減少 (實際花費)，Available 不變 (因為先前凍結時已經扣過了)
-        wallet.setBalance(wallet.getBalance().subtract(amount));
-        
-        walletRepository.save(wallet);
-        
-        // 記錄流水，金額記為負數
-        transactionRepository.save(new com.exchange.exchange.entity.WalletTransaction(
-            memberId, coinId, type, amount.negate()
-        ));
-    }
-
-    // 方法：增加餘額 (Add Balance) - 用於成交後獲得資產
-    // 例如買到 BTC，則 BTC 錢包同時增加 Balance 與 Available
-    @Transactional
-    public void addBalance(Integer memberId, String coinId, BigDecimal amount, String type) {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) return;
-
-        Wallet wallet = getWallet(memberId, coinId);
-        wallet.setBalance(wallet.getBalance().add(amount));
-        wallet.setAvailable(wallet.getAvailable().add(amount));
+    // 方法：結算一個帳戶的淨差額 (Net Settlement) - 撮合結束後每個帳戶呼叫一次
+    // 帳本立即更新，差額連同一筆彙總流水 (type 為 null 時不記流水) 送入寫回管線 [註2]
+    public void settle(Integer memberId, String coinId, BigDecimal balanceDelta, BigDecimal availableDelta, String type) {
+        if (balanceDelta.signum() == 0 && availableDelta.signum() == 0) return;
 
-        walletRepository.save(wallet);
-
-        transactionRepository.save(new com.exchange.exchange.entity.WalletTransaction(
-            memberId, coinId, type, amount
+        walletLedger.apply(memberId, coinId, balanceDelta, availableDelta);
+        batchPersister.publish(new PersistEvent.WalletDelta(
+            memberId, coinId, balanceDelta, availableDelta, type
         ));
     }
 
     // 方法：重置所有錢包 (測試用功能)
     @Transactional
     public void resetWallets(Integer memberId) {
-        List<Wallet> wallets = walletRepository.findByMemberId(memberId);
-        for (Wallet wallet : wallets) {
-            BigDecimal oldBalance = wallet.getBalance();
+        List<com.exchange.exchange.entity.WalletTransaction> txs = new ArrayList<>();
+        for (Wallet wallet : getWallets(memberId)) {
+            // 在帳本中歸零並取得歸零前的餘額，資料庫以相對差額扣回
+            Wallet before = walletLedger.zero(memberId, wallet.getCoinId());
+            BigDecimal oldBalance = before.getBalance();
+            compensateOnRollback(memberId, wallet.getCoinId(), oldBalance, before.getAvailable());
+            walletRepository.addDelta(memberId, wallet.getCoinId(), oldBalance.negate(), before.getAvailable().negate());
+
             if (oldBalance.compareTo(BigDecimal.ZERO) > 0) {
                 // 記錄一筆 "RESET" 的取出流水
                  com.exchange.exchange.entity.WalletTransaction tx = new com.exchange.exchange.entity.WalletTransaction(
                     memberId, wallet.getCoinId(), "WITHDRAW (RESET)", oldBalance.negate()
                 );
-                transactionRepository.save(tx);
+                txs.add(tx);
             }
-            
-            // 歸零
-            wallet.setBalance(BigDecimal.ZERO);
-            wallet.setAvailable(BigDecimal.ZERO);
-            walletRepository.save(wallet);
         }
+        transactionRepository.saveAll(txs);
     }
 
     // 方法：凍結資金 (Freeze Funds) - 下單時呼叫
     // 將資金從 Available 移出，但保留在 Balance 中 (隱含的 Frozen = Balance - Available)
     @Transactional
     public void freezeFunds(Integer memberId, String coinId, BigDecimal amount) {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) return;
-        
-        Wallet wallet = getWallet(memberId, coinId);
-        // 檢查可用餘額是否足夠
-        if (wallet.getAvailable().compareTo(amount) < 0) {
+        if (!tryFreezeFunds(memberId, coinId, amount)) {
             throw new IllegalArgumentException("Insufficient available balance for " + coinId);
         }
-        
-        // 扣除可用餘額 (Available decreases, Balance stays same)
-        wallet.setAvailable(wallet.getAvailable().subtract(amount));
-        walletRepository.save(wallet);
     }
 
-    // 方法：解凍資金 (Unfreeze Funds) - 取消訂單或退還多餘保證金時呼叫
-    // 將資金加回 Available，Balance 不變
+    // 方法：嘗試凍結資金，可用餘額不足時回傳 false (不拋出異常，不會讓外層交易被標記為回滾)
+    // 檢查與扣除在帳本中原子完成；資料庫在同一交易中以條件式 UPDATE 寫入，與訂單一同提交 [註3]
     @Transactional
+    public boolean tryFreezeFunds(Integer memberId, String coinId, BigDecimal amount) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) return true;
+
+        if (!walletLedger.tryFreeze(memberId, coinId, amount)) return false;
+        int updated;
+        try {
+            updated = walletRepository.freezeIfAvailable(memberId, coinId, amount);
+        } catch (RuntimeException e) {
+            walletLedger.apply(memberId, coinId, BigDecimal.ZERO, amount);
+            throw e;
+        }
+        if (updated == 0) {
+            // 帳本允許但資料庫條件不成立：資料庫落後於帳本 (入帳差額仍在寫回管線中) [註4]
+            // 撤銷帳本凍結並以樂觀鎖失敗回報，由呼叫端回滾交易、等待寫回管線後重試
+            walletLedger.apply(memberId, coinId, BigDecimal.ZERO, amount);
+            throw new OptimisticLockingFailureException("Insufficient available balance for " + coinId);
+        }
+        compensateOnRollback(memberId, coinId, BigDecimal.ZERO, amount);
+        return true;
+    }
+
+    // 方法：解凍資金 (Unfreeze Funds) - 取消訂單或退還多餘保證金時呼叫
+    // 將資金加回 Available，Balance 不變；不產生資金流水
     public void unfreezeFunds(Integer memberId, String coinId, BigDecimal amount) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) return;
 
-        Wallet wallet = getWallet(memberId, coinId);
-        // 資金回補至可用餘額
-        wallet.setAvailable(wallet.getAvailable().add(amount));
-        walletRepository.save(wallet);
+        walletLedger.apply(memberId, coinId, BigDecimal.ZERO, amount);
+        batchPersister.publish(new PersistEvent.WalletDelta(
+            memberId, coinId, BigDecimal.ZERO, amount, null
+        ));
     }
 
-    // 私有方法：建立空錢包
-    private Wallet createEmptyWallet(Integer memberId, String coinId) {
-        // 再次檢查幣種是否存在
-        if (!coinRepository.existsById(coinId)) {
-             throw new IllegalArgumentException("Coin not found: " + coinId);
-        }
+    // 私有方法：同步套用差額 (儲值、盈虧)：先更新帳本，再於目前交易中以相對差額寫入資料庫
+    private void applySynchronously(Integer memberId, String coinId, BigDecimal balanceDelta, BigDecimal availableDelta) {
+        walletLedger.apply(memberId, coinId, balanceDelta, availableDelta);
+        compensateOnRollback(memberId, coinId, balanceDelta.negate(), availableDelta.negate());
+        walletRepository.addDelta(memberId, coinId, balanceDelta, availableDelta);
+    }
 
-        Wallet wallet = new Wallet();
-        wallet.setMemberId(memberId);
-        wallet.setCoinId(coinId);
-        wallet.setBalance(BigDecimal.ZERO);
-        wallet.setAvailable(BigDecimal.ZERO);
-        return walletRepository.save(wallet);
+    // 私有方法：目前交易回滾時，將差額加回帳本 (帳本先於資料庫更新，必須隨交易結果撤銷)
+    private void compensateOnRollback(Integer memberId, String coinId, BigDecimal balanceDelta, BigDecimal availableDelta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    walletLedger.apply(memberId, coinId, balanceDelta, availableDelta);
+                }
+            }
+        });
     }
 }
 
@@ -218,4 +237,29 @@ public class WalletService {
       本系統採用「隱式凍結」邏輯：Frozen = Balance - Available。
       這意味著在資料庫中並不直接存儲 `frozen` 欄位，而是透過 `balance` (總資產) 與 `available` (可用資產) 的差額來推算。
       這是一個常見的設計，優點是欄位少，缺點是若 `balance` 與 `available` 更新不一致會導致帳務錯誤。
+
+[註2] 寫回結算 (Write-Behind Settlement):
+      成交結算 (settle) 與解凍 (unfreezeFunds) 不再逐筆讀取並儲存錢包實體，
+      而是發布差額事件，由 BatchPersister 合併同一錢包的差額後以相對更新 (`balance = balance + ?`) 寫入。
+      因此資料庫中的餘額會短暫落後於撮合結果 (約一個批次間隔)；查詢餘額與下單檢查改由帳本提供，不受落後影響。
+
+[註3] 記憶體帳本與同步寫入 (Ledger vs Synchronous Writes):
+      所有資金變動都先在 WalletLedger 的分段鎖內完成 (檢查 + 扣除為同一原子操作)，並發下單不會超額凍結。
+      凍結必須與訂單在同一資料庫交易中提交：若凍結也走寫回管線，當機時可能留下「訂單已存在但資金未凍結」的資料。
+      因此凍結、儲值與重置仍在呼叫端交易中寫入，但改為不需先讀取的相對更新 (addDelta)；
+      帳本先於資料庫更新，交易回滾時透過 TransactionSynchronization 將差額加回帳本。
+
+[註4] 條件式凍結 (Conditional Freeze):
+      資料庫端以 `available = available - ? WHERE available >= ?` 單一語句完成檢查與扣除，並遞增 version，
+      即使帳本失效 (例如多個實例同時運作)，資料庫中的可用餘額也不會被扣成負數，且不需要 SELECT ... FOR UPDATE。
+      條件不成立通常代表入帳差額尚未由寫回管線寫入；此時不在交易內等待 (交易已持有的錢包列鎖會擋住寫回管線)，
+      而是拋出 OptimisticLockingFailureException，由 OrderService 回滾受理交易、等待管線清空後重試，重試次數有上限。
+
+[註5] 資金流水的寫入與查詢 (Ledger Storage):
+      寫入：流水的主要來源是成交結算，已隨錢包差額由 BatchPersister 以 JDBC Batch 寫入 (每次撮合每帳戶一筆)；
+      儲值、盈虧與重置很少發生，且必須與錢包更新同交易提交，仍在呼叫端交易中寫入。
+      儲存：wallet_transactions 依 created_at 按月分區 (PartitionMaintainer 預先建立未來月份)，
+      清理舊資料時可直接 DROP PARTITION，不需要大量 DELETE。
+      查詢：早期版本一次載入會員的全部歷史，造市機器人帳號的流水會無限成長。
+      現在以 (created_at, id) 游標沿 (member_id, created_at, id) 索引倒序讀取，每頁成本固定。
 */
\ No newline at end of file
@@ -16,7 +16,7 @@ const ORDER_API_URL = '/api/orders';
 let SUPPORTED_COINS = []; 
 
 // ====== 全域狀態變數 (State Management) ======
-let orderBookInterval = null; // 訂單簿輪詢計時器
+let marketStream = null; // 行情串流連線 (EventSource)
 let currentTradeType = 'SPOT'; // 當前交易模式 (SPOT/CONTRACT)
 let currentOrderSide = 'BUY'; // 當前下單方向
 let currentHistoryTab = 'FUNDS'; // 歷史紀錄分頁
@@ -75,11 +75,8 @@ function hideAllPanels() {
     closeDepositModal();
     clearMsgs();
 
-    // 停止訂單簿輪詢，節省資源
-    if (orderBookInterval) {
-        clearInterval(orderBookInterval);
-        orderBookInterval = null;
-    }
+    // 關閉行情串流，節省資源
+    stopMarketStream();
 }
 
 // 顯示特定面板
@@ -522,9 +519,9 @@ function selectSymbol(value, text, fetchNow = true) {
     // 選中後立即更新數據
     if(fetchNow) {
         fetchMyOrders();
-        fetchOrderBook();
         initChart();
         fetchCandles();
+        startMarketStream();
     }
 }
 
@@ -563,17 +560,11 @@ function setTradeType(type) {
     
     // 初始化頁面數據
     fetchMyOrders();
-    fetchOrderBook();
     initChart();
     fetchCandles();
-    
-    // 啟動輪詢機制 (Polling) - 每 2 秒更新一次行情
-    console.log("Starting Polling for " + type);
-    if (orderBookInterval) clearInterval(orderBookInterval);
-    orderBookInterval = setInterval(() => {
-        fetchOrderBook();
-        fetchCandles();
-    }, 2000);
+
+    // 訂閱行情串流：訂單簿與最新 K 線由伺服器推播，不再輪詢 [註1]
+    startMarketStream();
 }
 
 // 設定下單方向 (買/賣) 並切換按鈕樣式
@@ -661,7 +652,6 @@ async function submitOrder() {
             }
             document.getElementById('tradeQuantity').value = '';
             fetchMyOrders(); 
-            fetchOrderBook(); 
         } else {
             const txt = await res.text();
             alert('下單失敗: ' + txt);
@@ -702,6 +692,7 @@ function setChartInterval(interval) {
     }
     
     fetchCandles(true); // 重新載入數據並重置縮放
+    startMarketStream(); // 以新週期重新訂閱 K 線推播
 }
 
 // 初始化圖表
@@ -863,14 +854,24 @@ function generateDummyChartData() {
 
 // ====== 訂單列表管理 (Orders) ======
 
-// 獲取我的訂單
+// 篩選器對應的後端查詢狀態 (全部 = 掛單中 + 已完成)
+const ORDER_FILTER_STATUSES = {
+    ALL: ['open', 'closed'],
+    OPEN: ['open'],
+    FILLED: ['filled'],
+    CANCELED: ['canceled']
+};
+
+// 獲取我的訂單 (依目前篩選器向後端查詢，每種狀態取最新一頁)
 async function fetchMyOrders() {
     try {
-        const res = await fetch(ORDER_API_URL);
-        if (res.ok) {
-            allMyOrders = await res.json();
-            renderOrders();
-        }
+        const statuses = ORDER_FILTER_STATUSES[currentOrderFilter] || ORDER_FILTER_STATUSES.ALL;
+        const pages = await Promise.all(statuses.map(async status => {
+            const res = await fetch(`${ORDER_API_URL}?status=${status}&limit=100`);
+            return res.ok ? (await res.json()).items : [];
+        }));
+        allMyOrders = pages.flat();
+        renderOrders();
     } catch (err) {
         console.error(err);
     }
@@ -896,7 +897,7 @@ function setOrderFilter(filter) {
         }
     });
 
-    renderOrders();
+    fetchMyOrders();
 }
 
 // 渲染訂單列表
@@ -935,7 +936,7 @@ function renderOrders() {
         // 未成交的訂單顯示撤單按鈕
         let actionBtn = '';
         if (o.status === 'NEW' || o.status === 'PARTIAL_FILLED') {
-            actionBtn = `<button class="btn btn-sm" onclick="cancelOrder(${o.orderId})" style="background:#555; font-size:0.8em;">撤單</button>`;
+            actionBtn = `<button class="btn btn-sm" onclick="cancelOrder(${o.orderId}, '${o.symbolId}')" style="background:#555; font-size:0.8em;">撤單</button>`;
         }
 
         div.innerHTML = `
@@ -957,14 +958,14 @@ function renderOrders() {
 }
 
 // 撤銷訂單
-async function cancelOrder(orderId) {
+async function cancelOrder(orderId, symbolId) {
     if(!confirm('確定要撤銷此訂單嗎？')) return;
     try {
-        const res = await fetch(`${ORDER_API_URL}/${orderId}/cancel`, { method: 'POST' });
+        // 附帶交易對，讓後端直接由記憶體訂單簿撤單
+        const res = await fetch(`${ORDER_API_URL}/${orderId}/cancel?symbolId=${encodeURIComponent(symbolId)}`, { method: 'POST' });
         if(res.ok) {
             alert('已撤單');
             fetchMyOrders();
-            fetchOrderBook();
         } else {
             alert('撤單失敗');
         }
@@ -974,18 +975,141 @@ async function cancelOrder(orderId) {
 }
 
 
-// ====== 訂單簿 (Order Book) ======
-async function fetchOrderBook() {
+// ====== 行情串流 (Market Data Stream) ======
+
+// 後端支援推播的 K 線週期 (其他週期只訂閱深度與成交)
+const STREAM_INTERVALS = ['1m', '5m', '15m', '30m', '1h', '1d'];
+
+// 本地訂單簿 (價格 -> 數量)，由快照建立後套用深度差異
+let streamBook = { bids: new Map(), asks: new Map() };
+// 已套用的最後一個 Update ID (null 代表尚未取得快照)
+let depthLastUpdateId = null;
+// 重新同步期間暫存的深度差異 (null 代表目前已同步)
+let depthBuffer = null;
+
+// 訂閱目前交易對的行情串流 (先收到快照，之後為增量更新)
+function startMarketStream() {
+    stopMarketStream();
+    const symbolId = document.getElementById('tradeSymbol').value;
+    if (!symbolId) return;
+
+    const channels = STREAM_INTERVALS.includes(currentChartInterval) ? 'depth,trade,kline' : 'depth,trade';
+    const stream = new EventSource(`/api/market/stream/${symbolId}?channels=${channels}&interval=${currentChartInterval}`);
+
+    stream.addEventListener('snapshot', e => {
+        depthBuffer = null;
+        loadDepthSnapshot(JSON.parse(e.data));
+        renderStreamBook();
+    });
+
+    stream.addEventListener('depth', e => {
+        const data = JSON.parse(e.data);
+        if (depthBuffer) {
+            depthBuffer.push(data);
+            return;
+        }
+        if (applyDepthDiff(data)) renderStreamBook();
+    });
+
+    stream.addEventListener('kline', e => applyKline(JSON.parse(e.data)));
+
+    marketStream = stream;
+}
+
+// 關閉行情串流
+function stopMarketStream() {
+    if (marketStream) {
+        marketStream.close();
+        marketStream = null;
+    }
+    depthLastUpdateId = null;
+    depthBuffer = null;
+}
+
+// 以快照重建本地訂單簿
+function loadDepthSnapshot(snapshot) {
+    streamBook = { bids: new Map(), asks: new Map() };
+    applyDepthLevels(snapshot);
+    depthLastUpdateId = snapshot.lastUpdateId;
+}
+
+// 依 Update ID 套用一則深度差異，回傳是否有套用 (見 [註1])
+function applyDepthDiff(diff) {
+    if (depthLastUpdateId === null || diff.lastUpdateId <= depthLastUpdateId) return false;
+    if (diff.firstUpdateId > depthLastUpdateId + 1) {
+        // 中間有缺漏：暫存之後的差異並以 REST 快照重新同步
+        resyncDepth(diff);
+        return false;
+    }
+    applyDepthLevels(diff);
+    depthLastUpdateId = diff.lastUpdateId;
+    return true;
+}
+
+// 重新同步：取得帶 lastUpdateId 的 REST 快照，再套用暫存的差異
+async function resyncDepth(first) {
     const symbolId = document.getElementById('tradeSymbol').value;
-    if(!symbolId) return;
+    depthBuffer = first ? [first] : (depthBuffer || []);
     try {
-        const res = await fetch(`${ORDER_API_URL}/book/${symbolId}?type=${currentTradeType}`);
-        if (res.ok) {
-            const data = await res.json();
-            renderOrderBook(data);
+        const res = await fetch(`${ORDER_API_URL}/book/${symbolId}?type=SPOT&depth=full`);
+        if (!res.ok) throw new Error(`HTTP ${res.status}`);
+        const snapshot = await res.json();
+        // 期間已切換交易對或串流已重新連線 (快照事件會清除暫存)
+        if (!depthBuffer || symbolId !== document.getElementById('tradeSymbol').value) return;
+
+        // 快照早於暫存的第一則差異：稍後再取一次
+        if (depthBuffer.length > 0 && depthBuffer[0].firstUpdateId > snapshot.lastUpdateId + 1) {
+            setTimeout(() => resyncDepth(null), 500);
+            return;
         }
-    } catch (err) {
-        // 靜默失敗 (Polling 經常發生)
+        const buffered = depthBuffer;
+        depthBuffer = null;
+        loadDepthSnapshot(snapshot);
+        buffered.forEach(applyDepthDiff);
+        renderStreamBook();
+    } catch (e) {
+        console.error('Resync depth error:', e);
+        if (depthBuffer) setTimeout(() => resyncDepth(null), 2000);
+    }
+}
+
+// 套用快照或深度差異 (數量為該檔位的最新總量，0 代表移除)
+function applyDepthLevels(data) {
+    [['bids', streamBook.bids], ['asks', streamBook.asks]].forEach(([key, levels]) => {
+        (data[key] || []).forEach(level => {
+            if (level.quantity === 0) {
+                levels.delete(level.price);
+            } else {
+                levels.set(level.price, level.quantity);
+            }
+        });
+    });
+}
+
+// 以本地訂單簿渲染深度
+function renderStreamBook() {
+    const toEntries = levels => Array.from(levels, ([price, quantity]) => ({ price, quantity }));
+    renderOrderBook({ bids: toEntries(streamBook.bids), asks: toEntries(streamBook.asks) });
+}
+
+// 將 K 線增量合併到圖表 (同一時間桶取最高、最低與最新收盤，新的時間桶則新增一根)
+function applyKline(bar) {
+    if (!candleSeries || bar.interval.toLowerCase() !== currentChartInterval) return;
+    // 與 fetchCandles 相同：毫秒轉秒並修正為 UTC+8
+    const time = bar.openTime / 1000 + (8 * 3600);
+    const data = candleSeries.data();
+    const last = data.length > 0 ? data[data.length - 1] : null;
+
+    if (last && last.time === time) {
+        candleSeries.update({
+            time: time,
+            open: last.open,
+            high: Math.max(last.high, bar.high),
+            low: Math.min(last.low, bar.low),
+            close: bar.close
+        });
+    } else if (!last || time > last.time) {
+        candleSeries.update({ time: time, open: bar.open, high: bar.high, low: bar.low, close: bar.close });
     }
 }
 
@@ -1086,12 +1210,20 @@ function switchHistoryTab(tab) {
     else if (tab === 'TRADES') fetchHistoryTrades();
 }
 
-async function fetchHistoryFunds() {
+// 資金流水採游標分頁：fundsRows 為已載入的資料，fundsCursor 為下一頁游標 (null 代表沒有更多)
+let fundsRows = [];
+let fundsCursor = null;
+
+async function fetchHistoryFunds(more = false) {
     try {
-        const res = await fetch(`${WALLET_API_URL}/transactions`);
+        let url = `${WALLET_API_URL}/transactions?limit=50`;
+        if (more && fundsCursor) url += `&cursor=${encodeURIComponent(fundsCursor)}`;
+        const res = await fetch(url);
         if(res.ok) {
-            const data = await res.json();
-            renderHistoryFunds(data);
+            const page = await res.json();
+            fundsRows = more ? fundsRows.concat(page.items) : page.items;
+            fundsCursor = page.nextCursor;
+            renderHistoryFunds(fundsRows);
         }
     } catch(err) {
         document.getElementById('historyContent').innerHTML = '載入錯誤';
@@ -1132,15 +1264,18 @@ function renderHistoryFunds(data) {
         `;
     });
     html += '</tbody></table>';
+    if (fundsCursor) {
+        html += `<div style="text-align:center; padding:10px;"><button class="btn btn-secondary" onclick="fetchHistoryFunds(true)">載入更多</button></div>`;
+    }
     el.innerHTML = html;
 }
 
 async function fetchHistoryTrades() {
     try {
-        const res = await fetch(`${ORDER_API_URL}/trades`);
+        const res = await fetch(`${ORDER_API_URL}/trades?limit=100`);
         if(res.ok) {
-            const data = await res.json();
-            const filtered = data.filter(t => t.tradeType === 'SPOT');
+            const page = await res.json();
+            const filtered = page.items.filter(t => t.tradeType === 'SPOT');
             renderHistoryTrades(filtered);
         }
     } catch(err) {
@@ -1233,11 +1368,14 @@ function setOptimalView() {
 }
 // ====== 備註區 ======
 /*
-[註1] 輪詢效能 (Polling Performance):
-      目前使用 `setInterval` 每 2 秒請求一次 API 來更新訂單簿與 K 線。
-      這會對伺服器造成較大負載。
-      建議改用 WebSocket (如 STOMP over WebSocket)，實現伺服器主動推播 (Push Notification)，
-      僅在資料變動時更新，大幅降低頻寬消耗。
+[註1] 行情推播 (Market Data Push):
+      早期版本以 `setInterval` 每 2 秒請求一次訂單簿與 K 線，每個分頁都會觸發完整查詢。
+      現在以 EventSource (Server-Sent Events) 訂閱 /api/market/stream：先收到完整深度快照，
+      之後只收到變動的檔位與最新成交所形成的 K 線區間，只在資料變動時傳輸。
+      深度差異帶有 [firstUpdateId, lastUpdateId]：lastUpdateId 不大於已套用版本的差異直接丟棄，
+      firstUpdateId 大於已套用版本 + 1 代表漏收訊息，此時不斷線，而是暫存之後的差異、
+      向 /api/orders/book 取得帶 lastUpdateId 的快照後再依同樣規則套用暫存的差異。
+      EventSource 斷線時會自動重新連線並重新取得快照。
 
 [註2] 錯誤處理 (Error Handling):
       目前的 `try-catch` 區塊多為靜默失敗或簡單印出 console error。
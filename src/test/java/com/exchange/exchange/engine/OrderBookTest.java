@@ -0,0 +1,259 @@
+package com.exchange.exchange.engine;
+
+import com.exchange.exchange.entity.Order;
+import com.exchange.exchange.enums.OrderSide;
+import com.exchange.exchange.enums.OrderStatus;
+import com.exchange.exchange.enums.OrderType;
+import com.exchange.exchange.enums.TradeType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ====== 檔案總結 ======
+// OrderBookTest 是記憶體訂單簿的單元測試 (不需啟動 Spring Context 與資料庫)。
+// 驗證重點：價格優先、時間優先、自成交跳過、撤單與最佳價格查詢、委託金額上限，以及回呼失敗時訂單簿仍保持一致。
+public class OrderBookTest {
+
+    // 價格 2 位小數、數量 4 位小數
+    private static final SymbolScale SCALE = new SymbolScale(2, 4);
+
+    private int nextId = 1;
+
+    // 測試案例：買單應先吃最低賣價，同價位則先吃較早的掛單
+    @Test
+    public void testPriceTimePriority() {
+        OrderBook book = new OrderBook("BTCUSDT", TradeType.SPOT, SCALE);
+        OrderNode late = order(2, OrderSide.SELL, "100", "1");
+        OrderNode early = order(3, OrderSide.SELL, "100", "1");
+        OrderNode cheap = order(4, OrderSide.SELL, "99", "1");
+        book.add(early);
+        book.add(late);
+        book.add(cheap);
+
+        OrderNode taker = order(1, OrderSide.BUY, "100", "2.5");
+        List<Integer> filled = new ArrayList<>();
+        book.match(taker, (maker, qty, price) -> filled.add(maker.getOrderId()));
+
+        // 依序成交：99 -> 100 (較早) -> 100 (較晚, 部分成交)
+        assertEquals(List.of(cheap.getOrderId(), early.getOrderId(), late.getOrderId()), filled);
+        assertEquals(0, new BigDecimal("0.5").compareTo(SCALE.quantity(late.getFilled())));
+        // 部分成交的 Maker 應保留在簿中
+        assertSame(late, book.get(late.getOrderId()));
+        assertEquals(1, book.size());
+    }
+
+    // 測試案例：不與自己的掛單成交，且價格不交叉時停止
+    @Test
+    public void testSkipsSelfTradeAndStopsAtLimit() {
+        OrderBook book = new OrderBook("BTCUSDT", TradeType.SPOT, SCALE);
+        OrderNode own = order(1, OrderSide.BUY, "101", "1");
+        OrderNode other = order(2, OrderSide.BUY, "100", "1");
+        OrderNode tooLow = order(3, OrderSide.BUY, "98", "1");
+        book.add(own);
+        book.add(other);
+        book.add(tooLow);
+
+        OrderNode taker = order(1, OrderSide.SELL, "99", "5");
+        List<Integer> filled = new ArrayList<>();
+        book.match(taker, (maker, qty, price) -> filled.add(maker.getOrderId()));
+
+        assertEquals(List.of(other.getOrderId()), filled);
+        assertEquals(0, new BigDecimal("101").compareTo(book.bestPrice(OrderSide.BUY)));
+    }
+
+    // 測試案例：撤單後檔位應一併清除
+    @Test
+    public void testRemove() {
+        OrderBook book = new OrderBook("BTCUSDT", TradeType.SPOT, SCALE);
+        OrderNode ask = order(1, OrderSide.SELL, "100", "1");
+        book.add(ask);
+
+        assertSame(ask, book.remove(ask.getOrderId()));
+        assertNull(book.remove(ask.getOrderId()));
+        assertNull(book.bestPrice(OrderSide.SELL));
+        assertEquals(0, book.size());
+    }
+
+    // 測試案例：自檔位中間撤單後，其餘掛單仍維持時間順序，且回收的節點可被重複使用
+    @Test
+    public void testRemoveFromMiddleOfLevel() {
+        OrderBook book = new OrderBook("BTCUSDT", TradeType.SPOT, SCALE);
+        OrderNode first = order(2, OrderSide.SELL, "100", "1");
+        OrderNode middle = order(3, OrderSide.SELL, "100", "1");
+        OrderNode last = order(4, OrderSide.SELL, "100", "1");
+        book.add(first);
+        book.add(middle);
+        book.add(last);
+
+        book.release(book.remove(middle.getOrderId()));
+        assertSame(middle, book.acquire());
+
+        OrderNode taker = order(1, OrderSide.BUY, "100", "2");
+        List<Integer> filled = new ArrayList<>();
+        book.match(taker, (maker, qty, price) -> filled.add(maker.getOrderId()));
+
+        assertEquals(List.of(first.getOrderId(), last.getOrderId()), filled);
+        assertNull(book.bestPrice(OrderSide.SELL));
+        assertEquals(0, book.size());
+    }
+
+    // 測試案例：會員掛單索引在新增、撤單與完全成交後只包含該會員仍在簿中的掛單 (由新到舊)
+    @Test
+    public void testForEachOrderOf() {
+        OrderBook book = new OrderBook("BTCUSDT", TradeType.SPOT, SCALE);
+        OrderNode a = order(7, OrderSide.SELL, "100", "1");
+        OrderNode other = order(8, OrderSide.SELL, "100", "1");
+        OrderNode b = order(7, OrderSide.SELL, "101", "1");
+        OrderNode c = order(7, OrderSide.BUY, "90", "1");
+        book.add(a);
+        book.add(other);
+        book.add(b);
+        book.add(c);
+        assertEquals(List.of(c.getOrderId(), b.getOrderId(), a.getOrderId()), openIds(book, 7));
+
+        book.remove(b.getOrderId());
+        assertEquals(List.of(c.getOrderId(), a.getOrderId()), openIds(book, 7));
+
+        // 完全成交的 Maker (a) 離開索引，其他會員的掛單不受影響
+        OrderNode taker = order(1, OrderSide.BUY, "100", "1");
+        book.match(taker, (maker, qty, price) -> { });
+        assertEquals(List.of(c.getOrderId()), openIds(book, 7));
+        assertEquals(List.of(other.getOrderId()), openIds(book, 8));
+
+        book.remove(c.getOrderId());
+        assertEquals(List.of(), openIds(book, 7));
+    }
+
+    // 測試案例：深度快照在發布時才反映變動，且各檔位數量已扣除部分成交
+    @Test
+    public void testPublishDepth() {
+        OrderBook book = new OrderBook("BTCUSDT", TradeType.SPOT, SCALE);
+        book.add(order(2, OrderSide.SELL, "101", "1"));
+        book.add(order(3, OrderSide.SELL, "100", "1"));
+        book.add(order(4, OrderSide.SELL, "100", "2"));
+        book.add(order(5, OrderSide.BUY, "99", "0.5"));
+        assertEquals("{\"lastUpdateId\":0,\"bids\":[],\"asks\":[]}", new String(book.depth().toJson(5)));
+
+        book.publishDepth();
+        DepthSnapshot first = book.depth();
+        assertEquals("{\"lastUpdateId\":" + first.getUpdateId() + ",\"bids\":[{\"price\":99.00,\"quantity\":0.5000}],"
+                + "\"asks\":[{\"price\":100.00,\"quantity\":3.0000},{\"price\":101.00,\"quantity\":1.0000}]}",
+                new String(first.toJson(0)));
+        assertSame(first.toJson(0), first.toJson(0));
+
+        OrderNode taker = order(1, OrderSide.BUY, "100", "1.5");
+        book.match(taker, (maker, qty, price) -> { });
+        book.publishDepth();
+        assertTrue(book.depth().getUpdateId() > first.getUpdateId());
+        assertEquals("{\"lastUpdateId\":" + book.depth().getUpdateId() + ",\"bids\":[{\"price\":99.00,\"quantity\":0.5000}],"
+                + "\"asks\":[{\"price\":100.00,\"quantity\":1.5000},{\"price\":101.00,\"quantity\":1.0000}]}", new String(book.depth().toJson(5)));
+        assertThrows(IllegalArgumentException.class, () -> book.depth().toJson(7));
+    }
+
+    // 測試案例：兩個深度快照之間的差異只包含新增、移除 (數量 0) 與數量改變的檔位
+    @Test
+    public void testDepthDiff() {
+        OrderBook book = new OrderBook("BTCUSDT", TradeType.SPOT, SCALE);
+        OrderNode removed = order(2, OrderSide.SELL, "101", "1");
+        OrderNode reduced = order(3, OrderSide.SELL, "100", "2");
+        book.add(removed);
+        book.add(reduced);
+        book.add(order(4, OrderSide.BUY, "99", "1"));
+        book.publishDepth();
+        DepthSnapshot before = book.depth();
+
+        book.remove(removed.getOrderId());
+        book.add(order(5, OrderSide.SELL, "102", "1"));
+        book.add(order(6, OrderSide.BUY, "98", "1"));
+        OrderNode taker = order(1, OrderSide.BUY, "100", "0.5");
+        book.match(taker, (maker, qty, price) -> { });
+        book.publishDepth();
+
+        StringBuilder json = new StringBuilder();
+        assertTrue(book.depth().appendDiff(json, before));
+        assertEquals("\"bids\":[{\"price\":98.00,\"quantity\":1.0000}],"
+                + "\"asks\":[{\"price\":100.00,\"quantity\":1.5000},{\"price\":101.00,\"quantity\":0.0000},"
+                + "{\"price\":102.00,\"quantity\":1.0000}]", json.toString());
+        assertFalse(book.depth().appendDiff(new StringBuilder(), book.depth()));
+    }
+
+    // 測試案例：回呼拋出例外時，訂單簿的成交量、檔位數量與索引仍互相一致
+    @Test
+    public void testHandlerFailureKeepsBookConsistent() {
+        OrderBook book = new OrderBook("BTCUSDT", TradeType.SPOT, SCALE);
+        OrderNode first = order(2, OrderSide.SELL, "100", "1");
+        OrderNode second = order(3, OrderSide.SELL, "100", "1");
+        book.add(first);
+        book.add(second);
+
+        OrderNode taker = order(1, OrderSide.BUY, "100", "1.5");
+        assertThrows(IllegalStateException.class, () -> book.match(taker, (maker, qty, price) -> {
+            throw new IllegalStateException("persist failed");
+        }));
+
+        // 第一筆成交已記錄在簿中：完全成交的 Maker 已移除，檔位數量與剩餘掛單相符
+        assertNull(book.get(first.getOrderId()));
+        assertEquals(1, book.size());
+        assertEquals(0, new BigDecimal("1").compareTo(SCALE.quantity(taker.getFilled())));
+        book.publishDepth();
+        assertEquals("{\"lastUpdateId\":" + book.depth().getUpdateId() + ",\"bids\":[],"
+                + "\"asks\":[{\"price\":100.00,\"quantity\":1.0000}]}", new String(book.depth().toJson(5)));
+
+        // 之後的撮合照常進行
+        List<Integer> filled = new ArrayList<>();
+        book.match(taker, (maker, qty, price) -> filled.add(maker.getOrderId()));
+        assertEquals(List.of(second.getOrderId()), filled);
+        assertEquals(0, new BigDecimal("0.5").compareTo(SCALE.quantity(second.getFilled())));
+    }
+
+    // 測試案例：委託金額恰好在 long 上限內的訂單可以掛單、成交與撤單 (金額計算不溢位)；超過上限的在受理時拒絕
+    @Test
+    public void testNotionalBound() {
+        BigDecimal price = new BigDecimal("100");
+        long ticks = SCALE.toTicks(price);
+        BigDecimal maxQty = SCALE.quantity(Long.MAX_VALUE / ticks);
+        assertThrows(IllegalArgumentException.class,
+                () -> SCALE.orderNotional(price, maxQty.add(SCALE.lotSize())));
+        assertEquals(ticks * (Long.MAX_VALUE / ticks), SCALE.orderNotional(price, maxQty));
+
+        OrderBook book = new OrderBook("BTCUSDT", TradeType.SPOT, SCALE);
+        OrderNode bid = order(1, OrderSide.BUY, price.toPlainString(), maxQty.toPlainString());
+        book.add(bid);
+
+        // 部分成交後撤單：解凍金額 = 委託價 * 剩餘數量
+        OrderNode taker = order(2, OrderSide.SELL, "100", "1");
+        book.match(taker, (maker, qty, matchPrice) -> { });
+        assertEquals(SCALE.toLots(BigDecimal.ONE), taker.getFilled());
+        OrderNode canceled = book.remove(bid.getOrderId());
+        assertSame(bid, canceled);
+        BigDecimal refund = SCALE.quote(SymbolScale.notional(canceled.getPrice(), canceled.remaining()));
+        assertEquals(0, price.multiply(maxQty.subtract(BigDecimal.ONE)).compareTo(refund));
+        assertEquals(0, book.size());
+    }
+
+    private static List<Integer> openIds(OrderBook book, int memberId) {
+        List<Integer> ids = new ArrayList<>();
+        book.forEachOrderOf(memberId, node -> ids.add(node.getOrderId()));
+        return ids;
+    }
+
+    // 輔助方法：建立一筆限價單
+    private OrderNode order(int memberId, OrderSide side, String price, String qty) {
+        Order order = new Order();
+        order.setOrderId(nextId++);
+        order.setMemberId(memberId);
+        order.setSymbolId("BTCUSDT");
+        order.setSide(side);
+        order.setType(OrderType.LIMIT);
+        order.setTradeType(TradeType.SPOT);
+        order.setPrice(new BigDecimal(price));
+        order.setQuantity(new BigDecimal(qty));
+        order.setFilledQuantity(BigDecimal.ZERO);
+        order.setStatus(OrderStatus.NEW);
+        return OrderNode.from(order, SCALE);
+    }
+}
@@ -0,0 +1,49 @@
+package com.exchange.exchange.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ====== 檔案總結 ======
+// OrderIndexTest 是訂單索引 (開放定址雜湊表) 的單元測試。
+// 以 HashMap 作為對照組，隨機交錯新增與刪除，驗證向後位移刪除後所有 Key 仍可查得。
+public class OrderIndexTest {
+
+    // 測試案例：隨機新增 / 刪除 (含擴容) 後，內容與 HashMap 一致
+    @Test
+    public void testMatchesHashMap() {
+        OrderIndex index = new OrderIndex();
+        Map<Integer, OrderNode> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertSame(expected.remove(key), index.remove(key));
+            } else {
+                OrderNode node = new OrderNode();
+                expected.put(key, node);
+                index.put(key, node);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for (int key = 0; key < 5_000; key++) {
+            assertSame(expected.get(key), index.get(key));
+        }
+    }
+
+    // 測試案例：連續遞增的 Order ID 全部刪除後表為空
+    @Test
+    public void testSequentialIds() {
+        OrderIndex index = new OrderIndex();
+        for (int id = 1; id <= 10_000; id++) index.put(id, new OrderNode());
+        for (int id = 1; id <= 10_000; id++) assertNotNull(index.remove(id));
+        assertEquals(0, index.size());
+        assertNull(index.get(1));
+    }
+}
@@ -0,0 +1,162 @@
+package com.exchange.exchange.engine.candle;
+
+import com.exchange.exchange.engine.SymbolScale;
+import com.exchange.exchange.entity.Candle;
+import com.exchange.exchange.enums.Timeframe;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ====== 檔案總結 ======
+// CandleAggregatorTest 是 K 線聚合器的單元測試 (不需資料庫，直接檢查待寫入的 K 線)。
+// 驗證同一時間桶內的開高低收與成交量、跨時間桶時的收盤、由 1 分鐘彙總的較大週期、只寫入有變動的 K 線與增量，以及由記憶體 K 線回答查詢。
+public class CandleAggregatorTest {
+
+    // 價格 2 位小數、數量 4 位小數
+    private static final SymbolScale SCALE = new SymbolScale(2, 4);
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 10, 7, 30);
+
+    // 測試案例：同一分鐘內的成交合併為一根 K 線，進入下一分鐘時上一根收盤
+    @Test
+    public void testAggregatesAndRolls() {
+        CandleAggregator aggregator = new CandleAggregator();
+        aggregator.onTrade("BTCUSDT", SCALE, 10_000, 10_000, true, T0);
+        aggregator.onTrade("BTCUSDT", SCALE, 10_200, 5_000, false, T0.plusSeconds(10));
+        aggregator.onTrade("BTCUSDT", SCALE, 9_900, 20_000, true, T0.plusSeconds(20));
+        aggregator.onTrade("BTCUSDT", SCALE, 10_100, 10_000, false, T0.plusSeconds(40));
+
+        List<Candle> minutes = aggregator.live("BTCUSDT", Timeframe._1m);
+        assertEquals(2, minutes.size());
+        assertBar(minutes.get(0), LocalDateTime.of(2024, 5, 1, 10, 7), "100", "102", "99", "99");
+        assertBar(minutes.get(1), LocalDateTime.of(2024, 5, 1, 10, 8), "101", "101", "101", "101");
+        // 成交量 1 + 0.5 + 2、成交額 100 + 51 + 198、主動買入 1 + 2
+        assertVolume(minutes.get(0), "3.5", "349", 3, "3");
+
+        List<Candle> hours = aggregator.live("BTCUSDT", Timeframe._1H);
+        assertEquals(1, hours.size());
+        assertBar(hours.get(0), LocalDateTime.of(2024, 5, 1, 10, 0), "100", "102", "99", "101");
+        assertEquals(LocalDateTime.of(2024, 5, 1, 10, 59, 59), hours.get(0).getCloseTime());
+        assertVolume(hours.get(0), "4.5", "450", 4, "3");
+
+        // 5 分鐘 K 線由已收盤的 10:07 與當前的 10:08 彙總
+        List<Candle> fives = aggregator.live("BTCUSDT", Timeframe._5m);
+        assertEquals(1, fives.size());
+        assertBar(fives.get(0), LocalDateTime.of(2024, 5, 1, 10, 5), "100", "102", "99", "101");
+        assertVolume(fives.get(0), "4.5", "450", 4, "3");
+    }
+
+    // 測試案例：分鐘跨越較大週期的時間桶時，較大週期的 K 線一併收盤，新的 K 線從新的分鐘開始
+    @Test
+    public void testRollupAcrossBuckets() {
+        CandleAggregator aggregator = new CandleAggregator();
+        LocalDateTime t = LocalDateTime.of(2024, 5, 1, 10, 13, 10);
+        aggregator.onTrade("BTCUSDT", SCALE, 10_000, 10_000, true, t);
+        aggregator.onTrade("BTCUSDT", SCALE, 10_500, 10_000, true, t.plusMinutes(1));
+        aggregator.onTrade("BTCUSDT", SCALE, 9_800, 10_000, false, t.plusMinutes(2)); // 10:15
+
+        List<Candle> quarters = aggregator.live("BTCUSDT", Timeframe._15m);
+        assertEquals(2, quarters.size());
+        assertBar(quarters.get(0), LocalDateTime.of(2024, 5, 1, 10, 0), "100", "105", "100", "105");
+        assertVolume(quarters.get(0), "2", "205", 2, "2");
+        assertBar(quarters.get(1), LocalDateTime.of(2024, 5, 1, 10, 15), "98", "98", "98", "98");
+        assertVolume(quarters.get(1), "1", "98", 1, "0");
+
+        // 1 小時 K 線仍在同一時間桶：三分鐘全部彙總
+        List<Candle> hours = aggregator.live("BTCUSDT", Timeframe._1H);
+        assertEquals(1, hours.size());
+        assertBar(hours.get(0), LocalDateTime.of(2024, 5, 1, 10, 0), "100", "105", "98", "98");
+        assertVolume(hours.get(0), "3", "303", 3, "2");
+    }
+
+    // 測試案例：每次只取出上次之後有變動的 K 線，已收盤的 K 線取出後不再保留
+    @Test
+    public void testCollectOnlyChanged() {
+        CandleAggregator aggregator = new CandleAggregator();
+        aggregator.onTrade("BTCUSDT", SCALE, 10_000, 10_000, true, T0);
+        aggregator.onTrade("BTCUSDT", SCALE, 10_100, 10_000, true, T0.plusMinutes(1));
+
+        // 1m 已收盤 + 六個週期的當前 K 線
+        assertEquals(7, aggregator.collect().size());
+        assertTrue(aggregator.collect().isEmpty());
+
+        aggregator.onTrade("BTCUSDT", SCALE, 10_300, 20_000, false, T0.plusMinutes(1).plusSeconds(5));
+        List<Candle> changed = aggregator.collect();
+        assertEquals(6, changed.size());
+        assertTrue(changed.stream().allMatch(c -> c.getClose().compareTo(new BigDecimal("103")) == 0));
+        // 累加欄位只包含上次取出後的增量
+        changed.forEach(c -> assertVolume(c, "2", "206", 1, "0"));
+        assertEquals(1, aggregator.live("BTCUSDT", Timeframe._1m).size());
+    }
+
+    // 測試案例：查詢由記憶體 K 線回答，已取出的部分與尚未取出的增量合併，並支援時間範圍與根數
+    @Test
+    public void testRecentFromMemory() {
+        CandleAggregator aggregator = new CandleAggregator();
+        aggregator.onTrade("BTCUSDT", SCALE, 10_000, 10_000, true, T0);
+        aggregator.onTrade("BTCUSDT", SCALE, 10_100, 10_000, true, T0.plusMinutes(1));
+        aggregator.collect();
+        aggregator.onTrade("BTCUSDT", SCALE, 10_300, 20_000, false, T0.plusMinutes(1).plusSeconds(5));
+
+        List<Candle> minutes = aggregator.recent("BTCUSDT", Timeframe._1m, null, null, 1000);
+        assertEquals(2, minutes.size());
+        assertBar(minutes.get(0), LocalDateTime.of(2024, 5, 1, 10, 7), "100", "100", "100", "100");
+        assertBar(minutes.get(1), LocalDateTime.of(2024, 5, 1, 10, 8), "101", "103", "101", "103");
+        assertVolume(minutes.get(1), "3", "307", 2, "1");
+
+        List<Candle> last = aggregator.recent("BTCUSDT", Timeframe._1m, null, null, 1);
+        assertEquals(1, last.size());
+        assertEquals(LocalDateTime.of(2024, 5, 1, 10, 8), last.get(0).getOpenTime());
+        List<Candle> before = aggregator.recent("BTCUSDT", Timeframe._1m, null, LocalDateTime.of(2024, 5, 1, 10, 8), 1000);
+        assertEquals(1, before.size());
+        assertEquals(LocalDateTime.of(2024, 5, 1, 10, 7), before.get(0).getOpenTime());
+
+        List<Candle> fives = aggregator.recent("BTCUSDT", Timeframe._5m, null, null, 1000);
+        assertEquals(1, fives.size());
+        assertVolume(fives.get(0), "4", "407", 3, "2");
+
+        // 沒有任何 K 線的交易對：交由資料庫回答
+        assertNull(aggregator.recent("ETHUSDT", Timeframe._1m, null, null, 1000));
+    }
+
+    // 測試案例：超過保留根數後淘汰最舊的 K 線，範圍早於保留範圍時交由資料庫回答
+    @Test
+    public void testRecentEviction() {
+        CandleAggregator aggregator = new CandleAggregator();
+        LocalDateTime base = LocalDateTime.of(2024, 5, 1, 0, 0);
+        int minutes = CandleAggregator.CACHE_SIZE + 2;
+        for (int i = 0; i < minutes; i++) {
+            aggregator.onTrade("BTCUSDT", SCALE, 10_000 + i, 10_000, true, base.plusMinutes(i));
+            aggregator.collect();
+        }
+
+        List<Candle> recent = aggregator.recent("BTCUSDT", Timeframe._1m, null, null, CandleAggregator.CACHE_SIZE);
+        assertEquals(CandleAggregator.CACHE_SIZE, recent.size());
+        assertEquals(base.plusMinutes(2), recent.get(0).getOpenTime());
+        assertEquals(base.plusMinutes(minutes - 1), recent.get(recent.size() - 1).getOpenTime());
+
+        // 最近 1000 根都在記憶體中；範圍的開頭早於保留範圍且不足 limit 根時才需要資料庫
+        assertEquals(CandleAggregator.CACHE_SIZE, aggregator.recent("BTCUSDT", Timeframe._1m, base, null, CandleAggregator.CACHE_SIZE).size());
+        assertNull(aggregator.recent("BTCUSDT", Timeframe._1m, base, base.plusMinutes(10), CandleAggregator.CACHE_SIZE));
+        assertEquals(3, aggregator.recent("BTCUSDT", Timeframe._1m, base.plusMinutes(5), base.plusMinutes(8), 10).size());
+    }
+
+    private static void assertVolume(Candle candle, String volume, String quoteVolume, long tradeCount, String takerBuyVolume) {
+        assertEquals(0, new BigDecimal(volume).compareTo(candle.getVolume()));
+        assertEquals(0, new BigDecimal(quoteVolume).compareTo(candle.getQuoteVolume()));
+        assertEquals(tradeCount, candle.getTradeCount());
+        assertEquals(0, new BigDecimal(takerBuyVolume).compareTo(candle.getTakerBuyVolume()));
+    }
+
+    private static void assertBar(Candle candle, LocalDateTime openTime, String open, String high, String low, String close) {
+        assertEquals(openTime, candle.getOpenTime());
+        assertEquals(0, new BigDecimal(open).compareTo(candle.getOpen()));
+        assertEquals(0, new BigDecimal(high).compareTo(candle.getHigh()));
+        assertEquals(0, new BigDecimal(low).compareTo(candle.getLow()));
+        assertEquals(0, new BigDecimal(close).compareTo(candle.getClose()));
+    }
+}
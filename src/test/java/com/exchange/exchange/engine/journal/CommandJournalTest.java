@@ -0,0 +1,117 @@
+package com.exchange.exchange.engine.journal;
+
+import com.exchange.exchange.entity.Order;
+import com.exchange.exchange.enums.OrderSide;
+import com.exchange.exchange.enums.OrderType;
+import com.exchange.exchange.enums.TradeType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ====== 檔案總結 ======
+// CommandJournalTest 是指令日誌的單元測試 (不需啟動 Spring Context 與資料庫)。
+// 驗證重點：紀錄編碼還原 (含指令時間)、重新開啟後序號延續、分段切換後仍能依序讀回、快照後的分段截斷。
+public class CommandJournalTest {
+
+    @TempDir
+    Path dir;
+
+    // 測試案例：寫入的下單與撤單指令，重新開啟後應完整讀回，且序號接續
+    @Test
+    public void testAppendAndReopen() throws Exception {
+        CommandJournal journal = open(64);
+        Order order = order(7, "50000.25", "0.001");
+        LocalDateTime placedAt = LocalDateTime.of(2024, 1, 2, 3, 4, 6, 456_000_000);
+        LocalDateTime canceledAt = placedAt.plusSeconds(30);
+        assertEquals(1, journal.appendPlace(order, placedAt));
+        assertEquals(2, journal.appendCancel(order, canceledAt));
+        journal.close();
+
+        CommandJournal reopened = open(64);
+        List<JournalRecord> records = new ArrayList<>();
+        reopened.forEach(records::add);
+
+        assertEquals(2, records.size());
+        JournalRecord.Place place = (JournalRecord.Place) records.get(0);
+        assertEquals(7, place.orderId());
+        assertEquals(new BigDecimal("50000.25"), place.price());
+        assertEquals(new BigDecimal("0.001"), place.quantity());
+        assertEquals(order.getCreatedAt(), place.createdAt());
+        assertEquals(placedAt, place.timestamp());
+        JournalRecord.Cancel cancel = assertInstanceOf(JournalRecord.Cancel.class, records.get(1));
+        assertEquals(canceledAt, cancel.timestamp());
+
+        // 新指令接續在既有紀錄之後
+        assertEquals(3, reopened.appendPlace(order(8, "1", "1"), placedAt));
+        reopened.close();
+    }
+
+    // 測試案例：分段寫滿時切換新檔，讀取時仍依序號順序
+    @Test
+    public void testSegmentRollover() throws Exception {
+        CommandJournal journal = open(1);
+        int count = 20_000;
+        for (int i = 1; i <= count; i++) {
+            journal.appendPlace(order(i, "100", "1"), LocalDateTime.now());
+        }
+        journal.close();
+
+        List<Long> sequences = new ArrayList<>();
+        open(1).forEach(record -> sequences.add(record.sequence()));
+        assertEquals(count, sequences.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i + 1, sequences.get(i));
+        }
+        assertTrue(dir.toFile().list().length > 1);
+    }
+
+    // 測試案例：切換分段後刪除已被快照涵蓋的分段，只剩之後的紀錄
+    @Test
+    public void testRollAndTruncate() throws Exception {
+        CommandJournal journal = open(1);
+        journal.appendPlace(order(1, "100", "1"), LocalDateTime.now());
+        journal.appendPlace(order(2, "100", "1"), LocalDateTime.now());
+        journal.roll();
+        assertEquals(0, journal.getBytesSinceRoll());
+        journal.appendPlace(order(3, "100", "1"), LocalDateTime.now());
+        journal.deleteSegmentsUpTo(2);
+
+        List<Long> sequences = new ArrayList<>();
+        journal.forEach(record -> sequences.add(record.sequence()));
+        assertEquals(List.of(3L), sequences);
+        journal.close();
+    }
+
+    private CommandJournal open(int segmentSizeMb) throws Exception {
+        CommandJournal journal = new CommandJournal();
+        ReflectionTestUtils.setField(journal, "journalDir", dir.toString());
+        ReflectionTestUtils.setField(journal, "segmentSizeMb", segmentSizeMb);
+        ReflectionTestUtils.setField(journal, "fsyncPolicy", CommandJournal.FsyncPolicy.PERIODIC);
+        ReflectionTestUtils.setField(journal, "groupSize", 64);
+        ReflectionTestUtils.setField(journal, "fsyncIntervalMs", 10L);
+        journal.open();
+        return journal;
+    }
+
+    private Order order(int id, String price, String qty) {
+        Order o = new Order();
+        o.setOrderId(id);
+        o.setMemberId(100);
+        o.setSymbolId("BTCUSDT");
+        o.setSide(OrderSide.BUY);
+        o.setType(OrderType.LIMIT);
+        o.setTradeType(TradeType.SPOT);
+        o.setPrice(new BigDecimal(price));
+        o.setQuantity(new BigDecimal(qty));
+        o.setCreatedAt(LocalDateTime.of(2024, 1, 2, 3, 4, 5, 123_000_000));
+        return o;
+    }
+}
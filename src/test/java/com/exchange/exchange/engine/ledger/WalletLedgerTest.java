@@ -0,0 +1,99 @@
+package com.exchange.exchange.engine.ledger;
+
+import com.exchange.exchange.entity.Wallet;
+import com.exchange.exchange.entity.key.WalletId;
+import com.exchange.exchange.repository.CoinRepository;
+import com.exchange.exchange.repository.WalletRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+// ====== 檔案總結 ======
+// WalletLedgerTest 是錢包帳本的單元測試 (以 Mockito 取代資料庫)。
+// 驗證延遲載入只發生一次、凍結不會超額，以及多執行緒同時結算時沒有遺失更新。
+public class WalletLedgerTest {
+
+    private WalletLedger ledger;
+    private WalletRepository walletRepository;
+
+    @BeforeEach
+    public void setUp() {
+        walletRepository = mock(WalletRepository.class);
+        CoinRepository coinRepository = mock(CoinRepository.class);
+        when(walletRepository.findById(any(WalletId.class))).thenReturn(Optional.empty());
+        when(coinRepository.existsById(anyString())).thenAnswer(inv -> !"XXX".equals(inv.getArgument(0)));
+
+        ledger = new WalletLedger();
+        ReflectionTestUtils.setField(ledger, "walletRepository", walletRepository);
+        ReflectionTestUtils.setField(ledger, "coinRepository", coinRepository);
+    }
+
+    // 測試案例：帳戶由資料庫載入一次後常駐，不存在的幣種拋出異常
+    @Test
+    public void testLoadOnce() {
+        Wallet stored = new Wallet();
+        stored.setBalance(new BigDecimal("100"));
+        stored.setAvailable(new BigDecimal("60"));
+        when(walletRepository.findById(new WalletId(1, "USDT"))).thenReturn(Optional.of(stored));
+
+        ledger.apply(1, "USDT", BigDecimal.ONE, BigDecimal.ONE);
+        Wallet wallet = ledger.get(1, "USDT");
+        assertEquals(0, new BigDecimal("101").compareTo(wallet.getBalance()));
+        assertEquals(0, new BigDecimal("61").compareTo(wallet.getAvailable()));
+        verify(walletRepository, times(1)).findById(new WalletId(1, "USDT"));
+
+        assertThrows(IllegalArgumentException.class, () -> ledger.get(1, "XXX"));
+    }
+
+    // 測試案例：多執行緒同時凍結同一錢包，成功凍結的總額不超過可用餘額
+    @Test
+    public void testConcurrentFreezeNeverOverdraws() throws Exception {
+        ledger.apply(7, "USDT", new BigDecimal("1000"), new BigDecimal("1000"));
+        AtomicInteger succeeded = new AtomicInteger();
+
+        runConcurrently(8, () -> {
+            for (int i = 0; i < 1_000; i++) {
+                if (ledger.tryFreeze(7, "USDT", BigDecimal.ONE)) succeeded.incrementAndGet();
+            }
+        });
+
+        assertEquals(1000, succeeded.get());
+        assertEquals(0, ledger.get(7, "USDT").getAvailable().signum());
+    }
+
+    // 測試案例：多個會員、多條執行緒交錯結算，結果與逐筆加總一致 (沒有遺失更新)
+    @Test
+    public void testConcurrentSettlement() throws Exception {
+        runConcurrently(8, () -> {
+            for (int i = 0; i < 10_000; i++) {
+                int memberId = i % 100;
+                ledger.apply(memberId, "BTC", BigDecimal.ONE, BigDecimal.ONE);
+                ledger.apply(memberId, "BTC", BigDecimal.ZERO, BigDecimal.ONE.negate());
+            }
+        });
+
+        for (int memberId = 0; memberId < 100; memberId++) {
+            Wallet wallet = ledger.get(memberId, "BTC");
+            assertEquals(0, new BigDecimal("800").compareTo(wallet.getBalance()));
+            assertEquals(0, wallet.getAvailable().signum());
+        }
+    }
+
+    private static void runConcurrently(int threads, Runnable task) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) workers.add(new Thread(task));
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+    }
+}
@@ -0,0 +1,73 @@
+package com.exchange.exchange.engine.snapshot;
+
+import com.exchange.exchange.entity.Order;
+import com.exchange.exchange.enums.OrderSide;
+import com.exchange.exchange.enums.OrderStatus;
+import com.exchange.exchange.enums.OrderType;
+import com.exchange.exchange.enums.TradeType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ====== 檔案總結 ======
+// EngineSnapshotTest 是狀態快照編碼的單元測試 (不需啟動 Spring Context 與資料庫)。
+// 驗證重點：掛單欄位完整還原、內容損毀時拒絕載入。
+public class EngineSnapshotTest {
+
+    // 測試案例：編碼後再解碼，掛單順序與所有欄位應完全相同
+    @Test
+    public void testRoundTrip() {
+        Order first = order(1, OrderSide.BUY, "100.5", "2", "0.75");
+        Order second = order(2, OrderSide.SELL, "101", "1", "0");
+        second.setCumQuoteQty(null); // 舊資料可能沒有累積成交額
+        EngineSnapshot snapshot = new EngineSnapshot(42, LocalDateTime.of(2024, 5, 6, 7, 8, 9),
+                List.of(first, second));
+        EngineSnapshot restored = EngineSnapshot.decode(snapshot.encode());
+
+        assertEquals(42, restored.sequence());
+        assertEquals(snapshot.createdAt(), restored.createdAt());
+        assertEquals(2, restored.orders().size());
+        Order o = restored.orders().get(0);
+        assertEquals(1, o.getOrderId());
+        assertEquals(OrderSide.BUY, o.getSide());
+        assertEquals(TradeType.SPOT, o.getTradeType());
+        assertEquals(new BigDecimal("100.5"), o.getPrice());
+        assertEquals(new BigDecimal("0.75"), o.getFilledQuantity());
+        assertEquals(OrderStatus.PARTIAL_FILLED, o.getStatus());
+        assertEquals(first.getCreatedAt(), o.getCreatedAt());
+        assertNull(restored.orders().get(1).getCumQuoteQty());
+    }
+
+    // 測試案例：任一位元組損毀都應被 CRC 偵測
+    @Test
+    public void testCorruptedSnapshotRejected() {
+        EngineSnapshot snapshot = new EngineSnapshot(1, LocalDateTime.now(),
+                List.of(order(1, OrderSide.BUY, "1", "1", "0")));
+        byte[] data = snapshot.encode();
+        data[data.length / 2] ^= 0x01;
+        assertThrows(IllegalStateException.class, () -> EngineSnapshot.decode(data));
+    }
+
+    private Order order(int id, OrderSide side, String price, String qty, String filled) {
+        Order o = new Order();
+        o.setOrderId(id);
+        o.setMemberId(100);
+        o.setSymbolId("BTCUSDT");
+        o.setSide(side);
+        o.setType(OrderType.LIMIT);
+        o.setTradeType(TradeType.SPOT);
+        o.setPrice(new BigDecimal(price));
+        o.setQuantity(new BigDecimal(qty));
+        o.setFilledQuantity(new BigDecimal(filled));
+        o.setCumQuoteQty(BigDecimal.ZERO);
+        o.setStatus(new BigDecimal(filled).signum() > 0 ? OrderStatus.PARTIAL_FILLED : OrderStatus.NEW);
+        o.setPostOnly(false);
+        o.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0, id));
+        o.setUpdatedAt(o.getCreatedAt());
+        return o;
+    }
+}
@@ -0,0 +1,125 @@
+package com.exchange.exchange.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ====== 檔案總結 ======
+// KlineProxyServiceTest 是外部 K 線代理快取的單元測試 (以本地替身取代 Binance，不需連線)。
+// 驗證有效期限 (上限與對齊收盤)、同時請求的合併，以及上游失敗時不快取。
+public class KlineProxyServiceTest {
+
+    private static final Instant T0 = Instant.parse("2024-05-01T10:00:00.500Z");
+
+    // 測試案例：有效期限內重複請求不呼叫上游，超過上限或當前 K 線收盤後重新取得
+    @Test
+    public void testCachesUntilTtlOrClose() {
+        AtomicInteger calls = new AtomicInteger();
+        KlineProxyService proxy = proxy((symbol, interval) -> body(symbol + interval + calls.incrementAndGet()));
+
+        at(proxy, T0);
+        byte[] first = proxy.getKlines("btcusdt", "1m");
+        assertSame(first, proxy.getKlines("BTCUSDT", "1m"));
+        assertEquals(1, calls.get());
+
+        // 不同週期是不同的快取項目
+        proxy.getKlines("BTCUSDT", "1h");
+        assertEquals(2, calls.get());
+
+        at(proxy, T0.plusMillis(999));
+        assertSame(first, proxy.getKlines("BTCUSDT", "1m"));
+        at(proxy, T0.plusMillis(1000));
+        assertNotSame(first, proxy.getKlines("BTCUSDT", "1m"));
+        assertEquals(3, calls.get());
+
+        // 距收盤不到上限：K 線收盤 (10:01:00) 時即失效
+        at(proxy, Instant.parse("2024-05-01T10:00:59.800Z"));
+        byte[] beforeClose = proxy.getKlines("BTCUSDT", "1m");
+        at(proxy, Instant.parse("2024-05-01T10:01:00Z"));
+        assertNotSame(beforeClose, proxy.getKlines("BTCUSDT", "1m"));
+        assertEquals(5, calls.get());
+    }
+
+    // 測試案例：同時到達的相同請求只呼叫上游一次，所有請求取得同一份回應
+    @Test
+    public void testCoalescesConcurrentRequests() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        KlineProxyService proxy = proxy((symbol, interval) -> {
+            calls.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return body("[]");
+        });
+        at(proxy, T0);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            results.add(pool.submit(() -> proxy.getKlines("BTCUSDT", "1m")));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 7; i++) results.add(pool.submit(() -> proxy.getKlines("BTCUSDT", "1m")));
+            Thread.sleep(100);
+            release.countDown();
+
+            byte[] first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<byte[]> result : results) assertSame(first, result.get(5, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // 測試案例：上游失敗不快取，下一個請求重新嘗試；不合法的參數直接拒絕
+    @Test
+    public void testFailureNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+        KlineProxyService proxy = proxy((symbol, interval) -> {
+            if (calls.incrementAndGet() == 1) throw new IllegalStateException("upstream down");
+            return body("[]");
+        });
+        at(proxy, T0);
+
+        assertThrows(IllegalStateException.class, () -> proxy.getKlines("BTCUSDT", "1m"));
+        assertArrayEquals(body("[]"), proxy.getKlines("BTCUSDT", "1m"));
+        assertEquals(2, calls.get());
+
+        assertThrows(IllegalArgumentException.class, () -> proxy.getKlines("BTCUSDT", "7m"));
+        assertThrows(IllegalArgumentException.class, () -> proxy.getKlines("BTC&limit=1", "1m"));
+        assertEquals(2, calls.get());
+    }
+
+    private static KlineProxyService proxy(KlineUpstream upstream) {
+        KlineProxyService proxy = new KlineProxyService();
+        ReflectionTestUtils.setField(proxy, "upstream", upstream);
+        ReflectionTestUtils.setField(proxy, "ttlMs", 1000L);
+        return proxy;
+    }
+
+    private static void at(KlineProxyService proxy, Instant now) {
+        ReflectionTestUtils.setField(proxy, "clock", Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static byte[] body(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}